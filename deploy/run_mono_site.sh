@@ -64,47 +64,35 @@ done
 echo "✅ All nodes confirmed on site: $SITE"
 echo ""
 
-# Copy files to all worker nodes
-echo "📦 Copying files to worker nodes..."
-for hostname in $HOSTNAMES; do
-    if [ "$hostname" != "$MASTER_NODE" ]; then
-        echo "  - Copying to $hostname..."
-        # Copy all necessary files: bin/, wordcount binary, test/, input files, and Makefile
-        if ! scp -q -r bin wordcount test part*.txt Makefile $hostname:~ ; then
-            echo "❌ Failed to copy files to $hostname"
-            exit 1
-        fi
-    fi
-done
+# Copy files to all worker nodes, COPY_PARALLELISM hosts at a time
+COPY_PARALLELISM=${COPY_PARALLELISM:-32}
+echo "📦 Copying files to worker nodes ($COPY_PARALLELISM at a time)..."
+if ! echo "$HOSTNAMES" | grep -v "$MASTER_NODE" | xargs -P "$COPY_PARALLELISM" -I{} \
+        sh -c 'scp -q -r bin wordcount test part*.txt Makefile {}:~ || { echo "❌ Failed to copy files to {}"; exit 1; }'; then
+    exit 1
+fi
 echo "✅ Files copied successfully"
 echo ""
 
-# Start workers
+# Start workers; each registers with the master as soon as it is up
 echo "🚀 Starting worker nodes..."
 for hostname in $HOSTNAMES; do
     if [ "$hostname" != "$MASTER_NODE" ]; then
         echo "  - Starting worker on $hostname..."
-        ssh $hostname "cd ~ && nohup java -cp bin network.worker.WorkerNode $hostname > worker.log 2>&1 &" &
-        sleep 1
+        ssh $hostname "cd ~ && nohup java -Dwordcount.master=$MASTER_NODE -cp bin network.worker.WorkerNode $hostname > worker.log 2>&1 &" &
     fi
 done
-
-# Wait for workers to initialize
-echo "⏳ Waiting for workers to initialize..."
-sleep 5
+wait
 echo ""
 
-# Build worker list for scheduler
-WORKER_LIST=$(echo "$HOSTNAMES" | grep -v "$MASTER_NODE" | awk '{printf "\"%s\",", $0}' | sed 's/,$//')
-
 echo "╔══════════════════════════════════════════════════════════╗"
 echo "║   STARTING DISTRIBUTED EXECUTION                        ║"
 echo "╚══════════════════════════════════════════════════════════╝"
-echo "Worker list: [$WORKER_LIST]"
+echo "Waiting for $WORKER_COUNT worker(s) to register"
 echo ""
 
 # Run the static Makefile-based system
-if java -cp bin scheduler.Main "[$WORKER_LIST]"; then
+if java -cp bin scheduler.Main --workers=$WORKER_COUNT; then
     echo ""
     echo "═══════════════════════════════════════════════════════════"
     echo "✅ Execution completed successfully!"
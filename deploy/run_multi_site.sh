@@ -107,46 +107,33 @@ echo "  - RMI communication may require specific network configuration"
 echo "  - Latency between sites: typically 1-10ms depending on sites"
 echo ""
 
-# Copy files to all worker nodes
-echo "📦 Copying files to worker nodes (this may take longer for remote sites)..."
-for hostname in $HOSTNAMES; do
-    if [ "$hostname" != "$MASTER_NODE" ]; then
-        SITE=$(echo $hostname | cut -d'.' -f2)
-        echo "  - [$SITE] Copying to $hostname..."
-        # Copy all necessary files: bin/, wordcount binary, test/, input files, and Makefile
-        if ! scp -q -r bin wordcount test part*.txt Makefile $hostname:~ ; then
-            echo "❌ Failed to copy files to $hostname"
-            echo "   Check network connectivity and SSH access"
-            exit 1
-        fi
-    fi
-done
+# Copy files to all worker nodes, COPY_PARALLELISM hosts at a time
+COPY_PARALLELISM=${COPY_PARALLELISM:-32}
+echo "📦 Copying files to worker nodes ($COPY_PARALLELISM at a time)..."
+if ! echo "$HOSTNAMES" | grep -v "$MASTER_NODE" | xargs -P "$COPY_PARALLELISM" -I{} \
+        sh -c 'scp -q -r bin wordcount test part*.txt Makefile {}:~ || { echo "❌ Failed to copy files to {}"; exit 1; }'; then
+    echo "   Check network connectivity and SSH access"
+    exit 1
+fi
 echo "✅ Files copied to all sites"
 echo ""
 
-# Start workers
+# Start workers; each registers with the master as soon as it is up
 echo "🚀 Starting worker nodes across all sites..."
 for hostname in $HOSTNAMES; do
     if [ "$hostname" != "$MASTER_NODE" ]; then
         SITE=$(echo $hostname | cut -d'.' -f2)
         echo "  - [$SITE] Starting worker on $hostname..."
-        ssh $hostname "cd ~ && nohup java -cp bin network.worker.WorkerNode $hostname > worker.log 2>&1 &" &
-        sleep 1
+        ssh $hostname "cd ~ && nohup java -Dwordcount.master=$MASTER_NODE -cp bin network.worker.WorkerNode $hostname > worker.log 2>&1 &" &
     fi
 done
-
-# Wait for workers to initialize (longer for multi-site)
-echo "⏳ Waiting for workers to initialize across all sites..."
-sleep 8
+wait
 echo ""
 
-# Build worker list for scheduler
-WORKER_LIST=$(echo "$HOSTNAMES" | grep -v "$MASTER_NODE" | awk '{printf "\"%s\",", $0}' | sed 's/,$//')
-
 echo "╔══════════════════════════════════════════════════════════╗"
 echo "║   STARTING MULTI-SITE DISTRIBUTED EXECUTION             ║"
 echo "╚══════════════════════════════════════════════════════════╝"
-echo "Worker list: [$WORKER_LIST]"
+echo "Waiting for $TOTAL_WORKERS worker(s) to register"
 echo ""
 echo "⚠️  Note: Inter-site communication may show increased latency"
 echo ""
@@ -154,7 +141,7 @@ echo ""
 # Run the static Makefile-based system
 START_TIME=$(date +%s)
 
-if java -cp bin scheduler.Main "[$WORKER_LIST]"; then
+if java -cp bin scheduler.Main --workers=$TOTAL_WORKERS; then
     END_TIME=$(date +%s)
     DURATION=$((END_TIME - START_TIME))
 
@@ -62,12 +62,10 @@ SITE_COUNT=${#SITES[@]}
 
 if [ $SITE_COUNT -eq 1 ]; then
     MODE="MONO-SITE"
-    SLEEP_TIME=5
     echo "✓ Detection: MONO-SITE deployment"
     echo "  All nodes on site: $MASTER_SITE"
 else
     MODE="MULTI-SITE"
-    SLEEP_TIME=8
     echo "✓ Detection: MULTI-SITE deployment"
     echo "  Sites involved: $SITE_COUNT"
     echo ""
@@ -122,27 +120,17 @@ if [ "$MODE" == "MULTI-SITE" ]; then
     echo ""
 fi
 
-# Copy files to all worker nodes
-echo "📦 Copying files to worker nodes..."
-for hostname in $HOSTNAMES; do
-    if [ "$hostname" != "$MASTER_NODE" ]; then
-        if [ "$MODE" == "MULTI-SITE" ]; then
-            SITE=$(echo $hostname | cut -d'.' -f2)
-            echo "  - [$SITE] Copying to $hostname..."
-        else
-            echo "  - Copying to $hostname..."
-        fi
-
-        if ! scp -q -r bin wordcount test part*.txt Makefile $hostname:~ ; then
-            echo "❌ Failed to copy files to $hostname"
-            exit 1
-        fi
-    fi
-done
+# Copy files to all worker nodes, COPY_PARALLELISM hosts at a time
+COPY_PARALLELISM=${COPY_PARALLELISM:-32}
+echo "📦 Copying files to worker nodes ($COPY_PARALLELISM at a time)..."
+if ! echo "$HOSTNAMES" | grep -v "$MASTER_NODE" | xargs -P "$COPY_PARALLELISM" -I{} \
+        sh -c 'scp -q -r bin wordcount test part*.txt Makefile {}:~ || { echo "❌ Failed to copy files to {}"; exit 1; }'; then
+    exit 1
+fi
 echo "✅ Files copied successfully"
 echo ""
 
-# Start workers
+# Start workers; each registers with the master as soon as it is up
 echo "🚀 Starting worker nodes..."
 for hostname in $HOSTNAMES; do
     if [ "$hostname" != "$MASTER_NODE" ]; then
@@ -152,24 +140,17 @@ for hostname in $HOSTNAMES; do
         else
             echo "  - Starting worker on $hostname..."
         fi
-        ssh $hostname "cd ~ && nohup java -cp bin network.worker.WorkerNode $hostname > worker.log 2>&1 &" &
-        sleep 1
+        ssh $hostname "cd ~ && nohup java -Dwordcount.master=$MASTER_NODE -cp bin network.worker.WorkerNode $hostname > worker.log 2>&1 &" &
     fi
 done
-
-# Wait for workers (adaptive delay based on mode)
-echo "⏳ Waiting for workers to initialize ($SLEEP_TIME seconds)..."
-sleep $SLEEP_TIME
+wait
 echo ""
 
-# Build worker list for scheduler
-WORKER_LIST=$(echo "$HOSTNAMES" | grep -v "$MASTER_NODE" | awk '{printf "\"%s\",", $0}' | sed 's/,$//')
-
 echo "╔══════════════════════════════════════════════════════════╗"
 echo "║   STARTING DISTRIBUTED EXECUTION                        ║"
 echo "╚══════════════════════════════════════════════════════════╝"
 echo "Mode: $MODE"
-echo "Worker list: [$WORKER_LIST]"
+echo "Waiting for $WORKER_COUNT worker(s) to register"
 echo ""
 
 # Run execution (measure time for multi-site)
@@ -177,7 +158,7 @@ if [ "$MODE" == "MULTI-SITE" ]; then
     START_TIME=$(date +%s)
 fi
 
-if java -cp bin scheduler.Main "[$WORKER_LIST]"; then
+if java -cp bin scheduler.Main --workers=$WORKER_COUNT; then
 
     if [ "$MODE" == "MULTI-SITE" ]; then
         END_TIME=$(date +%s)
@@ -95,27 +95,22 @@ echo "   Workers: $WORKER_COUNT"
 echo "   Lines per worker: ~$LINES_PER_WORKER"
 echo ""
 
-# Copy files to all worker nodes
-echo "📦 Distributing files to workers..."
-for hostname in $(echo $WORKERS | tr ',' '\n'); do
-    echo "  - $hostname"
-    if ! scp -q -r bin wordcount test "$INPUT_FILE" $hostname:~ ; then
-        echo "❌ Failed to copy files to $hostname"
-        exit 1
-    fi
-done
+# Copy files to all worker nodes, COPY_PARALLELISM hosts at a time
+COPY_PARALLELISM=${COPY_PARALLELISM:-32}
+echo "📦 Distributing files to workers ($COPY_PARALLELISM at a time)..."
+if ! echo $WORKERS | tr ',' '\n' | xargs -P "$COPY_PARALLELISM" -I{} \
+        sh -c 'scp -q -r bin wordcount test "$0" {}:~ || { echo "❌ Failed to copy files to {}"; exit 1; }' "$INPUT_FILE"; then
+    exit 1
+fi
 echo "✅ Files distributed"
 echo ""
 
-# Start workers
+# Start workers; each registers with the master as soon as it is up
 echo "🚀 Starting workers..."
 for hostname in $(echo $WORKERS | tr ',' '\n'); do
-    ssh $hostname "cd ~ && nohup java -cp bin network.worker.WorkerNode $hostname > worker.log 2>&1 &" &
-    sleep 1
+    ssh $hostname "cd ~ && nohup java -Dwordcount.master=$MASTER_NODE -cp bin network.worker.WorkerNode $hostname > worker.log 2>&1 &" &
 done
-
-echo "⏳ Waiting for workers to initialize..."
-sleep 5
+wait
 echo ""
 
 echo "╔══════════════════════════════════════════════════════════╗"
@@ -183,7 +178,7 @@ echo ""
 # Run the static system (Main.java with existing Makefile)
 START_TIME=$(date +%s)
 
-if java -cp bin scheduler.Main "[$WORKERS]"; then
+if java -cp bin scheduler.Main --workers=$WORKER_COUNT; then
     END_TIME=$(date +%s)
     DURATION=$((END_TIME - START_TIME))
 
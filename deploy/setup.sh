@@ -16,49 +16,12 @@ fi
 echo "Creating bin directory..."
 mkdir -p bin
 
-# Compile Java files in correct order
+# Compile all Java files in one pass, so javac resolves the dependencies
+# between packages whatever their order (sources are UTF-8: the logs use emoji)
 echo ""
 echo "Compiling Java files..."
-
-echo "  - Compiling config..."
-if ! javac -d bin src/config/*.java; then
-    echo "❌ Failed to compile config"
-    exit 1
-fi
-
-echo "  - Compiling cluster management..."
-if ! javac -cp bin -d bin src/cluster/*.java; then
-    echo "❌ Failed to compile cluster management"
-    exit 1
-fi
-
-echo "  - Compiling network (workers)..."
-if ! javac -cp bin -d bin src/network/worker/*.java; then
-    echo "❌ Failed to compile network workers"
-    exit 1
-fi
-
-echo "  - Compiling network (master)..."
-if ! javac -cp bin -d bin src/network/master/*.java; then
-    echo "❌ Failed to compile network master"
-    exit 1
-fi
-
-echo "  - Compiling parser..."
-if ! javac -cp bin -d bin src/parser/*.java; then
-    echo "❌ Failed to compile parser"
-    exit 1
-fi
-
-echo "  - Compiling utils..."
-if ! javac -cp bin -d bin src/utils/*.java; then
-    echo "❌ Failed to compile utils"
-    exit 1
-fi
-
-echo "  - Compiling scheduler..."
-if ! javac -cp bin -d bin src/scheduler/*.java; then
-    echo "❌ Failed to compile scheduler"
+if ! javac -encoding UTF-8 -d bin -sourcepath src $(find src -name '*.java'); then
+    echo "❌ Failed to compile Java files"
     exit 1
 fi
 
@@ -3,47 +3,118 @@ package cluster;
 import config.Configuration;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages the cluster of compute nodes.
  * Refactored to remove static mutable state and improve thread safety.
+ *
+ * Free slots are kept as tokens in one lock-free queue per site, so taking any free
+ * slot costs one poll instead of a scan of the node list. A node can also be taken
+ * directly (to run next to its inputs); the token it leaves behind is then stale and
+ * is dropped by the next poll that finds the node full. Threads waiting for a slot
+ * block until a release instead of polling. Nodes whose worker refused work are
+ * skipped until their retry delay is over.
+ *
+ * Tasks asking more than one core or some memory ("# @cores", "# @mem") are
+ * bin-packed: they go to the node where they fit most tightly, which keeps empty
+ * nodes for the largest tasks. A large task that fits nowhere reserves the emptiest
+ * node, which then drains until the task fits.
+ *
+ * Membership is elastic: nodes can join a running cluster, and a leaving node
+ * drains (it takes no new task) until its running tasks are done, then is removed.
+ * Listeners such as the work queues are told about both, so queued work moves to
+ * new nodes and away from leaving ones.
  */
 public class ClusterManager {
     private final List<ComputeNode> nodes;
-    private final ComputeNode masterNode;
+    private final NodeProbe probe;
+    private final ComputeNode masterNode = createMasterNode();
+    // Copied on write when a site appears, so lookups never lock
+    private volatile Map<String, ConcurrentLinkedQueue<ComputeNode>> freeSlotsBySite = new LinkedHashMap<>();
+    private volatile Map<String, List<ComputeNode>> nodesBySite = new LinkedHashMap<>();
+    private final List<MembershipListener> listeners = new CopyOnWriteArrayList<>();
+    // Files every worker of a site must hold, with their site ("" for every site)
+    private final Map<String, String> sharedFiles = new ConcurrentHashMap<>();
+    private final Map<Object, ComputeNode> reservations = new ConcurrentHashMap<>();
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final Object releaseMonitor = new Object();
+    private final ScheduledExecutorService saturationTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "saturation-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, ComputeNode> fileLocations = new ConcurrentHashMap<>();
+    private final Map<String, Set<ComputeNode>> fileReplicas = new ConcurrentHashMap<>();
+    private final Map<String, Long> fileSizes = new ConcurrentHashMap<>();
+    private final TransferStats transferStats = new TransferStats();
 
     /**
-     * Initializes the cluster with the given node list.
-     * @param nodesList Comma-separated list of hostnames (can include brackets/quotes)
+     * Initializes the cluster with the given node list. Nodes with "auto" slots get one slot.
+     * @param nodesList Comma-separated list of "host[:port][@site][/slots[:mem]]" (can include brackets/quotes)
      * @throws IllegalArgumentException if nodesList is invalid
      */
     public ClusterManager(String nodesList) {
-        if (nodesList == null || nodesList.trim().isEmpty()) {
+        this(nodesList, false, null);
+    }
+
+    /**
+     * Initializes the cluster with the given node list, which may be empty if the
+     * workers register themselves (see awaitNodes).
+     * @param nodesList Comma-separated list of "host[:port][@site][/slots[:mem]]" (can include brackets/quotes)
+     * @param registering Whether more workers will register, allowing an empty list
+     * @param probe Asks the workers with "auto" slots for their resources, or null to give them one slot
+     * @throws IllegalArgumentException if nodesList is invalid
+     */
+    public ClusterManager(String nodesList, boolean registering, NodeProbe probe) {
+        this.probe = probe;
+        String cleaned = nodesList == null ? "" : nodesList.replaceAll("[\\[\\]'\"]", "").trim();
+        if (cleaned.isEmpty() && !registering) {
             throw new IllegalArgumentException("Nodes list cannot be null or empty");
         }
 
-        String cleaned = nodesList.replaceAll("[\\[\\]'\"]", "").trim();
-        String[] hostnames = cleaned.split(",");
+        String[] hostnames = cleaned.isEmpty() ? new String[0] : cleaned.split(",");
 
-        List<ComputeNode> tempNodes = new ArrayList<>();
+        List<NodeSpec> specs = new ArrayList<>();
         System.out.println("[CLUSTER] Initializing cluster with " + hostnames.length + " nodes:");
 
         for (String nodeSpec : hostnames) {
             nodeSpec = nodeSpec.trim();
             if (!nodeSpec.isEmpty()) {
-                ComputeNode node = parseNodeSpec(nodeSpec);
-                tempNodes.add(node);
-                System.out.println("[CLUSTER]   - " + node.hostname + ":" + node.port);
+                specs.add(parseNodeSpec(nodeSpec));
             }
         }
 
-        if (tempNodes.isEmpty()) {
+        List<ComputeNode> tempNodes = createNodes(specs, probe);
+        for (ComputeNode node : tempNodes) {
+            System.out.println("[CLUSTER]   - " + node.hostname + ":" + node.port + " (site " + node.site +
+                               ", " + node.getSlots() + " slot" + (node.getSlots() == 1 ? "" : "s") +
+                               (node.getMemoryMb() > 0 ? ", " + node.getMemoryMb() + " MB" : "") + ")");
+        }
+
+        if (tempNodes.isEmpty() && !registering) {
             throw new IllegalArgumentException("No valid nodes found in the list");
         }
 
-        if (tempNodes.size() < Configuration.MIN_WORKER_NODES) {
+        if (tempNodes.size() < Configuration.MIN_WORKER_NODES && !registering) {
             throw new IllegalArgumentException(
                 String.format("At least %d worker node(s) required", Configuration.MIN_WORKER_NODES)
             );
@@ -55,12 +126,36 @@ public class ClusterManager {
             );
         }
 
-        this.nodes = Collections.synchronizedList(tempNodes);
-        this.masterNode = tempNodes.get(0);
-        System.out.println("[CLUSTER] Master node: " + masterNode.hostname);
+        this.nodes = Collections.synchronizedList(new ArrayList<>());
+        for (ComputeNode node : tempNodes) {
+            register(node);
+        }
+        System.out.println("[CLUSTER] Master node: " + masterNode.hostname + " (site " + masterNode.site + ")");
         System.out.println("[CLUSTER] ✅ Cluster initialized with " + tempNodes.size() + " worker(s)\n");
     }
 
+    /**
+     * Waits until the cluster has a number of nodes, e.g. while workers register.
+     * @param count The number of nodes
+     * @param timeoutMs Maximum time to wait
+     * @return true if the cluster has the nodes, false on timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitNodes(int count, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            long seen = getReleaseCount();
+            if (nodes.size() >= count) {
+                return true;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            awaitRelease(seen, remaining);
+        }
+    }
+
     /**
      * Gets a thread-safe view of the cluster nodes.
      * @return Synchronized list of nodes
@@ -70,7 +165,8 @@ public class ClusterManager {
     }
 
     /**
-     * Gets the master node.
+     * Gets the master node: the host running this process, where results are
+     * collected. It is not a worker and runs no tasks.
      * @return The master node
      */
     public ComputeNode getMasterNode() {
@@ -78,31 +174,846 @@ public class ClusterManager {
     }
 
     /**
-     * Finds an available worker node and marks it as occupied.
-     * This method is thread-safe.
-     * @return An available ComputeNode, or null if none are available
+     * Registers a listener told about nodes joining and leaving.
+     * @param listener The listener
      */
-    public synchronized ComputeNode acquireAvailableNode() {
-        for (ComputeNode node : nodes) {
-            if (node.getStatus() == NodeStatus.FREE) {
-                node.setStatus(NodeStatus.OCCUPIED);
-                return node;
+    public void addMembershipListener(MembershipListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a membership listener.
+     * @param listener The listener
+     */
+    public void removeMembershipListener(MembershipListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Finds a member node.
+     * @param hostname The hostname
+     * @param port The RMI port
+     * @return The node, or null if it is not (or no longer) in the cluster
+     */
+    public ComputeNode findNode(String hostname, int port) {
+        synchronized (nodes) {
+            for (ComputeNode node : nodes) {
+                if (node.hostname.equals(hostname) && node.port == port) {
+                    return node;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates a node from its specification, asking the worker for its slots if
+     * they are "auto". The node is not added to the cluster.
+     * @param nodeSpec The node in the format "host[:port][@site][/slots[:mem]]"
+     * @return The new node
+     * @throws IllegalArgumentException if the spec is invalid
+     */
+    public ComputeNode createNode(String nodeSpec) {
+        return createNodes(Collections.singletonList(parseNodeSpec(nodeSpec.trim())), probe).get(0);
+    }
+
+    /**
+     * Adds a node to the running cluster. Its slots can be taken right away and the
+     * membership listeners are told, so it picks up queued work immediately.
+     * @param node The new node
+     * @throws IllegalArgumentException if the node is already a member or the cluster is full
+     */
+    public void addNode(ComputeNode node) {
+        addNode(node, null);
+    }
+
+    /**
+     * Adds a node to the running cluster if it holds every shared file (see shareFile).
+     * @param node The new node
+     * @param heldFiles The shared files shipped to it, or null not to check
+     * @return false, without adding the node, if a file was shared since
+     * @throws IllegalArgumentException if the node is already a member or the cluster is full
+     */
+    public boolean addNode(ComputeNode node, Set<String> heldFiles) {
+        synchronized (nodes) {
+            if (heldFiles != null && !heldFiles.containsAll(getSharedFiles(node))) {
+                return false;
+            }
+            ComputeNode existing = findNode(node.hostname, node.port);
+            if (existing != null) {
+                throw new IllegalArgumentException(node.hostname + ":" + node.port + " is already a member" +
+                                                   (existing.isDraining() ? " (still draining)" : ""));
+            }
+            if (nodes.size() >= Configuration.MAX_WORKER_NODES) {
+                throw new IllegalArgumentException(
+                    String.format("Maximum %d worker nodes allowed", Configuration.MAX_WORKER_NODES));
+            }
+            register(node);
+        }
+        System.out.println("[CLUSTER] ➕ " + node.hostname + ":" + node.port + " joined (site " + node.site + ", " +
+                           node.getSlots() + " slot" + (node.getSlots() == 1 ? "" : "s") + "), " +
+                           nodes.size() + " worker(s)");
+        for (MembershipListener listener : listeners) {
+            listener.nodeJoined(node);
+        }
+        signalWaiters();
+        return true;
+    }
+
+    /**
+     * Adds a node to the node list, its site and the free-slot pool.
+     */
+    private void register(ComputeNode node) {
+        synchronized (nodes) {
+            nodes.add(node);
+            Map<String, List<ComputeNode>> sites = nodesBySite;
+            if (!sites.containsKey(node.site)) {
+                sites = new LinkedHashMap<>(sites);
+                sites.put(node.site, new CopyOnWriteArrayList<>());
+                Map<String, ConcurrentLinkedQueue<ComputeNode>> pools = new LinkedHashMap<>(freeSlotsBySite);
+                pools.putIfAbsent(node.site, new ConcurrentLinkedQueue<>());
+                freeSlotsBySite = pools;
+                nodesBySite = sites;
+            }
+            sites.get(node.site).add(node);
+        }
+        ConcurrentLinkedQueue<ComputeNode> pool = freeSlotsBySite.get(node.site);
+        for (int slot = 0; slot < node.getSlots(); slot++) {
+            node.queuedTokens.incrementAndGet();
+            pool.offer(node);
+        }
+    }
+
+    /**
+     * Starts removing a node: it takes no new task, its reservations are dropped and
+     * the membership listeners are told, so work queued for it goes elsewhere.
+     * Running tasks continue; wait for them with awaitIdle, then call removeNode.
+     * @param node The leaving node
+     * @return true if the node was not already draining
+     */
+    public boolean drainNode(ComputeNode node) {
+        if (!node.startDraining()) {
+            return false;
+        }
+        System.out.println("[CLUSTER] ➖ Draining " + node.hostname + ":" + node.port + " (" +
+                           (node.getSlots() - node.getFreeSlots()) + " slot(s) busy)");
+        for (Map.Entry<Object, ComputeNode> reservation : reservations.entrySet()) {
+            if (reservation.getValue() == node) {
+                cancelReservation(reservation.getKey());
+            }
+        }
+        for (MembershipListener listener : listeners) {
+            listener.nodeLeaving(node);
+        }
+        signalWaiters();
+        return true;
+    }
+
+    /**
+     * Waits until no task holds a slot of a node.
+     * @param node The node
+     * @param timeoutMs Maximum time to wait
+     * @return true if the node is idle
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(ComputeNode node, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            long seen = getReleaseCount();
+            if (node.isIdle()) {
+                return true;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            awaitRelease(seen, remaining);
+        }
+    }
+
+    /**
+     * Removes a drained node from the cluster and forgets the copies of files it held.
+     * Files whose only copy was on it lose their location; move them first (see
+     * getFilesOnlyOn) if later tasks need them.
+     * @param node The node, drained with drainNode
+     * @throws IllegalStateException if the node is not draining
+     */
+    public void removeNode(ComputeNode node) {
+        if (!node.isDraining()) {
+            throw new IllegalStateException(node.hostname + ":" + node.port + " must be drained before removal");
+        }
+        synchronized (nodes) {
+            nodes.remove(node);
+            List<ComputeNode> siteNodes = nodesBySite.get(node.site);
+            if (siteNodes != null) {
+                siteNodes.remove(node);
+            }
+        }
+        for (Map.Entry<String, Set<ComputeNode>> entry : fileReplicas.entrySet()) {
+            Set<ComputeNode> replicas = entry.getValue();
+            replicas.remove(node);
+            if (fileLocations.get(entry.getKey()) == node) {
+                if (replicas.isEmpty()) {
+                    fileLocations.remove(entry.getKey());
+                } else {
+                    fileLocations.put(entry.getKey(), replicas.iterator().next());
+                }
+            }
+        }
+        System.out.println("[CLUSTER] 👋 " + node.hostname + ":" + node.port + " left, " + nodes.size() + " worker(s)");
+    }
+
+    /**
+     * Gets the produced files held by no other host than the given node's.
+     * @param node The node
+     * @return The file names
+     */
+    public List<String> getFilesOnlyOn(ComputeNode node) {
+        List<String> files = new ArrayList<>();
+        for (Map.Entry<String, Set<ComputeNode>> entry : fileReplicas.entrySet()) {
+            boolean elsewhere = false;
+            for (ComputeNode replica : entry.getValue()) {
+                if (!replica.hostname.equals(node.hostname)) {
+                    elsewhere = true;
+                    break;
+                }
+            }
+            if (!elsewhere) {
+                files.add(entry.getKey());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Records a file about to be broadcast to every worker, e.g. the split files or the
+     * partition plan, and gets the nodes to broadcast it to. Both happen under the nodes
+     * lock, so a node joining at the same time is either among them or must receive
+     * the file before it is added (see addNode).
+     * @param fileName The file, in the master's working directory
+     * @return The current nodes
+     */
+    public List<ComputeNode> shareFile(String fileName) {
+        return shareFile(fileName, null);
+    }
+
+    /**
+     * Records a file about to be broadcast to the workers of one site (see shareFile).
+     * @param fileName The file, in the master's working directory
+     * @param site The site whose workers must hold it, or null for every worker
+     * @return The current nodes of the site
+     */
+    public List<ComputeNode> shareFile(String fileName, String site) {
+        synchronized (nodes) {
+            sharedFiles.put(fileName, site == null ? "" : site);
+            List<ComputeNode> targets = new ArrayList<>();
+            for (ComputeNode node : nodes) {
+                if (site == null || site.equals(node.site)) {
+                    targets.add(node);
+                }
+            }
+            return targets;
+        }
+    }
+
+    /**
+     * Forgets shared files once the job using them is over, so joining nodes no
+     * longer receive them.
+     * @param fileNames The files
+     */
+    public void forgetSharedFiles(Collection<String> fileNames) {
+        sharedFiles.keySet().removeAll(fileNames);
+    }
+
+    /**
+     * Gets the shared files a node is expected to hold: those of every site and of its own.
+     * @param node The node
+     * @return The file names
+     */
+    public Set<String> getSharedFiles(ComputeNode node) {
+        Set<String> files = new HashSet<>();
+        for (Map.Entry<String, String> entry : sharedFiles.entrySet()) {
+            if (entry.getValue().isEmpty() || entry.getValue().equals(node.site)) {
+                files.add(entry.getKey());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Takes a free slot on any node. Lock-free; one poll per site at most.
+     * @return The node of the slot, or null if every slot is busy
+     */
+    public ComputeNode acquireAvailableNode() {
+        return tryAcquireNode(Collections.emptyList(), null, true);
+    }
+
+    /**
+     * Takes a free slot, trying the preferred node first.
+     * Used to run consumers where their inputs already are.
+     * @param preferred The node to try first (may be null)
+     * @return The node of the slot, or null if every slot is busy
+     */
+    public ComputeNode acquireAvailableNode(ComputeNode preferred) {
+        return tryAcquireNode(preferred == null ? Collections.emptyList() : Collections.singletonList(preferred),
+                              null, true);
+    }
+
+    /**
+     * Takes a free slot without blocking: first on one of the candidates, in order,
+     * then on any node of the given site, then (if allowed) on any node.
+     * @param candidates Nodes to try first, e.g. those holding the inputs
+     * @param site Site to search next, or null
+     * @param anySite Whether to fall back to the other sites
+     * @return The node of the slot, or null if none matched
+     */
+    public ComputeNode tryAcquireNode(Collection<ComputeNode> candidates, String site, boolean anySite) {
+        return tryAcquireNode(candidates, site, anySite, ResourceRequest.DEFAULT, null);
+    }
+
+    /**
+     * Takes the resources of a task on one node without blocking, searching like
+     * tryAcquireNode(candidates, site, anySite). One-core requests take a free-slot
+     * token; larger requests are bin-packed (tightest fit) on nodes large enough to
+     * hold them whole, if there are any, and if they fit nowhere the requester
+     * reserves the emptiest such node of the searched nodes.
+     * @param candidates Nodes to try first, e.g. those holding the inputs
+     * @param site Site to search next, or null
+     * @param anySite Whether to fall back to the other sites
+     * @param request The resources to take
+     * @param requester The task asking (owner of reservations), or null
+     * @return The node of the resources, or null if none matched
+     */
+    public ComputeNode tryAcquireNode(Collection<ComputeNode> candidates, String site, boolean anySite,
+                                      ResourceRequest request, Object requester) {
+        ComputeNode reserved = requester == null ? null : reservations.get(requester);
+        if (reserved != null && !reserved.isSaturated() && reserved.tryAcquire(request, requester)) {
+            return acquired(reserved, requester);
+        }
+        Collection<ComputeNode> scope = site == null || anySite ? nodes
+                                        : nodesBySite.getOrDefault(site, Collections.emptyList());
+        boolean wholeOnly = !request.isDefault() && anyCanHold(scope, request);
+        for (ComputeNode candidate : candidates) {
+            if (wholeOnly && !candidate.canHold(request)) {
+                continue;
+            }
+            if (!candidate.isSaturated() && candidate.tryAcquire(request, requester)) {
+                return acquired(candidate, requester);
+            }
+        }
+        if (site != null) {
+            ComputeNode node = acquireOnSite(site, request, requester);
+            if (node != null) {
+                return acquired(node, requester);
+            }
+            if (!anySite) {
+                reserve(nodesBySite.getOrDefault(site, Collections.emptyList()), request, requester);
+                return null;
+            }
+        }
+        if (!anySite) {
+            return null;
+        }
+        for (String other : freeSlotsBySite.keySet()) {
+            ComputeNode node = acquireOnSite(other, request, requester);
+            if (node != null) {
+                return acquired(node, requester);
             }
         }
+        reserve(nodes, request, requester);
         return null;
     }
 
+    private ComputeNode acquireOnSite(String site, ResourceRequest request, Object requester) {
+        if (request.isDefault()) {
+            return pollSlot(freeSlotsBySite.get(site), requester);
+        }
+        return packNode(nodesBySite.getOrDefault(site, Collections.emptyList()), request, requester);
+    }
+
+    private static boolean anyCanHold(Collection<ComputeNode> scope, ResourceRequest request) {
+        synchronized (scope) {
+            for (ComputeNode node : scope) {
+                if (node.canHold(request) && !node.isDraining()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
-     * Releases a node back to the free pool.
-     * This method is thread-safe.
+     * Takes the resources on the node where they fit most tightly (fewest slots left).
+     * Nodes too small for the whole request are only used if the scope has no other.
+     */
+    private ComputeNode packNode(Collection<ComputeNode> scope, ResourceRequest request, Object requester) {
+        boolean wholeOnly = anyCanHold(scope, request);
+        for (int attempt = 0; attempt < 3; attempt++) {
+            ComputeNode best = null;
+            int bestLeft = Integer.MAX_VALUE;
+            for (ComputeNode node : scope) {
+                if (node.isSaturated() || node.isReservedAgainst(requester) || !node.fits(request) ||
+                    (wholeOnly && !node.canHold(request))) {
+                    continue;
+                }
+                int left = node.getFreeSlots() - request.coresOn(node);
+                if (left < bestLeft) {
+                    best = node;
+                    bestLeft = left;
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            if (best.tryAcquire(request, requester)) {
+                return best;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reserves the emptiest unreserved node for a task that fits nowhere, so that
+     * smaller tasks stop filling it. A task holds at most one reservation.
+     */
+    private void reserve(Collection<ComputeNode> scope, ResourceRequest request, Object requester) {
+        if (request.isDefault() || requester == null || reservations.containsKey(requester)) {
+            return;
+        }
+        ComputeNode emptiest = null;
+        boolean wholeOnly = anyCanHold(scope, request);
+        synchronized (nodes) {
+            for (ComputeNode node : scope) {
+                if (node.isSaturated() || node.isReservedAgainst(null) || (wholeOnly && !node.canHold(request))) {
+                    continue;
+                }
+                if (emptiest == null || node.getFreeSlots() > emptiest.getFreeSlots() ||
+                    (node.getFreeSlots() == emptiest.getFreeSlots() && node.getFreeMemoryMb() > emptiest.getFreeMemoryMb())) {
+                    emptiest = node;
+                }
+            }
+        }
+        if (emptiest != null && emptiest.reserveFor(requester)) {
+            reservations.put(requester, emptiest);
+            System.out.println("[CLUSTER] 📌 Reserving " + emptiest.hostname + ":" + emptiest.port + " for a task of " +
+                               request + " (draining)");
+        }
+    }
+
+    private ComputeNode acquired(ComputeNode node, Object requester) {
+        if (node != null && requester != null) {
+            cancelReservation(requester);
+        }
+        return node;
+    }
+
+    /**
+     * Drops the node reservation of a task, e.g. when it gives up waiting.
+     * @param requester The task
+     */
+    public void cancelReservation(Object requester) {
+        ComputeNode reserved = reservations.remove(requester);
+        if (reserved != null) {
+            reserved.endReservation(requester);
+            signalWaiters();
+        }
+    }
+
+    /**
+     * Takes a free slot on any node, blocking until one is released.
+     * @param timeoutMs Maximum time to wait
+     * @return The node of the slot, or null on timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ComputeNode acquireNode(long timeoutMs) throws InterruptedException {
+        return acquireNode(timeoutMs, ResourceRequest.DEFAULT, null);
+    }
+
+    /**
+     * Takes the resources of a task on any node, blocking until they are available.
+     * @param timeoutMs Maximum time to wait
+     * @param request The resources to take
+     * @param requester The task asking, or null
+     * @return The node of the resources, or null on timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ComputeNode acquireNode(long timeoutMs, ResourceRequest request, Object requester)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        try {
+            while (true) {
+                long seen = getReleaseCount();
+                ComputeNode node = tryAcquireNode(Collections.emptyList(), null, true, request, requester);
+                long remaining = deadline - System.currentTimeMillis();
+                if (node != null) {
+                    return node;
+                }
+                if (remaining <= 0) {
+                    cancelReservation(requester);
+                    return null;
+                }
+                awaitRelease(seen, remaining);
+            }
+        } catch (InterruptedException e) {
+            cancelReservation(requester);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of slot releases so far. Read it before a failed attempt and
+     * pass it to awaitRelease, so a release in between is never missed.
+     * @return The release counter
+     */
+    public long getReleaseCount() {
+        return releases.get();
+    }
+
+    /**
+     * Blocks until a slot is released after the given point, or the timeout expires.
+     * @param seenReleaseCount Value of getReleaseCount() before the failed attempt
+     * @param timeoutMs Maximum time to wait
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitRelease(long seenReleaseCount, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        waiters.incrementAndGet();
+        try {
+            synchronized (releaseMonitor) {
+                long remaining = timeoutMs;
+                while (releases.get() == seenReleaseCount && remaining > 0) {
+                    releaseMonitor.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Polls free-slot tokens until one belongs to a node that still has a free slot.
+     * The token count of a node is decremented before trying it, so a concurrent
+     * release either sees the slot taken or re-queues a token. Tokens of saturated
+     * nodes and of nodes reserved for another task are put back once the poll is over;
+     * tokens of draining nodes are dropped.
+     */
+    private ComputeNode pollSlot(ConcurrentLinkedQueue<ComputeNode> pool, Object requester) {
+        if (pool == null) {
+            return null;
+        }
+        List<ComputeNode> saturated = null;
+        try {
+            ComputeNode node;
+            while ((node = pool.poll()) != null) {
+                if (node.isDraining()) {
+                    // The node is leaving: its tokens are dropped
+                    node.queuedTokens.decrementAndGet();
+                    continue;
+                }
+                if (node.isSaturated() || node.isReservedAgainst(requester)) {
+                    if (saturated == null) {
+                        saturated = new ArrayList<>();
+                    }
+                    saturated.add(node);
+                    continue;
+                }
+                node.queuedTokens.decrementAndGet();
+                if (node.tryAcquire(ResourceRequest.DEFAULT, requester)) {
+                    return node;
+                }
+            }
+            return null;
+        } finally {
+            if (saturated != null) {
+                pool.addAll(saturated);
+            }
+        }
+    }
+
+    /**
+     * Routes tasks around a worker that refused work for the delay it hinted, then
+     * wakes the threads waiting for a slot so they can try it again.
+     * @param node The saturated worker
+     * @param retryAfterMs The delay hinted by the worker
+     */
+    public void markSaturated(ComputeNode node, long retryAfterMs) {
+        node.markSaturated(retryAfterMs);
+        System.out.println("[CLUSTER] ⏳ " + node.hostname + ":" + node.port + " is saturated, routing around it for " +
+                           retryAfterMs + " ms");
+        saturationTimer.schedule(this::signalWaiters, retryAfterMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Routes tasks around a worker that could not be reached until the next health
+     * check, which removes it or finds it again, then wakes the threads waiting for a slot.
+     * @param node The unreachable worker
+     */
+    public void markUnreachable(ComputeNode node) {
+        node.markUnreachable(Configuration.HEALTH_CHECK_INTERVAL_MS);
+        System.out.println("[CLUSTER] 🔌 " + node.hostname + ":" + node.port + " is unreachable, routing around it for " +
+                           Configuration.HEALTH_CHECK_INTERVAL_MS + " ms");
+        saturationTimer.schedule(this::signalWaiters, Configuration.HEALTH_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checks whether some worker that may run a task is left: one that is not leaving
+     * the cluster and was not found unreachable lately.
+     * @param site Required site, or null for any
+     * @return true if such a worker exists
+     */
+    public boolean hasReachableNode(String site) {
+        synchronized (nodes) {
+            for (ComputeNode node : nodes) {
+                if ((site == null || site.equals(node.site)) && !node.isDraining() && !node.isUnreachable()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Ranks the nodes holding copies of the given files by transfer cost.
+     * Only these nodes can beat a random free node, so there is no need to scan the cluster.
+     * @param files The files a task needs
+     * @param site Required site, or null
+     * @return Candidate nodes, cheapest first
+     */
+    public List<ComputeNode> rankInputHolders(Collection<String> files, String site) {
+        Set<ComputeNode> holders = new java.util.LinkedHashSet<>();
+        for (String file : files) {
+            Set<ComputeNode> replicas = fileReplicas.get(file);
+            if (replicas != null) {
+                holders.addAll(replicas);
+            }
+        }
+        Map<ComputeNode, Long> costs = new HashMap<>();
+        List<ComputeNode> ranked = new ArrayList<>();
+        for (ComputeNode holder : holders) {
+            if (site == null || holder.site.equals(site)) {
+                costs.put(holder, transferCost(files, holder));
+                ranked.add(holder);
+            }
+        }
+        ranked.sort((a, b) -> Long.compare(costs.get(a), costs.get(b)));
+        return ranked;
+    }
+
+    /**
+     * Estimates the cost of moving files to a node: the bytes of every file held
+     * on another host, with bytes crossing sites charged WAN_COST_FACTOR times more.
+     * Each file is assumed to come from its nearest copy.
+     * Files of unknown location (pre-distributed inputs) cost nothing.
+     * @param files The files the node needs
+     * @param target The candidate node
+     * @return The weighted number of bytes to transfer
+     */
+    public long transferCost(Collection<String> files, ComputeNode target) {
+        long cost = 0;
+        for (String file : files) {
+            ComputeNode location = getNearestReplica(file, target);
+            if (location == null || location.hostname.equals(target.hostname)) {
+                continue;
+            }
+            long bytes = getFileSize(file);
+            cost += location.site.equals(target.site) ? bytes : bytes * Configuration.WAN_COST_FACTOR;
+        }
+        return cost;
+    }
+
+    /**
+     * Finds the site holding most bytes of the given files.
+     * @param files The files
+     * @return The site, or null if no file has a known location
+     */
+    public String homeSite(Collection<String> files) {
+        Map<String, Long> bytesBySite = new HashMap<>();
+        String best = null;
+        for (String file : files) {
+            ComputeNode location = getFileLocation(file);
+            if (location != null) {
+                long bytes = bytesBySite.merge(location.site, getFileSize(file), Long::sum);
+                if (best == null || bytes > bytesBySite.get(best)) {
+                    best = location.site;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Checks whether some node belongs to a site.
+     * @param site The site name
+     * @return true if the site has nodes
+     */
+    public boolean hasSite(String site) {
+        return site != null && !nodesBySite.getOrDefault(site, Collections.emptyList()).isEmpty();
+    }
+
+    /**
+     * Gets the number of sites of the cluster.
+     * @return The number of sites
+     */
+    public int getSiteCount() {
+        int sites = 0;
+        for (List<ComputeNode> siteNodes : nodesBySite.values()) {
+            if (!siteNodes.isEmpty()) {
+                sites++;
+            }
+        }
+        return sites;
+    }
+
+    /**
+     * Groups the nodes by site, in the order sites first appear in the node list.
+     * @return A map from site name to its nodes
+     */
+    public Map<String, List<ComputeNode>> getSites() {
+        Map<String, List<ComputeNode>> sites = new LinkedHashMap<>();
+        synchronized (nodes) {
+            for (ComputeNode node : nodes) {
+                sites.computeIfAbsent(node.site, k -> new ArrayList<>()).add(node);
+            }
+        }
+        return sites;
+    }
+
+    /**
+     * Returns a slot of a node to the free pool and wakes the threads waiting for one.
+     * This method is thread-safe and lock-free unless threads are waiting.
+     * @param node The node to release
+     */
+    public void releaseNode(ComputeNode node) {
+        releaseNode(node, ResourceRequest.DEFAULT);
+    }
+
+    /**
+     * Returns the resources a task took on a node and wakes the threads waiting for some.
      * @param node The node to release
+     * @param request The resources taken on it
+     */
+    public void releaseNode(ComputeNode node, ResourceRequest request) {
+        if (node == null) {
+            return;
+        }
+        int free = node.release(request);
+        // Queue a token per freed slot unless the node already has one per free slot
+        for (int token = 0; token < request.coresOn(node); token++) {
+            int queued;
+            do {
+                queued = node.queuedTokens.get();
+                if (queued >= free) {
+                    break;
+                }
+            } while (!node.queuedTokens.compareAndSet(queued, queued + 1));
+            if (queued >= free) {
+                break;
+            }
+            freeSlotsBySite.get(node.site).offer(node);
+        }
+        signalWaiters();
+    }
+
+    private void signalWaiters() {
+        releases.incrementAndGet();
+        if (waiters.get() > 0) {
+            synchronized (releaseMonitor) {
+                releaseMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Records that a file produced by a task is stored on the given worker.
+     * @param fileName The produced file
+     * @param node The worker holding it
      */
-    public synchronized void releaseNode(ComputeNode node) {
-        if (node != null) {
-            node.setStatus(NodeStatus.FREE);
+    public void recordFileLocation(String fileName, ComputeNode node) {
+        if (fileName != null && node != null) {
+            fileLocations.put(fileName, node);
+            Set<ComputeNode> replicas = ConcurrentHashMap.newKeySet();
+            replicas.add(node);
+            fileReplicas.put(fileName, replicas);
         }
     }
 
+    /**
+     * Records that a copy of a produced file was forwarded to another worker.
+     * Later consumers can fetch it from whichever copy is nearest.
+     * @param fileName The produced file
+     * @param node The worker now holding a copy
+     */
+    public void recordFileReplica(String fileName, ComputeNode node) {
+        Set<ComputeNode> replicas = fileName == null ? null : fileReplicas.get(fileName);
+        if (replicas != null && node != null) {
+            replicas.add(node);
+        }
+    }
+
+    /**
+     * Gets the copy of a produced file that is cheapest to fetch from a node:
+     * one on the same host, else one on the same site, else the original.
+     * @param fileName The file name
+     * @param target The node that needs the file
+     * @return The worker to fetch it from, or null if unknown (e.g. pre-distributed inputs)
+     */
+    public ComputeNode getNearestReplica(String fileName, ComputeNode target) {
+        ComputeNode location = getFileLocation(fileName);
+        Set<ComputeNode> replicas = location == null ? null : fileReplicas.get(fileName);
+        if (replicas == null) {
+            return location;
+        }
+        ComputeNode best = location;
+        for (ComputeNode replica : replicas) {
+            if (replica.hostname.equals(target.hostname)) {
+                return replica;
+            }
+            if (replica.site.equals(target.site) && !best.site.equals(target.site)) {
+                best = replica;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Records the size of a file, used to weigh placement decisions.
+     * @param fileName The file
+     * @param bytes Its size in bytes
+     */
+    public void recordFileSize(String fileName, long bytes) {
+        if (fileName != null && bytes >= 0) {
+            fileSizes.put(fileName, bytes);
+        }
+    }
+
+    /**
+     * Gets the size of a file.
+     * @param fileName The file
+     * @return The recorded size, or PLACEMENT_DEFAULT_FILE_BYTES if unknown
+     */
+    public long getFileSize(String fileName) {
+        Long bytes = fileName == null ? null : fileSizes.get(fileName);
+        return bytes == null ? Configuration.PLACEMENT_DEFAULT_FILE_BYTES : bytes;
+    }
+
+    /**
+     * Gets the transfer counters of the current job.
+     * @return The transfer statistics
+     */
+    public TransferStats getTransferStats() {
+        return transferStats;
+    }
+
+    /**
+     * Gets the worker holding a produced file.
+     * @param fileName The file name
+     * @return The worker holding it, or null if unknown (e.g. pre-distributed inputs)
+     */
+    public ComputeNode getFileLocation(String fileName) {
+        return fileName == null ? null : fileLocations.get(fileName);
+    }
+
     /**
      * Prints the current status of all nodes in the cluster.
      */
@@ -111,22 +1022,68 @@ public class ClusterManager {
         System.out.println("========================");
         for (ComputeNode node : nodes) {
             String statusSymbol = node.getStatus() == NodeStatus.FREE ? "✅" : "⏳";
-            System.out.println(statusSymbol + " " + node.hostname + " - " + node.getStatus());
+            System.out.println(statusSymbol + " " + node.hostname + " - " + node.getStatus() +
+                               " (" + (node.getSlots() - node.getFreeSlots()) + "/" + node.getSlots() + " slots busy)");
         }
         System.out.println("========================\n");
     }
 
     /**
-     * Parses a node specification in the format "hostname" or "hostname:port".
+     * Describes the host running the master, from -Dwordcount.master.host ("host[@site]")
+     * or else this host's name, so transfers to the master are counted on its own site.
+     */
+    private static ComputeNode createMasterNode() {
+        String hostname = Configuration.MASTER_HOST == null ? "" : Configuration.MASTER_HOST.trim();
+        String site = null;
+        int at = hostname.lastIndexOf('@');
+        if (at >= 0) {
+            site = hostname.substring(at + 1).trim();
+            hostname = hostname.substring(0, at).trim();
+        }
+        if (hostname.isEmpty()) {
+            hostname = ComputeNode.localHostName();
+        }
+        return new ComputeNode(hostname, Configuration.RMI_REGISTRY_PORT, site);
+    }
+
+    /**
+     * Parses a node specification in the format "hostname", "hostname:port",
+     * optionally followed by "@site" (otherwise the site is derived from the hostname)
+     * and by "/slots", a number or "auto" (otherwise -Dwordcount.slots, default 1),
+     * itself optionally followed by ":mem", the node's memory (e.g. "/8:16G").
      * @param nodeSpec The node specification string
-     * @return A ComputeNode instance
+     * @return The parsed specification
      * @throws IllegalArgumentException if the spec is invalid
      */
-    private ComputeNode parseNodeSpec(String nodeSpec) {
+    private NodeSpec parseNodeSpec(String nodeSpec) {
         if (nodeSpec == null || nodeSpec.isEmpty()) {
             throw new IllegalArgumentException("Node specification cannot be null or empty");
         }
 
+        String slotSpec = Configuration.NODE_SLOTS;
+        long memoryMb = 0;
+        int slash = nodeSpec.lastIndexOf('/');
+        if (slash >= 0) {
+            slotSpec = nodeSpec.substring(slash + 1).trim();
+            nodeSpec = nodeSpec.substring(0, slash);
+            int colon = slotSpec.indexOf(':');
+            if (colon >= 0) {
+                memoryMb = ResourceRequest.parseMemoryMb(slotSpec.substring(colon + 1));
+                slotSpec = slotSpec.substring(0, colon).trim();
+            }
+        }
+        int slots = parseSlots(slotSpec, nodeSpec);
+
+        String site = null;
+        int at = nodeSpec.lastIndexOf('@');
+        if (at >= 0) {
+            site = nodeSpec.substring(at + 1).trim();
+            if (site.isEmpty()) {
+                throw new IllegalArgumentException("Empty site in: " + nodeSpec);
+            }
+            nodeSpec = nodeSpec.substring(0, at);
+        }
+
         String[] parts = nodeSpec.split(":");
         String hostname = parts[0].trim();
 
@@ -134,12 +1091,12 @@ public class ClusterManager {
 
         if (parts.length == 1) {
             // No port specified, use default
-            return new ComputeNode(hostname);
+            return new NodeSpec(hostname, Configuration.RMI_REGISTRY_PORT, site, slots, memoryMb);
         } else if (parts.length == 2) {
             // Port specified
             try {
                 int port = Integer.parseInt(parts[1].trim());
-                return new ComputeNode(hostname, port);
+                return new NodeSpec(hostname, port, site, slots, memoryMb);
             } catch (NumberFormatException e) {
                 throw new IllegalArgumentException("Invalid port number in: " + nodeSpec);
             }
@@ -148,6 +1105,65 @@ public class ClusterManager {
         }
     }
 
+    private static int parseSlots(String slotSpec, String nodeSpec) {
+        if (slotSpec.equalsIgnoreCase("auto")) {
+            return 0;
+        }
+        try {
+            int slots = Integer.parseInt(slotSpec);
+            if (slots < 1) {
+                throw new IllegalArgumentException("Slots must be positive in: " + nodeSpec);
+            }
+            return slots;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid slot count '" + slotSpec + "' in: " + nodeSpec);
+        }
+    }
+
+    /**
+     * Creates the nodes, asking the workers with "auto" slots for their number of
+     * processors and their memory in parallel. Unreachable workers get one slot.
+     */
+    private static List<ComputeNode> createNodes(List<NodeSpec> specs, NodeProbe probe) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(specs.size(), 32)));
+        try {
+            List<Future<NodeSpec>> detected = new ArrayList<>();
+            for (NodeSpec spec : specs) {
+                detected.add(spec.slots > 0 ? null : pool.submit(() -> detect(spec, probe)));
+            }
+            List<ComputeNode> created = new ArrayList<>();
+            for (int i = 0; i < specs.size(); i++) {
+                NodeSpec spec = specs.get(i);
+                if (spec.slots == 0) {
+                    try {
+                        spec = detected.get(i).get();
+                    } catch (Exception e) {
+                        spec = new NodeSpec(spec.hostname, spec.port, spec.site, 1, spec.memoryMb);
+                    }
+                }
+                created.add(new ComputeNode(spec.hostname, spec.port, spec.site,
+                                            Math.min(spec.slots, Configuration.MAX_NODE_SLOTS), spec.memoryMb));
+            }
+            return created;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static NodeSpec detect(NodeSpec spec, NodeProbe probe) {
+        if (probe == null) {
+            return new NodeSpec(spec.hostname, spec.port, spec.site, 1, spec.memoryMb);
+        }
+        try {
+            NodeSpec detected = probe.probe(spec);
+            return new NodeSpec(spec.hostname, spec.port, spec.site, Math.max(1, detected.slots), detected.memoryMb);
+        } catch (Exception e) {
+            System.err.println("[CLUSTER] ⚠️  Could not detect slots of " + spec.hostname + ":" + spec.port +
+                               " (" + e.getMessage() + "), using 1");
+            return new NodeSpec(spec.hostname, spec.port, spec.site, 1, spec.memoryMb);
+        }
+    }
+
     /**
      * Validates a hostname format.
      * @param hostname The hostname to validate
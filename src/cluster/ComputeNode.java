@@ -2,14 +2,43 @@ package cluster;
 
 import config.Configuration;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Represents a compute node in the cluster.
  * Refactored with proper encapsulation and thread-safe status management.
+ * Each node belongs to a site (a LAN): nodes of one site talk to each other cheaply,
+ * while traffic between sites crosses the WAN.
+ *
+ * A node has a number of slots, the tasks it may run at once, and optionally a known
+ * amount of memory. A task takes as many slots as it asks cores (see ResourceRequest).
+ * Slots and memory are taken and returned with compare-and-set on counters, without
+ * locking. A node can be reserved for one large task, which keeps smaller tasks
+ * away until enough slots are free for it. A node leaving the cluster drains: it
+ * takes no new task and is removed once its running tasks are done.
  */
 public class ComputeNode {
     public final String hostname;
     public final int port;
-    private volatile NodeStatus status;
+    public final String site;
+    private final int slots;
+    private final AtomicInteger freeSlots;
+    private final long memoryMb;
+    private final AtomicLong freeMemoryMb;
+    // Task the node is being drained for, or null
+    private final AtomicReference<Object> reservedFor = new AtomicReference<>();
+    // Free-slot tokens of this node currently queued in the ClusterManager pool
+    final AtomicInteger queuedTokens = new AtomicInteger();
+    // Until when the worker is expected to refuse new work (admission control)
+    private volatile long saturatedUntil;
+    // Until when the worker is taken for gone after failing to take a command
+    private volatile long unreachableUntil;
+    // Set when the node leaves the cluster: no new task is placed on it
+    private volatile boolean draining;
 
     /**
      * Creates a compute node with the default RMI port.
@@ -25,40 +54,316 @@ public class ComputeNode {
      * @param port The RMI registry port
      */
     public ComputeNode(String hostname, int port) {
+        this(hostname, port, null);
+    }
+
+    /**
+     * Creates a compute node on an explicit site.
+     * @param hostname The hostname of the node
+     * @param port The RMI registry port
+     * @param site The site of the node, or null to derive it from the hostname
+     */
+    public ComputeNode(String hostname, int port, String site) {
+        this(hostname, port, site, 1);
+    }
+
+    /**
+     * Creates a compute node running several tasks at once.
+     * @param hostname The hostname of the node
+     * @param port The RMI registry port
+     * @param site The site of the node, or null to derive it from the hostname
+     * @param slots The number of tasks the node runs concurrently
+     */
+    public ComputeNode(String hostname, int port, String site, int slots) {
+        this(hostname, port, site, slots, 0);
+    }
+
+    /**
+     * Creates a compute node with a known amount of memory.
+     * @param hostname The hostname of the node
+     * @param port The RMI registry port
+     * @param site The site of the node, or null to derive it from the hostname
+     * @param slots The number of tasks (cores) the node runs concurrently
+     * @param memoryMb The memory of the node in MB, or 0 if unknown (not accounted)
+     */
+    public ComputeNode(String hostname, int port, String site, int slots, long memoryMb) {
         if (hostname == null || hostname.trim().isEmpty()) {
             throw new IllegalArgumentException("Hostname cannot be null or empty");
         }
         if (port < 1024 || port > 65535) {
             throw new IllegalArgumentException("Port must be between 1024 and 65535");
         }
+        if (slots < 1 || slots > Configuration.MAX_NODE_SLOTS) {
+            throw new IllegalArgumentException("Slots must be between 1 and " + Configuration.MAX_NODE_SLOTS);
+        }
+        if (memoryMb < 0) {
+            throw new IllegalArgumentException("Memory cannot be negative");
+        }
         this.hostname = hostname;
         this.port = port;
-        this.status = NodeStatus.FREE;
+        this.site = site == null || site.trim().isEmpty() ? siteOf(hostname) : site.trim();
+        this.slots = slots;
+        this.freeSlots = new AtomicInteger(slots);
+        this.memoryMb = memoryMb;
+        this.freeMemoryMb = new AtomicLong(memoryMb);
     }
 
     /**
-     * Gets the current status of this node.
-     * Thread-safe using volatile.
+     * Gets the name of the host running this process.
+     * @return The canonical hostname, or "localhost" if it cannot be resolved
+     */
+    public static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getCanonicalHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    /**
+     * Checks whether a hostname names the host running this process.
+     * @param hostname The hostname
+     * @return true for loopback names and addresses and for this host's own names
+     */
+    public static boolean isLocalHost(String hostname) {
+        if (hostname == null) {
+            return false;
+        }
+        String normalized = hostname.trim().toLowerCase();
+        if (normalized.equals("localhost") || normalized.equals("127.0.0.1") ||
+            normalized.equals("::1") || normalized.equals("0.0.0.0")) {
+            return true;
+        }
+        try {
+            InetAddress local = InetAddress.getLocalHost();
+            return normalized.equals(local.getHostName().toLowerCase()) ||
+                   normalized.equals(local.getCanonicalHostName().toLowerCase()) ||
+                   normalized.equals(local.getHostAddress());
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Derives the site from a hostname: "node.site.grid5000.fr" (or any name with at
+     * least three labels) gives "site", like the deploy scripts; short names, IP
+     * addresses and bare "node.grid5000.fr" names fall back to the default site.
+     * @param hostname The hostname
+     * @return The site name
+     */
+    public static String siteOf(String hostname) {
+        String[] labels = hostname.trim().split("\\.");
+        boolean address = hostname.matches("[0-9.]+") || hostname.contains(":");
+        int minLabels = hostname.endsWith(".grid5000.fr") ? 4 : 3;
+        if (address || labels.length < minLabels || labels[1].isEmpty()) {
+            return Configuration.DEFAULT_SITE;
+        }
+        return labels[1];
+    }
+
+    /**
+     * Gets the current status of this node: FREE while at least one slot is free.
      * @return The current node status
      */
     public NodeStatus getStatus() {
-        return status;
+        return freeSlots.get() > 0 ? NodeStatus.FREE : NodeStatus.OCCUPIED;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public int getFreeSlots() {
+        return freeSlots.get();
+    }
+
+    public long getMemoryMb() {
+        return memoryMb;
+    }
+
+    public long getFreeMemoryMb() {
+        return freeMemoryMb.get();
     }
 
     /**
-     * Sets the status of this node.
-     * Thread-safe using volatile.
-     * @param status The new status
+     * Takes a slot if one is free. Lock-free.
+     * @return true if a slot was taken
      */
-    public void setStatus(NodeStatus status) {
-        if (status == null) {
-            throw new IllegalArgumentException("Status cannot be null");
+    public boolean tryAcquireSlot() {
+        return tryAcquire(ResourceRequest.DEFAULT, null);
+    }
+
+    /**
+     * Takes the slots and memory of a request if they are free. Lock-free.
+     * @param request The resources to take
+     * @param requester The task asking, allowed on a node reserved for it (may be null)
+     * @return true if the resources were taken
+     */
+    public boolean tryAcquire(ResourceRequest request, Object requester) {
+        if (draining || isReservedAgainst(requester)) {
+            return false;
         }
-        this.status = status;
+        int cores = request.coresOn(this);
+        int free;
+        do {
+            free = freeSlots.get();
+            if (free < cores) {
+                return false;
+            }
+        } while (!freeSlots.compareAndSet(free, free - cores));
+
+        long memory = request.memoryOn(this);
+        long freeMemory;
+        do {
+            freeMemory = freeMemoryMb.get();
+            if (freeMemory < memory) {
+                freeSlots.addAndGet(cores);
+                return false;
+            }
+        } while (memory > 0 && !freeMemoryMb.compareAndSet(freeMemory, freeMemory - memory));
+        return true;
+    }
+
+    /**
+     * Checks whether a request would fit in the free slots and memory right now.
+     * @param request The resources
+     * @return true if it fits
+     */
+    public boolean fits(ResourceRequest request) {
+        return !draining && freeSlots.get() >= request.coresOn(this) && freeMemoryMb.get() >= request.memoryOn(this);
+    }
+
+    /**
+     * Checks whether the node is large enough for a request without clamping it,
+     * i.e. has at least its cores and (if known) its memory.
+     * @param request The resources
+     * @return true if the whole request fits on an empty node
+     */
+    public boolean canHold(ResourceRequest request) {
+        return slots >= request.getCores() && (memoryMb <= 0 || memoryMb >= request.getMemoryMb());
+    }
+
+    /**
+     * Returns a slot.
+     * @return The number of free slots after the release
+     * @throws IllegalStateException if no slot was taken
+     */
+    public int releaseSlot() {
+        return release(ResourceRequest.DEFAULT);
+    }
+
+    /**
+     * Returns the slots and memory of a request.
+     * @param request The resources taken with tryAcquire
+     * @return The number of free slots after the release
+     * @throws IllegalStateException if the slots were not taken
+     */
+    public int release(ResourceRequest request) {
+        int cores = request.coresOn(this);
+        int free;
+        do {
+            free = freeSlots.get();
+            if (free + cores > slots) {
+                throw new IllegalStateException("No slot taken on " + hostname + ":" + port);
+            }
+        } while (!freeSlots.compareAndSet(free, free + cores));
+        freeMemoryMb.addAndGet(request.memoryOn(this));
+        return free + cores;
+    }
+
+    /**
+     * Reserves the node for a task: other tasks can no longer take its slots,
+     * so it drains until the task fits.
+     * @param owner The task
+     * @return true if the node is now reserved for it
+     */
+    public boolean reserveFor(Object owner) {
+        return reservedFor.compareAndSet(null, owner) || reservedFor.get() == owner;
+    }
+
+    /**
+     * Lifts the reservation of a task, if it holds it.
+     * @param owner The task
+     */
+    public void endReservation(Object owner) {
+        reservedFor.compareAndSet(owner, null);
+    }
+
+    /**
+     * Checks whether the node is reserved for another task than the given one.
+     * @param requester The task asking (may be null)
+     * @return true if the requester must keep away
+     */
+    public boolean isReservedAgainst(Object requester) {
+        Object owner = reservedFor.get();
+        return owner != null && owner != requester;
+    }
+
+    /**
+     * Starts draining the node: from now on no task can take its slots.
+     * @return true if the node was not already draining
+     */
+    synchronized boolean startDraining() {
+        boolean wasDraining = draining;
+        draining = true;
+        return !wasDraining;
+    }
+
+    /**
+     * Checks whether the node is leaving the cluster.
+     * @return true if no new task may be placed on it
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Checks whether no task holds any slot of the node.
+     * @return true if all slots are free
+     */
+    public boolean isIdle() {
+        return freeSlots.get() == slots;
+    }
+
+    /**
+     * Records that the worker refused work, so no task is sent to it for a while.
+     * @param retryAfterMs The delay hinted by the worker
+     */
+    public void markSaturated(long retryAfterMs) {
+        saturatedUntil = Math.max(saturatedUntil, System.currentTimeMillis() + retryAfterMs);
+    }
+
+    /**
+     * Checks whether the worker recently refused work and its retry delay is not over.
+     * @return true if tasks should go elsewhere
+     */
+    public boolean isSaturated() {
+        return System.currentTimeMillis() < saturatedUntil;
+    }
+
+    public long getSaturatedUntil() {
+        return saturatedUntil;
+    }
+
+    /**
+     * Records that the worker could not be reached, so no task is sent to it for a while.
+     * @param retryAfterMs How long to avoid the worker
+     */
+    public void markUnreachable(long retryAfterMs) {
+        unreachableUntil = Math.max(unreachableUntil, System.currentTimeMillis() + retryAfterMs);
+        markSaturated(retryAfterMs);
+    }
+
+    /**
+     * Checks whether the worker recently could not be reached and its delay is not over.
+     * @return true if the worker is taken for gone
+     */
+    public boolean isUnreachable() {
+        return System.currentTimeMillis() < unreachableUntil;
     }
 
     @Override
     public String toString() {
-        return "ComputeNode{" + hostname + ":" + port + ", " + status + "}";
+        return "ComputeNode{" + hostname + ":" + port + "@" + site + ", " + (slots - freeSlots.get()) + "/" + slots + " busy}";
     }
 }
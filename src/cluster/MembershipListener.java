@@ -0,0 +1,21 @@
+package cluster;
+
+/**
+ * Notified when nodes join or leave a running cluster.
+ * Callbacks run on the thread changing the membership and must not block.
+ */
+public interface MembershipListener {
+
+    /**
+     * A node joined the cluster; its slots are already free to take.
+     * @param node The new node
+     */
+    void nodeJoined(ComputeNode node);
+
+    /**
+     * A node started draining: it takes no new task and will be removed once idle.
+     * Work queued for it should go elsewhere.
+     * @param node The leaving node
+     */
+    void nodeLeaving(ComputeNode node);
+}
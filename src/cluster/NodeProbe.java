@@ -0,0 +1,17 @@
+package cluster;
+
+/**
+ * Asks a worker for its resources, for nodes given with "auto" slots.
+ * Implemented by the master over RMI (MasterCoordinator::probeNode), so this
+ * package does not depend on the worker stubs.
+ */
+public interface NodeProbe {
+
+    /**
+     * Detects the slots and memory of a worker.
+     * @param spec The node, with slots == 0
+     * @return The node with the worker's processors as slots, and its memory unless already given
+     * @throws Exception if the worker cannot be asked
+     */
+    NodeSpec probe(NodeSpec spec) throws Exception;
+}
@@ -0,0 +1,22 @@
+package cluster;
+
+/**
+ * A parsed node specification, "host[:port][@site][/slots[:mem]]".
+ * slots == 0 means "auto": the worker is asked for its processors and memory
+ * (see NodeProbe); memoryMb == 0 means unknown.
+ */
+public final class NodeSpec {
+    public final String hostname;
+    public final int port;
+    public final String site;
+    public final int slots;
+    public final long memoryMb;
+
+    public NodeSpec(String hostname, int port, String site, int slots, long memoryMb) {
+        this.hostname = hostname;
+        this.port = port;
+        this.site = site;
+        this.slots = slots;
+        this.memoryMb = memoryMb;
+    }
+}
@@ -0,0 +1,138 @@
+package cluster;
+
+import java.util.Locale;
+
+/**
+ * Resources a task needs on one node, from its "# @cores=N @mem=SIZE" annotations.
+ * A core is one slot of a node. A request larger than a node is clamped to it: the
+ * task then takes the whole node. Memory is only accounted on nodes whose memory
+ * is known.
+ */
+public final class ResourceRequest {
+    public static final ResourceRequest DEFAULT = new ResourceRequest(1, 0);
+
+    private final int cores;
+    private final long memoryMb;
+
+    /**
+     * @param cores Slots needed on the node
+     * @param memoryMb Memory needed in MB (0 = not specified)
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public ResourceRequest(int cores, long memoryMb) {
+        if (cores < 1) {
+            throw new IllegalArgumentException("Cores must be at least 1");
+        }
+        if (memoryMb < 0) {
+            throw new IllegalArgumentException("Memory cannot be negative");
+        }
+        this.cores = cores;
+        this.memoryMb = memoryMb;
+    }
+
+    /**
+     * Builds a request from annotation values.
+     * @param cores Value of "@cores", or null for 1
+     * @param memory Value of "@mem" (e.g. "512M", "4G"), or null
+     * @return The request
+     * @throws IllegalArgumentException if a value is malformed
+     */
+    public static ResourceRequest of(String cores, String memory) {
+        if (cores == null && memory == null) {
+            return DEFAULT;
+        }
+        int coreCount = 1;
+        if (cores != null) {
+            try {
+                coreCount = Integer.parseInt(cores.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid core count: " + cores);
+            }
+        }
+        return new ResourceRequest(coreCount, memory == null ? 0 : parseMemoryMb(memory));
+    }
+
+    /**
+     * Parses a memory size: a number with an optional K, M, G or T suffix (MB if none).
+     * @param size The size, e.g. "4G"
+     * @return The size in MB, rounded up
+     * @throws IllegalArgumentException if the size is malformed
+     */
+    public static long parseMemoryMb(String size) {
+        String value = size == null ? "" : size.trim().toUpperCase(Locale.ROOT);
+        if (value.endsWith("B")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        long factorKb = 1024;
+        if (!value.isEmpty()) {
+            switch (value.charAt(value.length() - 1)) {
+                case 'K': factorKb = 1; break;
+                case 'M': factorKb = 1024; break;
+                case 'G': factorKb = 1024L * 1024; break;
+                case 'T': factorKb = 1024L * 1024 * 1024; break;
+                default: factorKb = 0;
+            }
+            if (factorKb != 0) {
+                value = value.substring(0, value.length() - 1);
+            } else {
+                factorKb = 1024;
+            }
+        }
+        try {
+            long amount = Long.parseLong(value.trim());
+            if (amount < 0) {
+                throw new IllegalArgumentException("Memory cannot be negative: " + size);
+            }
+            return (amount * factorKb + 1023) / 1024;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid memory size: " + size);
+        }
+    }
+
+    public int getCores() {
+        return cores;
+    }
+
+    public long getMemoryMb() {
+        return memoryMb;
+    }
+
+    /**
+     * Adds two requests, e.g. for tasks sharing a node.
+     * @param other The other request
+     * @return The sum of both
+     */
+    public ResourceRequest plus(ResourceRequest other) {
+        return new ResourceRequest(cores + other.cores, memoryMb + other.memoryMb);
+    }
+
+    /**
+     * Checks whether this is the request of an unannotated task (one core, no memory).
+     */
+    public boolean isDefault() {
+        return cores == 1 && memoryMb == 0;
+    }
+
+    /**
+     * Gets the slots this request takes on a node.
+     * @param node The node
+     * @return The cores, at most the node's slots
+     */
+    public int coresOn(ComputeNode node) {
+        return Math.min(cores, node.getSlots());
+    }
+
+    /**
+     * Gets the memory this request takes on a node.
+     * @param node The node
+     * @return The memory in MB, at most the node's memory; 0 if the node's memory is unknown
+     */
+    public long memoryOn(ComputeNode node) {
+        return node.getMemoryMb() <= 0 ? 0 : Math.min(memoryMb, node.getMemoryMb());
+    }
+
+    @Override
+    public String toString() {
+        return cores + " core" + (cores == 1 ? "" : "s") + (memoryMb > 0 ? ", " + memoryMb + " MB" : "");
+    }
+}
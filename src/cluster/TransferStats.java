@@ -0,0 +1,65 @@
+package cluster;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes moved between nodes during a job, split into transfers inside
+ * a site (LAN) and transfers between sites (WAN), with a breakdown per site pair.
+ * This class is thread-safe.
+ */
+public class TransferStats {
+    private final AtomicLong transfers = new AtomicLong();
+    private final AtomicLong intraSiteBytes = new AtomicLong();
+    private final AtomicLong crossSiteBytes = new AtomicLong();
+    private final Map<String, AtomicLong> bytesBySitePair = new ConcurrentHashMap<>();
+
+    /**
+     * Records a transfer. Transfers between processes of the same host are ignored.
+     * @param from The sending node
+     * @param to The receiving node
+     * @param bytes The number of bytes moved (ignored if negative)
+     */
+    public void record(ComputeNode from, ComputeNode to, long bytes) {
+        if (from == null || to == null || bytes < 0 || from.hostname.equals(to.hostname) ||
+            (ComputeNode.isLocalHost(from.hostname) && ComputeNode.isLocalHost(to.hostname))) {
+            return;
+        }
+        transfers.incrementAndGet();
+        if (from.site.equals(to.site)) {
+            intraSiteBytes.addAndGet(bytes);
+        } else {
+            crossSiteBytes.addAndGet(bytes);
+            bytesBySitePair.computeIfAbsent(from.site + " → " + to.site, k -> new AtomicLong()).addAndGet(bytes);
+        }
+    }
+
+    public long getTransfers() {
+        return transfers.get();
+    }
+
+    public long getIntraSiteBytes() {
+        return intraSiteBytes.get();
+    }
+
+    public long getCrossSiteBytes() {
+        return crossSiteBytes.get();
+    }
+
+    /**
+     * Prints the transfer report of the job.
+     */
+    public void printReport() {
+        System.out.println("\n[TRANSFERS] Data moved between nodes:");
+        System.out.println("========================");
+        System.out.println("Transfers:          " + transfers.get());
+        System.out.println("Intra-site bytes:   " + intraSiteBytes.get());
+        System.out.println("Cross-site bytes:   " + crossSiteBytes.get());
+        for (Map.Entry<String, AtomicLong> pair : new TreeMap<>(bytesBySitePair).entrySet()) {
+            System.out.println("  " + pair.getKey() + ": " + pair.getValue().get());
+        }
+        System.out.println("========================\n");
+    }
+}
@@ -13,9 +13,148 @@ public class Configuration {
     public static final int SCHEDULER_POLL_INTERVAL_MS = 500;
     public static final int SCHEDULER_TIMEOUT_HOURS = 1;
 
-    // Task Configuration
-    public static final int TASK_RETRY_BASE_WAIT_MS = 100;
-    public static final int TASK_RETRY_RANDOM_RANGE_MS = 100;
+    // Pipelined Startup Configuration (dynamic mode)
+    // Override with -Dwordcount.pipelined=false to split and ship everything before scheduling
+    public static final boolean PIPELINED_STARTUP =
+        Boolean.parseBoolean(System.getProperty("wordcount.pipelined", "true"));
+    public static final int PIPELINE_PARTS_PER_WORKER = 4;
+    public static final int PIPELINE_SHIP_THREADS = 8;
+    // Workers asked at once to delete the parts and intermediate files of a finished job
+    public static final int CLEANUP_THREADS = 16;
+    public static final long CLEANUP_TIMEOUT_MS = 60_000;
+
+    // Streaming Edges ("# @stream")
+    // How often a pipeline waiting for its producers checks whether the consumer failed
+    public static final long STREAM_STAGE_POLL_MS = 1_000;
+
+    // Broadcast Configuration
+    public static final int BROADCAST_CHUNK_BYTES = 4 * 1024 * 1024;
+    public static final int BROADCAST_WINDOW_CHUNKS = 4;
+    public static final int BROADCAST_FANOUT = 1; // 1 = chain, >1 = tree
+
+    // MapReduce Configuration
+    // Command used by workers (and the master) to run the job classes, from their working directory
+    public static final String WORKER_JAVA_COMMAND =
+        System.getProperty("wordcount.java", "java -cp bin");
+    // Map-side combining; disable with -Dwordcount.combine=false to ship raw (word, 1) records
+    public static final boolean MAPREDUCE_COMBINE =
+        Boolean.parseBoolean(System.getProperty("wordcount.combine", "true"));
+
+    // Memory budget of each map/reduce task before it spills sorted runs to disk
+    public static final int MAPREDUCE_MEMORY_MB =
+        Integer.getInteger("wordcount.memory.mb", 512);
+    public static final int MAPREDUCE_MERGE_FANIN = 64; // runs merged in one pass
+    // Skew handling: sample the input, split hot keys and range-partition the rest
+    // (disable with -Dwordcount.skew=false to hash-partition)
+    public static final boolean MAPREDUCE_SKEW_AWARE =
+        Boolean.parseBoolean(System.getProperty("wordcount.skew", "true"));
+    public static final long MAPREDUCE_SAMPLE_BYTES = 4 * 1024 * 1024;
+    public static final double MAPREDUCE_HOT_KEY_FRACTION = 0.5; // of one reducer's fair share
+
+    // Sketch Configuration (top-K job)
+    public static final int TOPK_DEFAULT_K = 1000;
+    public static final int SKETCH_CAPACITY_PER_K = 10; // Space-Saving counters per reported word
+    public static final int SKETCH_MIN_CAPACITY = 10000;
+    public static final int SKETCH_CMS_WIDTH = 1 << 16;
+    public static final int SKETCH_CMS_DEPTH = 5;
+    public static final int HLL_DEFAULT_PRECISION = 14; // 16 KB per sketch, ~0.8% error
+
+    // Native Reduction Configuration ("# @reduce")
+    public static final int REDUCE_THREADS = 16; // workers asked for their partial result at once
+    // Inputs per aggregation rule; wider aggregations get levels of partial results on workers
+    // (override with -Dwordcount.fanin=N; at least 2, or the partial levels would never shrink)
+    public static final int AGGREGATION_FAN_IN =
+        Math.max(2, Integer.getInteger("wordcount.fanin", 64));
+
+    // Site Configuration (multi-site deployments)
+    // Site of nodes whose hostname does not name one ("host[:port]@site" sets it explicitly)
+    public static final String DEFAULT_SITE = "default";
+    // Combine partial results inside each site before they cross the WAN
+    // (disable with -Dwordcount.site.combine=false)
+    public static final boolean SITE_COMBINERS =
+        Boolean.parseBoolean(System.getProperty("wordcount.site.combine", "true"));
+    // Placement cost of one byte crossing sites, relative to one byte inside a site
+    // (override with -Dwordcount.wan.cost=N)
+    public static final long WAN_COST_FACTOR =
+        Long.getLong("wordcount.wan.cost", 10);
+    // How long a task waits for a worker on the site holding its inputs before going remote
+    public static final long LOCALITY_WAIT_MS = 2000;
+    public static final long PLACEMENT_DEFAULT_FILE_BYTES = 64 * 1024; // outputs of unknown size
+
+    // Node Slot Configuration
+    // Tasks per node unless given as "host/slots"; "auto" asks each worker for its processor count
+    public static final String NODE_SLOTS = System.getProperty("wordcount.slots", "1");
+    public static final int MAX_NODE_SLOTS = 1024;
+
+    // Work Queue Configuration (per-worker queues with work stealing)
+    // Disable with -Dwordcount.stealing=false to let every task acquire a worker itself
+    public static final boolean WORK_STEALING =
+        Boolean.parseBoolean(System.getProperty("wordcount.stealing", "true"));
+    public static final int WORK_QUEUE_CAPACITY_PER_SLOT = 4;
+    public static final long WORK_QUEUE_IDLE_WAIT_MS = 200; // how often idle workers look for work to steal
+
+    // Worker Admission Control (read by each worker)
+    // Commands run at once; 0 = one per processor (override with -Dwordcount.worker.tasks=N)
+    public static final int WORKER_MAX_TASKS = Integer.getInteger("wordcount.worker.tasks", 0);
+    // Commands waiting for a slot before new ones are refused (-Dwordcount.worker.queue=N)
+    public static final int WORKER_MAX_QUEUED = Integer.getInteger("wordcount.worker.queue", 16);
+    public static final long WORKER_ADMISSION_WAIT_MS = 30_000;
+    // A busy worker refuses new commands below this much available memory or above this load
+    public static final long WORKER_MIN_FREE_MEMORY_MB =
+        Long.getLong("wordcount.worker.min.free.mb", 256);
+    public static final double WORKER_MAX_LOAD_PER_CPU =
+        Double.parseDouble(System.getProperty("wordcount.worker.max.load", "2.0"));
+    public static final long WORKER_RETRY_AFTER_MIN_MS = 250;
+    public static final long WORKER_RETRY_AFTER_MAX_MS = 30_000;
+    public static final long WORKER_LEASE_IDLE_TIMEOUT_MS = 10 * 60_000; // leases left by a dead master
+
+    // Elastic Membership (workers joining and leaving a running master)
+    // Registry port of the master's membership service; 0 = disabled (-Dwordcount.membership.port=N),
+    // unless the master waits for workers to register, which then use the default port
+    public static final int MEMBERSHIP_PORT = Integer.getInteger("wordcount.membership.port", 0);
+    public static final int DEFAULT_MEMBERSHIP_PORT = 2999;
+    public static final String MEMBERSHIP_SERVICE_NAME = "MembershipService";
+
+    // Master Host (the host running Main or the JobServer, where results are collected)
+    // "host[@site]" as the workers see it (-Dwordcount.master.host=...); unset = this host's name
+    public static final String MASTER_HOST = System.getProperty("wordcount.master.host");
+
+    // Worker Self-Registration (workers announce themselves to the master at boot)
+    // Master a worker registers with, "host[:port]" (-Dwordcount.master=...); unset = no registration
+    public static final String MASTER_ADDRESS = System.getProperty("wordcount.master");
+    // Site and free-form capabilities a worker announces (-Dwordcount.worker.site, -Dwordcount.worker.capabilities=a,b)
+    public static final String WORKER_SITE = System.getProperty("wordcount.worker.site");
+    public static final String WORKER_CAPABILITIES = System.getProperty("wordcount.worker.capabilities", "");
+    public static final long REGISTRATION_RETRY_MIN_MS = 250;
+    public static final long REGISTRATION_RETRY_MAX_MS = 10_000;
+    // How long the master waits for --workers=N registrations before starting with those it has
+    public static final long REGISTRATION_WAIT_MS = Long.getLong("wordcount.registration.wait.ms", 120_000);
+    public static final int REGISTRATION_THREADS = 32;
+    // Health checks of the members, in parallel; a worker failing this many in a row is removed
+    public static final long HEALTH_CHECK_INTERVAL_MS = Long.getLong("wordcount.health.interval.ms", 5_000);
+    public static final long HEALTH_CHECK_TIMEOUT_MS = 3_000;
+    public static final int HEALTH_CHECK_FAILURES = 3;
+
+    // Hierarchical Scheduling (workers leading a shard dispatch batches of tasks for the master)
+    // on, off, or auto: shard clusters of SHARD_MIN_WORKERS workers or more (-Dwordcount.sharding=...)
+    public static final String SHARDING = System.getProperty("wordcount.sharding", "auto");
+    public static final int SHARD_MIN_WORKERS = 64;
+    // Workers per shard; larger sites are cut into several shards (-Dwordcount.shard.size=N)
+    public static final int SHARD_MAX_WORKERS = Integer.getInteger("wordcount.shard.size", 100);
+    public static final long SHARD_POLL_MS = 500;
+    public static final long SHARD_REPORT_INTERVAL_MS = 5_000;
+
+    // Job Service (a long-running master running several jobs on one cluster)
+    // Bound in the membership registry of the master
+    public static final String JOB_SERVICE_NAME = "JobService";
+    // Default priority and weight of a submitted job; higher priorities are served first,
+    // jobs of one priority share the slots in proportion to their weights
+    public static final int JOB_DEFAULT_PRIORITY = 0;
+    public static final double JOB_DEFAULT_WEIGHT = 1.0;
+    // Finished jobs kept for status queries
+    public static final int JOB_HISTORY = 100;
+    // How often the master logs, and clients print, the progress of running jobs
+    public static final long JOB_PROGRESS_INTERVAL_MS = 5_000;
 
     // Validation
     public static final int MIN_WORKER_NODES = 1;
@@ -26,6 +165,14 @@ public class Configuration {
         throw new UnsupportedOperationException("Configuration is a utility class");
     }
 
+    /**
+     * Gets the port of the master's membership service.
+     * @return MEMBERSHIP_PORT if set, else DEFAULT_MEMBERSHIP_PORT
+     */
+    public static int membershipPort() {
+        return MEMBERSHIP_PORT > 0 ? MEMBERSHIP_PORT : DEFAULT_MEMBERSHIP_PORT;
+    }
+
     /**
      * Builds the RMI URL for a given hostname using the default port.
      * @param hostname The hostname of the worker
@@ -42,12 +189,23 @@ public class Configuration {
      * @return The complete RMI URL
      */
     public static String buildRmiUrl(String hostname, int port) {
+        return buildRmiUrl(hostname, port, RMI_SERVICE_NAME);
+    }
+
+    /**
+     * Builds the RMI URL of a named service.
+     * @param hostname The hostname of the registry
+     * @param port The RMI registry port
+     * @param service The name the service is bound to
+     * @return The complete RMI URL
+     */
+    public static String buildRmiUrl(String hostname, int port, String service) {
         if (hostname == null || hostname.trim().isEmpty()) {
             throw new IllegalArgumentException("Hostname cannot be null or empty");
         }
         if (port < 1024 || port > 65535) {
             throw new IllegalArgumentException("Port must be between 1024 and 65535");
         }
-        return String.format("rmi://%s:%d/%s", hostname, port, RMI_SERVICE_NAME);
+        return String.format("rmi://%s:%d/%s", hostname, port, service);
     }
 }
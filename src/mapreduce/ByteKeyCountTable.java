@@ -0,0 +1,400 @@
+package mapreduce;
+
+import utils.ByteHash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Open-addressing hash table from byte-slice keys to long counts.
+ * <p>
+ * Key bytes are copied once into off-heap arena chunks (direct buffers); the table
+ * itself is three parallel primitive arrays (key reference, 32-bit hash, count) with
+ * linear probing. Adding an existing key allocates nothing, and the garbage collector
+ * only ever sees a handful of large arrays, whatever the vocabulary size.
+ * <p>
+ * Footprint: 20 bytes per slot (8 key reference, 4 hash, 8 count), and the slot count is
+ * the power of two keeping the load at or below 0.75, so a distinct word costs 27 to 53
+ * bytes plus its key bytes. 50M words of ~8 bytes take 1.7 GB with 2^26 slots (just
+ * under the load limit) and 3.1 GB once past it with 2^27 slots; while the table
+ * doubles, the old arrays are held too (up to 4.4 GB). Callers with a memory budget watch
+ * memoryBytes() and spill (see SpillingCounter). Direct memory is bounded by
+ * -XX:MaxDirectMemorySize (defaults to the heap size).
+ * <p>
+ * Not thread-safe: each map or reduce task owns its table.
+ */
+public class ByteKeyCountTable {
+    /** Largest arena chunk (offsets are packed on 26 bits); a key never spans two chunks. */
+    public static final int MAX_ARENA_CHUNK_BYTES = 64 * 1024 * 1024;
+    private static final int MAX_KEY_BYTES = 0xffff;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final long EMPTY = -1L;
+
+    /**
+     * Receives entries during iteration.
+     * The key array is reused between calls and only valid during the call.
+     */
+    public interface EntryVisitor {
+        void visit(byte[] key, int length, long count) throws IOException;
+    }
+
+    private final List<ByteBuffer> arena = new ArrayList<>();
+    private final int arenaChunkBytes;
+    private ByteBuffer currentChunk;
+    private int chunkCount;
+
+    private long[] refs;   // chunk << 42 | offset << 16 | length, or EMPTY
+    private int[] hashes;
+    private long[] counts;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private long keyBytes;
+
+    private final byte[] scratch = new byte[MAX_KEY_BYTES];
+    private final byte[] scratch2 = new byte[MAX_KEY_BYTES];
+
+    /**
+     * Creates a table sized for about expectedKeys distinct keys before growing.
+     * @param expectedKeys Expected number of distinct keys
+     * @param arenaChunkBytes Size of each off-heap key chunk (64 KB to 64 MB)
+     */
+    public ByteKeyCountTable(int expectedKeys, int arenaChunkBytes) {
+        if (expectedKeys < 0) {
+            throw new IllegalArgumentException("Expected keys cannot be negative");
+        }
+        if (arenaChunkBytes <= MAX_KEY_BYTES || arenaChunkBytes > MAX_ARENA_CHUNK_BYTES) {
+            throw new IllegalArgumentException("Arena chunk size must be between 64 KB and 64 MB");
+        }
+        this.arenaChunkBytes = arenaChunkBytes;
+        int capacity = 16;
+        while (capacity < MAX_CAPACITY && capacity * LOAD_FACTOR < expectedKeys) {
+            capacity <<= 1;
+        }
+        allocateSlots(capacity);
+    }
+
+    public ByteKeyCountTable(int expectedKeys) {
+        this(expectedKeys, MAX_ARENA_CHUNK_BYTES);
+    }
+
+    public ByteKeyCountTable() {
+        this(1 << 16);
+    }
+
+    /**
+     * Adds delta to the count of a key, inserting the key if needed.
+     * Keys longer than 65535 bytes are truncated.
+     * @param key Buffer holding the key
+     * @param offset Start of the key
+     * @param length Length of the key
+     * @param delta Amount to add
+     * @throws IllegalStateException if the key is new and the table is full at its maximum capacity
+     */
+    public void add(byte[] key, int offset, int length, long delta) {
+        if (length > MAX_KEY_BYTES) {
+            length = MAX_KEY_BYTES;
+        }
+        int hash = hashOf(key, offset, length);
+        int slot = hash & mask;
+
+        while (true) {
+            long ref = refs[slot];
+            if (ref == EMPTY) {
+                if (size >= resizeThreshold && refs.length >= MAX_CAPACITY) {
+                    throw new IllegalStateException("Count table full at " + size + " keys");
+                }
+                refs[slot] = store(key, offset, length);
+                hashes[slot] = hash;
+                counts[slot] = delta;
+                if (++size > resizeThreshold) {
+                    grow();
+                }
+                return;
+            }
+            if (hashes[slot] == hash && equalsKey(ref, key, offset, length)) {
+                counts[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Gets the count of a key.
+     * @return The count, or 0 if the key is absent
+     */
+    public long get(byte[] key, int offset, int length) {
+        if (length > MAX_KEY_BYTES) {
+            length = MAX_KEY_BYTES;
+        }
+        int hash = hashOf(key, offset, length);
+        int slot = hash & mask;
+        long ref;
+        while ((ref = refs[slot]) != EMPTY) {
+            if (hashes[slot] == hash && equalsKey(ref, key, offset, length)) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Adds every entry of another table to this one (used to combine partial tables).
+     * @param other The table to merge in
+     */
+    public void mergeFrom(ByteKeyCountTable other) {
+        for (int slot = 0; slot < other.refs.length; slot++) {
+            long ref = other.refs[slot];
+            if (ref != EMPTY) {
+                int length = other.copyKey(ref, scratch);
+                add(scratch, 0, length, other.counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Visits every entry in table order (no sorting cost).
+     */
+    public void forEach(EntryVisitor visitor) throws IOException {
+        for (int slot = 0; slot < refs.length; slot++) {
+            long ref = refs[slot];
+            if (ref != EMPTY) {
+                visitor.visit(scratch, copyKey(ref, scratch), counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Visits every entry in unsigned byte order of the keys, the order of sorted outputs.
+     * Needs one int and one long of temporary heap per entry.
+     */
+    public void forEachSorted(EntryVisitor visitor) throws IOException {
+        int[] order = new int[size];
+        long[] prefixes = new long[size];
+        int n = 0;
+        for (int slot = 0; slot < refs.length; slot++) {
+            if (refs[slot] != EMPTY) {
+                order[n] = slot;
+                prefixes[n] = prefix(refs[slot]);
+                n++;
+            }
+        }
+        sort(order, prefixes, 0, n - 1);
+
+        for (int i = 0; i < n; i++) {
+            int slot = order[i];
+            visitor.visit(scratch, copyKey(refs[slot], scratch), counts[slot]);
+        }
+    }
+
+    /**
+     * Removes every entry but keeps the allocated slots and arena for reuse.
+     */
+    public void clear() {
+        Arrays.fill(refs, EMPTY);
+        Arrays.fill(counts, 0L);
+        size = 0;
+        keyBytes = 0;
+        chunkCount = 0;
+        currentChunk = arena.isEmpty() ? null : arena.get(0);
+        if (currentChunk != null) {
+            currentChunk.clear();
+            chunkCount = 1;
+        }
+    }
+
+    /**
+     * Gets the number of distinct keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the memory in use: slot arrays plus the arena chunks holding keys.
+     * Drops back to the slot arrays and one chunk after clear().
+     * @return Bytes in use
+     */
+    public long memoryBytes() {
+        return (long) refs.length * (8 + 4 + 8) + (long) chunkCount * arenaChunkBytes;
+    }
+
+    /**
+     * Gets the number of new keys that fit before the slot arrays double, or before
+     * the table is full once they cannot double any more (0 means spill first).
+     */
+    public int remainingBeforeGrowth() {
+        return Math.max(0, resizeThreshold - size);
+    }
+
+    /**
+     * Gets the total length of the stored keys.
+     */
+    public long keyBytes() {
+        return keyBytes;
+    }
+
+    private int hashOf(byte[] key, int offset, int length) {
+        long h = ByteHash.hash64(key, offset, length);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private long store(byte[] key, int offset, int length) {
+        if (currentChunk == null || currentChunk.remaining() < length) {
+            if (chunkCount < arena.size()) {
+                currentChunk = arena.get(chunkCount);
+                currentChunk.clear();
+            } else {
+                currentChunk = ByteBuffer.allocateDirect(arenaChunkBytes);
+                arena.add(currentChunk);
+            }
+            chunkCount++;
+        }
+        int position = currentChunk.position();
+        currentChunk.put(key, offset, length);
+        keyBytes += length;
+        return ((long) (chunkCount - 1) << 42) | ((long) position << 16) | length;
+    }
+
+    private static int chunkOf(long ref) {
+        return (int) (ref >>> 42);
+    }
+
+    private static int offsetOf(long ref) {
+        return (int) ((ref >>> 16) & 0x3ffffff);
+    }
+
+    private static int lengthOf(long ref) {
+        return (int) (ref & 0xffff);
+    }
+
+    private boolean equalsKey(long ref, byte[] key, int offset, int length) {
+        if (lengthOf(ref) != length) {
+            return false;
+        }
+        ByteBuffer chunk = arena.get(chunkOf(ref));
+        int position = offsetOf(ref);
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(position + i) != key[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int copyKey(long ref, byte[] target) {
+        ByteBuffer chunk = arena.get(chunkOf(ref));
+        int position = offsetOf(ref);
+        int length = lengthOf(ref);
+        for (int i = 0; i < length; i++) {
+            target[i] = chunk.get(position + i);
+        }
+        return length;
+    }
+
+    /**
+     * First 8 key bytes as an unsigned big-endian number, zero padded:
+     * comparing prefixes orders most keys without touching the arena.
+     */
+    private long prefix(long ref) {
+        ByteBuffer chunk = arena.get(chunkOf(ref));
+        int position = offsetOf(ref);
+        int length = lengthOf(ref);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (i < length ? chunk.get(position + i) & 0xff : 0);
+        }
+        return value;
+    }
+
+    private int compareSlots(int a, long prefixA, int b, long prefixB) {
+        int byPrefix = Long.compareUnsigned(prefixA, prefixB);
+        if (byPrefix != 0) {
+            return byPrefix;
+        }
+        int lengthA = copyKey(refs[a], scratch);
+        int lengthB = copyKey(refs[b], scratch2);
+        return ByteHash.compare(scratch, 0, lengthA, scratch2, 0, lengthB);
+    }
+
+    /**
+     * Quicksort of slot indices (with their prefixes) by key, without boxing.
+     */
+    private void sort(int[] order, long[] prefixes, int low, int high) {
+        while (high - low > 16) {
+            int middle = (low + high) >>> 1;
+            int pivot = order[middle];
+            long pivotPrefix = prefixes[middle];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compareSlots(order[i], prefixes[i], pivot, pivotPrefix) < 0) {
+                    i++;
+                }
+                while (compareSlots(order[j], prefixes[j], pivot, pivotPrefix) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(order, prefixes, i++, j--);
+                }
+            }
+            // Recurse into the smaller side to bound stack depth
+            if (j - low < high - i) {
+                sort(order, prefixes, low, j);
+                low = i;
+            } else {
+                sort(order, prefixes, i, high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            for (int j = i; j > low && compareSlots(order[j - 1], prefixes[j - 1], order[j], prefixes[j]) > 0; j--) {
+                swap(order, prefixes, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(int[] order, long[] prefixes, int i, int j) {
+        int slot = order[i];
+        order[i] = order[j];
+        order[j] = slot;
+        long prefix = prefixes[i];
+        prefixes[i] = prefixes[j];
+        prefixes[j] = prefix;
+    }
+
+    private void allocateSlots(int capacity) {
+        refs = new long[capacity];
+        Arrays.fill(refs, EMPTY);
+        hashes = new int[capacity];
+        counts = new long[capacity];
+        mask = capacity - 1;
+        // At MAX_CAPACITY this is where the table is full: open addressing needs free slots
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void grow() {
+        long[] oldRefs = refs;
+        int[] oldHashes = hashes;
+        long[] oldCounts = counts;
+        allocateSlots(oldRefs.length << 1);
+
+        for (int old = 0; old < oldRefs.length; old++) {
+            if (oldRefs[old] != EMPTY) {
+                int slot = oldHashes[old] & mask;
+                while (refs[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                refs[slot] = oldRefs[old];
+                hashes[slot] = oldHashes[old];
+                counts[slot] = oldCounts[old];
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package mapreduce;
+
+import config.Configuration;
+import parser.Task;
+import parser.TaskGraphBuilder;
+import sketch.HyperLogLog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Distinct-word estimation job: one HyperLogLog sketch per part, merged on the master.
+ * <ul>
+ *   <li>hll i: adds every word of part i to a HyperLogLog sketch</li>
+ *   <li>merge: runs on the master, takes the register-wise max of all sketches and
+ *       writes the estimate with its standard error</li>
+ * </ul>
+ */
+public class DistinctJob {
+    public static final String OUTPUT_FILE = "distinct.txt";
+
+    private DistinctJob() {
+        throw new UnsupportedOperationException("DistinctJob is a utility class");
+    }
+
+    /**
+     * Name of the sketch file produced for a part.
+     */
+    public static String sketchOutput(String prefix, int index) {
+        return prefix + "hll" + index + ".bin";
+    }
+
+    /**
+     * Builds the job graph.
+     * @param prefix Prefix of the names of the job's files ("" for none)
+     * @param splitFiles The input parts, one sketch task each
+     * @param precision HyperLogLog precision (4 to 18)
+     * @return The builder holding the graph
+     */
+    public static TaskGraphBuilder<Task> buildGraph(String prefix, List<String> splitFiles, int precision) {
+        if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + HyperLogLog.MIN_PRECISION +
+                                               " and " + HyperLogLog.MAX_PRECISION);
+        }
+        TaskGraphBuilder<Task> builder = TaskGraphBuilder.forTasks();
+        String java = Configuration.WORKER_JAVA_COMMAND;
+
+        List<String> sketches = new ArrayList<>();
+        for (int i = 1; i <= splitFiles.size(); i++) {
+            String sketch = sketchOutput(prefix, i);
+            sketches.add(sketch);
+            builder.rule(sketch).dependsOn(splitFiles.get(i - 1))
+                   .command(java + " mapreduce.DistinctTask " + splitFiles.get(i - 1) + " " + sketch + " " + precision);
+        }
+
+        String outputFile = prefix + OUTPUT_FILE;
+        builder.rule(outputFile).dependsOn(sketches)
+               .annotate("master", "")
+               .command(java + " mapreduce.DistinctMerge " + outputFile + " " + String.join(" ", sketches));
+
+        return builder;
+    }
+}
@@ -0,0 +1,51 @@
+package mapreduce;
+
+import sketch.HyperLogLog;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+
+/**
+ * Final step of the distinct-word job, run on the master.
+ * Merges the HyperLogLog sketches of all parts and writes the estimate.
+ * Usage: java mapreduce.DistinctMerge <output> <sketch>...
+ */
+public class DistinctMerge {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java mapreduce.DistinctMerge <output> <sketch>...");
+            System.exit(1);
+        }
+
+        try {
+            HyperLogLog merged = null;
+            for (int i = 1; i < args.length; i++) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args[i])))) {
+                    HyperLogLog sketch = HyperLogLog.read(in);
+                    if (merged == null) {
+                        merged = sketch;
+                    } else {
+                        merged.merge(sketch);
+                    }
+                }
+            }
+
+            long estimate = merged.estimate();
+            try (PrintWriter out = new PrintWriter(new FileOutputStream(args[0]))) {
+                out.println("# Distinct words (HyperLogLog, precision " + merged.getPrecision() +
+                            ", standard error " + String.format("%.2f", 100 * merged.standardError()) + "%)");
+                out.println(estimate);
+            }
+            System.out.println("[DISTINCT] ✅ ~" + estimate + " distinct words (±" +
+                               String.format("%.2f", 100 * merged.standardError()) + "%) written to " + args[0]);
+        } catch (Exception e) {
+            System.err.println("[DISTINCT] ❌ Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package mapreduce;
+
+import sketch.HyperLogLog;
+import utils.WordTokenizer;
+
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+
+/**
+ * Sketch side of the distinct-word job, run on a worker.
+ * Usage: java mapreduce.DistinctTask <input> <output> <precision>
+ */
+public class DistinctTask {
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: java mapreduce.DistinctTask <input> <output> <precision>");
+            System.exit(1);
+        }
+
+        try {
+            HyperLogLog sketch = new HyperLogLog(Integer.parseInt(args[2]));
+            long words;
+            try (InputStream in = new FileInputStream(args[0])) {
+                words = WordTokenizer.tokenize(in, sketch::add);
+            }
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(args[1]))) {
+                sketch.write(out);
+            }
+            System.out.println("[DISTINCT] ✅ " + words + " words from " + args[0] + ", ~" + sketch.estimate() +
+                               " distinct");
+        } catch (Exception e) {
+            System.err.println("[DISTINCT] ❌ Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package mapreduce;
+
+import config.Configuration;
+import parser.Task;
+import parser.TaskGraphBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Word-frequency MapReduce job built on the task scheduler.
+ * <ul>
+ *   <li>map i: counts the words of part i (map-side combining) and writes one
+ *       sorted partition file per reducer, chosen by hashing the word</li>
+ *   <li>reduce r: fetches partition r from every mapper and sums the counts</li>
+ *   <li>merge: runs on the master and merges the sorted reducer outputs into
+ *       the final "word count" listing</li>
+ * </ul>
+ * Intermediate files stay on the workers and are forwarded directly to reducers.
+ * With a partition plan (see KeySampler), hot keys are split over all reducers and
+ * the other keys are range-partitioned; the merge adds the pieces of hot keys back up.
+ * Map and reduce tasks keep their counts within a memory budget, spilling sorted
+ * runs to local disk and merging them as streams.
+ * Every file of the job is named after a prefix, so several jobs can share a directory.
+ */
+public class FrequencyJob {
+    public static final String OUTPUT_FILE = "frequencies.txt";
+
+    private FrequencyJob() {
+        throw new UnsupportedOperationException("FrequencyJob is a utility class");
+    }
+
+    /**
+     * Name of the map task for a part.
+     */
+    public static String mapTaskName(String prefix, int mapIndex) {
+        return prefix + "mr-map" + mapIndex;
+    }
+
+    /**
+     * Name of the partition file written by a mapper for a reducer.
+     */
+    public static String mapOutput(String prefix, int mapIndex, int partition) {
+        return prefix + "mr-map" + mapIndex + "-r" + partition + ".bin";
+    }
+
+    /**
+     * Name of the output file of a reducer.
+     */
+    public static String reduceOutput(String prefix, int partition) {
+        return prefix + "mr-reduce" + partition + ".bin";
+    }
+
+    /**
+     * Reads the --prefix=P option of a task's command line.
+     * @return The prefix of the job's files, empty if absent
+     */
+    static String prefix(String[] args) {
+        String value = option(args, "--prefix=");
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Checks whether a task's command line contains a flag.
+     */
+    static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (arg.equals(flag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads a "--name=value" option of a task's command line.
+     * @param prefix The option prefix, including '='
+     * @return The value, or null if absent
+     */
+    static String option(String[] args, String prefix) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the --memory-mb=N option of a task's command line.
+     * @return The memory budget in bytes (Configuration default if absent)
+     */
+    static long memoryBudget(String[] args) {
+        String value = option(args, "--memory-mb=");
+        return (value == null ? Configuration.MAPREDUCE_MEMORY_MB : Long.parseLong(value)) * 1024L * 1024L;
+    }
+
+    /**
+     * Builds the job graph.
+     * @param prefix Prefix of the names of the job's files ("" for none)
+     * @param splitFiles The input parts, one map task each
+     * @param reducers Number of reduce partitions
+     * @param planFile Partition plan already on the workers, or null for hash partitioning
+     * @return The builder holding the graph
+     */
+    public static TaskGraphBuilder<Task> buildGraph(String prefix, List<String> splitFiles, int reducers,
+                                                    String planFile) {
+        if (reducers < 1) {
+            throw new IllegalArgumentException("Number of reducers must be at least 1");
+        }
+
+        TaskGraphBuilder<Task> builder = TaskGraphBuilder.forTasks();
+        String java = Configuration.WORKER_JAVA_COMMAND;
+        int mappers = splitFiles.size();
+        String prefixOption = prefix.isEmpty() ? "" : " --prefix=" + prefix;
+
+        List<String> mapTasks = new ArrayList<>();
+        for (int i = 1; i <= mappers; i++) {
+            List<String> outputs = new ArrayList<>();
+            for (int r = 0; r < reducers; r++) {
+                outputs.add(mapOutput(prefix, i, r));
+            }
+            String mapTask = mapTaskName(prefix, i);
+            mapTasks.add(mapTask);
+
+            builder.rule(mapTask).dependsOn(splitFiles.get(i - 1))
+                   .annotate("outputs", String.join(",", outputs))
+                   .command(java + " mapreduce.MapTask " + splitFiles.get(i - 1) + " " + reducers + " " + i +
+                            " --memory-mb=" + Configuration.MAPREDUCE_MEMORY_MB +
+                            (planFile == null ? "" : " --plan=" + planFile) +
+                            (Configuration.MAPREDUCE_COMBINE ? "" : " --no-combine") + prefixOption);
+        }
+
+        List<String> reduceOutputs = new ArrayList<>();
+        for (int r = 0; r < reducers; r++) {
+            List<String> fetch = new ArrayList<>();
+            for (int i = 1; i <= mappers; i++) {
+                fetch.add(mapOutput(prefix, i, r));
+            }
+            String output = reduceOutput(prefix, r);
+            reduceOutputs.add(output);
+
+            // Each reducer only fetches its own partition from every mapper
+            builder.rule(output).dependsOn(mapTasks)
+                   .annotate("fetch", String.join(",", fetch))
+                   .command(java + " mapreduce.ReduceTask " + r + " " + mappers + " " + output +
+                            " --memory-mb=" + Configuration.MAPREDUCE_MEMORY_MB + prefixOption);
+        }
+
+        String outputFile = prefix + OUTPUT_FILE;
+        builder.rule(outputFile).dependsOn(reduceOutputs)
+               .annotate("master", "")
+               .command(java + " mapreduce.MergeTask " + outputFile + " " + String.join(" ", reduceOutputs));
+
+        return builder;
+    }
+}
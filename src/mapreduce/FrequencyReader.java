@@ -0,0 +1,259 @@
+package mapreduce;
+
+import utils.ByteHash;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a frequency file written by FrequencyWriter, one record at a time.
+ * Blocks are decoded straight from a memory-mapped window of the file and their
+ * checksum is verified when they are first touched. The key buffer is reused
+ * between records. For sorted files, seek() jumps to a key using the block index.
+ */
+public class FrequencyReader implements AutoCloseable {
+    private static final long WINDOW_BYTES = 256L * 1024 * 1024;
+
+    private final String path;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final boolean sorted;
+    private final long dataEnd;
+    private final long[] blockOffsets;
+    private final byte[][] firstKeys;
+    private final long records;
+    private final CRC32 crc = new CRC32();
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long windowEnd;
+
+    private int currentBlock = -1;
+    private ByteBuffer cursor;
+    private int recordsLeft;
+    private boolean peeked;
+
+    private byte[] key = new byte[64];
+    private int keyLength;
+    private long count;
+
+    /**
+     * Opens a frequency file.
+     * @param path Input path
+     * @throws IOException if the file cannot be read or is not a frequency file
+     */
+    public FrequencyReader(String path) throws IOException {
+        this.path = path;
+        this.file = new RandomAccessFile(path, "r");
+        this.channel = file.getChannel();
+        try {
+            long size = channel.size();
+            if (size < FrequencyWriter.HEADER_BYTES + FrequencyWriter.TRAILER_BYTES) {
+                throw new IOException("Not a frequency file: " + path);
+            }
+
+            ByteBuffer header = read(0, FrequencyWriter.HEADER_BYTES);
+            ByteBuffer trailer = read(size - FrequencyWriter.TRAILER_BYTES, FrequencyWriter.TRAILER_BYTES);
+            if (header.getInt() != FrequencyWriter.MAGIC || trailer.getInt(20) != FrequencyWriter.MAGIC) {
+                throw new IOException("Not a frequency file: " + path);
+            }
+            this.sorted = (header.get() & 1) != 0;
+            this.dataEnd = trailer.getLong();
+            int blocks = trailer.getInt();
+            this.records = trailer.getLong();
+
+            ByteBuffer index = read(dataEnd, (int) (size - FrequencyWriter.TRAILER_BYTES - dataEnd));
+            this.blockOffsets = new long[blocks];
+            this.firstKeys = new byte[blocks][];
+            for (int i = 0; i < blocks; i++) {
+                blockOffsets[i] = index.getLong();
+                firstKeys[i] = new byte[(int) readVarint(index)];
+                index.get(firstKeys[i]);
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            throw new IOException("Corrupt frequency file: " + path, e);
+        }
+    }
+
+    /**
+     * Advances to the next record.
+     * @return false at end of file
+     */
+    public boolean next() throws IOException {
+        if (peeked) {
+            peeked = false;
+            return true;
+        }
+        while (recordsLeft == 0) {
+            if (currentBlock + 1 >= blockOffsets.length) {
+                return false;
+            }
+            loadBlock(currentBlock + 1);
+        }
+
+        int shared = (int) readVarint(cursor);
+        int suffix = (int) readVarint(cursor);
+        int length = shared + suffix;
+        if (length > key.length) {
+            byte[] larger = new byte[Math.max(length, key.length * 2)];
+            System.arraycopy(key, 0, larger, 0, shared);
+            key = larger;
+        }
+        cursor.get(key, shared, suffix);
+        keyLength = length;
+        count = readVarint(cursor);
+        recordsLeft--;
+        return true;
+    }
+
+    /**
+     * Positions the reader so that the next call to next() returns the first record
+     * whose key is greater than or equal to the given key. Only the block that may
+     * hold the key is decoded. Read a range [from, to] with seek(from) followed by
+     * next() until the key passes to.
+     * @return false if every key is smaller than the given key
+     * @throws IllegalStateException if the file is not sorted
+     */
+    public boolean seek(byte[] target, int offset, int length) throws IOException {
+        if (!sorted) {
+            throw new IllegalStateException("Cannot seek in an unsorted frequency file: " + path);
+        }
+        peeked = false;
+        recordsLeft = 0;
+        if (blockOffsets.length == 0) {
+            return false;
+        }
+
+        // Last block whose first key is <= target
+        int low = 0;
+        int high = blockOffsets.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (ByteHash.compare(firstKeys[middle], 0, firstKeys[middle].length, target, offset, length) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        loadBlock(low);
+
+        while (next()) {
+            if (ByteHash.compare(key, 0, keyLength, target, offset, length) >= 0) {
+                peeked = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public byte[] key() {
+        return key;
+    }
+
+    public int keyLength() {
+        return keyLength;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Gets the number of records in the file (from the footer).
+     */
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Gets the number of blocks in the file.
+     */
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        cursor = null;
+        file.close();
+    }
+
+    private void loadBlock(int block) throws IOException {
+        long start = blockOffsets[block];
+        ensureMapped(start, start + FrequencyWriter.BLOCK_HEADER_BYTES);
+        int base = (int) (start - windowStart);
+        int payloadLength = window.getInt(base);
+        int blockRecords = window.getInt(base + 4);
+        int checksum = window.getInt(base + 8);
+
+        long end = start + FrequencyWriter.BLOCK_HEADER_BYTES + payloadLength;
+        if (payloadLength < 0 || end > dataEnd) {
+            throw new IOException("Corrupt block " + block + " in " + path);
+        }
+        ensureMapped(start, end);
+        base = (int) (start - windowStart);
+
+        ByteBuffer payload = window.duplicate();
+        payload.limit(base + FrequencyWriter.BLOCK_HEADER_BYTES + payloadLength);
+        payload.position(base + FrequencyWriter.BLOCK_HEADER_BYTES);
+        crc.reset();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch in block " + block + " of " + path);
+        }
+
+        cursor = payload;
+        recordsLeft = blockRecords;
+        currentBlock = block;
+        keyLength = 0;
+    }
+
+    /**
+     * Maps a window of the file covering [start, end), reusing the current one if possible.
+     */
+    private void ensureMapped(long start, long end) throws IOException {
+        if (window != null && start >= windowStart && end <= windowEnd) {
+            return;
+        }
+        long length = Math.min(dataEnd - start, Math.max(end - start, WINDOW_BYTES));
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        windowStart = start;
+        windowEnd = start + length;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated frequency file: " + path);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
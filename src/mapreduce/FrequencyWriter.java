@@ -0,0 +1,168 @@
+package mapreduce;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a frequency file: a sequence of (word, count) records, in blocks.
+ * <pre>
+ * header : int magic, byte flags (bit 0 = sorted)
+ * block  : int payloadLength, int records, int crc32(payload), payload
+ * payload: per record varint shared, varint suffixLength, suffix bytes, varint count
+ * index  : per block long blockOffset, varint firstKeyLength, firstKey bytes
+ * trailer: long indexOffset, int blocks, long records, int magic
+ * </pre>
+ * Keys are prefix-compressed against the previous key of the same block, so each
+ * block decodes on its own; the index holds the first key of every block, which
+ * lets a reader of a sorted file jump straight to a key range.
+ */
+public class FrequencyWriter implements AutoCloseable {
+    static final int MAGIC = 0x57465132; // "WFQ2"
+    static final int HEADER_BYTES = 5;
+    static final int BLOCK_HEADER_BYTES = 12;
+    static final int TRAILER_BYTES = 24;
+    static final int BLOCK_BYTES = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final boolean sorted;
+    private long position;
+    private long records;
+    private int blocks;
+
+    private byte[] block = new byte[BLOCK_BYTES + 1024];
+    private int blockLength;
+    private int blockRecords;
+    private byte[] previous = new byte[64];
+    private int previousLength;
+
+    private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+    private final DataOutputStream index = new DataOutputStream(indexBytes);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Opens a frequency file for writing.
+     * @param path Output path
+     * @param sorted Whether records will be written in ascending key order
+     * @throws IOException if the file cannot be created
+     */
+    public FrequencyWriter(String path, boolean sorted) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 64 * 1024));
+        this.sorted = sorted;
+        out.writeInt(MAGIC);
+        out.writeByte(sorted ? 1 : 0);
+        position = HEADER_BYTES;
+    }
+
+    /**
+     * Appends a record.
+     * @throws IllegalArgumentException if the count is negative
+     */
+    public void write(byte[] key, int offset, int length, long count) throws IOException {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative");
+        }
+
+        int shared = 0;
+        if (blockRecords == 0) {
+            writeIndexEntry(key, offset, length);
+        } else {
+            int limit = Math.min(previousLength, length);
+            while (shared < limit && previous[shared] == key[offset + shared]) {
+                shared++;
+            }
+        }
+
+        ensureBlockCapacity(length + 30);
+        putVarint(shared);
+        putVarint(length - shared);
+        System.arraycopy(key, offset + shared, block, blockLength, length - shared);
+        blockLength += length - shared;
+        putVarint(count);
+        blockRecords++;
+        records++;
+
+        if (length > previous.length) {
+            previous = new byte[Math.max(length, previous.length * 2)];
+        }
+        System.arraycopy(key, offset, previous, 0, length);
+        previousLength = length;
+
+        if (blockLength >= BLOCK_BYTES) {
+            flushBlock();
+        }
+    }
+
+    public long getRecordCount() {
+        return records;
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+            index.flush();
+            long indexOffset = position;
+            indexBytes.writeTo(out);
+            out.writeLong(indexOffset);
+            out.writeInt(blocks);
+            out.writeLong(records);
+            out.writeInt(MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeIndexEntry(byte[] key, int offset, int length) throws IOException {
+        index.writeLong(position);
+        writeVarint(index, length);
+        index.write(key, offset, length);
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockRecords == 0) {
+            return;
+        }
+        crc.reset();
+        crc.update(block, 0, blockLength);
+        out.writeInt(blockLength);
+        out.writeInt(blockRecords);
+        out.writeInt((int) crc.getValue());
+        out.write(block, 0, blockLength);
+        position += BLOCK_HEADER_BYTES + blockLength;
+        blocks++;
+        blockLength = 0;
+        blockRecords = 0;
+    }
+
+    private void ensureBlockCapacity(int extra) {
+        if (blockLength + extra > block.length) {
+            byte[] larger = new byte[Math.max(block.length * 2, blockLength + extra)];
+            System.arraycopy(block, 0, larger, 0, blockLength);
+            block = larger;
+        }
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7fL) != 0) {
+            block[blockLength++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        block[blockLength++] = (byte) value;
+    }
+
+    private static void writeVarint(DataOutputStream target, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            target.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        target.writeByte((int) value);
+    }
+}
@@ -0,0 +1,118 @@
+package mapreduce;
+
+import utils.WordTokenizer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sampling pre-pass of the word-frequency job, run on the master before splitting.
+ * Reads evenly spaced windows of the input, counts their words and derives a
+ * PartitionPlan: keys whose sampled share would give one reducer more than
+ * hotFraction of its fair load become hot keys, and range boundaries split the
+ * remaining sampled words into equal shares.
+ */
+public class KeySampler {
+    private static final int WINDOW_BYTES = 64 * 1024;
+
+    private KeySampler() {
+        throw new UnsupportedOperationException("KeySampler is a utility class");
+    }
+
+    /**
+     * Samples an input file and builds a partition plan.
+     * @param inputFile The job input
+     * @param reducers Number of reducers
+     * @param sampleBytes Bytes to read in total (the whole file if smaller)
+     * @param hotFraction A key is hot when its share exceeds this fraction of 1/reducers
+     * @return The plan
+     * @throws IOException if the input cannot be read
+     */
+    public static PartitionPlan plan(String inputFile, int reducers, long sampleBytes, double hotFraction)
+            throws IOException {
+        ByteKeyCountTable sample = new ByteKeyCountTable();
+        long words = sample(inputFile, sampleBytes, sample);
+
+        // Hot keys: too heavy for a single reducer
+        double hotThreshold = words * hotFraction / reducers;
+        List<byte[]> hot = new ArrayList<>();
+        long[] coldWords = new long[1];
+        sample.forEachSorted((key, length, count) -> {
+            if (reducers > 1 && count > hotThreshold) {
+                hot.add(copy(key, length));
+                System.out.println("[SAMPLER] 🔥 Hot key '" + new String(key, 0, length, StandardCharsets.ISO_8859_1) + "' (" +
+                                   String.format("%.1f", 100.0 * count / words) + "% of sampled words)");
+            } else {
+                coldWords[0] += count;
+            }
+        });
+
+        // Boundaries: cut the remaining words into equal sampled shares
+        List<byte[]> boundaries = new ArrayList<>();
+        long[] cumulative = new long[1];
+        sample.forEachSorted((key, length, count) -> {
+            if (reducers > 1 && count > hotThreshold) {
+                return;
+            }
+            long target = coldWords[0] * (boundaries.size() + 1) / reducers;
+            if (boundaries.size() < reducers - 1 && cumulative[0] >= target && cumulative[0] > 0) {
+                boundaries.add(copy(key, length));
+            }
+            cumulative[0] += count;
+        });
+
+        System.out.println("[SAMPLER] ✅ Sampled " + words + " words (" + sample.size() + " distinct): " +
+                           hot.size() + " hot keys, " + boundaries.size() + " range boundaries for " +
+                           reducers + " reducers");
+        return new PartitionPlan(reducers, hot, boundaries);
+    }
+
+    /**
+     * Counts the words of evenly spaced windows of a file.
+     * Each window starts after a whitespace and ends before one, so no word is cut.
+     * @return Number of sampled words
+     */
+    static long sample(String inputFile, long sampleBytes, ByteKeyCountTable counts) throws IOException {
+        long words = 0;
+        try (RandomAccessFile file = new RandomAccessFile(inputFile, "r")) {
+            long size = file.length();
+            int windows = (int) Math.max(1, Math.min(size / WINDOW_BYTES, sampleBytes / WINDOW_BYTES));
+            long stride = size / windows;
+            byte[] buffer = new byte[WINDOW_BYTES];
+
+            for (int w = 0; w < windows; w++) {
+                long start = w * stride;
+                file.seek(start);
+                int read = file.read(buffer, 0, (int) Math.min(WINDOW_BYTES, size - start));
+                if (read <= 0) {
+                    continue;
+                }
+                int from = 0;
+                if (start > 0) {
+                    while (from < read && !WordTokenizer.isSpace(buffer[from])) {
+                        from++;
+                    }
+                }
+                int to = read;
+                if (start + read < size) {
+                    while (to > from && !WordTokenizer.isSpace(buffer[to - 1])) {
+                        to--;
+                    }
+                }
+                words += WordTokenizer.tokenize(new ByteArrayInputStream(buffer, from, to - from),
+                    (key, offset, length) -> counts.add(key, offset, length, 1));
+            }
+        }
+        return words;
+    }
+
+    private static byte[] copy(byte[] key, int length) {
+        byte[] copy = new byte[length];
+        System.arraycopy(key, 0, copy, 0, length);
+        return copy;
+    }
+}
@@ -0,0 +1,112 @@
+package mapreduce;
+
+import config.Configuration;
+import utils.WordTokenizer;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Map side of the word-frequency job, run on a worker.
+ * Usage: java mapreduce.MapTask <input> <reducers> <mapIndex> [--no-combine] [--memory-mb=N] [--plan=FILE] [--prefix=P]
+ */
+public class MapTask {
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: java mapreduce.MapTask <input> <reducers> <mapIndex> [--no-combine] [--memory-mb=N] [--plan=FILE] [--prefix=P]");
+            System.exit(1);
+        }
+
+        try {
+            String input = args[0];
+            int reducers = Integer.parseInt(args[1]);
+            int mapIndex = Integer.parseInt(args[2]);
+            boolean combine = !FrequencyJob.hasFlag(args, "--no-combine");
+            long memoryBudget = FrequencyJob.memoryBudget(args);
+            String planFile = FrequencyJob.option(args, "--plan=");
+            String prefix = FrequencyJob.prefix(args);
+            Partitioner partitioner = planFile == null ? Partitioner.hash(reducers)
+                                                       : Partitioner.forPlan(PartitionPlan.read(planFile), mapIndex);
+            if (partitioner.getReducers() != reducers) {
+                throw new IllegalArgumentException("Partition plan is for " + partitioner.getReducers() + " reducers");
+            }
+
+            long start = System.currentTimeMillis();
+            long words = combine ? mapCombined(input, partitioner, prefix, mapIndex, memoryBudget)
+                                 : mapRaw(input, partitioner, prefix, mapIndex);
+            System.out.println("[MAP " + mapIndex + "] ✅ " + words + " words from " + input + " in " +
+                               (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            System.err.println("[MAP] ❌ Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Counts words locally, then writes one sorted partition file per reducer.
+     * A single sorted pass over the counts (merging spill runs if the memory
+     * budget was exceeded) feeds all partition writers.
+     */
+    private static long mapCombined(String input, Partitioner partitioner, String prefix, int mapIndex,
+                                    long memoryBudget) throws IOException {
+        int reducers = partitioner.getReducers();
+        FrequencyWriter[] writers = new FrequencyWriter[reducers];
+        try (SpillingCounter counts = new SpillingCounter(memoryBudget, FrequencyJob.mapTaskName(prefix, mapIndex),
+                                                          Configuration.MAPREDUCE_MERGE_FANIN);
+             InputStream in = new FileInputStream(input)) {
+            long words = WordTokenizer.tokenize(in, (buffer, offset, length) -> {
+                try {
+                    counts.add(buffer, offset, length, 1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            for (int r = 0; r < reducers; r++) {
+                writers[r] = new FrequencyWriter(FrequencyJob.mapOutput(prefix, mapIndex, r), true);
+            }
+            counts.forEachSorted((key, length, count) ->
+                writers[partitioner.partition(key, 0, length)].write(key, 0, length, count));
+            return words;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (FrequencyWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Emits one (word, 1) record per occurrence, in input order (no combining).
+     */
+    private static long mapRaw(String input, Partitioner partitioner, String prefix, int mapIndex) throws IOException {
+        int reducers = partitioner.getReducers();
+        FrequencyWriter[] writers = new FrequencyWriter[reducers];
+        try (InputStream in = new FileInputStream(input)) {
+            for (int r = 0; r < reducers; r++) {
+                writers[r] = new FrequencyWriter(FrequencyJob.mapOutput(prefix, mapIndex, r), false);
+            }
+            return WordTokenizer.tokenize(in, (buffer, offset, length) -> {
+                int r = partitioner.partition(buffer, offset, length);
+                try {
+                    writers[r].write(buffer, offset, length, 1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } finally {
+            for (FrequencyWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package mapreduce;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Final step of the word-frequency job, run on the master.
+ * Merges the sorted reducer outputs into one sorted "word count" text file.
+ * Usage: java mapreduce.MergeTask <output> <reduce-output>...
+ */
+public class MergeTask {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java mapreduce.MergeTask <output> <reduce-output>...");
+            System.exit(1);
+        }
+
+        List<FrequencyReader> readers = new ArrayList<>();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                readers.add(new FrequencyReader(args[i]));
+            }
+            long distinct = merge(readers, args[0]);
+            System.out.println("[MERGE] ✅ " + distinct + " distinct words written to " + args[0]);
+        } catch (Exception e) {
+            System.err.println("[MERGE] ❌ Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        } finally {
+            for (FrequencyReader reader : readers) {
+                try {
+                    reader.close();
+                } catch (IOException ignored) {
+                    // Best effort
+                }
+            }
+        }
+    }
+
+    /**
+     * K-way merge of sorted readers; equal words from different readers are summed.
+     * @return Number of distinct words written
+     */
+    static long merge(List<FrequencyReader> readers, String output) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 64 * 1024)) {
+            return RunMerger.merge(readers, (key, length, count) -> writeLine(out, key, length, count));
+        }
+    }
+
+    private static void writeLine(OutputStream out, byte[] key, int length, long count) throws IOException {
+        out.write(key, 0, length);
+        out.write(' ');
+        out.write(Long.toString(count).getBytes(StandardCharsets.US_ASCII));
+        out.write('\n');
+    }
+}
@@ -0,0 +1,159 @@
+package mapreduce;
+
+import utils.ByteHash;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How map outputs are routed to reducers, derived from a sample of the input.
+ * <ul>
+ *   <li>hot keys (heavy hitters) are split: each mapper sends its share of a hot
+ *       key to a different reducer, and the final merge adds the pieces back up</li>
+ *   <li>other keys are range-partitioned on sampled boundaries chosen so every
+ *       reducer receives about the same number of words</li>
+ * </ul>
+ * Stored as a small text file (keys hex-encoded) that is broadcast to the workers.
+ */
+public class PartitionPlan {
+    public static final String FILE_NAME = "partition.plan";
+
+    private final int reducers;
+    private final List<byte[]> hotKeys;
+    private final List<byte[]> boundaries;
+
+    /**
+     * Creates a plan.
+     * @param reducers Number of reducers
+     * @param hotKeys Keys split across reducers
+     * @param boundaries Sorted upper bounds of the first reducers' ranges (at most reducers - 1)
+     */
+    public PartitionPlan(int reducers, List<byte[]> hotKeys, List<byte[]> boundaries) {
+        if (reducers < 1) {
+            throw new IllegalArgumentException("Number of reducers must be at least 1");
+        }
+        if (boundaries.size() >= reducers) {
+            throw new IllegalArgumentException("At most " + (reducers - 1) + " boundaries for " + reducers + " reducers");
+        }
+        this.reducers = reducers;
+        this.hotKeys = new ArrayList<>(hotKeys);
+        this.boundaries = new ArrayList<>(boundaries);
+    }
+
+    public int getReducers() {
+        return reducers;
+    }
+
+    public List<byte[]> getHotKeys() {
+        return Collections.unmodifiableList(hotKeys);
+    }
+
+    public List<byte[]> getBoundaries() {
+        return Collections.unmodifiableList(boundaries);
+    }
+
+    /**
+     * Gets the reducer owning a (non-hot) key's range: the number of boundaries <= key.
+     */
+    int rangeOf(byte[] key, int offset, int length) {
+        int low = 0;
+        int high = boundaries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            byte[] boundary = boundaries.get(middle);
+            if (ByteHash.compare(boundary, 0, boundary.length, key, offset, length) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Writes the plan.
+     * @param path Output path
+     */
+    public void write(String path) throws IOException {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                 new FileOutputStream(path), StandardCharsets.US_ASCII))) {
+            out.println("# Partition plan for the word-frequency job");
+            out.println("reducers " + reducers);
+            for (byte[] key : hotKeys) {
+                out.println("hot " + toHex(key));
+            }
+            for (byte[] key : boundaries) {
+                out.println("boundary " + toHex(key));
+            }
+        }
+    }
+
+    /**
+     * Reads a plan written by write().
+     * @param path Plan file
+     * @return The plan
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static PartitionPlan read(String path) throws IOException {
+        int reducers = 0;
+        List<byte[]> hot = new ArrayList<>();
+        List<byte[]> boundaries = new ArrayList<>();
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                 new FileInputStream(path), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(" ", 2);
+                String value = fields.length > 1 ? fields[1] : "";
+                switch (fields[0]) {
+                    case "reducers":
+                        reducers = Integer.parseInt(value);
+                        break;
+                    case "hot":
+                        hot.add(fromHex(value));
+                        break;
+                    case "boundary":
+                        boundaries.add(fromHex(value));
+                        break;
+                    default:
+                        throw new IOException("Unknown entry in partition plan " + path + ": " + fields[0]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed partition plan " + path + ": " + e.getMessage(), e);
+        }
+        return new PartitionPlan(reducers, hot, boundaries);
+    }
+
+    static String toHex(byte[] key) {
+        StringBuilder hex = new StringBuilder(key.length * 2);
+        for (byte b : key) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd hex length");
+        }
+        byte[] key = new byte[hex.length() / 2];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return key;
+    }
+}
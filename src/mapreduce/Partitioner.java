@@ -0,0 +1,75 @@
+package mapreduce;
+
+import utils.ByteHash;
+
+/**
+ * Chooses the reducer of each map output record.
+ * Without a plan keys are hash-partitioned. With a PartitionPlan, hot keys are
+ * spread over all reducers (rotating per record, starting at a different reducer
+ * for each mapper) and other keys follow the plan's ranges.
+ * One instance per map task; not thread-safe.
+ */
+public class Partitioner {
+    private final int reducers;
+    private final PartitionPlan plan;
+    private final ByteKeyCountTable hotIndex;
+    private final long[] rotation;
+
+    private Partitioner(int reducers, PartitionPlan plan, int mapIndex) {
+        this.reducers = reducers;
+        this.plan = plan;
+        if (plan == null) {
+            this.hotIndex = null;
+            this.rotation = null;
+            return;
+        }
+
+        // Hot key -> 1-based position, looked up without allocating
+        this.hotIndex = new ByteKeyCountTable(plan.getHotKeys().size() + 1, 256 * 1024);
+        this.rotation = new long[plan.getHotKeys().size()];
+        for (int i = 0; i < rotation.length; i++) {
+            byte[] key = plan.getHotKeys().get(i);
+            hotIndex.add(key, 0, key.length, i + 1);
+            rotation[i] = mapIndex + i;
+        }
+    }
+
+    /**
+     * Creates a hash partitioner.
+     * @param reducers Number of reducers
+     */
+    public static Partitioner hash(int reducers) {
+        if (reducers < 1) {
+            throw new IllegalArgumentException("Number of reducers must be at least 1");
+        }
+        return new Partitioner(reducers, null, 0);
+    }
+
+    /**
+     * Creates a partitioner following a plan.
+     * @param plan The partition plan
+     * @param mapIndex Index of the map task (spreads hot keys between mappers)
+     */
+    public static Partitioner forPlan(PartitionPlan plan, int mapIndex) {
+        return new Partitioner(plan.getReducers(), plan, mapIndex);
+    }
+
+    /**
+     * Gets the reducer of a key.
+     * @return A reducer index in [0, reducers)
+     */
+    public int partition(byte[] key, int offset, int length) {
+        if (plan == null) {
+            return ByteHash.partition(ByteHash.hash64(key, offset, length), reducers);
+        }
+        int hot = (int) hotIndex.get(key, offset, length);
+        if (hot > 0) {
+            return (int) (rotation[hot - 1]++ % reducers);
+        }
+        return plan.rangeOf(key, offset, length);
+    }
+
+    public int getReducers() {
+        return reducers;
+    }
+}
@@ -0,0 +1,68 @@
+package mapreduce;
+
+import config.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reduce side of the word-frequency job, run on a worker.
+ * Sums partition r of every mapper and writes it sorted by word, with a streaming
+ * k-way merge so memory stays bounded.
+ * Usage: java mapreduce.ReduceTask <partition> <mappers> <output> [--memory-mb=N] [--prefix=P]
+ */
+public class ReduceTask {
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: java mapreduce.ReduceTask <partition> <mappers> <output> [--memory-mb=N] [--prefix=P]");
+            System.exit(1);
+        }
+
+        try {
+            int partition = Integer.parseInt(args[0]);
+            int mappers = Integer.parseInt(args[1]);
+            String output = args[2];
+
+            long memoryBudget = FrequencyJob.memoryBudget(args);
+            String prefix = FrequencyJob.prefix(args);
+            String spillPrefix = prefix + "mr-reduce" + partition;
+
+            // Sorted (combined) map outputs are merged as streams; unsorted ones
+            // (no map-side combine) are counted first, spilling to sorted runs
+            List<String> runs = new ArrayList<>();
+            try (SpillingCounter counter = new SpillingCounter(memoryBudget, spillPrefix,
+                                                               Configuration.MAPREDUCE_MERGE_FANIN)) {
+                for (int i = 1; i <= mappers; i++) {
+                    String input = FrequencyJob.mapOutput(prefix, i, partition);
+                    try (FrequencyReader reader = new FrequencyReader(input)) {
+                        if (reader.isSorted()) {
+                            runs.add(input);
+                            continue;
+                        }
+                        while (reader.next()) {
+                            counter.add(reader.key(), 0, reader.keyLength(), reader.count());
+                        }
+                    }
+                }
+                runs.addAll(counter.finishRuns());
+
+                long distinct;
+                long[] words = new long[1];
+                try (FrequencyWriter writer = new FrequencyWriter(output, true)) {
+                    distinct = RunMerger.mergeFiles(runs, Configuration.MAPREDUCE_MERGE_FANIN, spillPrefix,
+                        (key, length, count) -> {
+                            writer.write(key, 0, length, count);
+                            words[0] += count;
+                        });
+                }
+                System.out.println("[REDUCE " + partition + "] ✅ " + words[0] + " words, " + distinct +
+                                   " distinct, from " + mappers + " mappers (" + counter.getSpillCount() + " spill runs)");
+            }
+        } catch (Exception e) {
+            System.err.println("[REDUCE] ❌ Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package mapreduce;
+
+import utils.ByteHash;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Streaming k-way merge of sorted frequency runs.
+ * Equal keys coming from different runs are summed, so the output is sorted and
+ * holds each key once. Memory use is one record per open run.
+ */
+public class RunMerger {
+
+    private RunMerger() {
+        throw new UnsupportedOperationException("RunMerger is a utility class");
+    }
+
+    /**
+     * Merges sorted readers into a visitor.
+     * @param readers Open, sorted readers (not closed)
+     * @param visitor Receives each distinct key with its total, in key order
+     * @return Number of distinct keys
+     * @throws IOException if reading fails or an input is not sorted
+     */
+    public static long merge(List<FrequencyReader> readers, ByteKeyCountTable.EntryVisitor visitor) throws IOException {
+        PriorityQueue<FrequencyReader> heap = new PriorityQueue<>(Math.max(1, readers.size()), (a, b) ->
+            ByteHash.compare(a.key(), 0, a.keyLength(), b.key(), 0, b.keyLength()));
+        for (FrequencyReader reader : readers) {
+            if (!reader.isSorted()) {
+                throw new IOException("Merge input is not sorted");
+            }
+            if (reader.next()) {
+                heap.add(reader);
+            }
+        }
+
+        long distinct = 0;
+        byte[] current = new byte[64];
+        int currentLength = -1;
+        long currentCount = 0;
+
+        while (!heap.isEmpty()) {
+            FrequencyReader reader = heap.poll();
+            if (currentLength >= 0 &&
+                ByteHash.compare(current, 0, currentLength, reader.key(), 0, reader.keyLength()) == 0) {
+                currentCount += reader.count();
+            } else {
+                if (currentLength >= 0) {
+                    visitor.visit(current, currentLength, currentCount);
+                    distinct++;
+                }
+                if (reader.keyLength() > current.length) {
+                    current = new byte[reader.keyLength() * 2];
+                }
+                System.arraycopy(reader.key(), 0, current, 0, reader.keyLength());
+                currentLength = reader.keyLength();
+                currentCount = reader.count();
+            }
+            if (reader.next()) {
+                heap.add(reader);
+            }
+        }
+        if (currentLength >= 0) {
+            visitor.visit(current, currentLength, currentCount);
+            distinct++;
+        }
+        return distinct;
+    }
+
+    /**
+     * Merges sorted run files, never opening more than fanIn of them at once.
+     * When there are more runs, groups of fanIn runs are first merged into
+     * intermediate runs (multi-pass merge), which are deleted afterwards.
+     * @param runs Sorted run files
+     * @param fanIn Maximum number of runs merged in one pass (at least 2)
+     * @param tempPrefix Prefix of intermediate run files
+     * @param visitor Receives each distinct key with its total, in key order
+     * @return Number of distinct keys
+     * @throws IOException if reading or writing fails
+     */
+    public static long mergeFiles(List<String> runs, int fanIn, String tempPrefix,
+                                  ByteKeyCountTable.EntryVisitor visitor) throws IOException {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Merge fan-in must be at least 2");
+        }
+
+        List<String> pending = new ArrayList<>(runs);
+        List<String> temporary = new ArrayList<>();
+        try {
+            int pass = 0;
+            while (pending.size() > fanIn) {
+                List<String> group = new ArrayList<>(pending.subList(0, fanIn));
+                pending.subList(0, fanIn).clear();
+
+                String merged = tempPrefix + ".merge" + (pass++) + ".bin";
+                temporary.add(merged);
+                try (FrequencyWriter writer = new FrequencyWriter(merged, true)) {
+                    mergeGroup(group, (key, length, count) -> writer.write(key, 0, length, count));
+                }
+                for (String run : group) {
+                    if (temporary.remove(run)) {
+                        new File(run).delete();
+                    }
+                }
+                pending.add(merged);
+            }
+            return mergeGroup(pending, visitor);
+        } finally {
+            for (String run : temporary) {
+                new File(run).delete();
+            }
+        }
+    }
+
+    private static long mergeGroup(List<String> runs, ByteKeyCountTable.EntryVisitor visitor) throws IOException {
+        List<FrequencyReader> readers = new ArrayList<>();
+        try {
+            for (String run : runs) {
+                readers.add(new FrequencyReader(run));
+            }
+            return merge(readers, visitor);
+        } finally {
+            for (FrequencyReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package mapreduce;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Word counter with a memory budget.
+ * Counts go into a ByteKeyCountTable; when the table reaches the budget it is
+ * written to disk as a sorted run and cleared. The final result is the k-way
+ * merge of all runs, so memory stays bounded whatever the vocabulary size.
+ */
+public class SpillingCounter implements AutoCloseable {
+    // Average bytes per distinct key used to size the table (slots + key + slack)
+    private static final int BYTES_PER_KEY_ESTIMATE = 96;
+
+    private final ByteKeyCountTable table;
+    private final long memoryBudget;
+    private final String spillPrefix;
+    private final int mergeFanIn;
+    private final List<String> runs = new ArrayList<>();
+
+    /**
+     * Creates a counter.
+     * @param memoryBudget Bytes the table may use before spilling
+     * @param spillPrefix Prefix of spill files, in the current directory
+     * @param mergeFanIn Maximum runs merged at once
+     */
+    public SpillingCounter(long memoryBudget, String spillPrefix, int mergeFanIn) {
+        if (memoryBudget < 1024 * 1024) {
+            throw new IllegalArgumentException("Memory budget must be at least 1 MB");
+        }
+        this.memoryBudget = memoryBudget;
+        this.spillPrefix = spillPrefix;
+        this.mergeFanIn = mergeFanIn;
+
+        // Size slots once so the table never doubles past the budget, and keep
+        // arena chunks small relative to the budget
+        long expectedKeys = Math.min(Integer.MAX_VALUE / 2, memoryBudget / BYTES_PER_KEY_ESTIMATE);
+        int chunkBytes = (int) Math.max(256 * 1024,
+            Math.min(ByteKeyCountTable.MAX_ARENA_CHUNK_BYTES, memoryBudget / 8));
+        this.table = new ByteKeyCountTable((int) expectedKeys, chunkBytes);
+    }
+
+    /**
+     * Adds delta to the count of a key, spilling first if the budget is reached.
+     */
+    public void add(byte[] key, int offset, int length, long delta) throws IOException {
+        if (table.size() > 0 && (table.remainingBeforeGrowth() == 0 || table.memoryBytes() >= memoryBudget)) {
+            spill();
+        }
+        table.add(key, offset, length, delta);
+    }
+
+    /**
+     * Visits every key with its total in key order, merging spill runs if any.
+     * @param visitor Receives the entries
+     * @throws IOException if reading or writing runs fails
+     */
+    public void forEachSorted(ByteKeyCountTable.EntryVisitor visitor) throws IOException {
+        if (runs.isEmpty()) {
+            table.forEachSorted(visitor);
+            return;
+        }
+        RunMerger.mergeFiles(finishRuns(), mergeFanIn, spillPrefix, visitor);
+    }
+
+    /**
+     * Spills what is left in memory and returns every run, for callers that merge
+     * the runs together with other sorted inputs.
+     * @return The sorted run files (deleted by close())
+     */
+    public List<String> finishRuns() throws IOException {
+        if (table.size() > 0) {
+            spill();
+        }
+        return Collections.unmodifiableList(runs);
+    }
+
+    /**
+     * Gets the number of runs spilled to disk so far.
+     */
+    public int getSpillCount() {
+        return runs.size();
+    }
+
+    private void spill() throws IOException {
+        String run = spillPrefix + ".spill" + runs.size() + ".bin";
+        try (FrequencyWriter writer = new FrequencyWriter(run, true)) {
+            table.forEachSorted((key, length, count) -> writer.write(key, 0, length, count));
+        }
+        runs.add(run);
+        System.out.println("[SPILL] Wrote " + run + " (" + table.size() + " keys)");
+        table.clear();
+    }
+
+    /**
+     * Deletes the spill files.
+     */
+    @Override
+    public void close() {
+        for (String run : runs) {
+            new File(run).delete();
+        }
+        runs.clear();
+    }
+}
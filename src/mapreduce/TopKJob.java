@@ -0,0 +1,65 @@
+package mapreduce;
+
+import config.Configuration;
+import parser.Task;
+import parser.TaskGraphBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Top-K / heavy-hitter job: one pass, no shuffle.
+ * <ul>
+ *   <li>sketch i: summarizes part i with a Space-Saving summary and a Count-Min sketch</li>
+ *   <li>merge: runs on the master, merges all sketches and writes the top K words
+ *       with their error bounds</li>
+ * </ul>
+ * Memory per task depends on the sketch sizes only, not on the vocabulary.
+ */
+public class TopKJob {
+    public static final String OUTPUT_FILE = "topk.txt";
+
+    private TopKJob() {
+        throw new UnsupportedOperationException("TopKJob is a utility class");
+    }
+
+    /**
+     * Name of the sketch file produced for a part.
+     */
+    public static String sketchOutput(String prefix, int index) {
+        return prefix + "sketch" + index + ".bin";
+    }
+
+    /**
+     * Builds the job graph.
+     * @param prefix Prefix of the names of the job's files ("" for none)
+     * @param splitFiles The input parts, one sketch task each
+     * @param k Number of words to report
+     * @return The builder holding the graph
+     */
+    public static TaskGraphBuilder<Task> buildGraph(String prefix, List<String> splitFiles, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("K must be at least 1");
+        }
+
+        TaskGraphBuilder<Task> builder = TaskGraphBuilder.forTasks();
+        String java = Configuration.WORKER_JAVA_COMMAND;
+        int capacity = Math.max(Configuration.SKETCH_CAPACITY_PER_K * k, Configuration.SKETCH_MIN_CAPACITY);
+
+        List<String> sketches = new ArrayList<>();
+        for (int i = 1; i <= splitFiles.size(); i++) {
+            String sketch = sketchOutput(prefix, i);
+            sketches.add(sketch);
+            builder.rule(sketch).dependsOn(splitFiles.get(i - 1))
+                   .command(java + " mapreduce.TopKTask " + splitFiles.get(i - 1) + " " + sketch +
+                            " " + capacity + " " + Configuration.SKETCH_CMS_WIDTH + " " + Configuration.SKETCH_CMS_DEPTH);
+        }
+
+        String outputFile = prefix + OUTPUT_FILE;
+        builder.rule(outputFile).dependsOn(sketches)
+               .annotate("master", "")
+               .command(java + " mapreduce.TopKMerge " + k + " " + outputFile + " " + String.join(" ", sketches));
+
+        return builder;
+    }
+}
@@ -0,0 +1,74 @@
+package mapreduce;
+
+import sketch.CountMinSketch;
+import sketch.SpaceSaving;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Final step of the top-K job, run on the master.
+ * Merges the per-part sketches and writes the K most frequent words as
+ * "word estimate guaranteed" lines: the true count lies between guaranteed and
+ * estimate. The estimate is the smaller of the Space-Saving and Count-Min upper bounds.
+ * Usage: java mapreduce.TopKMerge <k> <output> <sketch>...
+ */
+public class TopKMerge {
+
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.err.println("Usage: java mapreduce.TopKMerge <k> <output> <sketch>...");
+            System.exit(1);
+        }
+
+        try {
+            int k = Integer.parseInt(args[0]);
+            SpaceSaving summary = null;
+            CountMinSketch sketch = null;
+
+            for (int i = 2; i < args.length; i++) {
+                try (DataInputStream in = new DataInputStream(
+                         new BufferedInputStream(new FileInputStream(args[i]), 64 * 1024))) {
+                    SpaceSaving partSummary = SpaceSaving.read(in);
+                    CountMinSketch partSketch = CountMinSketch.read(in);
+                    summary = summary == null ? partSummary : summary.merge(partSummary);
+                    if (sketch == null) {
+                        sketch = partSketch;
+                    } else {
+                        sketch.merge(partSketch);
+                    }
+                }
+            }
+
+            List<SpaceSaving.Entry> top = new ArrayList<>(summary.top(k));
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                     new FileOutputStream(args[1]), StandardCharsets.ISO_8859_1))) {
+                out.println("# Top " + top.size() + " of " + summary.getTotal() + " words (Space-Saving " +
+                            summary.getCapacity() + " counters, Count-Min " + sketch.getDepth() + "x" +
+                            sketch.getWidth() + ")");
+                out.println("# Space-Saving error <= " + summary.minCount() + " per word; Count-Min error <= " +
+                            sketch.errorBound() + " with probability " +
+                            String.format("%.3f", sketch.confidence()));
+                out.println("# word estimate guaranteed");
+                for (SpaceSaving.Entry entry : top) {
+                    byte[] key = entry.getKey();
+                    long estimate = Math.min(entry.getCount(), sketch.estimate(key, 0, key.length));
+                    out.println(entry.getWord() + " " + estimate + " " + entry.getGuaranteedCount());
+                }
+            }
+            System.out.println("[TOPK] ✅ Top " + top.size() + " words of " + summary.getTotal() +
+                               " written to " + args[1] + " (error <= " + summary.minCount() + ")");
+        } catch (Exception e) {
+            System.err.println("[TOPK] ❌ Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
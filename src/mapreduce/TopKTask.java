@@ -0,0 +1,51 @@
+package mapreduce;
+
+import sketch.CountMinSketch;
+import sketch.SpaceSaving;
+import utils.WordTokenizer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+
+/**
+ * Sketch side of the top-K job, run on a worker.
+ * Feeds every word of a part into a Space-Saving summary and a Count-Min sketch.
+ * Usage: java mapreduce.TopKTask <input> <output> <capacity> <cms-width> <cms-depth>
+ */
+public class TopKTask {
+
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            System.err.println("Usage: java mapreduce.TopKTask <input> <output> <capacity> <cms-width> <cms-depth>");
+            System.exit(1);
+        }
+
+        try {
+            SpaceSaving summary = new SpaceSaving(Integer.parseInt(args[2]));
+            CountMinSketch sketch = new CountMinSketch(Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+
+            long words;
+            try (InputStream in = new FileInputStream(args[0])) {
+                words = WordTokenizer.tokenize(in, (buffer, offset, length) -> {
+                    summary.offer(buffer, offset, length, 1);
+                    sketch.add(buffer, offset, length, 1);
+                });
+            }
+
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(args[1]), 64 * 1024))) {
+                summary.write(out);
+                sketch.write(out);
+            }
+            System.out.println("[TOPK] ✅ " + words + " words from " + args[0] + " summarized in " + args[1] +
+                               " (max error " + summary.minCount() + ")");
+        } catch (Exception e) {
+            System.err.println("[TOPK] ❌ Error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
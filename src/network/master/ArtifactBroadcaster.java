@@ -0,0 +1,113 @@
+package network.master;
+
+import cluster.ClusterManager;
+import cluster.ComputeNode;
+import network.worker.FileSender;
+import network.worker.WorkerInterface;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Broadcasts a file from the master to every worker.
+ * The master only uploads the file once, to the first worker; the workers relay
+ * the chunks down a chain (or tree) so total time stays close to one transfer.
+ */
+public class ArtifactBroadcaster {
+
+    /**
+     * Broadcasts a local file to all given nodes.
+     * Nodes sharing a hostname share a disk, so only one of them receives the file.
+     * @param localFile Path of the file on the master
+     * @param nodes Target nodes
+     * @return Number of nodes holding the file after the broadcast
+     * @throws IOException if the file cannot be read or the chain fails
+     */
+    public static int broadcast(String localFile, List<ComputeNode> nodes) throws IOException {
+        if (localFile == null || localFile.trim().isEmpty()) {
+            throw new IllegalArgumentException("File cannot be null or empty");
+        }
+        File file = new File(localFile);
+        if (!file.isFile()) {
+            throw new IOException("File not found: " + localFile);
+        }
+
+        List<ComputeNode> targets = distinctHosts(nodes);
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No target nodes for broadcast");
+        }
+
+        ComputeNode root = targets.get(0);
+        List<String> downstream = new ArrayList<>();
+        for (ComputeNode node : targets.subList(1, targets.size())) {
+            downstream.add(node.hostname + ":" + node.port);
+        }
+
+        String fileName = file.getName();
+        long start = System.currentTimeMillis();
+        System.out.println("[BROADCAST] Sending " + fileName + " (" + file.length() + " bytes) to " +
+                           targets.size() + " host(s) via " + root.hostname + ":" + root.port);
+
+        try {
+            WorkerInterface worker = WorkerStubs.get(root.hostname, root.port);
+            int reached = FileSender.send(file, worker, downstream);
+            System.out.println("[BROADCAST] ✅ " + fileName + " delivered to " + reached + " host(s) in " +
+                               (System.currentTimeMillis() - start) + " ms");
+            return reached;
+
+        } catch (IOException e) {
+            WorkerStubs.evict(root.hostname, root.port);
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Broadcast of " + fileName + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Keeps the first node of each hostname and groups them by site, preserving order
+     * otherwise, so the relay chain crosses each inter-site link only once.
+     */
+    private static List<ComputeNode> distinctHosts(List<ComputeNode> nodes) {
+        Map<String, ComputeNode> byHost = new LinkedHashMap<>();
+        if (nodes != null) {
+            synchronized (nodes) {
+                for (ComputeNode node : nodes) {
+                    byHost.putIfAbsent(node.hostname, node);
+                }
+            }
+        }
+        Map<String, List<ComputeNode>> bySite = new LinkedHashMap<>();
+        for (ComputeNode node : byHost.values()) {
+            bySite.computeIfAbsent(node.site, k -> new ArrayList<>()).add(node);
+        }
+        List<ComputeNode> ordered = new ArrayList<>();
+        for (List<ComputeNode> siteNodes : bySite.values()) {
+            ordered.addAll(siteNodes);
+        }
+        return ordered;
+    }
+
+    /**
+     * Main method for command-line usage.
+     * Usage: java network.master.ArtifactBroadcaster <file> "[worker1,worker2,...]"
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java network.master.ArtifactBroadcaster <file> \"[worker1,worker2,...]\"");
+            System.err.println("Example: java network.master.ArtifactBroadcaster wordcount \"[nancy-2.grid5000.fr,nancy-3.grid5000.fr]\"");
+            System.exit(1);
+        }
+
+        try {
+            ClusterManager clusterManager = new ClusterManager(args[1]);
+            broadcast(args[0], clusterManager.getNodes());
+        } catch (Exception e) {
+            System.err.println("[BROADCAST] ❌ Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package network.master;
+
+import config.Configuration;
+
+import java.rmi.Naming;
+import java.rmi.ServerException;
+
+/**
+ * Command-line client of a running master's job service (scheduler.JobServer):
+ * submits jobs and follows them.
+ */
+public class JobClient {
+
+    private JobClient() {
+        // Command-line tool
+    }
+
+    /**
+     * Usage: java network.master.JobClient &lt;master[:port]&gt; submit|status|wait|list [options] [job]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || (!args[1].equals("list") && args.length < 3)) {
+            System.err.println("Usage: java network.master.JobClient <master[:port]> submit [options] <input-file | --makefile=<path>>");
+            System.err.println("       java network.master.JobClient <master[:port]> status|wait <job-id>");
+            System.err.println("       java network.master.JobClient <master[:port]> list");
+            System.err.println("  options: --job=wordcount|freq|topk|distinct --reducers=N --k=N --precision=P");
+            System.err.println("           --name=NAME --priority=N (default " + Configuration.JOB_DEFAULT_PRIORITY +
+                               ") --weight=W (default " + Configuration.JOB_DEFAULT_WEIGHT + ") --wait");
+            System.err.println("  paths are on the master, relative to its working directory");
+            System.err.println("  port: Membership port of the master (-Dwordcount.membership.port, default " +
+                               Configuration.DEFAULT_MEMBERSHIP_PORT + ")");
+            System.exit(1);
+        }
+
+        try {
+            JobService service = lookup(args[0]);
+            switch (args[1]) {
+                case "submit":
+                    boolean wait = false;
+                    String name = null;
+                    String makefile = null;
+                    String inputFile = null;
+                    String jobType = "wordcount";
+                    int reducers = 0;
+                    int topK = Configuration.TOPK_DEFAULT_K;
+                    int precision = Configuration.HLL_DEFAULT_PRECISION;
+                    int priority = Configuration.JOB_DEFAULT_PRIORITY;
+                    double weight = Configuration.JOB_DEFAULT_WEIGHT;
+                    for (int i = 2; i < args.length; i++) {
+                        String arg = args[i];
+                        if (arg.equals("--wait")) {
+                            wait = true;
+                        } else if (arg.startsWith("--name=")) {
+                            name = arg.substring("--name=".length());
+                        } else if (arg.startsWith("--makefile=")) {
+                            makefile = arg.substring("--makefile=".length());
+                        } else if (arg.startsWith("--job=")) {
+                            jobType = arg.substring("--job=".length());
+                        } else if (arg.startsWith("--reducers=")) {
+                            reducers = Integer.parseInt(arg.substring("--reducers=".length()));
+                        } else if (arg.startsWith("--k=")) {
+                            topK = Integer.parseInt(arg.substring("--k=".length()));
+                        } else if (arg.startsWith("--precision=")) {
+                            precision = Integer.parseInt(arg.substring("--precision=".length()));
+                        } else if (arg.startsWith("--priority=")) {
+                            priority = Integer.parseInt(arg.substring("--priority=".length()));
+                        } else if (arg.startsWith("--weight=")) {
+                            weight = Double.parseDouble(arg.substring("--weight=".length()));
+                        } else {
+                            inputFile = arg;
+                        }
+                    }
+                    String jobId = service.submit(new JobRequest(name, makefile, inputFile, jobType, reducers,
+                                                                 topK, precision, priority, weight));
+                    System.out.println("[JOBS] ✅ Submitted " + jobId);
+                    if (wait) {
+                        follow(service, jobId);
+                    }
+                    break;
+                case "status":
+                    System.out.println(service.getJob(args[2]));
+                    break;
+                case "wait":
+                    follow(service, args[2]);
+                    break;
+                case "list":
+                    for (JobInfo job : service.listJobs()) {
+                        System.out.println(job);
+                    }
+                    break;
+                default:
+                    System.err.println("[JOBS] ❌ Unknown action: " + args[1]);
+                    System.exit(1);
+            }
+        } catch (Exception e) {
+            // Errors raised by the master arrive wrapped in a ServerException
+            Throwable cause = e instanceof ServerException && e.getCause() != null ? e.getCause() : e;
+            System.err.println("[JOBS] ❌ " + cause.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints the progress of a job until it is done, then exits with 0 if it succeeded.
+     */
+    private static void follow(JobService service, String jobId) throws Exception {
+        JobInfo job = service.getJob(jobId);
+        while (!job.isDone()) {
+            System.out.println(job);
+            job = service.awaitJob(jobId, Configuration.JOB_PROGRESS_INTERVAL_MS);
+        }
+        System.out.println(job);
+        System.exit(JobInfo.SUCCEEDED.equals(job.getState()) ? 0 : 1);
+    }
+
+    /**
+     * Looks up the job service of a master.
+     * @param master The master as "host[:port]"
+     * @return The service stub
+     * @throws Exception if the master cannot be reached
+     */
+    public static JobService lookup(String master) throws Exception {
+        String hostname = master;
+        int port = Configuration.membershipPort();
+        int colon = master.lastIndexOf(':');
+        if (colon >= 0) {
+            hostname = master.substring(0, colon);
+            port = Integer.parseInt(master.substring(colon + 1).trim());
+        }
+        return (JobService) Naming.lookup(Configuration.buildRmiUrl(hostname, port, Configuration.JOB_SERVICE_NAME));
+    }
+}
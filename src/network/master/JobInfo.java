@@ -0,0 +1,117 @@
+package network.master;
+
+import java.io.Serializable;
+
+/**
+ * State and progress of a job of a running master, as returned to clients.
+ */
+public class JobInfo implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Waiting for a running job writing the same files to finish. */
+    public static final String QUEUED = "QUEUED";
+    public static final String RUNNING = "RUNNING";
+    /** Every task finished. */
+    public static final String SUCCEEDED = "SUCCEEDED";
+    /** A task failed, or the job could not be set up (see the message). */
+    public static final String FAILED = "FAILED";
+
+    private final String id;
+    private final String name;
+    private final String state;
+    private final int priority;
+    private final double weight;
+    private final int tasks;
+    private final int finished;
+    private final int failed;
+    private final int running;
+    private final long elapsedMs;
+    private final String message;
+
+    /**
+     * @param id The job id
+     * @param name The job name
+     * @param state QUEUED, RUNNING, SUCCEEDED or FAILED
+     * @param priority The job priority
+     * @param weight The job weight
+     * @param tasks Number of tasks of the job (0 until it starts)
+     * @param finished Tasks finished
+     * @param failed Tasks failed
+     * @param running Tasks launched and not done yet
+     * @param elapsedMs Time since the job started, or its run time once done
+     * @param message Why the job failed, or null
+     */
+    public JobInfo(String id, String name, String state, int priority, double weight, int tasks, int finished,
+                   int failed, int running, long elapsedMs, String message) {
+        this.id = id;
+        this.name = name;
+        this.state = state;
+        this.priority = priority;
+        this.weight = weight;
+        this.tasks = tasks;
+        this.finished = finished;
+        this.failed = failed;
+        this.running = running;
+        this.elapsedMs = elapsedMs;
+        this.message = message;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public int getTasks() {
+        return tasks;
+    }
+
+    public int getFinished() {
+        return finished;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getRunning() {
+        return running;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Checks whether the job is over.
+     * @return true if SUCCEEDED or FAILED
+     */
+    public boolean isDone() {
+        return SUCCEEDED.equals(state) || FAILED.equals(state);
+    }
+
+    @Override
+    public String toString() {
+        return id + "  " + state + "  " + name + "  (priority " + priority + ", weight " + weight + ")  " +
+               finished + "/" + tasks + " done, " + failed + " failed, " + running + " running, " +
+               elapsedMs + " ms" + (message == null ? "" : "  " + message);
+    }
+}
@@ -0,0 +1,90 @@
+package network.master;
+
+import java.io.Serializable;
+
+/**
+ * A job submitted to a running master: a Makefile, or an input file the master
+ * builds the task graph of (like the dynamic mode of scheduler.Main). Paths are
+ * relative to the master's working directory.
+ */
+public class JobRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final String makefile;
+    private final String inputFile;
+    private final String jobType;
+    private final int reducers;
+    private final int topK;
+    private final int precision;
+    private final int priority;
+    private final double weight;
+
+    /**
+     * @param name A name shown in the job list, or null for the file name
+     * @param makefile The Makefile to run, or null for an input file job
+     * @param inputFile The input file, or null for a Makefile job
+     * @param jobType The kind of input file job (--job option value), ignored for a Makefile
+     * @param reducers Reducers of a "freq" job, or 0 for one per worker
+     * @param topK Number of words of a "topk" job
+     * @param precision HyperLogLog precision of a "distinct" job
+     * @param priority Jobs of a higher priority take the free slots first
+     * @param weight Share of the slots relative to the other jobs of its priority
+     */
+    public JobRequest(String name, String makefile, String inputFile, String jobType, int reducers,
+                      int topK, int precision, int priority, double weight) {
+        this.name = name;
+        this.makefile = makefile;
+        this.inputFile = inputFile;
+        this.jobType = jobType;
+        this.reducers = reducers;
+        this.topK = topK;
+        this.precision = precision;
+        this.priority = priority;
+        this.weight = weight;
+    }
+
+    public String getName() {
+        if (name != null && !name.trim().isEmpty()) {
+            return name;
+        }
+        return makefile != null ? makefile : jobType + " " + inputFile;
+    }
+
+    public String getMakefile() {
+        return makefile;
+    }
+
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    public String getJobType() {
+        return jobType;
+    }
+
+    public int getReducers() {
+        return reducers;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
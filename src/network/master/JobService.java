@@ -0,0 +1,45 @@
+package network.master;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Job service of a long-running master: jobs are submitted while others run, and
+ * share the workers of the cluster.
+ */
+public interface JobService extends Remote {
+    /**
+     * Queues a job. It starts at once, unless one of it and a running or earlier
+     * job writes a file the other uses, in which case it waits for that job to finish.
+     * The files generated for an input file are named after the job ("job-3-total.txt"),
+     * so only Makefile jobs can wait for each other.
+     * @param request The job
+     * @return The job id
+     * @throws RemoteException if the request is invalid (e.g. missing file, unknown job type)
+     */
+    String submit(JobRequest request) throws RemoteException;
+
+    /**
+     * Gets the state of a job.
+     * @param jobId The job id
+     * @return The job state and progress
+     * @throws RemoteException if the job is unknown
+     */
+    JobInfo getJob(String jobId) throws RemoteException;
+
+    /**
+     * Waits for a job to finish.
+     * @param jobId The job id
+     * @param maxWaitMs Maximum time to wait
+     * @return The job state, done unless the wait timed out
+     * @throws RemoteException if the job is unknown
+     */
+    JobInfo awaitJob(String jobId, long maxWaitMs) throws RemoteException;
+
+    /**
+     * Lists the jobs, running and queued ones first, then the last finished ones.
+     * @return The jobs
+     */
+    List<JobInfo> listJobs() throws RemoteException;
+}
@@ -1,9 +1,16 @@
 package network.master;
 
-import config.Configuration;
+import cluster.ComputeNode;
+import cluster.NodeSpec;
+import network.worker.WorkerBusyException;
 import network.worker.WorkerInterface;
 
-import java.rmi.Naming;
+import java.io.IOException;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.NoSuchObjectException;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Coordinates task execution on worker nodes via RMI.
@@ -20,9 +27,29 @@ public class MasterCoordinator {
      * @param masterHostname The master hostname
      * @param taskName The name of the task (used for result retrieval)
      * @return Exit code from the command
+     * @throws WorkerBusyException if the worker refused the command because it is saturated
+     * @throws WorkerUnreachableException if the command could not be sent to the worker
      */
-    public static int executeOnWorker(String command, String workerHost, int workerPort, String masterHostname, String taskName) {
-        if (command == null || command.trim().isEmpty()) {
+    public static int executeOnWorker(String command, String workerHost, int workerPort, String masterHostname, String taskName)
+            throws WorkerBusyException, WorkerUnreachableException {
+        return executeOnWorker(Collections.singletonList(command), workerHost, workerPort, masterHostname, taskName);
+    }
+
+    /**
+     * Executes the lines of a recipe on a worker node in a single call.
+     * The lines run in order on that worker and the result is retrieved once, after the last line.
+     * @param commands The command lines
+     * @param workerHost The worker hostname
+     * @param workerPort The worker RMI port
+     * @param masterHostname The master hostname
+     * @param taskName The name of the task (used for result retrieval)
+     * @return 0 on success, else the exit code of the failing line (-1 on error)
+     * @throws WorkerBusyException if the worker refused the commands because it is saturated
+     * @throws WorkerUnreachableException if the commands could not be sent to the worker
+     */
+    public static int executeOnWorker(List<String> commands, String workerHost, int workerPort, String masterHostname,
+                                      String taskName) throws WorkerBusyException, WorkerUnreachableException {
+        if (commands == null || commands.isEmpty() || commands.stream().anyMatch(c -> c == null || c.trim().isEmpty())) {
             System.err.println("[MASTER] Invalid command");
             return -1;
         }
@@ -34,11 +61,14 @@ public class MasterCoordinator {
 
         try {
             System.out.println("[MASTER] Connecting to worker: " + workerHost + ":" + workerPort);
-            String workerUrl = Configuration.buildRmiUrl(workerHost, workerPort);
-            WorkerInterface worker = (WorkerInterface) Naming.lookup(workerUrl);
-
-            System.out.println("[MASTER] Executing on " + workerHost + ":" + workerPort + ": " + command);
-            int exitCode = worker.executeCommand(command);
+            printCommands(commands, workerHost, workerPort);
+            int exitCode;
+            try {
+                exitCode = WorkerStubs.get(workerHost, workerPort).executeCommands(commands);
+            } catch (ConnectException | ConnectIOException | NoSuchObjectException e) {
+                // Not sent: the worker is down, or restarted and must be looked up again
+                throw new WorkerUnreachableException(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
 
             if (exitCode == 0 && taskName != null) {
                 retrieveResults(taskName, workerHost, masterHostname);
@@ -46,7 +76,15 @@ public class MasterCoordinator {
 
             return exitCode;
 
+        } catch (WorkerUnreachableException e) {
+            WorkerStubs.evict(workerHost, workerPort);
+            System.out.println("[MASTER] 🔌 " + workerHost + ":" + workerPort + " is unreachable: " + e.getMessage());
+            throw e;
+        } catch (WorkerBusyException e) {
+            System.out.println("[MASTER] ⏳ " + workerHost + ":" + workerPort + " refused the command: " + e.getMessage());
+            throw e;
         } catch (Exception e) {
+            WorkerStubs.evict(workerHost, workerPort);
             System.err.println("[MASTER] Error executing on worker " + workerHost + ": " + e.getMessage());
             e.printStackTrace();
             return -1;
@@ -54,9 +92,210 @@ public class MasterCoordinator {
     }
 
     /**
-     * Retrieves result files from the worker back to master.
+     * Executes a command on a worker under an admission lease opened with openLease.
+     * @param command The command to execute
+     * @param workerHost The worker hostname
+     * @param workerPort The worker RMI port
+     * @param masterHostname The master hostname
+     * @param taskName The name of the task (used for result retrieval), or null
+     * @param lease The lease id
+     * @return Exit code from the command, or -1 on error
+     */
+    public static int executeOnWorker(String command, String workerHost, int workerPort, String masterHostname,
+                                      String taskName, String lease) {
+        return executeOnWorker(Collections.singletonList(command), workerHost, workerPort, masterHostname, taskName, lease);
+    }
+
+    /**
+     * Executes the lines of a recipe in a single call under an admission lease.
+     * @param commands The command lines
+     * @param workerHost The worker hostname
+     * @param workerPort The worker RMI port
+     * @param masterHostname The master hostname
+     * @param taskName The name of the task (used for result retrieval), or null
+     * @param lease The lease id
+     * @return 0 on success, else the exit code of the failing line (-1 on error)
+     */
+    public static int executeOnWorker(List<String> commands, String workerHost, int workerPort, String masterHostname,
+                                      String taskName, String lease) {
+        try {
+            WorkerInterface worker = WorkerStubs.get(workerHost, workerPort);
+            printCommands(commands, workerHost, workerPort);
+            int exitCode = worker.executeCommands(commands, lease);
+
+            if (exitCode == 0 && taskName != null) {
+                retrieveResults(taskName, workerHost, masterHostname);
+            }
+            return exitCode;
+
+        } catch (Exception e) {
+            WorkerStubs.evict(workerHost, workerPort);
+            System.err.println("[MASTER] Error executing on worker " + workerHost + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static void printCommands(List<String> commands, String workerHost, int workerPort) {
+        if (commands.size() == 1) {
+            System.out.println("[MASTER] Executing on " + workerHost + ":" + workerPort + ": " + commands.get(0));
+            return;
+        }
+        System.out.println("[MASTER] Executing " + commands.size() + " commands on " + workerHost + ":" + workerPort + ":");
+        for (String command : commands) {
+            System.out.println("[MASTER]   " + command);
+        }
+    }
+
+    /**
+     * Opens an admission lease on a worker, admitting a group of concurrent commands as one task.
+     * @param owner Name of the task
+     * @param workerHost The worker hostname
+     * @param workerPort The worker RMI port
+     * @return The lease id
+     * @throws WorkerBusyException if the worker is saturated
+     * @throws WorkerUnreachableException if the worker is down or restarted
+     * @throws IOException if the worker cannot be reached for another reason
+     */
+    public static String openLease(String owner, String workerHost, int workerPort)
+            throws WorkerBusyException, WorkerUnreachableException, IOException {
+        try {
+            return WorkerStubs.get(workerHost, workerPort).openLease(owner);
+        } catch (ConnectException | ConnectIOException | NoSuchObjectException e) {
+            WorkerStubs.evict(workerHost, workerPort);
+            System.out.println("[MASTER] 🔌 " + workerHost + ":" + workerPort + " is unreachable: " + e.getMessage());
+            throw new WorkerUnreachableException(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+        } catch (WorkerBusyException e) {
+            System.out.println("[MASTER] ⏳ " + workerHost + ":" + workerPort + " refused " + owner + ": " + e.getMessage());
+            throw e;
+        } catch (IOException e) {
+            WorkerStubs.evict(workerHost, workerPort);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes an admission lease. Failures are only reported: the worker reclaims idle leases.
+     * @param lease The lease id
+     * @param workerHost The worker hostname
+     * @param workerPort The worker RMI port
+     */
+    public static void closeLease(String lease, String workerHost, int workerPort) {
+        try {
+            WorkerStubs.get(workerHost, workerPort).closeLease(lease);
+        } catch (Exception e) {
+            WorkerStubs.evict(workerHost, workerPort);
+            System.err.println("[MASTER] ⚠️  Could not close lease " + lease + " on " + workerHost + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forwards a file directly from the worker that produced it to the worker that consumes it.
+     * The master only issues the request; the bytes travel worker-to-worker.
+     * @param fileName The file to forward
+     * @param sourceHost The producing worker hostname
+     * @param sourcePort The producing worker RMI port
+     * @param targetHost The consuming worker hostname
+     * @param targetPort The consuming worker RMI port
+     * @return The number of bytes forwarded, or -1 if the file could not be forwarded
+     */
+    public static long forwardFile(String fileName, String sourceHost, int sourcePort,
+                                      String targetHost, int targetPort) {
+        try {
+            System.out.println("[MASTER] Forwarding " + fileName + ": " + sourceHost + ":" + sourcePort +
+                               " → " + targetHost + ":" + targetPort);
+            long bytes = WorkerStubs.get(sourceHost, sourcePort).pushFile(fileName, targetHost, targetPort);
+            System.out.println("[MASTER] ✅ Forwarded " + fileName + " (" + bytes + " bytes)");
+            return bytes;
+        } catch (Exception e) {
+            WorkerStubs.evict(sourceHost, sourcePort);
+            System.err.println("[MASTER] ⚠️  Could not forward " + fileName + " from " + sourceHost + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Asks a worker to reduce files it holds and return the partial result.
+     * @param fileNames Files on the worker
+     * @param operation Reduce operation name
+     * @param workerHost The worker hostname
+     * @param workerPort The worker RMI port
+     * @return The partial result
+     * @throws IOException if the worker cannot be reached or the reduction fails
+     */
+    public static long reduceOnWorker(List<String> fileNames, String operation, String workerHost, int workerPort)
+            throws IOException {
+        try {
+            return WorkerStubs.get(workerHost, workerPort).reduceFiles(fileNames, operation);
+        } catch (IOException e) {
+            WorkerStubs.evict(workerHost, workerPort);
+            throw e;
+        }
+    }
+
+    /**
+     * Reduces files on a worker and leaves the result in a file of that worker.
+     * @param fileNames Files in the worker's working directory
+     * @param operation Reduce operation name
+     * @param outputFile File written on the worker
+     * @param workerHost The worker hostname
+     * @param workerPort The worker RMI port
+     * @return The partial result
+     * @throws IOException if the worker cannot be reached or the reduction fails
+     */
+    public static long reduceOnWorker(List<String> fileNames, String operation, String outputFile,
+                                      String workerHost, int workerPort) throws IOException {
+        try {
+            return WorkerStubs.get(workerHost, workerPort).reduceFilesTo(fileNames, operation, outputFile);
+        } catch (IOException e) {
+            WorkerStubs.evict(workerHost, workerPort);
+            throw e;
+        }
+    }
+
+    /**
+     * Asks a worker for its resources, for nodes given with "auto" slots
+     * (the cluster.NodeProbe of the master).
+     * @param spec The node
+     * @return The node with the worker's processors as slots, and its memory unless already given
+     * @throws IOException if the worker cannot be reached
      */
-    private static void retrieveResults(String taskName, String workerHost, String masterHost) {
+    public static NodeSpec probeNode(NodeSpec spec) throws IOException {
+        try {
+            WorkerInterface worker = WorkerStubs.get(spec.hostname, spec.port);
+            int slots = Math.max(1, worker.getAvailableProcessors());
+            long memoryMb = spec.memoryMb > 0 ? spec.memoryMb : worker.getMemoryMb();
+            return new NodeSpec(spec.hostname, spec.port, spec.site, slots, memoryMb);
+        } catch (IOException e) {
+            WorkerStubs.evict(spec.hostname, spec.port);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes files from a worker's working directory.
+     * @param fileNames Files in the worker's working directory
+     * @param workerHost The worker hostname
+     * @param workerPort The worker RMI port
+     * @return Number of files deleted
+     * @throws IOException if the worker cannot be reached
+     */
+    public static int deleteOnWorker(List<String> fileNames, String workerHost, int workerPort) throws IOException {
+        try {
+            return WorkerStubs.get(workerHost, workerPort).deleteFiles(fileNames);
+        } catch (IOException e) {
+            WorkerStubs.evict(workerHost, workerPort);
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves a result file from the worker back to master.
+     * Names without an extension are treated as phony targets and skipped.
+     * @param taskName The file to retrieve
+     * @param workerHost The worker holding the file
+     * @param masterHost The master hostname
+     */
+    public static void retrieveResults(String taskName, String workerHost, String masterHost) {
         try {
             if (taskName != null && taskName.contains(".")) {
                 System.out.println("[MASTER] Retrieving result: " + taskName);
@@ -78,8 +317,8 @@ public class MasterCoordinator {
         }
 
         // Skip transfer if both hosts are localhost (file is already accessible)
-        boolean sourceIsLocal = isLocalhost(sourceHost);
-        boolean destIsLocal = isLocalhost(destHost);
+        boolean sourceIsLocal = ComputeNode.isLocalHost(sourceHost);
+        boolean destIsLocal = ComputeNode.isLocalHost(destHost);
 
         if (sourceIsLocal && destIsLocal) {
             System.out.println("[MASTER] ✅ File available locally: " + filename);
@@ -114,16 +353,4 @@ public class MasterCoordinator {
             e.printStackTrace();
         }
     }
-
-    /**
-     * Checks if a hostname refers to localhost.
-     */
-    private static boolean isLocalhost(String hostname) {
-        if (hostname == null) return false;
-        String normalized = hostname.trim().toLowerCase();
-        return normalized.equals("localhost") ||
-               normalized.equals("127.0.0.1") ||
-               normalized.equals("::1") ||
-               normalized.equals("0.0.0.0");
-    }
 }
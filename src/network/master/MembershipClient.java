@@ -0,0 +1,79 @@
+package network.master;
+
+import config.Configuration;
+
+import java.rmi.Naming;
+import java.rmi.ServerException;
+
+/**
+ * Command-line client of a running master's membership service, e.g. to add nodes
+ * obtained during a reservation or to release nodes about to be preempted.
+ */
+public class MembershipClient {
+
+    private MembershipClient() {
+        // Command-line tool
+    }
+
+    /**
+     * Usage: java network.master.MembershipClient &lt;master[:port]&gt; join|leave|list [node] [--wait]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || (!args[1].equals("list") && args.length < 3)) {
+            System.err.println("Usage: java network.master.MembershipClient <master[:port]> join <host[:port][@site][/slots[:mem]]>");
+            System.err.println("       java network.master.MembershipClient <master[:port]> leave <host[:port]> [--wait]");
+            System.err.println("       java network.master.MembershipClient <master[:port]> list");
+            System.err.println("  port: Membership port of the master (-Dwordcount.membership.port, default " +
+                               Configuration.DEFAULT_MEMBERSHIP_PORT + ")");
+            System.exit(1);
+        }
+
+        try {
+            MembershipService service = lookup(args[0]);
+            switch (args[1]) {
+                case "join":
+                    System.out.println("[MEMBERSHIP] ✅ " + service.join(args[2]) + " joined");
+                    break;
+                case "leave":
+                    boolean wait = args.length > 3 && args[3].equals("--wait");
+                    if (service.leave(args[2], wait)) {
+                        System.out.println("[MEMBERSHIP] ✅ " + args[2] + " left");
+                    } else {
+                        System.out.println("[MEMBERSHIP] ⏳ " + args[2] + " is draining");
+                    }
+                    break;
+                case "list":
+                    for (String member : service.getMembers()) {
+                        System.out.println(member);
+                    }
+                    break;
+                default:
+                    System.err.println("[MEMBERSHIP] ❌ Unknown action: " + args[1]);
+                    System.exit(1);
+            }
+        } catch (Exception e) {
+            // Errors raised by the master arrive wrapped in a ServerException
+            Throwable cause = e instanceof ServerException && e.getCause() != null ? e.getCause() : e;
+            System.err.println("[MEMBERSHIP] ❌ " + cause.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Looks up the membership service of a master.
+     * @param master The master as "host[:port]"
+     * @return The service stub
+     * @throws Exception if the master cannot be reached
+     */
+    public static MembershipService lookup(String master) throws Exception {
+        String hostname = master;
+        int port = Configuration.membershipPort();
+        int colon = master.lastIndexOf(':');
+        if (colon >= 0) {
+            hostname = master.substring(0, colon);
+            port = Integer.parseInt(master.substring(colon + 1).trim());
+        }
+        return (MembershipService) Naming.lookup(
+            Configuration.buildRmiUrl(hostname, port, Configuration.MEMBERSHIP_SERVICE_NAME));
+    }
+}
@@ -0,0 +1,380 @@
+package network.master;
+
+import cluster.ClusterManager;
+import cluster.ComputeNode;
+import config.Configuration;
+
+import java.io.File;
+import java.io.IOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Membership service exported by the master on its own RMI registry
+ * (-Dwordcount.membership.port). Joins and leaves only touch the ClusterManager,
+ * which tells the work queues; drains run in the background.
+ *
+ * Workers started with -Dwordcount.master register themselves: the call only queues
+ * the registration, and a pool checks and adds the workers in parallel, caching the
+ * stubs they hand in. Every member is also health-checked periodically, in parallel; a
+ * worker that misses HEALTH_CHECK_FAILURES checks in a row is removed.
+ */
+public class MembershipServer extends UnicastRemoteObject implements MembershipService {
+    private static final long serialVersionUID = 1L;
+
+    private final transient ClusterManager clusterManager;
+    private final transient Map<ComputeNode, Future<Boolean>> leaving = new ConcurrentHashMap<>();
+    private final transient ExecutorService drainer = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "membership-drain");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final transient Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final transient Map<ComputeNode, List<String>> capabilities = new ConcurrentHashMap<>();
+    private final transient Map<ComputeNode, Integer> missedChecks = new ConcurrentHashMap<>();
+    private final transient ExecutorService admitter = Executors.newFixedThreadPool(Configuration.REGISTRATION_THREADS, r -> {
+        Thread thread = new Thread(r, "membership-admit");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Apart from admissions, so a burst of registrations never delays a ping past its timeout
+    private final transient ExecutorService checker = Executors.newFixedThreadPool(Configuration.REGISTRATION_THREADS, r -> {
+        Thread thread = new Thread(r, "membership-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final transient ScheduledExecutorService healthTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "health-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private transient Registry registry;
+
+    private MembershipServer(ClusterManager clusterManager) throws RemoteException {
+        super();
+        this.clusterManager = clusterManager;
+    }
+
+    /**
+     * Exports the membership service of a cluster.
+     * @param clusterManager The cluster of the running job
+     * @param port Port of the registry created for the service
+     * @return The running server
+     * @throws RemoteException if the registry cannot be created
+     */
+    public static MembershipServer start(ClusterManager clusterManager, int port) throws RemoteException {
+        MembershipServer server = new MembershipServer(clusterManager);
+        try {
+            server.registry = LocateRegistry.createRegistry(port);
+            server.registry.rebind(Configuration.MEMBERSHIP_SERVICE_NAME, server);
+        } catch (RemoteException e) {
+            server.stop();
+            throw e;
+        }
+        server.healthTimer.scheduleWithFixedDelay(server::checkHealth, Configuration.HEALTH_CHECK_INTERVAL_MS,
+                                                  Configuration.HEALTH_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        System.out.println("[MEMBERSHIP] ✅ Workers can register, join or leave on port " + port);
+        return server;
+    }
+
+    /**
+     * Exports another service of the master on the membership registry, so clients
+     * reach the whole master on one port.
+     * @param name The name of the service
+     * @param service The exported service
+     * @throws RemoteException if the service cannot be bound
+     */
+    public void bind(String name, Remote service) throws RemoteException {
+        registry.rebind(name, service);
+    }
+
+    /**
+     * Stops accepting joins and leaves. Drains in progress are abandoned.
+     */
+    public void stop() {
+        healthTimer.shutdownNow();
+        admitter.shutdownNow();
+        checker.shutdownNow();
+        drainer.shutdownNow();
+        try {
+            if (registry != null) {
+                UnicastRemoteObject.unexportObject(registry, true);
+            }
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            // Already stopped
+        }
+    }
+
+    @Override
+    public String join(String nodeSpec) throws RemoteException {
+        ComputeNode node;
+        try {
+            node = clusterManager.createNode(nodeSpec == null ? "" : nodeSpec);
+            if (clusterManager.findNode(node.hostname, node.port) != null) {
+                throw new IllegalArgumentException(node.hostname + ":" + node.port + " is already a member");
+            }
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage());
+        }
+        System.out.println("[MEMBERSHIP] " + node.hostname + ":" + node.port + " asks to join");
+
+        try {
+            admitWithSharedFiles(node);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage());
+        }
+        return node.hostname + ":" + node.port;
+    }
+
+    @Override
+    public boolean register(WorkerRegistration registration) throws RemoteException {
+        if (registration == null || registration.getWorker() == null || registration.getHostname() == null ||
+            registration.getHostname().trim().isEmpty()) {
+            throw new RemoteException("Invalid registration: hostname and stub are required");
+        }
+        if (registration.getSlots() < 1 || registration.getMemoryMb() < 0) {
+            throw new RemoteException("Invalid registration of " + registration + ": " + registration.getSlots() +
+                                      " slot(s), " + registration.getMemoryMb() + " MB");
+        }
+        ComputeNode member = clusterManager.findNode(registration.getHostname(), registration.getPort());
+        if (member != null && !member.isDraining()) {
+            WorkerStubs.put(member.hostname, member.port, registration.getWorker());
+            missedChecks.remove(member);
+            return false;
+        }
+        if (pending.add(registration.toString())) {
+            admitter.submit(() -> admit(registration));
+        }
+        return true;
+    }
+
+    /**
+     * Checks that the master reaches a registered worker, then adds it to the cluster.
+     */
+    private void admit(WorkerRegistration registration) {
+        try {
+            registration.getWorker().getAvailableProcessors();
+            ComputeNode node = new ComputeNode(registration.getHostname(), registration.getPort(), registration.getSite(),
+                                               Math.min(registration.getSlots(), Configuration.MAX_NODE_SLOTS),
+                                               registration.getMemoryMb());
+            WorkerStubs.put(node.hostname, node.port, registration.getWorker());
+            admitWithSharedFiles(node);
+            if (!registration.getCapabilities().isEmpty()) {
+                capabilities.put(node, registration.getCapabilities());
+            }
+        } catch (Exception e) {
+            System.err.println("[MEMBERSHIP] ❌ Could not admit " + registration + ": " + e.getMessage());
+        } finally {
+            pending.remove(registration.toString());
+        }
+    }
+
+    /**
+     * Ships the shared files to a node, then adds it to the cluster. A file shared
+     * while the others were shipped is shipped too before the node is added.
+     */
+    private void admitWithSharedFiles(ComputeNode node) throws IOException {
+        Set<String> shipped = new HashSet<>();
+        do {
+            shipSharedFiles(node, shipped);
+        } while (!clusterManager.addNode(node, shipped));
+    }
+
+    /**
+     * Ships the files broadcast to its site (split files, partition plan) to a new
+     * node; they must be there before it takes any task.
+     * @param shipped The files already shipped to it, completed with the new ones
+     */
+    private void shipSharedFiles(ComputeNode node, Set<String> shipped) throws IOException {
+        for (String file : clusterManager.getSharedFiles(node)) {
+            // Files already cleaned up by their job need not be shipped either
+            if (!shipped.add(file) || !new File(file).isFile()) {
+                continue;
+            }
+            try {
+                ArtifactBroadcaster.broadcast(file, Collections.singletonList(node));
+            } catch (IOException e) {
+                throw new IOException("Could not ship " + file + " to " + node.hostname + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Pings every member in parallel and removes those that missed too many checks.
+     * Nodes already leaving are left to their drain.
+     */
+    private void checkHealth() {
+        Map<ComputeNode, Future<Integer>> pings = new LinkedHashMap<>();
+        synchronized (clusterManager.getNodes()) {
+            for (ComputeNode node : clusterManager.getNodes()) {
+                if (!node.isDraining()) {
+                    pings.put(node, checker.submit(() -> WorkerStubs.get(node.hostname, node.port).getAvailableProcessors()));
+                }
+            }
+        }
+        long deadline = System.currentTimeMillis() + Configuration.HEALTH_CHECK_TIMEOUT_MS;
+        for (Map.Entry<ComputeNode, Future<Integer>> ping : pings.entrySet()) {
+            ComputeNode node = ping.getKey();
+            try {
+                ping.getValue().get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                missedChecks.remove(node);
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                ping.getValue().cancel(true);
+                WorkerStubs.evict(node.hostname, node.port);
+            }
+            int missed = missedChecks.merge(node, 1, Integer::sum);
+            if (missed < Configuration.HEALTH_CHECK_FAILURES) {
+                continue;
+            }
+            if (successor(node, true) == null && successor(node, false) == null) {
+                System.err.println("[MEMBERSHIP] ⚠️  " + node.hostname + ":" + node.port + " missed " + missed +
+                                   " health checks but is the last worker");
+                continue;
+            }
+            System.err.println("[MEMBERSHIP] 💀 " + node.hostname + ":" + node.port + " missed " + missed +
+                               " health checks, removing it");
+            clusterManager.drainNode(node);
+            clusterManager.removeNode(node);
+            missedChecks.remove(node);
+            capabilities.remove(node);
+        }
+    }
+
+    @Override
+    public boolean leave(String member, boolean wait) throws RemoteException {
+        ComputeNode node = findMember(member);
+        if (!node.isDraining() && successor(node, true) == null && successor(node, false) == null) {
+            throw new RemoteException(member + " is the last worker and cannot leave");
+        }
+        Future<Boolean> drain = leaving.computeIfAbsent(node, n -> drainer.submit(() -> drain(n)));
+        if (!wait) {
+            return drain.isDone();
+        }
+        try {
+            return drain.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while draining " + member, e);
+        } catch (ExecutionException e) {
+            throw new RemoteException("Drain of " + member + " failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    @Override
+    public List<String> getMembers() {
+        List<String> members = new ArrayList<>();
+        synchronized (clusterManager.getNodes()) {
+            for (ComputeNode node : clusterManager.getNodes()) {
+                List<String> offered = capabilities.get(node);
+                members.add(node.hostname + ":" + node.port + "@" + node.site + "/" + node.getSlots() +
+                            (offered != null ? " " + offered : "") + (node.isDraining() ? " (draining)" : ""));
+            }
+        }
+        return members;
+    }
+
+    private ComputeNode findMember(String member) throws RemoteException {
+        String spec = member == null ? "" : member.trim();
+        String hostname = spec;
+        int port = Configuration.RMI_REGISTRY_PORT;
+        int colon = spec.lastIndexOf(':');
+        if (colon >= 0) {
+            hostname = spec.substring(0, colon);
+            try {
+                port = Integer.parseInt(spec.substring(colon + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new RemoteException("Invalid port number in: " + member);
+            }
+        }
+        ComputeNode node = clusterManager.findNode(hostname, port);
+        if (node == null) {
+            throw new RemoteException(spec + " is not a member");
+        }
+        return node;
+    }
+
+    /**
+     * Drains a node, moves the outputs only it holds to another worker, then removes it.
+     */
+    private boolean drain(ComputeNode node) throws InterruptedException {
+        try {
+            clusterManager.drainNode(node);
+            if (!clusterManager.awaitIdle(node, Configuration.SCHEDULER_TIMEOUT_HOURS * 3600_000L)) {
+                System.err.println("[MEMBERSHIP] ⚠️  " + node.hostname + ":" + node.port + " still busy, removing it anyway");
+            }
+            ComputeNode sibling = successor(node, true);
+            for (String file : clusterManager.getFilesOnlyOn(node)) {
+                if (sibling != null) {
+                    // Same host, same disk: the file stays where it is
+                    clusterManager.recordFileReplica(file, sibling);
+                    continue;
+                }
+                ComputeNode target = successor(node, false);
+                if (target == null) {
+                    System.err.println("[MEMBERSHIP] ⚠️  No worker left to keep " + file);
+                    break;
+                }
+                long bytes = MasterCoordinator.forwardFile(file, node.hostname, node.port, target.hostname, target.port);
+                if (bytes >= 0) {
+                    clusterManager.recordFileReplica(file, target);
+                    clusterManager.getTransferStats().record(node, target, bytes);
+                }
+            }
+            clusterManager.removeNode(node);
+            capabilities.remove(node);
+            return true;
+        } finally {
+            leaving.remove(node);
+        }
+    }
+
+    /**
+     * Picks the worker inheriting the files of a leaving node.
+     * @param sameHost Whether to look for a worker sharing its host (and disk), else for
+     *        another host, of the same site if possible
+     */
+    private ComputeNode successor(ComputeNode leavingNode, boolean sameHost) {
+        ComputeNode fallback = null;
+        synchronized (clusterManager.getNodes()) {
+            for (ComputeNode node : clusterManager.getNodes()) {
+                if (node.isDraining() || node.hostname.equals(leavingNode.hostname) != sameHost) {
+                    continue;
+                }
+                if (sameHost) {
+                    return node;
+                }
+                if (node.site.equals(leavingNode.site)) {
+                    return node;
+                }
+                if (fallback == null) {
+                    fallback = node;
+                }
+            }
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,49 @@
+package network.master;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Membership service of a running master: workers join and leave the cluster
+ * while a job runs.
+ */
+public interface MembershipService extends Remote {
+    /**
+     * Adds a worker to the cluster. It receives the files every worker holds, then
+     * starts taking queued tasks right away.
+     * @param nodeSpec The worker as "host[:port][@site][/slots[:mem]]"
+     * @return The member id, "host:port"
+     * @throws RemoteException if the spec is invalid, the worker is already a member,
+     *         or the shared files cannot be shipped to it
+     */
+    String join(String nodeSpec) throws RemoteException;
+
+    /**
+     * Registers a worker announcing itself at boot. Returns at once: the master checks
+     * the worker and adds it in the background, so thousands can register together.
+     * @param registration What the worker offers, with its stub
+     * @return true if the registration was queued, false if the worker already is a
+     *         member (its stub is refreshed, e.g. after a restart)
+     * @throws RemoteException if the registration is invalid
+     */
+    boolean register(WorkerRegistration registration) throws RemoteException;
+
+    /**
+     * Removes a worker gracefully: it takes no new task, its queued tasks go to other
+     * workers, and once its running tasks are done the outputs only it holds are
+     * copied to another worker of its site before it is removed.
+     * @param member The worker as "host[:port]"
+     * @param wait Whether to return only once the worker is removed
+     * @return true if the worker was removed, false if it is still draining
+     * @throws RemoteException if the worker is not a member, or the drain failed
+     */
+    boolean leave(String member, boolean wait) throws RemoteException;
+
+    /**
+     * Lists the workers of the cluster.
+     * @return One line per worker: "host:port@site/slots", then its capabilities if it
+     *         announced some, and "(draining)" if leaving
+     */
+    List<String> getMembers() throws RemoteException;
+}
@@ -0,0 +1,77 @@
+package network.master;
+
+import network.worker.WorkerInterface;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a worker announces when it registers with the master: where it is, what it
+ * offers, and its own stub, so the master never has to look it up.
+ */
+public class WorkerRegistration implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String hostname;
+    private final int port;
+    private final String site;
+    private final int slots;
+    private final long memoryMb;
+    private final List<String> capabilities;
+    private final WorkerInterface worker;
+
+    /**
+     * @param hostname The worker hostname, as the master must reach it
+     * @param port The worker RMI port
+     * @param site The site of the worker, or null to derive it from the hostname
+     * @param slots The number of tasks the worker runs concurrently
+     * @param memoryMb The memory of the worker in MB, or 0 if unknown
+     * @param capabilities Free-form capabilities of the worker (e.g. "gpu")
+     * @param worker The worker's stub
+     */
+    public WorkerRegistration(String hostname, int port, String site, int slots, long memoryMb,
+                              List<String> capabilities, WorkerInterface worker) {
+        this.hostname = hostname;
+        this.port = port;
+        this.site = site;
+        this.slots = slots;
+        this.memoryMb = memoryMb;
+        this.capabilities = capabilities == null ? Collections.emptyList() : new ArrayList<>(capabilities);
+        this.worker = worker;
+    }
+
+    public String getHostname() {
+        return hostname;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getSite() {
+        return site;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public long getMemoryMb() {
+        return memoryMb;
+    }
+
+    public List<String> getCapabilities() {
+        return Collections.unmodifiableList(capabilities);
+    }
+
+    public WorkerInterface getWorker() {
+        return worker;
+    }
+
+    @Override
+    public String toString() {
+        return hostname + ":" + port;
+    }
+}
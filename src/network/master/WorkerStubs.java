@@ -0,0 +1,66 @@
+package network.master;
+
+import config.Configuration;
+import network.worker.WorkerInterface;
+
+import java.io.IOException;
+import java.rmi.Naming;
+import java.rmi.NotBoundException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of worker stubs, so the master looks each worker up once instead of once per
+ * call. Workers that register themselves hand in their stub and are never looked up;
+ * a stub that failed is evicted and looked up again on next use.
+ */
+public final class WorkerStubs {
+    private static final Map<String, WorkerInterface> stubs = new ConcurrentHashMap<>();
+
+    private WorkerStubs() {
+        // Static cache
+    }
+
+    /**
+     * Gets the stub of a worker, looking it up in the worker's registry if not cached.
+     * @param workerHost The worker hostname
+     * @param workerPort The worker RMI port
+     * @return The stub
+     * @throws IOException if the worker cannot be reached or is not bound
+     */
+    public static WorkerInterface get(String workerHost, int workerPort) throws IOException {
+        String key = workerHost + ":" + workerPort;
+        WorkerInterface stub = stubs.get(key);
+        if (stub != null) {
+            return stub;
+        }
+        try {
+            stub = (WorkerInterface) Naming.lookup(Configuration.buildRmiUrl(workerHost, workerPort));
+        } catch (NotBoundException e) {
+            throw new IOException("Worker not bound: " + key, e);
+        }
+        WorkerInterface previous = stubs.putIfAbsent(key, stub);
+        return previous != null ? previous : stub;
+    }
+
+    /**
+     * Caches the stub a worker handed in when registering.
+     * @param workerHost The worker hostname
+     * @param workerPort The worker RMI port
+     * @param stub The stub
+     */
+    public static void put(String workerHost, int workerPort, WorkerInterface stub) {
+        if (stub != null) {
+            stubs.put(workerHost + ":" + workerPort, stub);
+        }
+    }
+
+    /**
+     * Forgets the stub of a worker after a failed call, e.g. because it restarted.
+     * @param workerHost The worker hostname
+     * @param workerPort The worker RMI port
+     */
+    public static void evict(String workerHost, int workerPort) {
+        stubs.remove(workerHost + ":" + workerPort);
+    }
+}
@@ -0,0 +1,19 @@
+package network.master;
+
+/**
+ * Thrown by the master when a worker cannot be reached before a command is sent,
+ * e.g. because it died or restarted. Unlike a refusal from a saturated worker
+ * (network.worker.WorkerBusyException), the worker may never come back: the
+ * command did not run and should go to another worker, if any is left, while
+ * this one waits for the health checks to remove it or find it again.
+ */
+public class WorkerUnreachableException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message Why the worker could not be reached
+     */
+    public WorkerUnreachableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,214 @@
+package network.worker;
+
+import config.Configuration;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control of one worker.
+ * At most maxTasks commands run at once; further commands wait in a bounded queue
+ * for a slot and are refused with a WorkerBusyException once the queue is full or
+ * the wait is too long. While the worker already runs something, a command is also
+ * refused when available memory or the load average crosses its limit, so several
+ * masters cannot push a node into swapping. An idle worker always admits one command.
+ *
+ * A lease admits a group of commands as a single task, e.g. the stages of a
+ * streaming pipeline, which run concurrently and must not wait for each other's slot.
+ */
+class AdmissionController {
+
+    /**
+     * An open lease: it holds one slot until closed.
+     */
+    private static final class Lease {
+        final long openedAt = System.currentTimeMillis();
+        final AtomicInteger active = new AtomicInteger();
+        volatile long lastUsed = openedAt;
+    }
+
+    private final int maxTasks;
+    private final int maxQueued;
+    private final Semaphore slots;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final AtomicLong leaseIds = new AtomicLong();
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private volatile double averageTaskMs = Configuration.WORKER_RETRY_AFTER_MIN_MS;
+
+    /**
+     * @param maxTasks Commands (or leases) running at once
+     * @param maxQueued Commands allowed to wait for a slot
+     */
+    AdmissionController(int maxTasks, int maxQueued) {
+        if (maxTasks < 1) {
+            throw new IllegalArgumentException("Max tasks must be at least 1");
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("Max queued commands cannot be negative");
+        }
+        this.maxTasks = maxTasks;
+        this.maxQueued = maxQueued;
+        this.slots = new Semaphore(maxTasks, true);
+    }
+
+    int getMaxTasks() {
+        return maxTasks;
+    }
+
+    int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * Takes a slot, waiting in the queue if all are busy.
+     * @param what Description of the work, for the log
+     * @throws WorkerBusyException if the worker is saturated
+     * @throws InterruptedException if interrupted while queued
+     */
+    void admit(String what) throws WorkerBusyException, InterruptedException {
+        reclaimIdleLeases();
+        if (slots.availablePermits() < maxTasks) {
+            checkResources(what);
+        }
+        if (slots.tryAcquire()) {
+            return;
+        }
+        if (waiting.incrementAndGet() > maxQueued) {
+            waiting.decrementAndGet();
+            throw refuse(what, "all " + maxTasks + " slot(s) busy and " + maxQueued + " command(s) queued");
+        }
+        try {
+            if (!slots.tryAcquire(Configuration.WORKER_ADMISSION_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                throw refuse(what, "no slot freed within " + Configuration.WORKER_ADMISSION_WAIT_MS + " ms");
+            }
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns a slot taken by admit().
+     * @param durationMs How long the work ran, used to estimate retry delays
+     */
+    void release(long durationMs) {
+        averageTaskMs = 0.8 * averageTaskMs + 0.2 * durationMs;
+        slots.release();
+    }
+
+    /**
+     * Admits a group of commands as one task.
+     * @param owner Name of the task, for the log
+     * @return The lease id to pass along with each command of the group
+     * @throws WorkerBusyException if the worker is saturated
+     * @throws InterruptedException if interrupted while queued
+     */
+    String openLease(String owner) throws WorkerBusyException, InterruptedException {
+        admit(owner);
+        String id = owner + "#" + leaseIds.incrementAndGet();
+        leases.put(id, new Lease());
+        return id;
+    }
+
+    /**
+     * Marks the start of a command running under a lease.
+     * @param id The lease id
+     * @throws IllegalArgumentException if the lease is unknown or was closed
+     */
+    void enterLease(String id) {
+        Lease lease = leases.get(id);
+        if (lease == null) {
+            throw new IllegalArgumentException("Unknown admission lease: " + id);
+        }
+        lease.active.incrementAndGet();
+        lease.lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Marks the end of a command running under a lease.
+     * @param id The lease id
+     */
+    void exitLease(String id) {
+        Lease lease = leases.get(id);
+        if (lease != null) {
+            lease.lastUsed = System.currentTimeMillis();
+            lease.active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Closes a lease and frees its slot. Closing an unknown lease does nothing.
+     * @param id The lease id
+     */
+    void closeLease(String id) {
+        Lease lease = leases.remove(id);
+        if (lease != null) {
+            release(System.currentTimeMillis() - lease.openedAt);
+        }
+    }
+
+    /**
+     * Frees the slots of leases left open by a master that went away.
+     */
+    private void reclaimIdleLeases() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<String, Lease>> it = leases.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Lease> entry = it.next();
+            Lease lease = entry.getValue();
+            if (lease.active.get() == 0 && now - lease.lastUsed > Configuration.WORKER_LEASE_IDLE_TIMEOUT_MS &&
+                leases.remove(entry.getKey(), lease)) {
+                System.out.println("[WORKER] ⚠️  Reclaimed idle admission lease " + entry.getKey());
+                slots.release();
+            }
+        }
+    }
+
+    private void checkResources(String what) throws WorkerBusyException {
+        long availableMb = meminfoMb("MemAvailable");
+        if (availableMb >= 0 && availableMb < Configuration.WORKER_MIN_FREE_MEMORY_MB) {
+            throw refuse(what, "only " + availableMb + " MB of memory available");
+        }
+        double load = os.getSystemLoadAverage() / os.getAvailableProcessors();
+        if (load > Configuration.WORKER_MAX_LOAD_PER_CPU) {
+            throw refuse(what, String.format("load average %.2f per CPU", load));
+        }
+    }
+
+    private WorkerBusyException refuse(String what, String reason) {
+        long retryAfter = (long) (averageTaskMs * (waiting.get() + 1) / maxTasks);
+        retryAfter = Math.max(Configuration.WORKER_RETRY_AFTER_MIN_MS,
+                              Math.min(Configuration.WORKER_RETRY_AFTER_MAX_MS, retryAfter));
+        System.out.println("[WORKER] ⏳ Refusing " + what + ": " + reason + " (retry after " + retryAfter + " ms)");
+        return new WorkerBusyException("Worker saturated: " + reason, retryAfter);
+    }
+
+    /**
+     * Reads a field of /proc/meminfo, e.g. MemTotal or MemAvailable (free memory plus
+     * reclaimable caches).
+     * @param field The field name
+     * @return The value in MB, or -1 if unknown
+     */
+    static long meminfoMb(String field) {
+        try (BufferedReader reader = new BufferedReader(new FileReader("/proc/meminfo"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(field + ":")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not Linux, or an old kernel: memory is not checked
+        }
+        return -1;
+    }
+}
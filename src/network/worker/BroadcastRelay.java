@@ -0,0 +1,213 @@
+package network.worker;
+
+import config.Configuration;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.rmi.Naming;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Worker-side state of one broadcast session.
+ * Each received chunk is written to a temporary file and relayed to the child
+ * workers in order, so the artifact is pipelined through the chain instead of
+ * being pushed N times by the master.
+ */
+class BroadcastRelay {
+    private final String fileName;
+    private final boolean executable;
+    private final File tempFile;
+    private final OutputStream out;
+    private final List<Child> children;
+    private volatile Exception downstreamError;
+
+    /**
+     * A downstream worker together with the subtree it must relay to.
+     * A single-thread executor keeps the chunks ordered, the semaphore bounds
+     * the number of chunks in flight towards this child.
+     */
+    private static class Child {
+        final String spec;
+        final List<String> subtree;
+        final ExecutorService sender = Executors.newSingleThreadExecutor();
+        final Semaphore window = new Semaphore(Configuration.BROADCAST_WINDOW_CHUNKS);
+        WorkerInterface stub;
+        String session;
+
+        Child(String spec, List<String> subtree) {
+            this.spec = spec;
+            this.subtree = subtree;
+        }
+    }
+
+    BroadcastRelay(String session, String fileName, boolean executable, List<String> downstream) throws IOException {
+        if (fileName == null || fileName.trim().isEmpty()) {
+            throw new IllegalArgumentException("File name cannot be null or empty");
+        }
+        this.fileName = fileName;
+        this.executable = executable;
+        this.tempFile = new File(fileName + ".bcast-" + session.substring(session.lastIndexOf('#') + 1) + ".tmp");
+        this.out = new FileOutputStream(tempFile);
+        this.children = splitDownstream(downstream == null ? new ArrayList<>() : downstream);
+
+        for (Child child : children) {
+            try {
+                child.stub = lookup(child.spec);
+                child.session = child.stub.openBroadcast(fileName, executable, child.subtree);
+            } catch (Exception e) {
+                abort();
+                throw new IOException("Cannot open broadcast towards " + child.spec + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Splits the downstream list into at most BROADCAST_FANOUT contiguous subtrees.
+     * The head of each subtree becomes a direct child of this node.
+     */
+    private static List<Child> splitDownstream(List<String> downstream) {
+        List<Child> result = new ArrayList<>();
+        if (downstream.isEmpty()) {
+            return result;
+        }
+
+        int fanout = Math.max(1, Math.min(Configuration.BROADCAST_FANOUT, downstream.size()));
+        int base = downstream.size() / fanout;
+        int extra = downstream.size() % fanout;
+        int start = 0;
+
+        for (int i = 0; i < fanout; i++) {
+            int size = base + (i < extra ? 1 : 0);
+            List<String> group = downstream.subList(start, start + size);
+            result.add(new Child(group.get(0), new ArrayList<>(group.subList(1, group.size()))));
+            start += size;
+        }
+        return result;
+    }
+
+    private static WorkerInterface lookup(String spec) throws Exception {
+        String[] parts = spec.split(":");
+        String url = parts.length == 2
+            ? Configuration.buildRmiUrl(parts[0], Integer.parseInt(parts[1]))
+            : Configuration.buildRmiUrl(parts[0]);
+        return (WorkerInterface) Naming.lookup(url);
+    }
+
+    /**
+     * Writes a chunk locally and queues it for every child.
+     */
+    void write(byte[] data) throws IOException, InterruptedException {
+        if (downstreamError != null) {
+            throw new IOException("Downstream relay failed: " + downstreamError.getMessage(), downstreamError);
+        }
+
+        out.write(data);
+
+        for (Child child : children) {
+            child.window.acquire();
+            child.sender.submit(() -> {
+                try {
+                    child.stub.broadcastChunk(child.session, data);
+                } catch (Exception e) {
+                    downstreamError = e;
+                } finally {
+                    child.window.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Closes the session: publishes the local copy and waits for every subtree.
+     * @return Number of nodes in this subtree holding the file
+     */
+    int close() throws IOException {
+        List<Future<Integer>> pending = new ArrayList<>();
+        for (Child child : children) {
+            pending.add(child.sender.submit(() -> child.stub.closeBroadcast(child.session)));
+        }
+
+        out.close();
+        if (executable && !tempFile.setExecutable(true)) {
+            System.err.println("[WORKER] ⚠️  Could not mark " + fileName + " as executable");
+        }
+        // Atomic rename so running processes never see a partially written file
+        Files.move(tempFile.toPath(), new File(fileName).toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        int reached = 1;
+        try {
+            for (Future<Integer> future : pending) {
+                reached += future.get();
+            }
+        } catch (Exception e) {
+            throw new IOException("Downstream broadcast failed: " + e.getMessage(), e);
+        } finally {
+            shutdownSenders();
+        }
+
+        if (downstreamError != null) {
+            throw new IOException("Downstream relay failed: " + downstreamError.getMessage(), downstreamError);
+        }
+        return reached;
+    }
+
+    /**
+     * Drops the session and its temporary file after a failure, and aborts the
+     * sessions opened downstream once the chunks queued for them are sent.
+     */
+    void abort() {
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // Already failing, nothing more to report
+        }
+        tempFile.delete();
+        for (Child child : children) {
+            if (child.session == null) {
+                continue;
+            }
+            try {
+                child.sender.submit(() -> {
+                    try {
+                        child.stub.abortBroadcast(child.session);
+                    } catch (RemoteException ignored) {
+                        // The child is gone, and its session with it
+                    }
+                });
+            } catch (RejectedExecutionException ignored) {
+                // Already closed: the downstream sessions are done
+            }
+        }
+        shutdownSenders();
+    }
+
+    private void shutdownSenders() {
+        for (Child child : children) {
+            child.sender.shutdown();
+        }
+    }
+
+    /**
+     * Wraps a relay failure for the RMI caller.
+     */
+    static RemoteException toRemote(String action, String fileName, Exception e) {
+        System.err.println("[WORKER] ❌ Broadcast " + action + " failed for " + fileName + ": " + e.getMessage());
+        return new RemoteException("Broadcast " + action + " failed for " + fileName, e);
+    }
+}
@@ -0,0 +1,69 @@
+package network.worker;
+
+import config.Configuration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams a local file into a worker's broadcast session.
+ * Shared by the master (artifact broadcast) and by workers (direct output forwarding).
+ */
+public class FileSender {
+
+    /**
+     * Sends a file to a worker, which relays it to the given downstream workers.
+     * @param file The local file to send
+     * @param target The first worker of the chain
+     * @param downstream Remaining workers ("host:port") of the chain
+     * @return Number of workers holding the file afterwards
+     * @throws IOException if the file cannot be read or the transfer fails
+     */
+    public static int send(File file, WorkerInterface target, List<String> downstream) throws IOException {
+        if (file == null || !file.isFile()) {
+            throw new IOException("File not found: " + file);
+        }
+
+        String fileName = file.getName();
+        String session = target.openBroadcast(fileName, file.canExecute(), downstream);
+
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[Configuration.BROADCAST_CHUNK_BYTES];
+            int read;
+            while ((read = readFully(in, buffer)) > 0) {
+                // RMI marshals the array before returning, so the buffer can be reused
+                target.broadcastChunk(session, read == buffer.length ? buffer : Arrays.copyOf(buffer, read));
+            }
+        } catch (Exception e) {
+            // Drop the session, or the workers keep its temporary file and downstream sessions open
+            try {
+                target.abortBroadcast(session);
+            } catch (RemoteException abortError) {
+                e.addSuppressed(abortError);
+            }
+            throw new IOException("Transfer of " + fileName + " failed: " + e.getMessage(), e);
+        }
+
+        return target.closeBroadcast(session);
+    }
+
+    /**
+     * Fills the buffer as much as possible so every chunk except the last is full.
+     */
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = in.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
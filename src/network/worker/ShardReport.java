@@ -0,0 +1,36 @@
+package network.worker;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregated progress of a shard scheduler: the tasks finished since the last
+ * report, and how many are still queued or running.
+ */
+public class ShardReport implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<ShardResult> results;
+    private final int queued;
+    private final int running;
+
+    public ShardReport(List<ShardResult> results, int queued, int running) {
+        this.results = new ArrayList<>(results);
+        this.queued = queued;
+        this.running = running;
+    }
+
+    public List<ShardResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public int getRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,71 @@
+package network.worker;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of a task run by a shard scheduler.
+ */
+public class ShardResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final int exitCode;
+    private final String worker;
+    private final Map<String, Long> staged;
+    private final boolean run;
+
+    /**
+     * @param name The task name
+     * @param exitCode The exit code of its recipe (-1 if it failed to run)
+     * @param worker The "host:port" of the worker it ran on, or null
+     * @param staged Input files forwarded to that worker, with their sizes
+     */
+    public ShardResult(String name, int exitCode, String worker, Map<String, Long> staged) {
+        this(name, exitCode, worker, staged, true);
+    }
+
+    private ShardResult(String name, int exitCode, String worker, Map<String, Long> staged, boolean run) {
+        this.name = name;
+        this.exitCode = exitCode;
+        this.worker = worker;
+        this.staged = staged == null ? Collections.emptyMap() : new LinkedHashMap<>(staged);
+        this.run = run;
+    }
+
+    /**
+     * Reports a task the shard could not send to any of its workers, e.g. because none
+     * is reachable. Its recipe never started, so the master may run it elsewhere.
+     * @param name The task name
+     * @return The result
+     */
+    public static ShardResult notRun(String name) {
+        return new ShardResult(name, -1, null, null, false);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public String getWorker() {
+        return worker;
+    }
+
+    public Map<String, Long> getStaged() {
+        return Collections.unmodifiableMap(staged);
+    }
+
+    /**
+     * Tells whether the task was sent to a worker, successfully or not.
+     * @return false if the task never started (see notRun)
+     */
+    public boolean wasRun() {
+        return run;
+    }
+}
@@ -0,0 +1,294 @@
+package network.worker;
+
+import config.Configuration;
+
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.Naming;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sub-scheduler run by a worker leading a shard (a group of workers of one site) on
+ * behalf of the master. The master hands it batches of tasks; it dispatches them to
+ * the shard's workers itself, one per free slot, next to their inputs when possible,
+ * staging the other inputs worker-to-worker, and reports finished tasks in batches.
+ * A worker refusing work is skipped for the delay it hinted; a worker that cannot be
+ * reached is dropped from the shard. Tasks no worker of the shard can take any more
+ * are reported as not run, so the master runs them itself.
+ */
+class ShardScheduler {
+    private final String id;
+    private final Deque<ShardTask> queue = new ArrayDeque<>();
+    private final List<ShardResult> finished = new ArrayList<>();
+    private final Map<String, Member> members = new LinkedHashMap<>();
+    private final Map<String, WorkerInterface> stubs = new ConcurrentHashMap<>();
+    private final ExecutorService pool;
+    private final ScheduledExecutorService timer;
+    private int running;
+    private boolean wakeupPending;
+    private boolean closed;
+
+    private static final class Member {
+        final String hostname;
+        final int port;
+        int slots;
+        int busy;
+        long retryAt;
+        boolean lost;
+
+        Member(String hostname, int port, int slots) {
+            this.hostname = hostname;
+            this.port = port;
+            this.slots = slots;
+        }
+
+        boolean canTake(long now) {
+            return !lost && busy < slots && retryAt <= now;
+        }
+
+        @Override
+        public String toString() {
+            return hostname + ":" + port;
+        }
+    }
+
+    ShardScheduler(String id) {
+        this.id = id;
+        this.pool = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "shard-" + id);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "shard-" + id + "-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues tasks for the shard.
+     * @param memberSpecs The workers of the shard, as "host:port/slots"; workers no
+     *        longer listed finish their running tasks and take no new one
+     * @param tasks The tasks
+     */
+    synchronized void submit(List<String> memberSpecs, List<ShardTask> tasks) {
+        updateMembers(memberSpecs);
+        queue.addAll(tasks);
+        dispatch();
+    }
+
+    /**
+     * Waits for tasks to finish and returns them with the shard's progress.
+     * Returns at once when nothing is queued or running.
+     * @param maxWaitMs Maximum time to wait for a first finished task
+     * @return The tasks finished since the last report
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized ShardReport await(long maxWaitMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWaitMs;
+        long remaining = maxWaitMs;
+        while (finished.isEmpty() && (running > 0 || !queue.isEmpty()) && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        ShardReport report = new ShardReport(finished, queue.size(), running);
+        finished.clear();
+        return report;
+    }
+
+    /**
+     * Stops the shard. Tasks still running complete on their workers unreported.
+     */
+    synchronized void close() {
+        closed = true;
+        queue.clear();
+        pool.shutdown();
+        timer.shutdownNow();
+    }
+
+    private void updateMembers(List<String> memberSpecs) {
+        Set<String> listed = new HashSet<>();
+        for (String spec : memberSpecs) {
+            int slash = spec.lastIndexOf('/');
+            String address = slash >= 0 ? spec.substring(0, slash) : spec;
+            int slots = slash >= 0 ? Integer.parseInt(spec.substring(slash + 1)) : 1;
+            int colon = address.lastIndexOf(':');
+            String hostname = colon >= 0 ? address.substring(0, colon) : address;
+            int port = colon >= 0 ? Integer.parseInt(address.substring(colon + 1)) : Configuration.RMI_REGISTRY_PORT;
+            Member member = members.get(hostname + ":" + port);
+            if (member == null) {
+                members.put(hostname + ":" + port, new Member(hostname, port, slots));
+            } else if (!member.lost) {
+                member.slots = slots;
+            }
+            listed.add(hostname + ":" + port);
+        }
+        for (Member member : members.values()) {
+            if (!listed.contains(member.toString())) {
+                member.slots = 0;
+            }
+        }
+    }
+
+    /**
+     * Starts queued tasks while a worker has a free slot. Called with the lock held.
+     */
+    private void dispatch() {
+        long now = System.currentTimeMillis();
+        while (!queue.isEmpty() && !closed) {
+            ShardTask task = queue.peekFirst();
+            Member member = pick(task, now);
+            if (member == null) {
+                break;
+            }
+            queue.pollFirst();
+            member.busy++;
+            running++;
+            pool.submit(() -> run(task, member));
+        }
+        if (queue.isEmpty() || closed) {
+            return;
+        }
+
+        long wakeAt = Long.MAX_VALUE;
+        boolean alive = false;
+        for (Member member : members.values()) {
+            if (!member.lost && member.slots > 0) {
+                alive = true;
+                if (member.busy < member.slots) {
+                    wakeAt = Math.min(wakeAt, member.retryAt);
+                }
+            }
+        }
+        if (!alive) {
+            // No worker left to run anything: hand the tasks back to the master, which may run them elsewhere
+            System.err.println("[SHARD " + id + "] ⚠️  No reachable worker left, returning " + queue.size() +
+                               " task(s) to the master");
+            while (!queue.isEmpty()) {
+                finished.add(ShardResult.notRun(queue.pollFirst().getName()));
+            }
+            notifyAll();
+        } else if (wakeAt != Long.MAX_VALUE && !wakeupPending) {
+            // Every free slot is on a worker that refused work: come back when the first may accept
+            wakeupPending = true;
+            timer.schedule(() -> {
+                synchronized (this) {
+                    wakeupPending = false;
+                    dispatch();
+                }
+            }, Math.max(1, wakeAt - now), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Picks the worker with a free slot holding most of the task's inputs, then the
+     * one with most free slots.
+     */
+    private Member pick(ShardTask task, long now) {
+        Member best = null;
+        int bestLocal = -1;
+        for (Member member : members.values()) {
+            if (!member.canTake(now)) {
+                continue;
+            }
+            int local = 0;
+            for (String holder : task.getInputs().values()) {
+                if (holder.startsWith(member.hostname + ":")) {
+                    local++;
+                }
+            }
+            if (local > bestLocal ||
+                (local == bestLocal && member.slots - member.busy > best.slots - best.busy)) {
+                best = member;
+                bestLocal = local;
+            }
+        }
+        return best;
+    }
+
+    private void run(ShardTask task, Member member) {
+        Map<String, Long> staged = new LinkedHashMap<>();
+        int exitCode;
+        try {
+            WorkerInterface worker = lookup(member.toString());
+            stage(task, member, staged);
+            System.out.println("[SHARD " + id + "] " + task.getName() + " → " + member);
+            exitCode = worker.executeCommands(task.getCommands());
+        } catch (WorkerBusyException e) {
+            requeue(task, member, System.currentTimeMillis() + e.getRetryAfterMs(), false);
+            return;
+        } catch (ConnectException | ConnectIOException | NoSuchObjectException | NotBoundException e) {
+            // Not sent: the worker is gone
+            System.err.println("[SHARD " + id + "] ⚠️  " + member + " is unreachable, dropping it from the shard");
+            stubs.remove(member.toString());
+            requeue(task, member, 0, true);
+            return;
+        } catch (Exception e) {
+            System.err.println("[SHARD " + id + "] ❌ " + task.getName() + " failed on " + member + ": " + e.getMessage());
+            exitCode = -1;
+        }
+
+        synchronized (this) {
+            member.busy--;
+            running--;
+            finished.add(new ShardResult(task.getName(), exitCode, member.toString(), staged));
+            notifyAll();
+            dispatch();
+        }
+    }
+
+    /**
+     * Forwards the inputs held on other hosts to the worker. Failures are only
+     * reported: the recipe itself fails if a file is really missing.
+     */
+    private void stage(ShardTask task, Member member, Map<String, Long> staged) {
+        for (Map.Entry<String, String> input : task.getInputs().entrySet()) {
+            String holder = input.getValue();
+            if (holder.startsWith(member.hostname + ":")) {
+                continue;
+            }
+            try {
+                long bytes = lookup(holder).pushFile(input.getKey(), member.hostname, member.port);
+                staged.put(input.getKey(), bytes);
+            } catch (Exception e) {
+                System.err.println("[SHARD " + id + "] ⚠️  Could not forward " + input.getKey() + " from " + holder +
+                                   " to " + member + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private synchronized void requeue(ShardTask task, Member member, long retryAt, boolean lost) {
+        member.busy--;
+        running--;
+        member.retryAt = Math.max(member.retryAt, retryAt);
+        member.lost |= lost;
+        queue.addFirst(task);
+        dispatch();
+    }
+
+    private WorkerInterface lookup(String address) throws Exception {
+        WorkerInterface stub = stubs.get(address);
+        if (stub == null) {
+            int colon = address.lastIndexOf(':');
+            stub = (WorkerInterface) Naming.lookup(Configuration.buildRmiUrl(
+                address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))));
+            stubs.put(address, stub);
+        }
+        return stub;
+    }
+}
@@ -0,0 +1,43 @@
+package network.worker;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A task handed by the master to a shard scheduler: its recipe, and where each of
+ * its inputs can be fetched from.
+ */
+public class ShardTask implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final List<String> commands;
+    private final Map<String, String> inputs;
+
+    /**
+     * @param name The task name
+     * @param commands The recipe lines, run in order on one worker
+     * @param inputs Input files mapped to the "host:port" of a worker holding them
+     */
+    public ShardTask(String name, List<String> commands, Map<String, String> inputs) {
+        this.name = name;
+        this.commands = new ArrayList<>(commands);
+        this.inputs = inputs == null ? Collections.emptyMap() : new LinkedHashMap<>(inputs);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    public Map<String, String> getInputs() {
+        return Collections.unmodifiableMap(inputs);
+    }
+}
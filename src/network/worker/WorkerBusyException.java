@@ -0,0 +1,29 @@
+package network.worker;
+
+/**
+ * Thrown by a worker that refuses new work because it is saturated: all its
+ * execution slots and its wait queue are taken, or it is short of memory or CPU.
+ * The master should try another worker and come back after the hinted delay.
+ */
+public class WorkerBusyException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMs;
+
+    /**
+     * @param message Why the work was refused
+     * @param retryAfterMs How long the worker expects to stay saturated
+     */
+    public WorkerBusyException(String message, long retryAfterMs) {
+        super(message);
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * Gets the delay after which the worker is likely to accept work again.
+     * @return The delay in milliseconds
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
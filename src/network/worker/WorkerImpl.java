@@ -1,16 +1,101 @@
 package network.worker;
 
+import config.Configuration;
+import utils.ReduceOperation;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.rmi.Naming;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class WorkerImpl extends UnicastRemoteObject implements WorkerInterface {
+    private final Map<String, BroadcastRelay> broadcasts = new ConcurrentHashMap<>();
+    private final AtomicLong broadcastIds = new AtomicLong();
+    private final Map<String, ShardScheduler> shards = new ConcurrentHashMap<>();
+    private final AdmissionController admission;
 
     protected WorkerImpl() throws RemoteException {
         super();
+        int maxTasks = Configuration.WORKER_MAX_TASKS > 0
+            ? Configuration.WORKER_MAX_TASKS : Runtime.getRuntime().availableProcessors();
+        this.admission = new AdmissionController(maxTasks, Configuration.WORKER_MAX_QUEUED);
+        System.out.println("[WORKER] Admission: " + maxTasks + " concurrent task(s), " +
+                           Configuration.WORKER_MAX_QUEUED + " queued");
+    }
+
+    @Override
+    public int executeCommand(String command) throws WorkerBusyException, RemoteException {
+        return executeCommands(Collections.singletonList(command));
+    }
+
+    @Override
+    public int executeCommands(List<String> commands) throws WorkerBusyException, RemoteException {
+        try {
+            admission.admit(commands.size() == 1 ? "command" : commands.size() + " commands");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while queued", e);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            return runAll(commands);
+        } finally {
+            admission.release(System.currentTimeMillis() - start);
+        }
+    }
+
+    @Override
+    public int executeCommands(List<String> commands, String lease) throws RemoteException {
+        try {
+            admission.enterLease(lease);
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage());
+        }
+        try {
+            return runAll(commands);
+        } finally {
+            admission.exitLease(lease);
+        }
     }
 
     @Override
-    public int executeCommand(String command) throws RemoteException {
+    public String openLease(String owner) throws WorkerBusyException, RemoteException {
+        try {
+            return admission.openLease(owner);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while queued", e);
+        }
+    }
+
+    @Override
+    public void closeLease(String lease) throws RemoteException {
+        admission.closeLease(lease);
+    }
+
+    private int runAll(List<String> commands) throws RemoteException {
+        for (String command : commands) {
+            int exitCode = run(command);
+            if (exitCode != 0) {
+                return exitCode;
+            }
+        }
+        return 0;
+    }
+
+    private int run(String command) throws RemoteException {
         System.out.println("[WORKER] Received command: " + command);
 
         try {
@@ -28,4 +113,171 @@ public class WorkerImpl extends UnicastRemoteObject implements WorkerInterface {
             throw new RemoteException("Error executing command", e);
         }
     }
+
+    @Override
+    public String openBroadcast(String fileName, boolean executable, List<String> downstream) throws RemoteException {
+        System.out.println("[WORKER] Receiving broadcast: " + fileName + " (relaying to " +
+                           (downstream == null ? 0 : downstream.size()) + " node(s))");
+        // Keyed by transfer, not by file: concurrent transfers of one file each keep their own temporary file
+        String session = fileName + "#" + broadcastIds.incrementAndGet();
+        try {
+            broadcasts.put(session, new BroadcastRelay(session, fileName, executable, downstream));
+            return session;
+        } catch (Exception e) {
+            throw BroadcastRelay.toRemote("open", fileName, e);
+        }
+    }
+
+    @Override
+    public void broadcastChunk(String session, byte[] data) throws RemoteException {
+        BroadcastRelay relay = broadcasts.get(session);
+        if (relay == null) {
+            throw new RemoteException("No open broadcast session " + session);
+        }
+        try {
+            relay.write(data);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            broadcasts.remove(session);
+            relay.abort();
+            throw BroadcastRelay.toRemote("write", relay.getFileName(), e);
+        } catch (Exception e) {
+            broadcasts.remove(session);
+            relay.abort();
+            throw BroadcastRelay.toRemote("write", relay.getFileName(), e);
+        }
+    }
+
+    @Override
+    public int closeBroadcast(String session) throws RemoteException {
+        BroadcastRelay relay = broadcasts.remove(session);
+        if (relay == null) {
+            throw new RemoteException("No open broadcast session " + session);
+        }
+        try {
+            int reached = relay.close();
+            System.out.println("[WORKER] ✅ Broadcast complete: " + relay.getFileName() + " (" + reached +
+                               " node(s) in subtree)");
+            return reached;
+        } catch (Exception e) {
+            relay.abort();
+            throw BroadcastRelay.toRemote("close", relay.getFileName(), e);
+        }
+    }
+
+    @Override
+    public void abortBroadcast(String session) throws RemoteException {
+        BroadcastRelay relay = broadcasts.remove(session);
+        if (relay != null) {
+            System.err.println("[WORKER] ⚠️  Broadcast aborted by the sender: " + relay.getFileName());
+            relay.abort();
+        }
+    }
+
+    @Override
+    public long pushFile(String fileName, String targetHost, int targetPort) throws RemoteException {
+        File file = new File(fileName);
+        System.out.println("[WORKER] Pushing " + fileName + " to " + targetHost + ":" + targetPort);
+
+        try {
+            WorkerInterface target = (WorkerInterface) Naming.lookup(
+                Configuration.buildRmiUrl(targetHost, targetPort));
+            FileSender.send(file, target, new ArrayList<>());
+            return file.length();
+        } catch (Exception e) {
+            System.err.println("[WORKER] ❌ Push of " + fileName + " failed: " + e.getMessage());
+            throw new RemoteException("Push of " + fileName + " to " + targetHost + " failed", e);
+        }
+    }
+
+    @Override
+    public long reduceFiles(List<String> fileNames, String operation) throws RemoteException {
+        System.out.println("[WORKER] Reducing " + fileNames.size() + " file(s) with " + operation);
+        try {
+            return ReduceOperation.fromName(operation).reduceFiles(fileNames);
+        } catch (Exception e) {
+            System.err.println("[WORKER] ❌ Reduce failed: " + e.getMessage());
+            throw new RemoteException("Reduce of " + fileNames + " failed", e);
+        }
+    }
+
+    @Override
+    public long reduceFilesTo(List<String> fileNames, String operation, String outputFile) throws RemoteException {
+        long result = reduceFiles(fileNames, operation);
+        try (PrintWriter out = new PrintWriter(new FileWriter(outputFile))) {
+            out.println(result);
+        } catch (IOException e) {
+            System.err.println("[WORKER] ❌ Could not write " + outputFile + ": " + e.getMessage());
+            throw new RemoteException("Could not write " + outputFile, e);
+        }
+        System.out.println("[WORKER] Partial result written to " + outputFile);
+        return result;
+    }
+
+    @Override
+    public int deleteFiles(List<String> fileNames) throws RemoteException {
+        Path workingDir = Paths.get("").toAbsolutePath();
+        int deleted = 0;
+        for (String fileName : fileNames) {
+            Path path = workingDir.resolve(fileName).normalize();
+            if (!path.startsWith(workingDir)) {
+                System.err.println("[WORKER] ⚠️  Not deleting " + fileName + ": outside the working directory");
+                continue;
+            }
+            try {
+                if (Files.deleteIfExists(path)) {
+                    deleted++;
+                }
+            } catch (IOException e) {
+                System.err.println("[WORKER] ⚠️  Could not delete " + fileName + ": " + e.getMessage());
+            }
+        }
+        System.out.println("[WORKER] 🧹 Deleted " + deleted + " of " + fileNames.size() + " file(s)");
+        return deleted;
+    }
+
+    @Override
+    public int getAvailableProcessors() throws RemoteException {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public long getMemoryMb() throws RemoteException {
+        return Math.max(0, AdmissionController.meminfoMb("MemTotal"));
+    }
+
+    @Override
+    public void submitShardTasks(String shardId, List<String> members, List<ShardTask> tasks) throws RemoteException {
+        try {
+            shards.computeIfAbsent(shardId, id -> {
+                System.out.println("[WORKER] Leading shard " + id + " (" + members.size() + " worker(s))");
+                return new ShardScheduler(id);
+            }).submit(members, tasks);
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException("Invalid shard members: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public ShardReport awaitShardReport(String shardId, long maxWaitMs) throws RemoteException {
+        ShardScheduler shard = shards.get(shardId);
+        if (shard == null) {
+            throw new RemoteException("Not leading shard " + shardId);
+        }
+        try {
+            return shard.await(maxWaitMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for shard " + shardId, e);
+        }
+    }
+
+    @Override
+    public void closeShard(String shardId) throws RemoteException {
+        ShardScheduler shard = shards.remove(shardId);
+        if (shard != null) {
+            shard.close();
+            System.out.println("[WORKER] Stopped leading shard " + shardId);
+        }
+    }
 }
@@ -2,7 +2,156 @@ package network.worker;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface WorkerInterface extends Remote {
-    int executeCommand(String command) throws RemoteException;
+    /**
+     * Runs a shell command on this worker, once the worker's admission control lets
+     * it in: the command may wait in a bounded queue for an execution slot.
+     * @param command The command, run with bash in the worker's working directory
+     * @return The exit code of the command
+     * @throws WorkerBusyException if the worker is saturated; try another worker
+     */
+    int executeCommand(String command) throws WorkerBusyException, RemoteException;
+
+    /**
+     * Runs the lines of a recipe in order as one task: they are admitted once and
+     * each runs in its own shell, like make, stopping at the first failing line.
+     * Files written by one line are therefore always visible to the next ones.
+     * @param commands The command lines
+     * @return 0 if every line succeeded, else the exit code of the failing line
+     * @throws WorkerBusyException if the worker is saturated; try another worker
+     */
+    int executeCommands(List<String> commands) throws WorkerBusyException, RemoteException;
+
+    /**
+     * Runs recipe lines in order under an admission lease, without further admission.
+     * @param commands The command lines
+     * @param lease A lease returned by openLease
+     * @return 0 if every line succeeded, else the exit code of the failing line
+     */
+    int executeCommands(List<String> commands, String lease) throws RemoteException;
+
+    /**
+     * Admits a group of concurrent commands (e.g. the stages of a streaming
+     * pipeline) as one task. The lease holds one execution slot until closed.
+     * @param owner Name of the task, for the logs
+     * @return The lease id
+     * @throws WorkerBusyException if the worker is saturated; try another worker
+     */
+    String openLease(String owner) throws WorkerBusyException, RemoteException;
+
+    /**
+     * Closes an admission lease and frees its slot.
+     * @param lease The lease id
+     */
+    void closeLease(String lease) throws RemoteException;
+
+    /**
+     * Opens a broadcast session for a file on this worker.
+     * Chunks written to the session are stored locally and relayed to the
+     * downstream workers, which form a chain (or a tree when the fan-out is > 1).
+     * Sessions are independent: two transfers of the same file may run at once,
+     * the last one closed publishes the file.
+     * @param fileName Name of the file to create in the worker's working directory
+     * @param executable Whether the received file must be marked executable
+     * @param downstream Remaining workers ("host:port") this node must relay to
+     * @return The session id to pass to broadcastChunk and closeBroadcast
+     */
+    String openBroadcast(String fileName, boolean executable, List<String> downstream) throws RemoteException;
+
+    /**
+     * Appends a chunk to an open broadcast session and forwards it downstream.
+     * Blocks when the downstream relay window is full (backpressure).
+     * @param session A session returned by openBroadcast
+     */
+    void broadcastChunk(String session, byte[] data) throws RemoteException;
+
+    /**
+     * Completes a broadcast session: the file is atomically published locally
+     * once every downstream worker has completed its own copy.
+     * @param session A session returned by openBroadcast
+     * @return Number of workers (this one included) holding the file
+     */
+    int closeBroadcast(String session) throws RemoteException;
+
+    /**
+     * Drops a broadcast session after the sender failed: its temporary file is
+     * deleted and the downstream sessions are aborted too. Unknown sessions are ignored.
+     * @param session A session returned by openBroadcast
+     */
+    void abortBroadcast(String session) throws RemoteException;
+
+    /**
+     * Pushes a file produced on this worker directly to another worker,
+     * so intermediate outputs do not transit through the master.
+     * @param fileName File in this worker's working directory
+     * @param targetHost Hostname of the consuming worker
+     * @param targetPort RMI port of the consuming worker
+     * @return Size of the pushed file in bytes
+     */
+    long pushFile(String fileName, String targetHost, int targetPort) throws RemoteException;
+
+    /**
+     * Reduces files held by this worker in memory and returns the partial result,
+     * so intermediate outputs never have to be copied to the master.
+     * @param fileNames Files in this worker's working directory
+     * @param operation Reduce operation ("sum", "min" or "max")
+     * @return The partial result
+     */
+    long reduceFiles(List<String> fileNames, String operation) throws RemoteException;
+
+    /**
+     * Reduces files held by this worker and writes the result to a file of this
+     * worker, so a partial aggregate can feed the next level of a reduction tree.
+     * @param fileNames Files in this worker's working directory
+     * @param operation Reduce operation ("sum", "min" or "max")
+     * @param outputFile File receiving the result
+     * @return The partial result
+     */
+    long reduceFilesTo(List<String> fileNames, String operation, String outputFile) throws RemoteException;
+
+    /**
+     * Deletes files of this worker, e.g. the parts and intermediate outputs of a
+     * finished job. Missing files are skipped, names outside the working directory refused.
+     * @param fileNames Files in this worker's working directory
+     * @return Number of files deleted
+     */
+    int deleteFiles(List<String> fileNames) throws RemoteException;
+
+    /**
+     * Gets the number of processors of this worker, used to size its slots.
+     * @return The number of available processors
+     */
+    int getAvailableProcessors() throws RemoteException;
+
+    /**
+     * Gets the physical memory of this worker, used to bin-pack tasks with "@mem".
+     * @return The memory in MB, or 0 if unknown
+     */
+    long getMemoryMb() throws RemoteException;
+
+    /**
+     * Queues tasks on the shard this worker leads, creating the shard if needed.
+     * The worker dispatches them to the shard's workers itself.
+     * @param shardId The shard, unique per master
+     * @param members The workers of the shard, as "host:port/slots"
+     * @param tasks The tasks
+     */
+    void submitShardTasks(String shardId, List<String> members, List<ShardTask> tasks) throws RemoteException;
+
+    /**
+     * Waits for tasks of a shard to finish.
+     * @param shardId The shard
+     * @param maxWaitMs Maximum time to wait for a first finished task
+     * @return The tasks finished since the last report, and the shard's progress
+     * @throws RemoteException if this worker does not lead the shard
+     */
+    ShardReport awaitShardReport(String shardId, long maxWaitMs) throws RemoteException;
+
+    /**
+     * Stops leading a shard.
+     * @param shardId The shard
+     */
+    void closeShard(String shardId) throws RemoteException;
 }
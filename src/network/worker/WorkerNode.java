@@ -1,23 +1,46 @@
 package network.worker;
 
 import config.Configuration;
+import network.master.MembershipClient;
+import network.master.MembershipService;
+import network.master.WorkerRegistration;
 
 import java.rmi.Naming;
 import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Worker node that registers with RMI and waits for tasks.
  * Uses proper thread blocking instead of Long.MAX_VALUE sleep.
+ *
+ * Given a master (--master=host[:port] or -Dwordcount.master), the worker also
+ * registers itself with the master's membership service, in the background and
+ * retrying until the master is up, and leaves the cluster when it shuts down.
  */
 public class WorkerNode {
     private static volatile boolean running = true;
     private static final Object lock = new Object();
+    private static volatile MembershipService master;
 
     public static void main(String[] args) {
+        String masterAddress = Configuration.MASTER_ADDRESS;
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--master=")) {
+                masterAddress = arg.substring("--master=".length());
+            } else {
+                positional.add(arg);
+            }
+        }
+        args = positional.toArray(new String[0]);
+
         if (args.length < 1) {
-            System.err.println("Usage: java network.worker.WorkerNode <hostname> [port]");
+            System.err.println("Usage: java network.worker.WorkerNode <hostname> [port] [--master=host[:port]]");
             System.err.println("  hostname: Worker hostname (e.g., localhost)");
             System.err.println("  port: Optional RMI port (default: " + Configuration.RMI_REGISTRY_PORT + ")");
+            System.err.println("  master: Optional master to register with (default: -Dwordcount.master)");
             System.exit(1);
         }
 
@@ -48,8 +71,10 @@ public class WorkerNode {
         System.out.println("[WORKER] Port: " + port);
 
         // Add shutdown hook for graceful termination
+        final String member = hostname + ":" + port;
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("\n[WORKER] Shutting down gracefully...");
+            leaveMaster(member);
             running = false;
             synchronized (lock) {
                 lock.notifyAll();
@@ -68,6 +93,9 @@ public class WorkerNode {
 
             System.out.println("[WORKER] ✅ Worker ready and waiting for tasks!");
             System.out.println("[WORKER] RMI URL: " + url);
+            if (masterAddress != null && !masterAddress.trim().isEmpty()) {
+                startRegistration(masterAddress.trim(), hostname, port, worker);
+            }
             System.out.println("[WORKER] Press Ctrl+C to stop");
 
             // Proper blocking mechanism
@@ -88,4 +116,77 @@ public class WorkerNode {
             System.exit(1);
         }
     }
+
+    /**
+     * Registers the worker with the master from a background thread, retrying with
+     * a growing, randomized delay so that many workers starting together spread out.
+     */
+    private static void startRegistration(String masterAddress, String hostname, int port, WorkerImpl worker) {
+        int slots = Configuration.WORKER_MAX_TASKS > 0
+            ? Configuration.WORKER_MAX_TASKS : Runtime.getRuntime().availableProcessors();
+        List<String> capabilities = new ArrayList<>();
+        for (String capability : Configuration.WORKER_CAPABILITIES.split(",")) {
+            if (!capability.trim().isEmpty()) {
+                capabilities.add(capability.trim());
+            }
+        }
+        WorkerRegistration registration = new WorkerRegistration(hostname, port, Configuration.WORKER_SITE, slots,
+            Math.max(0, AdmissionController.meminfoMb("MemTotal")), capabilities, worker);
+
+        Thread thread = new Thread(() -> {
+            long delay = Configuration.REGISTRATION_RETRY_MIN_MS;
+            while (running) {
+                try {
+                    MembershipService service = MembershipClient.lookup(masterAddress);
+                    boolean queued = service.register(registration);
+                    master = service;
+                    System.out.println("[WORKER] ✅ " + (queued ? "Registered with" : "Already a member of") +
+                                       " master " + masterAddress + " (" + slots + " slot(s))");
+                    return;
+                } catch (Exception e) {
+                    Throwable cause = e;
+                    while (cause.getCause() != null) {
+                        cause = cause.getCause();
+                    }
+                    System.out.println("[WORKER] ⏳ Master " + masterAddress + " not reachable (" + cause.getMessage() +
+                                       "), retrying in " + delay + " ms");
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                delay = Math.min(Configuration.REGISTRATION_RETRY_MAX_MS,
+                                 delay + ThreadLocalRandom.current().nextLong(delay + 1));
+            }
+        }, "registration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Tells the master the worker is leaving, so queued work goes elsewhere. Best effort:
+     * a master that does not answer in time will notice through its health checks.
+     */
+    private static void leaveMaster(String member) {
+        MembershipService service = master;
+        if (service == null) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                service.leave(member, false);
+                System.out.println("[WORKER] Left the master's cluster");
+            } catch (Exception e) {
+                System.out.println("[WORKER] ⚠️  Could not leave the master's cluster: " + e.getMessage());
+            }
+        }, "leave");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -8,12 +8,34 @@ import java.util.*;
 /**
  * Parses Makefile format and builds a dependency graph.
  * Improved error handling and validation.
+ *
+ * Comment lines of the form "# @name" or "# @name=value" placed right before a rule
+ * are annotations for that rule; make itself ignores them. Supported annotations:
+ * <ul>
+ *   <li>@stream - the target reads its dependencies as streams: their producers run
+ *       concurrently with it and write into named pipes instead of complete files</li>
+ *   <li>@outputs=a,b - files produced by the rule (default: the target itself)</li>
+ *   <li>@fetch=a,b - files the rule needs from its dependencies (default: all their outputs)</li>
+ *   <li>@master - the rule runs on the master, like the final aggregation</li>
+ *   <li>@reduce=sum|min|max - the rule combines the first field of every line of its
+ *       inputs; workers reduce their own files in memory and the master combines
+ *       the partial results in a tree, without copying files or running the recipe</li>
+ *   <li>@partial - the rule is an intermediate level of an aggregation tree: it runs
+ *       on a worker (even if its recipe looks like an aggregation) and its output stays
+ *       there for the next level</li>
+ *   <li>@site=name - the rule runs on a worker of the given site (nodes are given as
+ *       "host[:port][@site]", or the site is the second label of "node.site.grid5000.fr")</li>
+ *   <li>@cores=N - the rule takes N slots of one node (the whole node if it has fewer)</li>
+ *   <li>@mem=SIZE - the rule needs SIZE of memory on its node, e.g. 512M or 4G</li>
+ * </ul>
+ * Several annotations may share a line, e.g. "# @cores=8 @mem=4G @site=nancy".
  */
 public class MakefileParser {
     private BufferedReader reader;
     private String currentLine;
     private final HashMap<Task, List<Task>> graph;
     private final HashMap<String, Task> taskMap;
+    private final Map<String, String> pendingAnnotations = new LinkedHashMap<>();
 
     public MakefileParser() {
         this.graph = new HashMap<>();
@@ -33,6 +55,7 @@ public class MakefileParser {
         }
 
         System.out.println("[PARSER] Reading Makefile from: " + filePath);
+        pendingAnnotations.clear();
 
         try {
             reader = new BufferedReader(new FileReader(filePath));
@@ -59,7 +82,11 @@ public class MakefileParser {
     }
 
     private void parseRule() {
-        if (currentLine == null || currentLine.trim().isEmpty() || currentLine.startsWith("#")) {
+        if (currentLine != null && currentLine.startsWith("#")) {
+            collectAnnotations(currentLine);
+            return;
+        }
+        if (currentLine == null || currentLine.trim().isEmpty()) {
             return;
         }
 
@@ -70,6 +97,15 @@ public class MakefileParser {
 
             Task targetTask = taskMap.getOrDefault(targetName, new Task(targetName));
             taskMap.put(targetName, targetTask);
+            for (Map.Entry<String, String> annotation : pendingAnnotations.entrySet()) {
+                targetTask.setAnnotation(annotation.getKey(), annotation.getValue());
+            }
+            pendingAnnotations.clear();
+            try {
+                targetTask.getResources(); // a malformed "@cores" or "@mem" fails at parse time
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid resources for target " + targetName + ": " + e.getMessage(), e);
+            }
 
             List<Task> dependencies = new ArrayList<>();
             if (!dependenciesStr.isEmpty()) {
@@ -101,6 +137,23 @@ public class MakefileParser {
         }
     }
 
+    /**
+     * Collects "@name[=value]" tokens from a comment line for the next rule.
+     * Comments without annotations are ignored, as before.
+     */
+    private void collectAnnotations(String commentLine) {
+        String body = commentLine.substring(1).trim();
+        if (!body.startsWith("@")) {
+            return;
+        }
+        for (String token : body.split("\\s+")) {
+            if (token.startsWith("@") && token.length() > 1) {
+                String[] keyValue = token.substring(1).split("=", 2);
+                pendingAnnotations.put(keyValue[0], keyValue.length > 1 ? keyValue[1] : "");
+            }
+        }
+    }
+
     public void printGraph() {
         System.out.println("\n[PARSER] Dependency Graph:");
         System.out.println("========================");
@@ -149,6 +202,7 @@ public class MakefileParser {
         this.taskMapNFS = new HashMap<>();
 
         System.out.println("[PARSER-NFS] Reading Makefile from: " + filePath);
+        pendingAnnotations.clear();
 
         try {
             reader = new BufferedReader(new FileReader(filePath));
@@ -175,7 +229,11 @@ public class MakefileParser {
     }
 
     private void parseRuleNFS() {
-        if (currentLine == null || currentLine.trim().isEmpty() || currentLine.startsWith("#")) {
+        if (currentLine != null && currentLine.startsWith("#")) {
+            collectAnnotations(currentLine);
+            return;
+        }
+        if (currentLine == null || currentLine.trim().isEmpty()) {
             return;
         }
 
@@ -186,6 +244,15 @@ public class MakefileParser {
 
             TaskNFS targetTask = taskMapNFS.getOrDefault(targetName, new TaskNFS(targetName));
             taskMapNFS.put(targetName, targetTask);
+            for (Map.Entry<String, String> annotation : pendingAnnotations.entrySet()) {
+                targetTask.setAnnotation(annotation.getKey(), annotation.getValue());
+            }
+            pendingAnnotations.clear();
+            try {
+                targetTask.getResources(); // a malformed "@cores" or "@mem" fails at parse time
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid resources for target " + targetName + ": " + e.getMessage(), e);
+            }
 
             List<TaskNFS> dependencies = new ArrayList<>();
             if (!dependenciesStr.isEmpty()) {
@@ -2,12 +2,30 @@ package parser;
 
 import cluster.ClusterManager;
 import cluster.ComputeNode;
+import cluster.ResourceRequest;
 import config.Configuration;
 import network.master.MasterCoordinator;
+import network.master.WorkerUnreachableException;
+import network.worker.WorkerBusyException;
+import utils.ReduceOperation;
 
+import java.io.FileWriter;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Represents a task with commands to execute.
@@ -18,7 +36,13 @@ public class Task {
     private final List<String> commands;
     private volatile TaskStatus status;
     private final ClusterManager clusterManager;
-    private final Random random;
+    private volatile List<Task> inputs;
+    private volatile boolean retrieveToMaster;
+    private volatile ComputeNode placement;
+    private volatile ComputeNode assignedWorker;
+    private volatile ComputeNode reservedWorker;
+    private volatile ResourceRequest reservedResources;
+    private final Map<String, String> annotations;
 
     /**
      * Creates a task with empty name (for special tasks like targets without commands).
@@ -48,7 +72,9 @@ public class Task {
         this.commands = new ArrayList<>();
         this.status = TaskStatus.NOT_STARTED;
         this.clusterManager = clusterManager;
-        this.random = new Random();
+        this.inputs = new ArrayList<>();
+        this.retrieveToMaster = true;
+        this.annotations = new HashMap<>();
     }
 
     public String getTaskName() {
@@ -92,6 +118,72 @@ public class Task {
         this.commands.add(command);
     }
 
+    /**
+     * Attaches a Makefile annotation (e.g. "# @stream") to this task.
+     * @param key The annotation name, without the leading '@'
+     * @param value The annotation value, or "" for flags
+     */
+    public void setAnnotation(String key, String value) {
+        if (key == null || key.trim().isEmpty()) {
+            throw new IllegalArgumentException("Annotation key cannot be null or empty");
+        }
+        this.annotations.put(key, value == null ? "" : value);
+    }
+
+    /**
+     * Gets the value of an annotation.
+     * @param key The annotation name
+     * @return The value, "" for flags, or null if absent
+     */
+    public String getAnnotation(String key) {
+        return annotations.get(key);
+    }
+
+    /**
+     * Gets the files produced by this task.
+     * Defaults to the task name; "# @outputs=a,b" declares several output files.
+     * @return The output file names
+     */
+    public List<String> getOutputs() {
+        return annotationList("outputs", Collections.singletonList(taskName));
+    }
+
+    /**
+     * Gets the files this task needs from its upstream tasks.
+     * Defaults to every output of every input; "# @fetch=a,b" restricts it, so a
+     * consumer only pulls the partitions it actually reads.
+     * @return The required file names
+     */
+    public List<String> getRequiredFiles() {
+        List<String> all = new ArrayList<>();
+        for (Task input : inputs) {
+            all.addAll(input.getOutputs());
+        }
+        return annotationList("fetch", all);
+    }
+
+    private List<String> annotationList(String key, List<String> defaults) {
+        String value = annotations.get(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaults;
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : value.split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Checks whether this task consumes its producers' outputs as streams ("# @stream").
+     * @return true if the incoming edges are streaming edges
+     */
+    public boolean isStreamingConsumer() {
+        return annotations.containsKey("stream");
+    }
+
     /**
      * Sets the cluster manager for this task (used after parsing).
      * @param manager The cluster manager
@@ -110,20 +202,183 @@ public class Task {
         }
     }
 
+    /**
+     * Sets the tasks whose outputs this task consumes (set by the scheduler).
+     * Their outputs are forwarded worker-to-worker to wherever this task runs.
+     * @param inputs The upstream tasks
+     */
+    public void setInputs(List<Task> inputs) {
+        this.inputs = inputs == null ? new ArrayList<>() : new ArrayList<>(inputs);
+    }
+
+    /**
+     * Sets whether the output must be copied back to the master after execution.
+     * Only needed for final outputs and for inputs of tasks running on the master;
+     * other outputs stay on the producing worker until a consumer needs them.
+     * @param retrieveToMaster true to copy the output back to the master
+     */
+    public void setRetrieveToMaster(boolean retrieveToMaster) {
+        this.retrieveToMaster = retrieveToMaster;
+    }
+
+    /**
+     * Gets the worker this task last ran on.
+     * @return The worker holding this task's output, or null if not run on a worker
+     */
+    public ComputeNode getPlacement() {
+        return placement;
+    }
+
+    public ClusterManager getClusterManager() {
+        return clusterManager;
+    }
+
+    /**
+     * Checks whether this task needs a worker slot, i.e. it is not run on the master
+     * and is not a bare file.
+     * @return true if the task runs on a worker
+     */
+    public boolean needsWorker() {
+        if (isNativeReduce()) {
+            return isPartialAggregate();
+        }
+        return !commands.isEmpty() && !isAggregationTask();
+    }
+
+    /**
+     * Checks whether a shard scheduler on a worker can run this task: a recipe on
+     * one core whose output stays on the workers.
+     * @return true if the task can be handed to a shard
+     */
+    public boolean canRunOnShard() {
+        if (!needsWorker() || isNativeReduce() || retrieveToMaster || isStreamingConsumer()) {
+            return false;
+        }
+        try {
+            return getResources().isDefault();
+        } catch (IllegalArgumentException e) {
+            return false; // Reported when the task runs on the master
+        }
+    }
+
+    /**
+     * Records the outcome of this task run by a shard scheduler.
+     * @param worker The worker it ran on, or null if it could not run
+     * @param exitCode The exit code of its recipe
+     * @param staged Inputs forwarded to the worker before it ran, with their sizes
+     */
+    public void completeOnShard(ComputeNode worker, int exitCode, Map<String, Long> staged) {
+        if (exitCode != 0 || worker == null) {
+            System.err.println("[TASK " + taskName + "] ❌ Failed with exit code: " + exitCode);
+            this.status = TaskStatus.FAILED;
+            return;
+        }
+        for (Map.Entry<String, Long> input : staged.entrySet()) {
+            ComputeNode source = clusterManager.getNearestReplica(input.getKey(), worker);
+            clusterManager.recordFileReplica(input.getKey(), worker);
+            clusterManager.recordFileSize(input.getKey(), input.getValue());
+            if (source != null) {
+                clusterManager.getTransferStats().record(source, worker, input.getValue());
+            }
+        }
+        this.placement = worker;
+        recordOutputs(worker);
+        System.out.println("[TASK " + taskName + "] ✅ Completed successfully on " + worker.hostname + ":" + worker.port);
+        this.status = TaskStatus.FINISHED;
+    }
+
+    /**
+     * Picks the worker this task would rather run on: the one holding its inputs
+     * with the cheapest transfers (on its "@site" if given).
+     * @return The preferred worker, or null if no input was produced on a worker
+     */
+    public ComputeNode preferredWorker() {
+        List<ComputeNode> holders = clusterManager.rankInputHolders(getRequiredFiles(), getAnnotation("site"));
+        return holders.isEmpty() ? null : holders.get(0);
+    }
+
+    /**
+     * Gets the resources this task needs on its worker ("# @cores=N @mem=SIZE").
+     * @return The request (one core if not annotated)
+     * @throws IllegalArgumentException if the annotations are malformed
+     */
+    public ResourceRequest getResources() {
+        return ResourceRequest.of(getAnnotation("cores"), getAnnotation("mem"));
+    }
+
+    /**
+     * Gets the resources of a streaming pipeline: its stages run together on one
+     * worker, so their requests add up.
+     * @param producers The tasks streaming into this one
+     * @return The combined request
+     */
+    public ResourceRequest getPipelineResources(List<Task> producers) {
+        ResourceRequest total = getResources();
+        for (Task producer : producers) {
+            total = total.plus(producer.getResources());
+        }
+        return total;
+    }
+
+    /**
+     * Binds this task to a worker chosen by the work queues.
+     * @param worker The worker that picked the task up
+     * @param reserved The resources already held on the worker for the task, or null
+     */
+    public void assignWorker(ComputeNode worker, ResourceRequest reserved) {
+        this.assignedWorker = worker;
+        this.reservedResources = reserved;
+        this.reservedWorker = reserved != null ? worker : null;
+    }
+
+    /**
+     * Returns the reserved resources if the task ended without using them.
+     */
+    public void releaseReservedWorker() {
+        ComputeNode reserved = reservedWorker;
+        if (reserved != null) {
+            reservedWorker = null;
+            clusterManager.releaseNode(reserved, reservedResources);
+        }
+    }
+
     /**
      * Checks if this task is a final aggregation task that should run on master.
      * Aggregation tasks combine results from multiple workers and should have
      * access to all intermediate result files.
      * @return true if this is an aggregation task
      */
-    private boolean isAggregationTask() {
-        // Detect if this is the final aggregation (total.txt)
-        // or any task that aggregates multiple count files
-        return taskName.equals("total.txt") ||
+    public boolean isAggregationTask() {
+        // Partial aggregates ("# @partial") run on workers; otherwise detect the final
+        // aggregation (total.txt), a task pinned to the master ("# @master") or any task
+        // that aggregates multiple count files
+        if (isPartialAggregate()) {
+            return false;
+        }
+        return taskName.equals("total.txt") || annotations.containsKey("master") ||
                (commands.stream().anyMatch(cmd ->
                    cmd.contains("cat") && cmd.contains("count") && cmd.contains("awk")));
     }
 
+    /**
+     * Checks whether this task is an intermediate level of an aggregation tree
+     * ("# @partial"). It runs on a worker and its output stays there for the next level.
+     * @return true if this task is a partial aggregate
+     */
+    public boolean isPartialAggregate() {
+        return annotations.containsKey("partial");
+    }
+
+    /**
+     * Checks whether this task is a native reduction ("# @reduce=sum|min|max").
+     * Its inputs are reduced in memory where they are, and its recipe is only
+     * kept so the Makefile still works with make.
+     * @return true if this task is reduced natively
+     */
+    public boolean isNativeReduce() {
+        return annotations.containsKey("reduce");
+    }
+
     /**
      * Executes all commands for this task.
      * This method is thread-safe and handles node allocation properly.
@@ -136,6 +391,11 @@ public class Task {
             return;
         }
 
+        if (isNativeReduce()) {
+            this.status = executeNativeReduce() ? TaskStatus.FINISHED : TaskStatus.FAILED;
+            return;
+        }
+
         if (commands.isEmpty()) {
             System.out.println("[TASK " + taskName + "] No commands to execute, marking as finished");
             this.status = TaskStatus.FINISHED;
@@ -152,11 +412,9 @@ public class Task {
                     }
                 }
             } else {
-                // Regular tasks can be distributed to any available worker
-                for (String command : commands) {
-                    if (!executeCommand(command)) {
-                        return; // Status already set to FAILED
-                    }
+                // Regular tasks run on one worker, all recipe lines in a single dispatch
+                if (!executeCommands(commands)) {
+                    return; // Status already set to FAILED
                 }
             }
 
@@ -169,6 +427,111 @@ public class Task {
         }
     }
 
+    /**
+     * Reduces the input files natively: every worker holding inputs reduces its own
+     * files in memory and returns one number over RMI, all workers at once, and the
+     * master folds the partial results. No file is copied and no shell is forked.
+     * The result is written to this task's output file on the master.
+     * @return true if successful
+     */
+    private boolean executeNativeReduce() {
+        if (isPartialAggregate()) {
+            return executePartialReduce();
+        }
+        ExecutorService pool = null;
+        try {
+            ReduceOperation operation = ReduceOperation.fromName(getAnnotation("reduce"));
+
+            // Group inputs by the worker holding them; unknown locations are read on the master
+            Map<ComputeNode, List<String>> byWorker = new LinkedHashMap<>();
+            List<String> local = new ArrayList<>();
+            for (String file : getRequiredFiles()) {
+                ComputeNode location = clusterManager.getFileLocation(file);
+                if (location == null) {
+                    local.add(file);
+                } else {
+                    byWorker.computeIfAbsent(location, k -> new ArrayList<>()).add(file);
+                }
+            }
+
+            System.out.println("[TASK " + taskName + "] 🌲 Native " + operation.name().toLowerCase() + " of " +
+                               (local.size() + byWorker.values().stream().mapToInt(List::size).sum()) +
+                               " file(s) on " + byWorker.size() + " worker(s)" +
+                               (local.isEmpty() ? "" : " + master"));
+
+            pool = Executors.newFixedThreadPool(Math.max(1, Math.min(byWorker.size() + 1,
+                                                                     Configuration.REDUCE_THREADS)));
+            List<Future<Long>> partialRuns = new ArrayList<>();
+            for (Map.Entry<ComputeNode, List<String>> entry : byWorker.entrySet()) {
+                ComputeNode node = entry.getKey();
+                partialRuns.add(pool.submit(() -> MasterCoordinator.reduceOnWorker(
+                    entry.getValue(), operation.name(), node.hostname, node.port)));
+            }
+            if (!local.isEmpty()) {
+                partialRuns.add(pool.submit(() -> operation.reduceFiles(local)));
+            }
+
+            long result = operation.identity();
+            for (Future<Long> run : partialRuns) {
+                result = operation.combine(result, run.get());
+            }
+
+            try (PrintWriter out = new PrintWriter(new FileWriter(taskName))) {
+                out.println(result);
+            }
+            System.out.println("[TASK " + taskName + "] ✅ Native reduction: " + result + " (" + partialRuns.size() +
+                               " partials)");
+            return true;
+
+        } catch (Exception e) {
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            System.err.println("[TASK " + taskName + "] ❌ Native reduction failed: " + cause.getMessage());
+            return false;
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Reduces the inputs of a partial aggregate on the worker holding most of them.
+     * The other inputs are forwarded to it first, and the result file stays on that
+     * worker, where the next level of the tree picks it up.
+     * @return true if successful
+     */
+    private boolean executePartialReduce() {
+        ResourceRequest resources = getResources();
+        ComputeNode worker = acquireWorker(getRequiredFiles(), resources);
+        if (worker == null) {
+            return false;
+        }
+        try {
+            ReduceOperation operation = ReduceOperation.fromName(getAnnotation("reduce"));
+            List<String> files = getRequiredFiles();
+            System.out.println("[TASK " + taskName + "] 🌲 Partial " + operation.name().toLowerCase() + " of " +
+                               files.size() + " file(s) on " + worker.hostname + ":" + worker.port);
+
+            stageInputs(worker);
+            long result = MasterCoordinator.reduceOnWorker(files, operation.name(), taskName,
+                                                           worker.hostname, worker.port);
+            this.placement = worker;
+            recordOutputs(worker);
+            if (retrieveToMaster) {
+                MasterCoordinator.retrieveResults(taskName, worker.hostname, clusterManager.getMasterNode().hostname);
+                recordRetrieval(taskName, worker);
+            }
+            System.out.println("[TASK " + taskName + "] ✅ Partial result " + result + " kept on " + worker.hostname);
+            return true;
+
+        } catch (Exception e) {
+            System.err.println("[TASK " + taskName + "] ❌ Partial reduction failed: " + e.getMessage());
+            return false;
+        } finally {
+            clusterManager.releaseNode(worker, resources);
+        }
+    }
+
     /**
      * Executes a command locally on the master node using bash.
      * Used for aggregation tasks that need access to all result files.
@@ -208,66 +571,384 @@ public class Task {
     }
 
     /**
-     * Executes a single command on an available worker.
-     * @param command The command to execute
+     * Executes the recipe on an available worker: the worker is acquired and the
+     * inputs staged once, all lines are sent in one call and run in order there
+     * (so lines can use each other's local files), and outputs are retrieved once.
+     * A worker refusing the recipe because it is saturated is avoided for the delay
+     * it hinted and the recipe goes to another worker.
+     * @param recipe The command lines to execute
      * @return true if successful, false if failed
      */
-    private boolean executeCommand(String command) {
-        System.out.println("[TASK " + taskName + "] Searching for available worker...");
+    private boolean executeCommands(List<String> recipe) {
+        ResourceRequest resources = getResources();
+        while (true) {
+            ComputeNode availableWorker = acquireWorker(getRequiredFiles(), resources);
+            if (availableWorker == null) {
+                return false; // Status already set to FAILED
+            }
 
-        ComputeNode availableWorker = null;
-        int retryCount = 0;
-        final int MAX_RETRIES = 100; // Prevent infinite loops
+            try {
+                System.out.println("[TASK " + taskName + "] Assigned to worker: " + availableWorker.hostname + ":" + availableWorker.port);
 
-        while (availableWorker == null && retryCount < MAX_RETRIES) {
-            availableWorker = clusterManager.acquireAvailableNode();
+                stageInputs(availableWorker);
 
-            if (availableWorker == null) {
-                retryCount++;
-                if (retryCount % 10 == 0) {
-                    System.out.println("[TASK " + taskName + "] All workers busy, waiting... (retry " + retryCount + ")");
+                boolean declaredOutputs = getAnnotation("outputs") != null;
+                int exitCode = MasterCoordinator.executeOnWorker(
+                    recipe,
+                    availableWorker.hostname,
+                    availableWorker.port,
+                    clusterManager.getMasterNode().hostname,
+                    retrieveToMaster && !declaredOutputs ? this.taskName : null
+                );
+
+                if (exitCode == 0) {
+                    this.placement = availableWorker;
+                    recordOutputs(availableWorker);
+                    if (retrieveToMaster && declaredOutputs) {
+                        for (String output : getOutputs()) {
+                            MasterCoordinator.retrieveResults(output, availableWorker.hostname,
+                                clusterManager.getMasterNode().hostname);
+                            recordRetrieval(output, availableWorker);
+                        }
+                    } else if (retrieveToMaster) {
+                        recordRetrieval(taskName, availableWorker);
+                    }
+                    System.out.println("[TASK " + taskName + "] ✅ Completed successfully on " + availableWorker.hostname + ":" + availableWorker.port);
+                    return true;
+                } else {
+                    System.err.println("[TASK " + taskName + "] ❌ Failed with exit code: " + exitCode);
+                    this.status = TaskStatus.FAILED;
+                    return false;
                 }
-                try {
-                    Thread.sleep(Configuration.TASK_RETRY_BASE_WAIT_MS +
-                                random.nextInt(Configuration.TASK_RETRY_RANDOM_RANGE_MS));
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    System.err.println("[TASK " + taskName + "] Interrupted while waiting for worker");
+
+            } catch (WorkerBusyException e) {
+                routeAround(availableWorker, e);
+            } catch (WorkerUnreachableException e) {
+                if (!routeAround(availableWorker, e)) {
                     this.status = TaskStatus.FAILED;
                     return false;
                 }
+            } finally {
+                // Always release the node, even if execution failed
+                clusterManager.releaseNode(availableWorker, resources);
             }
         }
+    }
 
-        if (availableWorker == null) {
-            System.err.println("[TASK " + taskName + "] ❌ Failed to acquire worker after " + MAX_RETRIES + " retries");
-            this.status = TaskStatus.FAILED;
+    /**
+     * Avoids a worker that refused work and lets this task go to any other worker.
+     */
+    private void routeAround(ComputeNode worker, WorkerBusyException e) {
+        clusterManager.markSaturated(worker, e.getRetryAfterMs());
+        assignedWorker = null;
+        System.out.println("[TASK " + taskName + "] ⏳ " + worker.hostname + ":" + worker.port + " is saturated, rescheduling");
+    }
+
+    /**
+     * Avoids a worker that could not be reached and lets this task go to another
+     * worker, unless none that may run it is left.
+     * @return true if the task can be rescheduled, false if it must fail
+     */
+    private boolean routeAround(ComputeNode worker, WorkerUnreachableException e) {
+        clusterManager.markUnreachable(worker);
+        assignedWorker = null;
+        String site = getAnnotation("site");
+        if (!clusterManager.hasReachableNode(site)) {
+            System.err.println("[TASK " + taskName + "] ❌ " + worker.hostname + ":" + worker.port +
+                               " is unreachable and no other worker" + (site == null ? "" : " on site " + site) +
+                               " is left");
             return false;
         }
+        System.out.println("[TASK " + taskName + "] 🔌 " + worker.hostname + ":" + worker.port + " is unreachable, rescheduling");
+        return true;
+    }
+
+    /**
+     * Acquires a worker slot, blocking until one is released while all are busy.
+     * The nodes already holding inputs are tried first, cheapest transfers first
+     * (bytes crossing sites cost more), then any free slot. For LOCALITY_WAIT_MS the
+     * search is limited to the site holding most input bytes, so a busy local site
+     * is briefly preferred over pulling the inputs across the WAN. A task bound to a
+     * worker by the work queues only waits for a slot on that worker. Tasks asking
+     * several cores or some memory are bin-packed onto the nodes.
+     * @param inputs The files the task will read
+     * @param resources The cores and memory to take on the worker
+     * @return The acquired worker, or null on failure (status set to FAILED)
+     */
+    private ComputeNode acquireWorker(Collection<String> inputs, ResourceRequest resources) {
+        // Picked up by a worker's queue with a slot already reserved
+        ComputeNode reserved = reservedWorker;
+        if (reserved != null) {
+            reservedWorker = null;
+            return reserved;
+        }
+        System.out.println("[TASK " + taskName + "] Searching for available worker" +
+                           (resources.isDefault() ? "" : " (" + resources + ")") + "...");
+
+        // "# @site=name" restricts the task to the workers of one site
+        String site = getAnnotation("site");
+        if (site != null && !clusterManager.hasSite(site)) {
+            System.err.println("[TASK " + taskName + "] ❌ No worker on site " + site);
+            this.status = TaskStatus.FAILED;
+            return null;
+        }
+        String homeSite = site == null && clusterManager.getSiteCount() > 1 ? clusterManager.homeSite(inputs) : null;
+        List<ComputeNode> holders = clusterManager.rankInputHolders(inputs, site);
+        List<ComputeNode> homeHolders = new ArrayList<>();
+        for (ComputeNode holder : holders) {
+            if (holder.site.equals(homeSite)) {
+                homeHolders.add(holder);
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        long localityDeadline = start + Configuration.LOCALITY_WAIT_MS;
+        long deadline = start + Configuration.SCHEDULER_TIMEOUT_HOURS * 3600_000L;
+        boolean announced = false;
+        try {
+            while (true) {
+                long seen = clusterManager.getReleaseCount();
+                long now = System.currentTimeMillis();
+                boolean stayHome = homeSite != null && now < localityDeadline;
+                ComputeNode assigned = assignedWorker;
+                if (assigned != null && assigned.isDraining()) {
+                    // The worker is leaving the cluster: look elsewhere
+                    assignedWorker = assigned = null;
+                }
+                ComputeNode worker = assigned != null
+                    ? clusterManager.tryAcquireNode(Collections.singletonList(assigned), null, false, resources, this)
+                    : site != null ? clusterManager.tryAcquireNode(holders, site, false, resources, this)
+                    : stayHome ? clusterManager.tryAcquireNode(homeHolders, homeSite, false, resources, this)
+                    : clusterManager.tryAcquireNode(holders, homeSite, true, resources, this);
+                if (worker != null) {
+                    return worker;
+                }
+                if (now >= deadline) {
+                    System.err.println("[TASK " + taskName + "] ❌ No worker slot freed within " +
+                                       Configuration.SCHEDULER_TIMEOUT_HOURS + " hour(s)");
+                    clusterManager.cancelReservation(this);
+                    this.status = TaskStatus.FAILED;
+                    return null;
+                }
+                if (!announced) {
+                    System.out.println("[TASK " + taskName + "] All worker slots busy, waiting for a release...");
+                    announced = true;
+                }
+                clusterManager.awaitRelease(seen, (stayHome ? localityDeadline : deadline) - now);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("[TASK " + taskName + "] Interrupted while waiting for worker");
+            clusterManager.cancelReservation(this);
+            this.status = TaskStatus.FAILED;
+            return null;
+        }
+    }
+
+    /**
+     * Executes this task together with the producers streaming into it.
+     * Producer outputs are replaced by named pipes on a single worker and all stages
+     * run concurrently, so this task reads the data while it is still being written.
+     * This task must read every streamed input, otherwise its producer blocks.
+     * @param producers Tasks whose output is streamed into this task
+     */
+    public void executePipeline(List<Task> producers) {
+        if (clusterManager == null) {
+            System.err.println("[TASK " + taskName + "] ❌ No cluster manager configured");
+            failPipeline(producers);
+            return;
+        }
 
+        Set<String> pipelineInputs = new LinkedHashSet<>(getRequiredFiles());
+        for (Task producer : producers) {
+            pipelineInputs.addAll(producer.getRequiredFiles());
+        }
+        // The stages run concurrently, so they are admitted by the worker as one task
+        ResourceRequest resources = getPipelineResources(producers);
+        ComputeNode worker;
+        String lease;
+        while (true) {
+            worker = acquireWorker(pipelineInputs, resources);
+            if (worker == null) {
+                failPipeline(producers);
+                return;
+            }
+            try {
+                lease = MasterCoordinator.openLease(taskName, worker.hostname, worker.port);
+                break;
+            } catch (WorkerBusyException e) {
+                clusterManager.releaseNode(worker, resources);
+                routeAround(worker, e);
+            } catch (WorkerUnreachableException e) {
+                clusterManager.releaseNode(worker, resources);
+                if (!routeAround(worker, e)) {
+                    failPipeline(producers);
+                    return;
+                }
+            } catch (java.io.IOException e) {
+                System.err.println("[TASK " + taskName + "] ❌ Could not reach " + worker.hostname + ": " + e.getMessage());
+                clusterManager.releaseNode(worker, resources);
+                failPipeline(producers);
+                return;
+            }
+        }
+        ComputeNode pipelineWorker = worker;
+        String pipelineLease = lease;
+
+        String masterHost = clusterManager.getMasterNode().hostname;
+        StringBuilder pipes = new StringBuilder();
+        for (Task producer : producers) {
+            pipes.append(' ').append(producer.getTaskName());
+        }
+
+        ExecutorService stages = Executors.newFixedThreadPool(producers.size() + 1);
         try {
-            System.out.println("[TASK " + taskName + "] Assigned to worker: " + availableWorker.hostname + ":" + availableWorker.port);
+            System.out.println("[TASK " + taskName + "] 🔀 Streaming pipeline on " + worker.hostname + ":" + worker.port +
+                               " (producers:" + pipes + ")");
 
-            int exitCode = MasterCoordinator.executeOnWorker(
-                command,
-                availableWorker.hostname,
-                availableWorker.port,
-                clusterManager.getMasterNode().hostname,
-                this.taskName
-            );
+            for (Task producer : producers) {
+                producer.stageInputs(worker);
+            }
+            stageInputs(worker);
 
-            if (exitCode == 0) {
-                System.out.println("[TASK " + taskName + "] ✅ Completed successfully on " + availableWorker.hostname + ":" + availableWorker.port);
-                return true;
+            int exitCode = MasterCoordinator.executeOnWorker("rm -f" + pipes + " && mkfifo" + pipes,
+                worker.hostname, worker.port, masterHost, null, lease);
+            if (exitCode != 0) {
+                System.err.println("[TASK " + taskName + "] ❌ Could not create named pipes on " + worker.hostname);
+                failPipeline(producers);
+                return;
+            }
+
+            List<Future<Boolean>> producerRuns = new ArrayList<>();
+            for (Task producer : producers) {
+                producerRuns.add(stages.submit(() -> producer.runStage(pipelineWorker, false, pipelineLease)));
+            }
+            Future<Boolean> consumerRun = stages.submit(() -> runStage(pipelineWorker, retrieveToMaster, pipelineLease));
+
+            boolean success = true;
+            boolean consumerFailed = false;
+            for (int i = 0; i < producers.size(); i++) {
+                Task producer = producers.get(i);
+                Future<Boolean> producerRun = producerRuns.get(i);
+                boolean ok;
+                while (true) {
+                    try {
+                        ok = producerRun.get(Configuration.STREAM_STAGE_POLL_MS, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException e) {
+                        if (!consumerFailed && consumerRun.isDone() && !consumerRun.get()) {
+                            consumerFailed = true;
+                        }
+                        if (consumerFailed) {
+                            // Nobody will read the pipe: drain it so the producer's open() and writes return
+                            MasterCoordinator.executeOnWorker("timeout 5 cat " + producer.getTaskName() + " > /dev/null",
+                                worker.hostname, worker.port, masterHost, null, lease);
+                        }
+                    }
+                }
+                // A stream whose consumer failed is lost, whatever the producer's exit code
+                ok &= !consumerFailed;
+                producer.setStatus(ok ? TaskStatus.FINISHED : TaskStatus.FAILED);
+                if (!ok) {
+                    success = false;
+                }
+                if (!ok && !consumerFailed) {
+                    // Give a blocked reader its end-of-file so the consumer can terminate
+                    MasterCoordinator.executeOnWorker("timeout 5 bash -c ': > " + producer.getTaskName() + "'",
+                        worker.hostname, worker.port, masterHost, null, lease);
+                }
+            }
+            success &= consumerRun.get();
+
+            if (success) {
+                this.placement = worker;
+                recordOutputs(worker);
+                System.out.println("[TASK " + taskName + "] ✅ Streaming pipeline completed on " + worker.hostname + ":" + worker.port);
+                this.status = TaskStatus.FINISHED;
             } else {
-                System.err.println("[TASK " + taskName + "] ❌ Failed with exit code: " + exitCode);
+                System.err.println("[TASK " + taskName + "] ❌ Streaming pipeline failed");
                 this.status = TaskStatus.FAILED;
-                return false;
             }
 
+        } catch (Exception e) {
+            System.err.println("[TASK " + taskName + "] Exception in streaming pipeline: " + e.getMessage());
+            e.printStackTrace();
+            failPipeline(producers);
         } finally {
-            // Always release the node, even if execution failed
-            clusterManager.releaseNode(availableWorker);
+            stages.shutdownNow();
+            MasterCoordinator.executeOnWorker("rm -f" + pipes, worker.hostname, worker.port, masterHost, null, lease);
+            MasterCoordinator.closeLease(lease, worker.hostname, worker.port);
+            clusterManager.releaseNode(worker, resources);
+        }
+    }
+
+    /**
+     * Runs every command of this task on an already acquired worker.
+     * @param worker The worker to run on
+     * @param retrieve Whether to copy the output back to the master
+     * @param lease The admission lease of the pipeline on that worker
+     * @return true if all commands succeeded
+     */
+    private boolean runStage(ComputeNode worker, boolean retrieve, String lease) {
+        int exitCode = MasterCoordinator.executeOnWorker(commands, worker.hostname, worker.port,
+            clusterManager.getMasterNode().hostname, retrieve ? taskName : null, lease);
+        if (exitCode != 0) {
+            System.err.println("[TASK " + taskName + "] ❌ Stage failed with exit code: " + exitCode);
+            return false;
+        }
+        if (retrieve) {
+            recordRetrieval(taskName, worker);
+        }
+        return true;
+    }
+
+    private void failPipeline(List<Task> producers) {
+        for (Task producer : producers) {
+            if (producer.getStatus() != TaskStatus.FINISHED) {
+                producer.setStatus(TaskStatus.FAILED);
+            }
+        }
+        this.status = TaskStatus.FAILED;
+    }
+
+    private void recordOutputs(ComputeNode worker) {
+        clusterManager.recordFileLocation(taskName, worker);
+        for (String output : getOutputs()) {
+            clusterManager.recordFileLocation(output, worker);
+        }
+    }
+
+    /**
+     * Forwards inputs produced on other workers directly to the given worker,
+     * each from its nearest copy. Inputs already on the same host are left where they are. Failures are only
+     * reported: the command itself fails if a required file is really missing.
+     * @param worker The worker about to run this task
+     */
+    private void stageInputs(ComputeNode worker) {
+        for (String file : getRequiredFiles()) {
+            ComputeNode location = clusterManager.getNearestReplica(file, worker);
+            if (location == null || location.hostname.equals(worker.hostname)) {
+                continue;
+            }
+            long bytes = MasterCoordinator.forwardFile(file,
+                location.hostname, location.port, worker.hostname, worker.port);
+            if (bytes >= 0) {
+                clusterManager.recordFileReplica(file, worker);
+                clusterManager.recordFileSize(file, bytes);
+                clusterManager.getTransferStats().record(location, worker, bytes);
+            }
+        }
+    }
+
+    /**
+     * Counts an output copied from a worker back to the master in the transfer statistics.
+     * @param file The retrieved file, now in the master's working directory
+     * @param worker The worker it came from
+     */
+    private void recordRetrieval(String file, ComputeNode worker) {
+        java.io.File local = new java.io.File(file);
+        if (local.isFile()) {
+            clusterManager.getTransferStats().record(worker, clusterManager.getMasterNode(), local.length());
         }
     }
 
@@ -0,0 +1,243 @@
+package parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import utils.ReduceOperation;
+
+/**
+ * Fluent builder for task dependency graphs.
+ * Produces the same structure as MakefileParser without writing and re-parsing
+ * a Makefile, which matters when a generated job has tens of thousands of parts.
+ *
+ * <pre>
+ * HashMap&lt;Task, List&lt;Task&gt;&gt; graph = TaskGraphBuilder.forTasks()
+ *     .rule("count1.txt").dependsOn("part1.txt", "wordcount").command("./wordcount part1.txt &gt; count1.txt")
+ *     .rule("total.txt").dependsOn("count1.txt").command("...")
+ *     .build();
+ * </pre>
+ *
+ * Names that are only used as dependencies become file tasks without commands,
+ * exactly like undeclared prerequisites in a Makefile.
+ *
+ * @param <T> Task type (Task for SCP mode, TaskNFS for NFS mode)
+ */
+public class TaskGraphBuilder<T> {
+
+    /**
+     * Attaches an annotation to a task, like a "# @name=value" line in a Makefile.
+     */
+    public interface Annotator<T> {
+        void annotate(T task, String key, String value);
+    }
+
+    private final Function<String, T> factory;
+    private final BiConsumer<T, String> commandAdder;
+    private final Annotator<T> annotator;
+    private final HashMap<String, T> taskMap;
+    private final HashMap<T, List<T>> graph;
+
+    private TaskGraphBuilder(Function<String, T> factory, BiConsumer<T, String> commandAdder, Annotator<T> annotator) {
+        this.factory = factory;
+        this.commandAdder = commandAdder;
+        this.annotator = annotator;
+        this.taskMap = new HashMap<>();
+        this.graph = new HashMap<>();
+    }
+
+    /**
+     * Creates a builder for SCP-mode tasks.
+     * @return A new builder
+     */
+    public static TaskGraphBuilder<Task> forTasks() {
+        return new TaskGraphBuilder<>(Task::new, Task::addCommand, Task::setAnnotation);
+    }
+
+    /**
+     * Creates a builder for NFS-mode tasks.
+     * @return A new builder
+     */
+    public static TaskGraphBuilder<TaskNFS> forNfsTasks() {
+        return new TaskGraphBuilder<>(TaskNFS::new, TaskNFS::addCommand, TaskNFS::setAnnotation);
+    }
+
+    /**
+     * Starts (or reopens) the rule producing a target.
+     * @param target The target name
+     * @return The rule, to add dependencies, commands and annotations
+     * @throws IllegalArgumentException if target is null or empty
+     */
+    public Rule rule(String target) {
+        if (target == null || target.trim().isEmpty()) {
+            throw new IllegalArgumentException("Target cannot be null or empty");
+        }
+        T task = taskFor(target);
+        List<T> dependencies = graph.computeIfAbsent(task, k -> new ArrayList<>());
+        return new Rule(task, dependencies);
+    }
+
+    /**
+     * Emits a reduction of many inputs as a tree of rules with at most fanIn inputs each.
+     * Intermediate levels are named after the target ("total.txt" gives "total.L1-1.txt", ...)
+     * and marked "@partial" so they run on workers; only the final rule, whose few
+     * inputs are the top-level partials, is left to the caller's placement. With
+     * fanIn inputs or fewer, this is a single rule, exactly as before. Every recipe
+     * lists at most fanIn files, so no command line grows with the number of inputs.
+     *
+     * @param target The final target
+     * @param inputs The files to reduce
+     * @param operation The reduction, used for the recipes
+     * @param fanIn The maximum number of inputs per rule (at least 2)
+     * @param annotations Annotations for every rule of the tree (e.g. reduce=sum, site=nancy)
+     * @return The final rule
+     * @throws IllegalArgumentException if fanIn is smaller than 2
+     */
+    public Rule reductionTree(String target, List<String> inputs, ReduceOperation operation,
+                              int fanIn, Map<String, String> annotations) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Fan-in must be at least 2");
+        }
+        List<String> level = new ArrayList<>(inputs);
+        int depth = 0;
+        while (level.size() > fanIn) {
+            depth++;
+            // Spread the inputs evenly over the fewest groups that respect the fan-in
+            int groups = (level.size() + fanIn - 1) / fanIn;
+            List<String> next = new ArrayList<>();
+            for (int g = 0; g < groups; g++) {
+                List<String> group = level.subList(g * level.size() / groups, (g + 1) * level.size() / groups);
+                String partial = partialName(target, depth, g + 1);
+                rule(partial).dependsOn(group)
+                             .annotate("partial", "")
+                             .annotateAll(annotations)
+                             .command(operation.shellCommand(group, partial));
+                next.add(partial);
+            }
+            level = next;
+        }
+
+        return rule(target).dependsOn(level)
+                           .annotateAll(annotations)
+                           .command(operation.shellCommand(level, target));
+    }
+
+    private static String partialName(String target, int level, int index) {
+        int dot = target.lastIndexOf('.');
+        int slash = target.lastIndexOf('/');
+        String suffix = ".L" + level + "-" + index;
+        return dot > slash ? target.substring(0, dot) + suffix + target.substring(dot) : target + suffix;
+    }
+
+    /**
+     * Gets the dependency graph built so far.
+     * @return A map of tasks to their dependencies
+     */
+    public HashMap<T, List<T>> build() {
+        return graph;
+    }
+
+    /**
+     * Gets every task created so far, including file-only dependencies.
+     * @return The map of task names to tasks
+     */
+    public Map<String, T> getTaskMap() {
+        return Collections.unmodifiableMap(taskMap);
+    }
+
+    private T taskFor(String name) {
+        return taskMap.computeIfAbsent(name, factory);
+    }
+
+    /**
+     * One rule of the graph: a target, its dependencies and its commands.
+     */
+    public class Rule {
+        private final T task;
+        private final List<T> dependencies;
+
+        private Rule(T task, List<T> dependencies) {
+            this.task = task;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * Adds dependencies to this rule.
+         * @param names Names of the required targets or files
+         * @return This rule
+         */
+        public Rule dependsOn(String... names) {
+            return dependsOn(Arrays.asList(names));
+        }
+
+        /**
+         * Adds dependencies to this rule.
+         * @param names Names of the required targets or files
+         * @return This rule
+         */
+        public Rule dependsOn(Collection<String> names) {
+            for (String name : names) {
+                if (name != null && !name.trim().isEmpty()) {
+                    dependencies.add(taskFor(name.trim()));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Appends a command line to this rule's recipe.
+         * @param command The command string
+         * @return This rule
+         */
+        public Rule command(String command) {
+            commandAdder.accept(task, command);
+            return this;
+        }
+
+        /**
+         * Annotates this rule (same meaning as "# @key=value" in a Makefile).
+         * @param key The annotation name
+         * @param value The annotation value, or "" for flags
+         * @return This rule
+         */
+        public Rule annotate(String key, String value) {
+            annotator.annotate(task, key, value);
+            return this;
+        }
+
+        /**
+         * Annotates this rule with every entry of a map.
+         * @param entries Annotation names and values
+         * @return This rule
+         */
+        public Rule annotateAll(Map<String, String> entries) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                annotate(entry.getKey(), entry.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * Starts the next rule.
+         * @param target The next target name
+         * @return The new rule
+         */
+        public Rule rule(String target) {
+            return TaskGraphBuilder.this.rule(target);
+        }
+
+        /**
+         * Finishes building.
+         * @return The dependency graph
+         */
+        public HashMap<T, List<T>> build() {
+            return graph;
+        }
+    }
+}
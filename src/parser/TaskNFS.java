@@ -2,12 +2,16 @@ package parser;
 
 import cluster.ClusterManager;
 import cluster.ComputeNode;
+import cluster.ResourceRequest;
 import config.Configuration;
 import network.master.MasterCoordinator;
+import network.master.WorkerUnreachableException;
+import network.worker.WorkerBusyException;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 
 /**
  * NFS-based task that accesses files through shared NFS mount.
@@ -19,7 +23,7 @@ public class TaskNFS {
     private volatile TaskStatus status;
     private ClusterManager clusterManager;
     private String nfsPath;
-    private final Random random;
+    private final Map<String, String> annotations;
 
     /**
      * Creates a task with empty name (for special tasks like targets without commands).
@@ -50,7 +54,7 @@ public class TaskNFS {
         this.status = TaskStatus.NOT_STARTED;
         this.clusterManager = clusterManager;
         this.nfsPath = "/tmp/nfs_shared"; // Default
-        this.random = new Random();
+        this.annotations = new HashMap<>();
     }
 
     public String getTaskName() {
@@ -102,6 +106,31 @@ public class TaskNFS {
         this.commands.add(command);
     }
 
+    /**
+     * Attaches a Makefile annotation to this task.
+     * Streaming edges ("# @stream") are accepted but run as regular barriers in NFS mode,
+     * since named pipes cannot be shared between hosts through NFS.
+     */
+    public void setAnnotation(String key, String value) {
+        if (key == null || key.trim().isEmpty()) {
+            throw new IllegalArgumentException("Annotation key cannot be null or empty");
+        }
+        this.annotations.put(key, value == null ? "" : value);
+    }
+
+    public String getAnnotation(String key) {
+        return annotations.get(key);
+    }
+
+    /**
+     * Gets the resources this task needs on its worker ("# @cores=N @mem=SIZE").
+     * @return The request (one core if not annotated)
+     * @throws IllegalArgumentException if the annotations are malformed
+     */
+    public ResourceRequest getResources() {
+        return ResourceRequest.of(getAnnotation("cores"), getAnnotation("mem"));
+    }
+
     /**
      * Sets the cluster manager for this task (used after parsing).
      */
@@ -114,8 +143,12 @@ public class TaskNFS {
 
     /**
      * Checks if this task is a final aggregation task.
+     * Partial aggregates ("# @partial") are left to the workers.
      */
     private boolean isAggregationTask() {
+        if (annotations.containsKey("partial")) {
+            return false; // Intermediate level of an aggregation tree, run on a worker
+        }
         return taskName.contains("total.txt") ||
                (commands.stream().anyMatch(cmd ->
                    cmd.contains("cat") && cmd.contains("count") && cmd.contains("awk")));
@@ -148,11 +181,9 @@ public class TaskNFS {
                     }
                 }
             } else {
-                // Regular tasks distributed to workers (which have NFS mounted)
-                for (String command : commands) {
-                    if (!executeCommand(command)) {
-                        return; // Status already set to FAILED
-                    }
+                // Regular tasks distributed to workers (which have NFS mounted), one dispatch per recipe
+                if (!executeCommands(commands)) {
+                    return; // Status already set to FAILED
                 }
             }
 
@@ -202,66 +233,72 @@ public class TaskNFS {
     }
 
     /**
-     * Executes a command on a worker node.
-     * Worker accesses files from its NFS mount.
+     * Executes the recipe on one worker node, all lines in a single call.
+     * Worker accesses files from its NFS mount. A worker refusing the recipe because
+     * it is saturated is avoided for the delay it hinted.
      */
-    private boolean executeCommand(String command) {
-        System.out.println("[TASK-NFS " + taskName + "] Searching for available worker...");
-
-        ComputeNode availableWorker = null;
-        int retryCount = 0;
-        final int MAX_RETRIES = 100;
-
-        while (availableWorker == null && retryCount < MAX_RETRIES) {
-            availableWorker = clusterManager.acquireAvailableNode();
+    private boolean executeCommands(List<String> recipe) {
+        // Worker executes every line in the NFS directory
+        List<String> nfsRecipe = new ArrayList<>();
+        for (String command : recipe) {
+            nfsRecipe.add("cd " + nfsPath + " && " + command);
+        }
+        ResourceRequest resources = getResources();
+
+        while (true) {
+            System.out.println("[TASK-NFS " + taskName + "] Searching for available worker...");
+
+            ComputeNode availableWorker;
+            try {
+                // Blocks until a slot is released instead of polling
+                availableWorker = clusterManager.acquireNode(Configuration.SCHEDULER_TIMEOUT_HOURS * 3600_000L,
+                                                             resources, this);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.err.println("[TASK-NFS " + taskName + "] Interrupted while waiting for worker");
+                this.status = TaskStatus.FAILED;
+                return false;
+            }
 
             if (availableWorker == null) {
-                retryCount++;
-                if (retryCount % 10 == 0) {
-                    System.out.println("[TASK-NFS " + taskName + "] All workers busy, waiting... (retry " + retryCount + ")");
-                }
-                try {
-                    Thread.sleep(Configuration.TASK_RETRY_BASE_WAIT_MS +
-                                random.nextInt(Configuration.TASK_RETRY_RANDOM_RANGE_MS));
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    System.err.println("[TASK-NFS " + taskName + "] Interrupted while waiting for worker");
+                System.err.println("[TASK-NFS " + taskName + "] ❌ No worker slot freed within " +
+                                   Configuration.SCHEDULER_TIMEOUT_HOURS + " hour(s)");
+                this.status = TaskStatus.FAILED;
+                return false;
+            }
+
+            try {
+                System.out.println("[TASK-NFS " + taskName + "] Assigned to worker: " + availableWorker.hostname + ":" + availableWorker.port);
+
+                int exitCode = MasterCoordinator.executeOnWorker(
+                    nfsRecipe,
+                    availableWorker.hostname,
+                    availableWorker.port,
+                    clusterManager.getMasterNode().hostname,
+                    this.taskName
+                );
+
+                if (exitCode == 0) {
+                    System.out.println("[TASK-NFS " + taskName + "] ✅ Completed successfully on " + availableWorker.hostname + ":" + availableWorker.port);
+                    return true;
+                } else {
+                    System.err.println("[TASK-NFS " + taskName + "] ❌ Failed with exit code: " + exitCode);
                     this.status = TaskStatus.FAILED;
                     return false;
                 }
-            }
-        }
-
-        if (availableWorker == null) {
-            System.err.println("[TASK-NFS " + taskName + "] ❌ Failed to acquire worker after " + MAX_RETRIES + " retries");
-            this.status = TaskStatus.FAILED;
-            return false;
-        }
-
-        try {
-            System.out.println("[TASK-NFS " + taskName + "] Assigned to worker: " + availableWorker.hostname + ":" + availableWorker.port);
 
-            // Worker executes command in NFS directory
-            String cdCommand = "cd " + nfsPath + " && " + command;
-            int exitCode = MasterCoordinator.executeOnWorker(
-                cdCommand,
-                availableWorker.hostname,
-                availableWorker.port,
-                clusterManager.getMasterNode().hostname,
-                this.taskName
-            );
-
-            if (exitCode == 0) {
-                System.out.println("[TASK-NFS " + taskName + "] ✅ Completed successfully on " + availableWorker.hostname + ":" + availableWorker.port);
-                return true;
-            } else {
-                System.err.println("[TASK-NFS " + taskName + "] ❌ Failed with exit code: " + exitCode);
-                this.status = TaskStatus.FAILED;
-                return false;
+            } catch (WorkerBusyException e) {
+                clusterManager.markSaturated(availableWorker, e.getRetryAfterMs());
+            } catch (WorkerUnreachableException e) {
+                clusterManager.markUnreachable(availableWorker);
+                if (!clusterManager.hasReachableNode(null)) {
+                    System.err.println("[TASK-NFS " + taskName + "] ❌ No reachable worker is left");
+                    this.status = TaskStatus.FAILED;
+                    return false;
+                }
+            } finally {
+                clusterManager.releaseNode(availableWorker, resources);
             }
-
-        } finally {
-            clusterManager.releaseNode(availableWorker);
         }
     }
 
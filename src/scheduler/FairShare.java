@@ -0,0 +1,155 @@
+package scheduler;
+
+import cluster.ClusterManager;
+import cluster.ComputeNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shares the slots of a cluster between the jobs running on it. Slots go to the
+ * jobs of the highest priority first; jobs of one priority share them in proportion
+ * to their weights, slot by slot to the job with the smallest virtual finish time
+ * (its slots divided by its weight, as in weighted fair queuing). A job is never
+ * given more slots than it has tasks running or ready, so the slots it cannot use
+ * go to the others. Running tasks are never preempted: a job above its share only
+ * launches new tasks once it is back under it, so a small job gets the slots freed
+ * by a large one as soon as its tasks finish.
+ */
+public class FairShare {
+
+    /**
+     * The share of one job. Only its job's scheduler uses it.
+     */
+    public static final class Share {
+        private final String name;
+        private final int priority;
+        private final double weight;
+        private final long order;
+        private int demand;
+        private int allocated;
+
+        private Share(String name, int priority, double weight, long order) {
+            this.name = name;
+            this.priority = priority;
+            this.weight = weight;
+            this.order = order;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final ClusterManager clusterManager;
+    private final List<Share> shares = new ArrayList<>();
+    private long joined;
+
+    public FairShare(ClusterManager clusterManager) {
+        this.clusterManager = clusterManager;
+    }
+
+    /**
+     * Adds a job to the jobs sharing the cluster.
+     * @param name The job name, for logs
+     * @param priority Jobs of a higher priority are served first
+     * @param weight Share of the slots relative to the jobs of the same priority
+     * @return The job's share
+     * @throws IllegalArgumentException if the weight is not positive
+     */
+    public synchronized Share join(String name, int priority, double weight) {
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        }
+        Share share = new Share(name, priority, weight, joined++);
+        shares.add(share);
+        return share;
+    }
+
+    /**
+     * Removes a finished job; its slots go to the others at their next grant.
+     * @param share The job's share
+     */
+    public synchronized void leave(Share share) {
+        shares.remove(share);
+    }
+
+    /**
+     * Tells how many more tasks a job may launch now. Called by the job's scheduler at
+     * every iteration, ready tasks or not, so the shares follow what each job can use.
+     * @param share The job's share
+     * @param running Tasks of the job launched and not done yet
+     * @param ready Tasks of the job ready to launch
+     * @return The number of ready tasks to launch, at most ready
+     */
+    public synchronized int grant(Share share, int running, int ready) {
+        share.demand = running + ready;
+        allocate();
+        return Math.max(0, Math.min(ready, share.allocated - running));
+    }
+
+    /**
+     * Gets the number of slot releases on the cluster so far (see awaitRelease).
+     * @return The release counter
+     */
+    public long getReleaseCount() {
+        return clusterManager.getReleaseCount();
+    }
+
+    /**
+     * Blocks until a slot of the cluster is released, i.e. a task of some job ended,
+     * or the timeout expires.
+     * @param seenReleaseCount Value of getReleaseCount() before the last grant
+     * @param timeoutMs Maximum time to wait
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitRelease(long seenReleaseCount, long timeoutMs) throws InterruptedException {
+        clusterManager.awaitRelease(seenReleaseCount, timeoutMs);
+    }
+
+    /**
+     * Hands out the slots of the cluster, one at a time, to the job of the highest
+     * priority, then smallest virtual finish time, then smallest demand, then earliest
+     * arrival, among those wanting more than they have.
+     */
+    private void allocate() {
+        int capacity = 0;
+        for (ComputeNode node : clusterManager.getNodes()) {
+            if (!node.isDraining()) {
+                capacity += node.getSlots();
+            }
+        }
+        for (Share share : shares) {
+            share.allocated = 0;
+        }
+        for (int slot = 0; slot < Math.max(1, capacity); slot++) {
+            Share next = null;
+            for (Share share : shares) {
+                if (share.allocated < share.demand && (next == null || before(share, next))) {
+                    next = share;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            next.allocated++;
+        }
+    }
+
+    private static boolean before(Share a, Share b) {
+        if (a.priority != b.priority) {
+            return a.priority > b.priority;
+        }
+        // Compare (allocated + 1) / weight without dividing
+        double finishA = (a.allocated + 1) * b.weight;
+        double finishB = (b.allocated + 1) * a.weight;
+        if (finishA != finishB) {
+            return finishA < finishB;
+        }
+        // Even: the smaller job first, so it finishes sooner
+        if (a.demand != b.demand) {
+            return a.demand < b.demand;
+        }
+        return a.order < b.order;
+    }
+}
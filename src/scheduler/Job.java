@@ -0,0 +1,554 @@
+package scheduler;
+
+import cluster.ClusterManager;
+import cluster.ComputeNode;
+import config.Configuration;
+import mapreduce.DistinctJob;
+import mapreduce.FrequencyJob;
+import mapreduce.KeySampler;
+import mapreduce.PartitionPlan;
+import mapreduce.TopKJob;
+import network.master.ArtifactBroadcaster;
+import network.master.JobRequest;
+import network.master.MasterCoordinator;
+import parser.MakefileParser;
+import parser.Task;
+import parser.TaskGraphBuilder;
+import parser.TaskStatus;
+import utils.FileSplitter;
+import utils.ReduceOperation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One job on a cluster: a user-supplied Makefile, or an input file whose task graph
+ * is built in memory (dynamic mode). The graph is planned first, without touching any
+ * file, so the files the job reads and writes are known before it starts; the input
+ * is then split and shipped, and the graph scheduled. Every file a dynamic job
+ * generates is named after a prefix, so jobs with different prefixes never clash.
+ */
+class Job {
+    private final JobRequest request;
+    private final JobType jobType;
+    private final String prefix;
+    private final ClusterManager clusterManager;
+    private final boolean dynamicMode;
+    private final boolean pipelined;
+    private int numWorkers;
+    private List<String> splitFiles;
+    private String planFile;
+    // Site each part is counted on, when count tasks are pinned to sites
+    private final Map<String, String> partSites = new HashMap<>();
+    private Map<Task, List<Task>> graph;
+    private Map<String, Task> taskMap;
+    private volatile TaskScheduler scheduler;
+
+    /**
+     * @param request The job
+     * @param prefix Prefix of the files generated for an input file: parts, intermediate
+     *               outputs and result ("" for the plain names)
+     * @param clusterManager The cluster running the job
+     * @throws IllegalArgumentException if the job type is unknown
+     */
+    Job(JobRequest request, String prefix, ClusterManager clusterManager) {
+        this.request = request;
+        this.dynamicMode = request.getInputFile() != null;
+        this.jobType = dynamicMode ? JobType.fromOption(request.getJobType()) : null;
+        this.prefix = prefix;
+        this.clusterManager = clusterManager;
+        this.pipelined = dynamicMode && Configuration.PIPELINED_STARTUP;
+    }
+
+    /**
+     * Builds the task graph. Nothing is written: in dynamic mode the parts are only named.
+     * @throws IOException if the Makefile cannot be read
+     * @throws IllegalArgumentException if the input file is missing or the Makefile has no task
+     */
+    void plan() throws IOException {
+        if (dynamicMode) {
+            File file = new File(request.getInputFile());
+            if (!file.exists() || !file.isFile()) {
+                throw new IllegalArgumentException("Input file not found: " + request.getInputFile());
+            }
+            System.out.println("[MAIN] File size: " + file.length() + " bytes");
+
+            numWorkers = clusterManager.getNodes().size();
+            int numParts = numWorkers;
+            if (pipelined) {
+                // Parts are cut and shipped while the scheduler already runs
+                numParts = numWorkers * Configuration.PIPELINE_PARTS_PER_WORKER;
+                System.out.println("[MAIN] ⏩ Pipelined startup: " + numParts +
+                                   " parts, each counted as soon as it is delivered");
+            }
+            splitFiles = new ArrayList<>();
+            for (int i = 1; i <= numParts; i++) {
+                splitFiles.add(prefix + "part" + i + ".txt");
+            }
+            if (jobType == JobType.FREQUENCY && Configuration.MAPREDUCE_SKEW_AWARE) {
+                planFile = prefix + PartitionPlan.FILE_NAME;
+            }
+            buildGraph();
+        } else {
+            // Parse the user-supplied Makefile
+            System.out.println("[MAIN] Parsing Makefile...");
+            MakefileParser parser = new MakefileParser();
+            graph = parser.processFile(request.getMakefile());
+            taskMap = parser.getTaskMap();
+
+            if (graph.isEmpty()) {
+                throw new IllegalArgumentException("No tasks found in " + request.getMakefile());
+            }
+
+            parser.printGraph();
+            configureTasks();
+        }
+    }
+
+    /**
+     * Builds the task graph of the input file, directly, no Makefile round trip.
+     */
+    private void buildGraph() {
+        System.out.println("[MAIN] Building task graph in memory...");
+        TaskGraphBuilder<Task> builder;
+        if (jobType == JobType.FREQUENCY) {
+            int numReducers = request.getReducers() > 0 ? request.getReducers() : numWorkers;
+            System.out.println("[MAIN] Word frequencies with " + numReducers + " reducers" +
+                               (Configuration.MAPREDUCE_COMBINE ? " (map-side combine)" : ""));
+            builder = FrequencyJob.buildGraph(prefix, splitFiles, numReducers, planFile);
+        } else if (jobType == JobType.TOPK) {
+            System.out.println("[MAIN] Top " + request.getTopK() + " words with mergeable sketches");
+            builder = TopKJob.buildGraph(prefix, splitFiles, request.getTopK());
+        } else if (jobType == JobType.DISTINCT) {
+            System.out.println("[MAIN] Distinct words with HyperLogLog (precision " + request.getPrecision() + ")");
+            builder = DistinctJob.buildGraph(prefix, splitFiles, request.getPrecision());
+        } else {
+            builder = buildWordCountGraph();
+        }
+        graph = builder.build();
+        taskMap = builder.getTaskMap();
+        System.out.println("[MAIN] ✅ Task graph built with " + splitFiles.size() + " parts (" +
+                           graph.size() + " tasks)");
+        configureTasks();
+    }
+
+    /**
+     * Injects the cluster manager into all tasks and marks file-only tasks as finished.
+     */
+    private void configureTasks() {
+        System.out.println("[MAIN] Configuring tasks with cluster manager...");
+
+        // First, collect all tasks (including those only in dependency lists)
+        Set<Task> allTasks = new HashSet<>(graph.keySet());
+        for (List<Task> deps : graph.values()) {
+            allTasks.addAll(deps);
+        }
+
+        // Configure all tasks
+        Set<String> pendingParts = pipelined ? new HashSet<>(splitFiles) : Collections.emptySet();
+        for (Task task : allTasks) {
+            task.setClusterManager(clusterManager);
+            // Tasks with no commands represent files that already exist,
+            // except parts that the pipelined startup has not delivered yet
+            if (task.getCommands().isEmpty() && !pendingParts.contains(task.getTaskName())) {
+                task.setStatus(TaskStatus.FINISHED);
+                System.out.println("[MAIN] File dependency " + task.getTaskName() + " marked as FINISHED");
+            }
+        }
+    }
+
+    /**
+     * Gets the files the job writes: the targets of its tasks and the outputs they
+     * declare, its parts and its partition plan.
+     * @return The file names
+     */
+    Set<String> getOutputs() {
+        Set<String> outputs = new HashSet<>();
+        for (Task task : graph.keySet()) {
+            if (!task.getCommands().isEmpty()) {
+                outputs.add(task.getTaskName());
+                outputs.addAll(task.getOutputs());
+            }
+        }
+        if (splitFiles != null) {
+            outputs.addAll(splitFiles);
+        }
+        if (planFile != null) {
+            outputs.add(planFile);
+        }
+        return outputs;
+    }
+
+    /**
+     * Gets the files the job reads or writes.
+     * @return The file names
+     */
+    Set<String> getFiles() {
+        Set<String> files = new HashSet<>(getOutputs());
+        for (Map.Entry<Task, List<Task>> entry : graph.entrySet()) {
+            files.add(entry.getKey().getTaskName());
+            for (Task dep : entry.getValue()) {
+                files.add(dep.getTaskName());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Prepares the inputs of a dynamic job: without pipelined startup, splits the input
+     * and ships the parts to every worker (of their site, when count tasks are pinned to
+     * sites); for word frequencies, ships the partition plan.
+     * @throws IOException if the input cannot be split
+     */
+    void stage() throws IOException {
+        if (!dynamicMode) {
+            return;
+        }
+        if (!pipelined) {
+            System.out.println("[MAIN] Splitting file into " + numWorkers + " parts...");
+            FileSplitter.splitFileEquitably(request.getInputFile(), numWorkers, prefix + "part");
+
+            System.out.println("[MAIN] Distributing split files to workers...");
+            distributeSplitFiles(splitFiles);
+        }
+        if (planFile != null && !preparePartitionPlan()) {
+            planFile = null;
+            buildGraph();
+        }
+    }
+
+    /**
+     * Schedules the task graph until every task is done.
+     * @param fairShare The arbiter of the jobs sharing the cluster, or null if the job has it alone
+     * @param share This job's share, or null
+     * @throws Exception if the scheduling fails
+     */
+    void run(FairShare fairShare, FairShare.Share share) throws Exception {
+        // Create and configure scheduler
+        System.out.println("[MAIN] Creating task scheduler...");
+        TaskScheduler scheduler = new TaskScheduler();
+
+        for (Map.Entry<Task, List<Task>> entry : graph.entrySet()) {
+            scheduler.addTask(entry.getKey(), entry.getValue());
+        }
+        if (fairShare != null) {
+            scheduler.setFairShare(fairShare, share);
+        }
+        this.scheduler = scheduler;
+
+        System.out.println("[MAIN] Scheduler configured with " + scheduler.getTaskCount() + " tasks");
+        System.out.println("[MAIN] Starting distributed execution...\n");
+
+        if (pipelined) {
+            runPipelined(scheduler);
+        } else {
+            scheduler.executeTasks();
+        }
+    }
+
+    /**
+     * Removes the parts and partition plan of a dynamic job from the master's working
+     * directory, and those and its intermediate outputs from the workers'. Only the
+     * results, which no task of the job reads, are kept.
+     */
+    void cleanup() {
+        if (dynamicMode && splitFiles != null) {
+            System.out.println("\n[MAIN] Cleaning up temporary files...");
+            List<String> inputs = new ArrayList<>(splitFiles);
+            if (jobType == JobType.FREQUENCY) {
+                // Written even if the plan fell back to hash partitioning
+                inputs.add(prefix + PartitionPlan.FILE_NAME);
+            }
+            FileSplitter.cleanupFiles(inputs);
+            clusterManager.forgetSharedFiles(inputs);
+            cleanupWorkers(inputs);
+            System.out.println("[MAIN] ✅ Cleanup complete");
+        }
+    }
+
+    /**
+     * Deletes the files the job wrote on the workers, every worker at once.
+     * A worker that cannot be reached keeps its files.
+     */
+    private void cleanupWorkers(List<String> inputs) {
+        Set<Task> results = new HashSet<>(graph.keySet());
+        for (List<Task> deps : graph.values()) {
+            results.removeAll(deps);
+        }
+        Set<String> files = getOutputs();
+        files.addAll(inputs);
+        for (Task result : results) {
+            files.remove(result.getTaskName());
+            files.removeAll(result.getOutputs());
+        }
+        List<String> fileNames = new ArrayList<>(files);
+
+        List<ComputeNode> nodes;
+        synchronized (clusterManager.getNodes()) {
+            nodes = new ArrayList<>(clusterManager.getNodes());
+        }
+        AtomicInteger deleted = new AtomicInteger();
+        ExecutorService cleaners = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(nodes.size(), Configuration.CLEANUP_THREADS)));
+        for (ComputeNode node : nodes) {
+            cleaners.submit(() -> {
+                try {
+                    deleted.addAndGet(MasterCoordinator.deleteOnWorker(fileNames, node.hostname, node.port));
+                } catch (Exception e) {
+                    System.err.println("[MAIN] ⚠️  Could not clean up " + node.hostname + ":" + node.port +
+                                       " (" + e.getMessage() + ")");
+                }
+            });
+        }
+        cleaners.shutdown();
+        try {
+            cleaners.awaitTermination(Configuration.CLEANUP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("[MAIN] 🧹 Deleted " + deleted.get() + " temporary file(s) on " + nodes.size() + " worker(s)");
+    }
+
+    /**
+     * Counts the tasks of the job in a given state.
+     * @param status The state
+     * @return The number of tasks, 0 before the job runs
+     */
+    int countTasks(TaskStatus status) {
+        TaskScheduler running = scheduler;
+        return running == null ? 0 : running.countTasks(status);
+    }
+
+    /**
+     * Gets the number of tasks of the job.
+     * @return The number of tasks, 0 before the job is planned
+     */
+    int getTaskCount() {
+        Map<Task, List<Task>> planned = graph;
+        return planned == null ? 0 : planned.size();
+    }
+
+    /**
+     * Runs the scheduler while the input file is still being split and shipped.
+     * Each part is sent to a single worker as soon as it is cut; its file task is then
+     * marked FINISHED, so the matching count task becomes runnable immediately and
+     * counting overlaps with splitting and transfer.
+     */
+    private void runPipelined(TaskScheduler scheduler) throws Exception {
+        AtomicReference<Exception> schedulerError = new AtomicReference<>();
+        Thread schedulerThread = new Thread(() -> {
+            try {
+                scheduler.executeTasks();
+            } catch (Exception e) {
+                schedulerError.set(e);
+            }
+        }, "scheduler");
+        schedulerThread.start();
+
+        int numParts = splitFiles.size();
+        ExecutorService shippers = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(numParts, Configuration.PIPELINE_SHIP_THREADS)));
+        try {
+            FileSplitter.splitFileStreaming(request.getInputFile(), numParts, prefix + "part", (index, path, bytes) -> {
+                List<ComputeNode> targets = partTargets(path);
+                shippers.submit(() -> shipPart(path, targets.get(index % targets.size()), taskMap.get(path)));
+            });
+        } finally {
+            shippers.shutdown();
+        }
+
+        shippers.awaitTermination(Configuration.SCHEDULER_TIMEOUT_HOURS, TimeUnit.HOURS);
+        schedulerThread.join();
+
+        if (schedulerError.get() != null) {
+            throw schedulerError.get();
+        }
+    }
+
+    /**
+     * Ships one part to its worker and releases the tasks waiting for it.
+     * Falls back to distributing the part to every worker of its site if the direct transfer fails;
+     * if that fails too, the part is marked FAILED so its consumers are cancelled.
+     */
+    private void shipPart(String part, ComputeNode node, Task partTask) {
+        boolean delivered = true;
+        try {
+            ArtifactBroadcaster.broadcast(part, Collections.singletonList(node));
+            long bytes = new File(part).length();
+            clusterManager.recordFileLocation(part, node);
+            clusterManager.recordFileSize(part, bytes);
+            clusterManager.getTransferStats().record(clusterManager.getMasterNode(), node, bytes);
+        } catch (Exception e) {
+            String targets = partSites.containsKey(part) ? "the workers of site " + partSites.get(part) : "all workers";
+            System.err.println("[MAIN] ⚠️  Could not ship " + part + " to " + node.hostname + " (" + e.getMessage() +
+                               "), distributing it to " + targets);
+            delivered = distributeSplitFiles(Collections.singletonList(part));
+        }
+
+        if (partTask != null) {
+            if (!delivered) {
+                System.err.println("[MAIN] ❌ " + part + " could not be delivered, cancelling its tasks");
+            }
+            partTask.setStatus(delivered ? TaskStatus.FINISHED : TaskStatus.FAILED);
+        }
+    }
+
+    /**
+     * Gets the workers a part may be shipped to: those of the site its count task is
+     * pinned to, or every worker.
+     */
+    private List<ComputeNode> partTargets(String part) {
+        String site = partSites.get(part);
+        List<ComputeNode> targets = new ArrayList<>();
+        synchronized (clusterManager.getNodes()) {
+            for (ComputeNode node : clusterManager.getNodes()) {
+                if (site == null || site.equals(node.site)) {
+                    targets.add(node);
+                }
+            }
+        }
+        // The site lost its workers: its count task fails, but the part still has to go somewhere
+        return targets.isEmpty() ? new ArrayList<>(clusterManager.getNodes()) : targets;
+    }
+
+    /**
+     * Distributes split files to the workers: each part to the workers of the site its
+     * count task is pinned to, any other file to every worker.
+     * Each file is pipelined through the workers by the broadcast chain;
+     * scp from the master is only used as a fallback when the chain fails.
+     * @return true if every file reached its workers
+     */
+    private boolean distributeSplitFiles(List<String> files) {
+        boolean delivered = true;
+
+        for (String splitFile : files) {
+            // Recorded first, so a node joining during the broadcast receives it on admission
+            List<ComputeNode> nodes = clusterManager.shareFile(splitFile, partSites.get(splitFile));
+            try {
+                ArtifactBroadcaster.broadcast(splitFile, nodes);
+                continue;
+            } catch (Exception e) {
+                System.err.println("[MAIN] ⚠️  Broadcast of " + splitFile + " failed (" + e.getMessage() + "), falling back to scp");
+            }
+
+            for (ComputeNode node : nodes) {
+                try {
+                    String hostname = node.hostname;
+                    String[] command = {"scp", "-q", splitFile, hostname + ":~/"};
+                    Process process = Runtime.getRuntime().exec(command);
+                    int exitCode = process.waitFor();
+
+                    if (exitCode != 0) {
+                        System.err.println("[MAIN] ⚠️  Failed to copy " + splitFile + " to " + hostname);
+                        delivered = false;
+                    }
+                } catch (Exception e) {
+                    System.err.println("[MAIN] Error distributing " + splitFile + ": " + e.getMessage());
+                    delivered = false;
+                }
+            }
+        }
+        if (delivered) {
+            System.out.println("[MAIN] ✅ Split files distributed to " + (partSites.isEmpty() ? "all workers" : "their sites"));
+        }
+        return delivered;
+    }
+
+    /**
+     * Samples the input and ships the resulting partition plan to every worker.
+     * @return false to fall back to hash partitioning
+     */
+    private boolean preparePartitionPlan() {
+        int numReducers = request.getReducers() > 0 ? request.getReducers() : numWorkers;
+        try {
+            System.out.println("[MAIN] Sampling input for skew-aware partitioning...");
+            PartitionPlan plan = KeySampler.plan(request.getInputFile(), numReducers, Configuration.MAPREDUCE_SAMPLE_BYTES,
+                                                 Configuration.MAPREDUCE_HOT_KEY_FRACTION);
+            plan.write(planFile);
+            ArtifactBroadcaster.broadcast(planFile, clusterManager.shareFile(planFile));
+            return true;
+        } catch (Exception e) {
+            clusterManager.forgetSharedFiles(Collections.singleton(planFile));
+            System.err.println("[MAIN] ⚠️  Partition plan unavailable (" + e.getMessage() + "), using hash partitioning");
+            return false;
+        }
+    }
+
+    /**
+     * Builds the word count task graph for the split files.
+     * Same graph as the former generated Makefile: total.txt depends on count*.txt,
+     * which depend on part*.txt and wordcount. Beyond AGGREGATION_FAN_IN parts, the
+     * count files are summed through levels of partial totals first.
+     *
+     * On a multi-site cluster each part is counted on the site it is shipped to and
+     * every site sums its own counts into total.&lt;site&gt;.txt, so only one small file
+     * per site crosses the WAN to build total.txt.
+     */
+    private TaskGraphBuilder<Task> buildWordCountGraph() {
+        TaskGraphBuilder<Task> builder = TaskGraphBuilder.forTasks();
+        List<ComputeNode> nodes = clusterManager.getNodes();
+        boolean siteCombine = Configuration.SITE_COMBINERS && clusterManager.getSites().size() > 1;
+
+        // Wordcount binary target
+        String binary = prefix + "wordcount";
+        builder.rule(binary).dependsOn("test/wordcount.c")
+               .command("gcc -o " + binary + " test/wordcount.c");
+
+        // Count targets for each split file, grouped by the site their part is shipped to
+        Map<String, List<String>> countFilesBySite = new LinkedHashMap<>();
+        partSites.clear();
+        for (int i = 0; i < splitFiles.size(); i++) {
+            String splitFile = splitFiles.get(i);
+            String countFile = prefix + "count" + (i + 1) + ".txt";
+            String site = nodes.get(i % nodes.size()).site;
+            countFilesBySite.computeIfAbsent(siteCombine ? site : "", k -> new ArrayList<>()).add(countFile);
+
+            TaskGraphBuilder<Task>.Rule rule = builder.rule(countFile).dependsOn(splitFile, binary)
+                   .command("./" + binary + " " + splitFile + " > " + countFile);
+            if (siteCombine) {
+                // Only that site's workers receive the part
+                rule.annotate("site", site);
+                partSites.put(splitFile, site);
+            }
+        }
+
+        Map<String, String> reduce = Collections.singletonMap("reduce", "sum");
+        List<String> totalInputs = new ArrayList<>();
+        if (siteCombine) {
+            // One combiner per site, run on that site; its output is all the site sends out
+            for (Map.Entry<String, List<String>> entry : countFilesBySite.entrySet()) {
+                String siteTotal = prefix + "total." + entry.getKey() + ".txt";
+                Map<String, String> annotations = new LinkedHashMap<>(reduce);
+                annotations.put("site", entry.getKey());
+                builder.reductionTree(siteTotal, entry.getValue(), ReduceOperation.SUM,
+                                      Configuration.AGGREGATION_FAN_IN, annotations)
+                       .annotate("partial", "");
+                totalInputs.add(siteTotal);
+            }
+            System.out.println("[MAIN] 🗺️  Site combiners: " + String.join(", ", totalInputs));
+        } else {
+            for (List<String> countFiles : countFilesBySite.values()) {
+                totalInputs.addAll(countFiles);
+            }
+        }
+
+        // total.txt target (aggregation), reduced natively; wide jobs get partial sums on workers
+        builder.reductionTree(prefix + "total.txt", totalInputs, ReduceOperation.SUM,
+                              Configuration.AGGREGATION_FAN_IN, reduce);
+
+        return builder;
+    }
+}
@@ -0,0 +1,323 @@
+package scheduler;
+
+import cluster.ClusterManager;
+import config.Configuration;
+import network.master.JobInfo;
+import network.master.JobRequest;
+import network.master.JobService;
+import network.master.MasterCoordinator;
+import network.master.MembershipServer;
+import parser.TaskStatus;
+
+import java.io.File;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running master: keeps one cluster (its workers, their stubs and the membership
+ * service) and runs the jobs submitted to it with network.master.JobClient, several
+ * at once. Running jobs share the slots through a FairShare, by priority and weight.
+ *
+ * Jobs run in the master's working directory and on the workers' own. Every file an
+ * input file job generates is named after the job (job-3-total.txt), so those never
+ * clash; two user Makefiles writing the same file cannot run together, though: a job
+ * waits for every earlier job one of them writes a file of the other.
+ */
+public class JobServer extends UnicastRemoteObject implements JobService {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A submitted job and its state.
+     */
+    private static final class Entry {
+        final String id;
+        final JobRequest request;
+        final Job job;
+        final long submittedAt = System.currentTimeMillis();
+        String state = JobInfo.QUEUED;
+        Set<String> outputs;
+        Set<String> files;
+        long startedAt;
+        long endedAt;
+        String message;
+
+        Entry(String id, JobRequest request, Job job) {
+            this.id = id;
+            this.request = request;
+            this.job = job;
+        }
+
+        boolean isDone() {
+            return JobInfo.SUCCEEDED.equals(state) || JobInfo.FAILED.equals(state);
+        }
+    }
+
+    private final transient ClusterManager clusterManager;
+    private final transient FairShare fairShare;
+    private final transient Map<String, Entry> jobs = new LinkedHashMap<>();
+    private final transient ExecutorService runners = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "job-runner");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final transient ScheduledExecutorService progressTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "job-progress");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int submitted;
+
+    private JobServer(ClusterManager clusterManager) throws RemoteException {
+        super();
+        this.clusterManager = clusterManager;
+        this.fairShare = new FairShare(clusterManager);
+    }
+
+    /**
+     * Usage: java scheduler.JobServer "[worker1,worker2,...]" | --workers=N ["[worker1,...]"]
+     */
+    public static void main(String[] args) {
+        System.out.println("╔══════════════════════════════════════════════════════════╗");
+        System.out.println("║   DISTRIBUTED WORD COUNT - Job Service                   ║");
+        System.out.println("╚══════════════════════════════════════════════════════════╝\n");
+
+        int expectedWorkers = 0;
+        String workerList = "";
+        for (String arg : args) {
+            if (arg.startsWith("--workers=")) {
+                expectedWorkers = Integer.parseInt(arg.substring("--workers=".length()));
+            } else {
+                workerList = arg;
+            }
+        }
+        if (expectedWorkers <= 0 && workerList.isEmpty()) {
+            System.err.println("Usage: java scheduler.JobServer \"[worker1,worker2,...]\"");
+            System.err.println("       java scheduler.JobServer --workers=N [\"[worker1,worker2,...]\"]");
+            System.err.println("  Jobs are submitted with java network.master.JobClient <master[:port]> submit ...");
+            System.exit(1);
+        }
+
+        try {
+            boolean registering = expectedWorkers > 0;
+            System.out.println("[MAIN] Initializing cluster...");
+            ClusterManager clusterManager = new ClusterManager(workerList, registering, MasterCoordinator::probeNode);
+            MembershipServer membership = MembershipServer.start(clusterManager, Configuration.membershipPort());
+            if (registering) {
+                Main.awaitWorkers(clusterManager, expectedWorkers);
+            }
+
+            JobServer server = new JobServer(clusterManager);
+            membership.bind(Configuration.JOB_SERVICE_NAME, server);
+            server.progressTimer.scheduleWithFixedDelay(server::logProgress, Configuration.JOB_PROGRESS_INTERVAL_MS,
+                                                        Configuration.JOB_PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                System.out.println("[JOBS] Stopping the job service");
+                membership.stop();
+            }, "job-service-shutdown"));
+            // The exported services keep the JVM running
+            System.out.println("[JOBS] ✅ Accepting jobs on port " + Configuration.membershipPort() + " with " +
+                               clusterManager.getNodes().size() + " worker(s)");
+        } catch (IllegalArgumentException e) {
+            System.err.println("\n[MAIN] ❌ Configuration error: " + e.getMessage());
+            System.exit(1);
+        } catch (Exception e) {
+            System.err.println("\n[MAIN] ❌ Unexpected error: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    @Override
+    public String submit(JobRequest request) throws RemoteException {
+        Entry entry;
+        try {
+            if (request == null || (request.getMakefile() == null) == (request.getInputFile() == null)) {
+                throw new IllegalArgumentException("A job needs either a Makefile or an input file");
+            }
+            String path = request.getMakefile() != null ? request.getMakefile() : request.getInputFile();
+            if (!new File(path).isFile()) {
+                throw new IllegalArgumentException("File not found on the master: " + path);
+            }
+            if (!(request.getWeight() > 0)) {
+                throw new IllegalArgumentException("Weight must be positive: " + request.getWeight());
+            }
+            synchronized (this) {
+                String id = "job-" + (++submitted);
+                entry = new Entry(id, request, new Job(request, id + "-", clusterManager));
+                jobs.put(id, entry);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage());
+        }
+        System.out.println("[JOBS] " + entry.id + " submitted: " + request.getName() + " (priority " +
+                           request.getPriority() + ", weight " + request.getWeight() + ")");
+        runners.submit(() -> run(entry));
+        return entry.id;
+    }
+
+    @Override
+    public synchronized JobInfo getJob(String jobId) throws RemoteException {
+        return info(find(jobId));
+    }
+
+    @Override
+    public synchronized JobInfo awaitJob(String jobId, long maxWaitMs) throws RemoteException {
+        Entry entry = find(jobId);
+        long deadline = System.currentTimeMillis() + maxWaitMs;
+        long remaining = maxWaitMs;
+        try {
+            while (!entry.isDone() && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return info(entry);
+    }
+
+    @Override
+    public synchronized List<JobInfo> listJobs() {
+        List<JobInfo> active = new ArrayList<>();
+        List<JobInfo> done = new ArrayList<>();
+        for (Entry entry : jobs.values()) {
+            (entry.isDone() ? done : active).add(info(entry));
+        }
+        active.addAll(done);
+        return active;
+    }
+
+    /**
+     * Plans a job, waits until it clashes with no earlier job, then runs it.
+     */
+    private void run(Entry entry) {
+        Job job = entry.job;
+        boolean started = false;
+        FairShare.Share share = null;
+        try {
+            job.plan();
+            synchronized (this) {
+                entry.outputs = job.getOutputs();
+                entry.files = job.getFiles();
+                notifyAll();
+                Entry blocker;
+                boolean logged = false;
+                while ((blocker = blocker(entry)) != null) {
+                    if (!logged && blocker.outputs != null) {
+                        System.out.println("[JOBS] " + entry.id + " waits for " + blocker.id + " (same files)");
+                        logged = true;
+                    }
+                    wait();
+                }
+                entry.state = JobInfo.RUNNING;
+                entry.startedAt = System.currentTimeMillis();
+                started = true;
+            }
+            System.out.println("[JOBS] ▶️  " + entry.id + " started: " + job.getTaskCount() + " task(s)");
+
+            share = fairShare.join(entry.id, entry.request.getPriority(), entry.request.getWeight());
+            job.stage();
+            job.run(fairShare, share);
+
+            int failed = job.countTasks(TaskStatus.FAILED);
+            finish(entry, failed == 0 ? JobInfo.SUCCEEDED : JobInfo.FAILED,
+                   failed == 0 ? null : failed + " task(s) failed");
+        } catch (Exception e) {
+            finish(entry, JobInfo.FAILED, e.getMessage());
+        } finally {
+            if (share != null) {
+                fairShare.leave(share);
+            }
+            if (started) {
+                job.cleanup();
+            }
+        }
+    }
+
+    /**
+     * Finds the earliest job submitted before the given one, still queued or running,
+     * that the job must wait for: one not planned yet, or one of the two writing a
+     * file the other uses (only Makefile targets can overlap, generated files are
+     * named after their job). Called with the lock held.
+     */
+    private Entry blocker(Entry entry) {
+        for (Entry earlier : jobs.values()) {
+            if (earlier == entry) {
+                return null;
+            }
+            if (earlier.isDone()) {
+                continue;
+            }
+            if (earlier.outputs == null || !Collections.disjoint(earlier.outputs, entry.files) ||
+                !Collections.disjoint(entry.outputs, earlier.files)) {
+                return earlier;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void finish(Entry entry, String state, String message) {
+        entry.state = state;
+        entry.message = message;
+        entry.endedAt = System.currentTimeMillis();
+        entry.outputs = null;
+        entry.files = null;
+        if (JobInfo.SUCCEEDED.equals(state)) {
+            System.out.println("[JOBS] ✅ " + entry.id + " succeeded in " + (entry.endedAt - entry.startedAt) + " ms");
+        } else {
+            System.err.println("[JOBS] ❌ " + entry.id + " failed: " + message);
+        }
+
+        // Keep the last JOB_HISTORY finished jobs
+        int finished = 0;
+        for (Entry job : jobs.values()) {
+            if (job.isDone()) {
+                finished++;
+            }
+        }
+        for (Iterator<Entry> it = jobs.values().iterator(); it.hasNext() && finished > Configuration.JOB_HISTORY; ) {
+            if (it.next().isDone()) {
+                it.remove();
+                finished--;
+            }
+        }
+        notifyAll();
+    }
+
+    private Entry find(String jobId) throws RemoteException {
+        Entry entry = jobs.get(jobId);
+        if (entry == null) {
+            throw new RemoteException("Unknown job: " + jobId);
+        }
+        return entry;
+    }
+
+    private JobInfo info(Entry entry) {
+        long elapsed = entry.startedAt == 0 ? 0
+                       : (entry.endedAt == 0 ? System.currentTimeMillis() : entry.endedAt) - entry.startedAt;
+        return new JobInfo(entry.id, entry.request.getName(), entry.state, entry.request.getPriority(),
+                           entry.request.getWeight(), entry.job.getTaskCount(),
+                           entry.job.countTasks(TaskStatus.FINISHED), entry.job.countTasks(TaskStatus.FAILED),
+                           entry.job.countTasks(TaskStatus.IN_PROGRESS), elapsed, entry.message);
+    }
+
+    private void logProgress() {
+        for (JobInfo job : listJobs()) {
+            if (JobInfo.RUNNING.equals(job.getState())) {
+                System.out.println("[JOBS] " + job.getId() + " " + job.getName() + ": " + job.getFinished() + "/" +
+                                   job.getTasks() + " done, " + job.getRunning() + " running");
+            }
+        }
+    }
+}
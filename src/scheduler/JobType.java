@@ -0,0 +1,44 @@
+package scheduler;
+
+/**
+ * Kinds of jobs the dynamic mode can build from an input file.
+ */
+public enum JobType {
+    /** Total number of words (count per part, summed on the master). */
+    WORDCOUNT("wordcount"),
+    /** Frequency of every word (MapReduce with hash-partitioned shuffle). */
+    FREQUENCY("freq"),
+    /** Most frequent words with error bounds (mergeable sketches, no shuffle). */
+    TOPK("topk"),
+    /** Approximate number of distinct words (HyperLogLog). */
+    DISTINCT("distinct");
+
+    private final String option;
+
+    JobType(String option) {
+        this.option = option;
+    }
+
+    /**
+     * Gets the value used to select this job on the command line (--job=...).
+     * @return The option value
+     */
+    public String getOption() {
+        return option;
+    }
+
+    /**
+     * Parses a --job option value.
+     * @param value The option value
+     * @return The matching job type
+     * @throws IllegalArgumentException if no job matches
+     */
+    public static JobType fromOption(String value) {
+        for (JobType type : values()) {
+            if (type.option.equalsIgnoreCase(value) || type.name().equalsIgnoreCase(value)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown job type: " + value);
+    }
+}
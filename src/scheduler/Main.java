@@ -1,19 +1,13 @@
 package scheduler;
 
-import parser.MakefileParser;
-import parser.Task;
-import parser.TaskStatus;
 import cluster.ClusterManager;
-import cluster.ComputeNode;
-import utils.FileSplitter;
+import config.Configuration;
+import network.master.JobRequest;
+import network.master.MasterCoordinator;
+import network.master.MembershipServer;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.PrintWriter;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 /**
  * Main entry point for the distributed word count system.
@@ -28,28 +22,60 @@ public class Main {
         if (args.length < 1) {
             System.err.println("Usage:");
             System.err.println("  Static mode:  java scheduler.Main \"[worker1,worker2,...]\"");
-            System.err.println("  Dynamic mode: java scheduler.Main <input-file> \"[worker1,worker2,...]\"");
+            System.err.println("  Dynamic mode: java scheduler.Main [--job=wordcount|freq|topk|distinct] [--reducers=N] [--k=N] [--precision=P] <input-file> \"[worker1,worker2,...]\"");
+            System.err.println("  Registering workers: add --workers=N to wait for N workers started with -Dwordcount.master;");
+            System.err.println("                       the worker list is then optional");
             System.err.println("");
             System.err.println("Examples:");
             System.err.println("  Static:  java scheduler.Main \"[nancy-2.grid5000.fr,nancy-3.grid5000.fr]\"");
             System.err.println("  Dynamic: java scheduler.Main data.txt \"[nancy-2.grid5000.fr,nancy-3.grid5000.fr]\"");
             System.err.println("  Local:   java scheduler.Main input.txt \"[localhost]\"");
+            System.err.println("  Freq:    java scheduler.Main --job=freq --reducers=4 data.txt \"[nancy-2.grid5000.fr,nancy-3.grid5000.fr]\"");
+            System.err.println("  Elastic: java scheduler.Main --workers=500 data.txt");
             System.exit(1);
         }
 
         try {
-            // Determine mode and parse arguments
+            // Options (--name=value) may appear anywhere; the rest are positional
+            JobType jobType = JobType.WORDCOUNT;
+            int reducers = 0;
+            int topK = Configuration.TOPK_DEFAULT_K;
+            int precision = Configuration.HLL_DEFAULT_PRECISION;
+            int expectedWorkers = 0;
+            List<String> positional = new ArrayList<>();
+            for (String arg : args) {
+                if (arg.startsWith("--job=")) {
+                    jobType = JobType.fromOption(arg.substring("--job=".length()));
+                } else if (arg.startsWith("--reducers=")) {
+                    reducers = Integer.parseInt(arg.substring("--reducers=".length()));
+                } else if (arg.startsWith("--k=")) {
+                    topK = Integer.parseInt(arg.substring("--k=".length()));
+                } else if (arg.startsWith("--precision=")) {
+                    precision = Integer.parseInt(arg.substring("--precision=".length()));
+                } else if (arg.startsWith("--workers=")) {
+                    expectedWorkers = Integer.parseInt(arg.substring("--workers=".length()));
+                } else {
+                    positional.add(arg);
+                }
+            }
+            args = positional.toArray(new String[0]);
+
+            // Determine mode and parse arguments; with registering workers the (bracketed) list is optional
+            boolean registering = expectedWorkers > 0;
+            if (registering && (args.length == 0 || (args.length == 1 && !args[0].trim().startsWith("[")))) {
+                args = args.length == 0 ? new String[] {""} : new String[] {args[0], ""};
+            }
             boolean dynamicMode = args.length >= 2;
             String inputFile = null;
             String workerList = null;
             String makefilePath = "Makefile";
-            List<String> splitFiles = null;
 
             if (dynamicMode) {
                 inputFile = args[0];
                 workerList = args[1];
-                System.out.println("[MAIN] 🔄 Dynamic mode: Auto-generating Makefile from input file");
+                System.out.println("[MAIN] 🔄 Dynamic mode: Auto-generating task graph from input file");
                 System.out.println("[MAIN] Input file: " + inputFile);
+                System.out.println("[MAIN] Job: " + jobType.getOption());
             } else {
                 workerList = args[0];
                 System.out.println("[MAIN] 📄 Static mode: Using existing Makefile");
@@ -57,86 +83,29 @@ public class Main {
 
             // Initialize cluster
             System.out.println("[MAIN] Initializing cluster...");
-            ClusterManager clusterManager = new ClusterManager(workerList);
-            int numWorkers = clusterManager.getNodes().size();
-
-            // Dynamic mode: generate Makefile from input file
-            if (dynamicMode) {
-                File file = new File(inputFile);
-                if (!file.exists() || !file.isFile()) {
-                    System.err.println("[MAIN] ❌ Input file not found: " + inputFile);
-                    System.exit(1);
-                }
-
-                System.out.println("[MAIN] File size: " + file.length() + " bytes");
-                System.out.println("[MAIN] Splitting file into " + numWorkers + " parts...");
-
-                // Split the input file
-                splitFiles = FileSplitter.splitFileEquitably(inputFile, numWorkers, "part");
-
-                // Distribute split files to all workers
-                System.out.println("[MAIN] Distributing split files to workers...");
-                distributeSplitFiles(splitFiles, clusterManager);
-
-                // Generate Makefile
-                makefilePath = "Makefile.generated";
-                System.out.println("[MAIN] Generating Makefile: " + makefilePath);
-                generateMakefile(makefilePath, splitFiles);
+            ClusterManager clusterManager = new ClusterManager(workerList, registering, MasterCoordinator::probeNode);
+            MembershipServer membership = Configuration.MEMBERSHIP_PORT > 0 || registering
+                ? MembershipServer.start(clusterManager, Configuration.membershipPort()) : null;
+            if (registering) {
+                awaitWorkers(clusterManager, expectedWorkers);
             }
 
-            // Parse Makefile (either existing or generated)
-            System.out.println("[MAIN] Parsing Makefile...");
-            MakefileParser parser = new MakefileParser();
-            Map<Task, List<Task>> graph = parser.processFile(makefilePath);
-
-            if (graph.isEmpty()) {
-                System.err.println("[MAIN] ❌ No tasks found in Makefile. Exiting.");
-                System.exit(1);
-            }
-
-            parser.printGraph();
-
-            // Inject cluster manager into all tasks and mark file-only tasks as finished
-            System.out.println("[MAIN] Configuring tasks with cluster manager...");
-
-            // First, collect all tasks (including those only in dependency lists)
-            Set<Task> allTasks = new HashSet<>(graph.keySet());
-            for (List<Task> deps : graph.values()) {
-                allTasks.addAll(deps);
+            JobRequest request = new JobRequest(null, dynamicMode ? null : makefilePath, inputFile,
+                                                jobType.getOption(), reducers, topK, precision,
+                                                Configuration.JOB_DEFAULT_PRIORITY, Configuration.JOB_DEFAULT_WEIGHT);
+            Job job = new Job(request, "", clusterManager);
+            job.plan();
+            job.stage();
+            job.run(null, null);
+            if (membership != null) {
+                membership.stop();
             }
 
-            // Configure all tasks
-            for (Task task : allTasks) {
-                task.setClusterManager(clusterManager);
-                // Tasks with no commands represent files that already exist
-                if (task.getCommands().isEmpty()) {
-                    task.setStatus(TaskStatus.FINISHED);
-                    System.out.println("[MAIN] File dependency " + task.getTaskName() + " marked as FINISHED");
-                }
-            }
-
-            // Create and configure scheduler
-            System.out.println("[MAIN] Creating task scheduler...");
-            TaskScheduler scheduler = new TaskScheduler();
-
-            for (Map.Entry<Task, List<Task>> entry : graph.entrySet()) {
-                scheduler.addTask(entry.getKey(), entry.getValue());
-            }
-
-            System.out.println("[MAIN] Scheduler configured with " + scheduler.getTaskCount() + " tasks");
-            System.out.println("[MAIN] Starting distributed execution...\n");
-
-            scheduler.executeTasks();
-
             System.out.println("\n[MAIN] ✅ Distributed execution completed successfully!");
+            clusterManager.getTransferStats().printReport();
 
             // Cleanup in dynamic mode
-            if (dynamicMode && splitFiles != null) {
-                System.out.println("\n[MAIN] Cleaning up temporary files...");
-                FileSplitter.cleanupFiles(splitFiles);
-                new File(makefilePath).delete();
-                System.out.println("[MAIN] ✅ Cleanup complete");
-            }
+            job.cleanup();
 
         } catch (IllegalArgumentException e) {
             System.err.println("\n[MAIN] ❌ Configuration error: " + e.getMessage());
@@ -161,65 +130,17 @@ public class Main {
     }
 
     /**
-     * Distributes split files to all worker nodes using scp.
-     */
-    private static void distributeSplitFiles(List<String> splitFiles, ClusterManager clusterManager) {
-        List<ComputeNode> nodes = clusterManager.getNodes();
-
-        for (String splitFile : splitFiles) {
-            for (ComputeNode node : nodes) {
-                try {
-                    String hostname = node.hostname;
-                    String[] command = {"scp", "-q", splitFile, hostname + ":~/"};
-                    Process process = Runtime.getRuntime().exec(command);
-                    int exitCode = process.waitFor();
-
-                    if (exitCode != 0) {
-                        System.err.println("[MAIN] ⚠️  Failed to copy " + splitFile + " to " + hostname);
-                    }
-                } catch (Exception e) {
-                    System.err.println("[MAIN] Error distributing " + splitFile + ": " + e.getMessage());
-                }
-            }
-        }
-        System.out.println("[MAIN] ✅ Split files distributed to all workers");
-    }
-
-    /**
-     * Generates a Makefile from the split files.
-     * Creates a dependency graph: total.txt depends on count*.txt, which depend on part*.txt and wordcount.
+     * Waits for workers to register with the membership service. On timeout the job
+     * starts with the workers that made it; workers registering later still join.
      */
-    private static void generateMakefile(String makefilePath, List<String> splitFiles) throws Exception {
-        PrintWriter writer = new PrintWriter(new FileWriter(makefilePath));
-
-        // Generate wordcount binary target
-        writer.println("wordcount: test/wordcount.c");
-        writer.println("\tgcc -o wordcount test/wordcount.c");
-        writer.println();
-
-        // Generate count targets for each split file
-        for (int i = 0; i < splitFiles.size(); i++) {
-            String splitFile = splitFiles.get(i);
-            String countFile = "count" + (i + 1) + ".txt";
-
-            writer.println(countFile + ": " + splitFile + " wordcount");
-            writer.println("\t./wordcount " + splitFile + " > " + countFile);
-            writer.println();
-        }
-
-        // Generate total.txt target (aggregation)
-        writer.print("total.txt:");
-        for (int i = 0; i < splitFiles.size(); i++) {
-            writer.print(" count" + (i + 1) + ".txt");
+    static void awaitWorkers(ClusterManager clusterManager, int expectedWorkers) throws InterruptedException {
+        System.out.println("[MAIN] ⏳ Waiting for " + expectedWorkers + " worker(s) to register...");
+        long start = System.currentTimeMillis();
+        if (!clusterManager.awaitNodes(expectedWorkers, Configuration.REGISTRATION_WAIT_MS) &&
+            clusterManager.getNodes().isEmpty()) {
+            throw new IllegalStateException("No worker registered within " + Configuration.REGISTRATION_WAIT_MS + " ms");
         }
-        writer.println();
-        writer.print("\tcat");
-        for (int i = 0; i < splitFiles.size(); i++) {
-            writer.print(" count" + (i + 1) + ".txt");
-        }
-        writer.println(" | awk '{sum += $1} END {print sum}' > total.txt");
-
-        writer.close();
-        System.out.println("[MAIN] ✅ Makefile generated with " + splitFiles.size() + " parts");
+        System.out.println("[MAIN] ✅ " + clusterManager.getNodes().size() + " of " + expectedWorkers +
+                           " worker(s) registered in " + (System.currentTimeMillis() - start) + " ms");
     }
 }
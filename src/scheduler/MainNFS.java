@@ -1,14 +1,18 @@
 package scheduler;
 
 import parser.MakefileParser;
+import parser.TaskGraphBuilder;
 import parser.TaskNFS;
 import parser.TaskStatus;
 import cluster.ClusterManager;
+import config.Configuration;
+import network.master.MasterCoordinator;
 import utils.FileSplitter;
+import utils.ReduceOperation;
 
 import java.io.File;
-import java.io.FileWriter;
-import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -56,7 +60,7 @@ public class MainNFS {
                 if (args.length >= 3) {
                     nfsPath = args[2];
                 }
-                System.out.println("[MAIN-NFS] 🔄 Dynamic mode: Auto-generating Makefile from input file");
+                System.out.println("[MAIN-NFS] 🔄 Dynamic mode: Auto-generating task graph from input file");
                 System.out.println("[MAIN-NFS] Input file: " + inputFile);
                 System.out.println("[MAIN-NFS] NFS shared path: " + nfsPath);
             } else {
@@ -80,10 +84,12 @@ public class MainNFS {
 
             // Initialize cluster
             System.out.println("[MAIN-NFS] Initializing cluster...");
-            ClusterManager clusterManager = new ClusterManager(workerList);
+            ClusterManager clusterManager = new ClusterManager(workerList, false, MasterCoordinator::probeNode);
             int numWorkers = clusterManager.getNodes().size();
 
-            // Dynamic mode: generate Makefile from input file
+            Map<TaskNFS, List<TaskNFS>> graph;
+
+            // Dynamic mode: build the task graph from the input file
             if (dynamicMode) {
                 File file = new File(inputFile);
                 if (!file.exists() || !file.isFile()) {
@@ -101,24 +107,25 @@ public class MainNFS {
                 // No distribution needed - files already in shared NFS!
                 System.out.println("[MAIN-NFS] ✅ Files available in shared NFS directory (no transfer needed)");
 
-                // Generate Makefile with NFS paths
-                makefilePath = nfsPath + "/Makefile.generated";
-                System.out.println("[MAIN-NFS] Generating Makefile: " + makefilePath);
-                generateMakefileNFS(makefilePath, splitFiles, nfsPath);
-            }
+                // Build the task graph with NFS paths directly, no Makefile round trip
+                System.out.println("[MAIN-NFS] Building task graph in memory...");
+                TaskGraphBuilder<TaskNFS> builder = buildWordCountGraphNFS(splitFiles, nfsPath);
+                graph = builder.build();
+                System.out.println("[MAIN-NFS] ✅ Task graph built with " + splitFiles.size() + " parts (NFS paths)");
+            } else {
+                // Parse the user-supplied Makefile
+                System.out.println("[MAIN-NFS] Parsing Makefile...");
+                MakefileParser parser = new MakefileParser();
+                graph = parser.processFileNFS(makefilePath);
 
-            // Parse Makefile (either existing or generated)
-            System.out.println("[MAIN-NFS] Parsing Makefile...");
-            MakefileParser parser = new MakefileParser();
-            Map<TaskNFS, List<TaskNFS>> graph = parser.processFileNFS(makefilePath);
+                if (graph.isEmpty()) {
+                    System.err.println("[MAIN-NFS] ❌ No tasks found in Makefile. Exiting.");
+                    System.exit(1);
+                }
 
-            if (graph.isEmpty()) {
-                System.err.println("[MAIN-NFS] ❌ No tasks found in Makefile. Exiting.");
-                System.exit(1);
+                parser.printGraphNFS();
             }
 
-            parser.printGraphNFS();
-
             // Inject cluster manager and NFS path into all tasks
             System.out.println("[MAIN-NFS] Configuring tasks with cluster manager and NFS path...");
 
@@ -169,7 +176,6 @@ public class MainNFS {
             // if (dynamicMode && splitFiles != null) {
             //     System.out.println("\n[MAIN-NFS] Cleaning up temporary files...");
             //     FileSplitter.cleanupFiles(splitFiles);
-            //     new File(makefilePath).delete();
             //     System.out.println("[MAIN-NFS] ✅ Cleanup complete");
             // }
 
@@ -196,40 +202,31 @@ public class MainNFS {
     }
 
     /**
-     * Generates a Makefile from the split files with NFS paths.
+     * Builds the word count task graph for the split files with NFS paths.
      * All file paths use the shared NFS directory.
      */
-    private static void generateMakefileNFS(String makefilePath, List<String> splitFiles, String nfsPath) throws Exception {
-        PrintWriter writer = new PrintWriter(new FileWriter(makefilePath));
+    private static TaskGraphBuilder<TaskNFS> buildWordCountGraphNFS(List<String> splitFiles, String nfsPath) {
+        TaskGraphBuilder<TaskNFS> builder = TaskGraphBuilder.forNfsTasks();
 
-        // Generate wordcount binary target (in NFS directory)
-        writer.println("wordcount: test/wordcount.c");
-        writer.println("\tgcc -o " + nfsPath + "/wordcount test/wordcount.c");
-        writer.println();
+        // Wordcount binary target (in NFS directory)
+        builder.rule("wordcount").dependsOn("test/wordcount.c")
+               .command("gcc -o " + nfsPath + "/wordcount test/wordcount.c");
 
-        // Generate count targets for each split file (all in NFS)
+        // Count targets for each split file (all in NFS)
+        List<String> countFiles = new ArrayList<>();
         for (int i = 0; i < splitFiles.size(); i++) {
             String splitFile = splitFiles.get(i);
             String countFile = nfsPath + "/count" + (i + 1) + ".txt";
+            countFiles.add(countFile);
 
-            writer.println(countFile + ": " + splitFile + " wordcount");
-            writer.println("\t" + nfsPath + "/wordcount " + splitFile + " > " + countFile);
-            writer.println();
+            builder.rule(countFile).dependsOn(splitFile, "wordcount")
+                   .command(nfsPath + "/wordcount " + splitFile + " > " + countFile);
         }
 
-        // Generate total.txt target (aggregation in NFS)
-        writer.print(nfsPath + "/total.txt:");
-        for (int i = 0; i < splitFiles.size(); i++) {
-            writer.print(" " + nfsPath + "/count" + (i + 1) + ".txt");
-        }
-        writer.println();
-        writer.print("\tcat");
-        for (int i = 0; i < splitFiles.size(); i++) {
-            writer.print(" " + nfsPath + "/count" + (i + 1) + ".txt");
-        }
-        writer.println(" | awk '{sum += $1} END {print sum}' > " + nfsPath + "/total.txt");
+        // total.txt target (aggregation in NFS); wide jobs get partial sums on workers
+        builder.reductionTree(nfsPath + "/total.txt", countFiles, ReduceOperation.SUM,
+                              Configuration.AGGREGATION_FAN_IN, Collections.emptyMap());
 
-        writer.close();
-        System.out.println("[MAIN-NFS] ✅ Makefile generated with " + splitFiles.size() + " parts (NFS paths)");
+        return builder;
     }
 }
@@ -0,0 +1,394 @@
+package scheduler;
+
+import cluster.ClusterManager;
+import cluster.ComputeNode;
+import cluster.MembershipListener;
+import config.Configuration;
+import network.master.WorkerStubs;
+import network.worker.ShardReport;
+import network.worker.ShardResult;
+import network.worker.ShardTask;
+import network.worker.WorkerInterface;
+import parser.Task;
+import parser.TaskStatus;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Two-level scheduling for large clusters. The workers of each site are cut into
+ * shards of at most SHARD_MAX_WORKERS (neighbouring hostnames, i.e. racks), and one
+ * worker of each shard runs a sub-scheduler. The master hands ready tasks to the
+ * shard holding their inputs (else the least loaded one) in batches, and the shard
+ * leader dispatches them to its workers and stages their inputs; the master only
+ * sends one batch and one report request per shard and poll interval, whatever the
+ * number of tasks, and applies the finished tasks of each report together.
+ *
+ * Only plain one-core tasks whose output stays on the workers are sharded; the others
+ * go through the master's own dispatch. Workers enforce their admission limits
+ * whoever sends them work, so both paths share the workers. Draining workers get no
+ * new shard task. If a leader cannot be reached, its shard is abandoned and its
+ * tasks are run again through the master's dispatch; so are the tasks a shard hands
+ * back because none of its workers is reachable any more.
+ *
+ * Shards follow the membership of the cluster: a joining worker goes to the smallest
+ * shard of its site with room left, or leads a new one, and a leaving worker is taken
+ * out of its shard.
+ */
+public class ShardedDispatcher implements MembershipListener {
+
+    private static final class Shard {
+        final String id;
+        final String site;
+        final ComputeNode leader;
+        final List<ComputeNode> members;
+        final BlockingQueue<Task> pending = new LinkedBlockingQueue<>();
+        final Map<String, Task> inFlight = new ConcurrentHashMap<>();
+        volatile boolean retired;
+        // Set when members join or leave, so the leader gets the new list without waiting for a batch
+        volatile boolean membersChanged;
+        int done;
+        int failed;
+        int returned;
+        long lastReport;
+
+        Shard(String id, String site, List<ComputeNode> members) {
+            this.id = id;
+            this.site = site;
+            this.leader = members.get(0);
+            this.members = new CopyOnWriteArrayList<>(members);
+        }
+
+        int slots() {
+            return members.stream().mapToInt(ComputeNode::getSlots).sum();
+        }
+
+        int load() {
+            return pending.size() + inFlight.size();
+        }
+    }
+
+    private static final AtomicInteger RUNS = new AtomicInteger();
+
+    private final ClusterManager clusterManager;
+    private final String run;
+    private final List<Shard> shards = new CopyOnWriteArrayList<>();
+    private final Map<ComputeNode, Shard> shardOf = new ConcurrentHashMap<>();
+    private final ExecutorService loops;
+    private volatile boolean running = true;
+
+    /**
+     * Checks whether the tasks of a cluster should be sharded (-Dwordcount.sharding).
+     * @param clusterManager The cluster
+     * @return true if on, or auto with at least SHARD_MIN_WORKERS workers
+     */
+    public static boolean isEnabled(ClusterManager clusterManager) {
+        switch (Configuration.SHARDING.toLowerCase()) {
+            case "on":
+                return true;
+            case "off":
+                return false;
+            default:
+                return clusterManager.getNodes().size() >= Configuration.SHARD_MIN_WORKERS;
+        }
+    }
+
+    /**
+     * Cuts the cluster into shards and starts one dispatch loop per shard.
+     * @param clusterManager The cluster
+     */
+    public ShardedDispatcher(ClusterManager clusterManager) {
+        this.clusterManager = clusterManager;
+        // Unique per dispatcher: several jobs may shard the same cluster at once
+        this.run = Long.toString(System.currentTimeMillis(), 36) + RUNS.incrementAndGet();
+        for (Map.Entry<String, List<ComputeNode>> site : clusterManager.getSites().entrySet()) {
+            List<ComputeNode> nodes = new ArrayList<>();
+            for (ComputeNode node : site.getValue()) {
+                if (!node.isDraining()) {
+                    nodes.add(node);
+                }
+            }
+            if (nodes.isEmpty()) {
+                continue;
+            }
+            nodes.sort(Comparator.comparing((ComputeNode node) -> node.hostname).thenComparingInt(node -> node.port));
+            int count = (nodes.size() + Configuration.SHARD_MAX_WORKERS - 1) / Configuration.SHARD_MAX_WORKERS;
+            for (int i = 0; i < count; i++) {
+                List<ComputeNode> members = new ArrayList<>(
+                    nodes.subList(i * nodes.size() / count, (i + 1) * nodes.size() / count));
+                addShard(site.getKey(), members);
+            }
+        }
+        // One loop per shard, including the shards started by joining workers
+        this.loops = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "shard-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Shard shard : shards) {
+            loops.submit(() -> loop(shard));
+        }
+        clusterManager.addMembershipListener(this);
+    }
+
+    private Shard addShard(String site, List<ComputeNode> members) {
+        int index = 0;
+        for (Shard shard : shards) {
+            if (shard.site.equals(site)) {
+                index++;
+            }
+        }
+        Shard shard = new Shard(site + "-" + index + "-" + run, site, members);
+        shards.add(shard);
+        for (ComputeNode member : members) {
+            shardOf.put(member, shard);
+        }
+        System.out.println("[SHARDS] " + shard.id + ": " + members.size() + " worker(s), " + shard.slots() +
+                           " slot(s), led by " + shard.leader.hostname + ":" + shard.leader.port);
+        return shard;
+    }
+
+    /**
+     * Adds a joining worker to the smallest shard of its site with room left, or
+     * starts a new shard led by it.
+     * @param node The new node
+     */
+    @Override
+    public synchronized void nodeJoined(ComputeNode node) {
+        if (!running || shardOf.containsKey(node)) {
+            return;
+        }
+        Shard target = null;
+        for (Shard shard : shards) {
+            if (!shard.retired && shard.site.equals(node.site) && shard.members.size() < Configuration.SHARD_MAX_WORKERS &&
+                (target == null || shard.members.size() < target.members.size())) {
+                target = shard;
+            }
+        }
+        if (target == null) {
+            Shard shard = addShard(node.site, Collections.singletonList(node));
+            loops.submit(() -> loop(shard));
+            return;
+        }
+        target.members.add(node);
+        shardOf.put(node, target);
+        target.membersChanged = true;
+        System.out.println("[SHARDS] " + target.id + ": " + node.hostname + ":" + node.port + " joined, " +
+                           target.members.size() + " worker(s)");
+    }
+
+    /**
+     * Takes a leaving worker out of its shard. A leaving leader retires its shard
+     * (see loop), whose remaining tasks go through the master's dispatch.
+     * @param node The leaving node
+     */
+    @Override
+    public synchronized void nodeLeaving(ComputeNode node) {
+        Shard shard = shardOf.remove(node);
+        if (shard == null || node == shard.leader) {
+            return;
+        }
+        shard.members.remove(node);
+        shard.membersChanged = true;
+        System.out.println("[SHARDS] " + shard.id + ": " + node.hostname + ":" + node.port + " left, " +
+                           shard.members.size() + " worker(s)");
+    }
+
+    /**
+     * Hands a ready task to a shard: the one holding its inputs, else the least
+     * loaded one (per slot) of the task's "@site", if any.
+     * @param task The task, which must be able to run on a shard (see Task.canRunOnShard)
+     * @return true if the task was queued, false if no shard can take it
+     */
+    public boolean submit(Task task) {
+        String site = task.getAnnotation("site");
+        ComputeNode preferred = task.preferredWorker();
+        Shard target = preferred == null ? null : shardOf.get(preferred);
+        if (target != null && (target.retired || (site != null && !site.equals(target.site)))) {
+            target = null;
+        }
+        if (target == null) {
+            for (Shard shard : shards) {
+                if (shard.retired || (site != null && !site.equals(shard.site))) {
+                    continue;
+                }
+                if (target == null || (long) shard.load() * target.slots() < (long) target.load() * shard.slots()) {
+                    target = shard;
+                }
+            }
+        }
+        if (target == null) {
+            return false;
+        }
+        target.pending.add(task);
+        return true;
+    }
+
+    /**
+     * Stops the dispatch loops once their shards have no task left.
+     */
+    public void shutdown() {
+        clusterManager.removeMembershipListener(this);
+        synchronized (this) {
+            // After this, a node joining concurrently no longer starts a shard
+            running = false;
+            loops.shutdown();
+        }
+        try {
+            loops.awaitTermination(Configuration.SHARD_POLL_MS * 4, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Shard shard : shards) {
+            System.out.println("[SHARDS] " + shard.id + ": " + shard.done + " task(s) done, " + shard.failed + " failed" +
+                               (shard.returned > 0 ? ", " + shard.returned + " returned to the master" : ""));
+        }
+    }
+
+    private void loop(Shard shard) {
+        try {
+            while (true) {
+                List<Task> batch = new ArrayList<>();
+                if (shard.inFlight.isEmpty()) {
+                    if (!running) {
+                        break;
+                    }
+                    Task first = shard.pending.poll(Configuration.SHARD_POLL_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                shard.pending.drainTo(batch);
+                if (shard.leader.isDraining() && !shard.retired) {
+                    // The leader is leaving: finish what it runs, send the rest through the master
+                    System.out.println("[SHARDS] " + shard.id + ": leader is leaving, retiring the shard");
+                    shard.retired = true;
+                }
+                if (shard.retired) {
+                    release(batch);
+                    release(drain(shard.pending));
+                } else if (!batch.isEmpty() || shard.membersChanged) {
+                    send(shard, batch);
+                }
+                if (!shard.inFlight.isEmpty()) {
+                    apply(shard, leader(shard).awaitShardReport(shard.id, Configuration.SHARD_POLL_MS));
+                } else if (shard.retired) {
+                    break;
+                }
+            }
+            leader(shard).closeShard(shard.id);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            WorkerStubs.evict(shard.leader.hostname, shard.leader.port);
+            shard.retired = true;
+            List<Task> orphans = new ArrayList<>(shard.inFlight.values());
+            shard.inFlight.clear();
+            orphans.addAll(drain(shard.pending));
+            System.err.println("[SHARDS] ⚠️  " + shard.id + ": leader " + shard.leader.hostname + ":" + shard.leader.port +
+                               " unreachable (" + e.getMessage() + "), " + orphans.size() +
+                               " task(s) go back to the master's dispatch");
+            release(orphans);
+        }
+    }
+
+    private void send(Shard shard, List<Task> batch) throws IOException {
+        List<ShardTask> tasks = new ArrayList<>();
+        for (Task task : batch) {
+            Map<String, String> inputs = new LinkedHashMap<>();
+            for (String file : task.getRequiredFiles()) {
+                ComputeNode holder = clusterManager.getNearestReplica(file, shard.leader);
+                if (holder != null) {
+                    inputs.put(file, holder.hostname + ":" + holder.port);
+                }
+            }
+            tasks.add(new ShardTask(task.getTaskName(), task.getCommands(), inputs));
+            shard.inFlight.put(task.getTaskName(), task);
+        }
+        shard.membersChanged = false;
+        List<String> members = new ArrayList<>();
+        for (ComputeNode member : shard.members) {
+            if (!member.isDraining() && clusterManager.findNode(member.hostname, member.port) == member) {
+                members.add(member.hostname + ":" + member.port + "/" + member.getSlots());
+            }
+        }
+        leader(shard).submitShardTasks(shard.id, members, tasks);
+        if (!tasks.isEmpty()) {
+            System.out.println("[SHARDS] " + shard.id + " ← " + tasks.size() + " task(s)");
+        }
+    }
+
+    private void apply(Shard shard, ShardReport report) {
+        List<Task> notRun = new ArrayList<>();
+        for (ShardResult result : report.getResults()) {
+            Task task = shard.inFlight.remove(result.getName());
+            if (task == null) {
+                continue;
+            }
+            if (!result.wasRun()) {
+                notRun.add(task);
+                continue;
+            }
+            ComputeNode worker = null;
+            if (result.getWorker() != null) {
+                int colon = result.getWorker().lastIndexOf(':');
+                worker = clusterManager.findNode(result.getWorker().substring(0, colon),
+                                                 Integer.parseInt(result.getWorker().substring(colon + 1)));
+            }
+            task.completeOnShard(worker, result.getExitCode(), result.getStaged());
+            if (task.getStatus() == TaskStatus.FINISHED) {
+                shard.done++;
+            } else {
+                shard.failed++;
+            }
+        }
+        if (!notRun.isEmpty()) {
+            // No worker of the shard could take them: stop sharding there, the master runs them
+            shard.retired = true;
+            shard.returned += notRun.size();
+            notRun.addAll(drain(shard.pending));
+            System.err.println("[SHARDS] ⚠️  " + shard.id + ": no reachable worker left, " + notRun.size() +
+                               " task(s) go back to the master's dispatch");
+            release(notRun);
+        }
+        long now = System.currentTimeMillis();
+        if (now - shard.lastReport >= Configuration.SHARD_REPORT_INTERVAL_MS) {
+            shard.lastReport = now;
+            System.out.println("[SHARDS] " + shard.id + ": " + shard.done + " done, " + shard.failed + " failed, " +
+                               report.getRunning() + " running, " + report.getQueued() + " queued on the leader");
+        }
+    }
+
+    private WorkerInterface leader(Shard shard) throws IOException {
+        return WorkerStubs.get(shard.leader.hostname, shard.leader.port);
+    }
+
+    private static List<Task> drain(BlockingQueue<Task> queue) {
+        List<Task> tasks = new ArrayList<>();
+        queue.drainTo(tasks);
+        return tasks;
+    }
+
+    /**
+     * Gives tasks back to the scheduling loop, which dispatches them itself.
+     */
+    private static void release(List<Task> tasks) {
+        for (Task task : tasks) {
+            task.setStatus(TaskStatus.NOT_STARTED);
+        }
+    }
+}
@@ -18,10 +18,16 @@ import java.util.concurrent.TimeUnit;
 public class TaskScheduler {
     private final Map<Task, List<Task>> dependencyGraph;
     private final Map<TaskNFS, List<TaskNFS>> dependencyGraphNFS;
+    private final Map<Task, List<Task>> streamingInputs;
+    private final Set<Task> streamingProducers;
+    private FairShare fairShare;
+    private FairShare.Share share;
 
     public TaskScheduler() {
         this.dependencyGraph = new HashMap<>();
         this.dependencyGraphNFS = new HashMap<>();
+        this.streamingInputs = new HashMap<>();
+        this.streamingProducers = new HashSet<>();
     }
 
     /**
@@ -40,6 +46,17 @@ public class TaskScheduler {
         dependencyGraph.put(task, dependencies);
     }
 
+    /**
+     * Makes the scheduler share the cluster with other jobs: at each iteration it only
+     * launches as many ready tasks as its share allows (SCP mode).
+     * @param fairShare The arbiter of the jobs running on the cluster
+     * @param share This job's share
+     */
+    public void setFairShare(FairShare fairShare, FairShare.Share share) {
+        this.fairShare = fairShare;
+        this.share = share;
+    }
+
     /**
      * Executes all tasks in the dependency graph, respecting dependencies.
      * Automatically detects whether SCP (Task) or NFS (TaskNFS) mode is being used.
@@ -67,29 +84,89 @@ public class TaskScheduler {
      */
     private void executeTasksSCP() throws InterruptedException {
         System.out.println("\n[SCHEDULER] Starting task execution (SCP mode)...");
+        planDataFlow();
         ExecutorService executor = Executors.newCachedThreadPool();
+        WorkQueues workQueues = null;
+        ShardedDispatcher shards = null;
+        boolean shardingChecked = false;
 
         int iteration = 0;
         while (!allTasksCompleted()) {
+            long releases = fairShare == null ? 0 : fairShare.getReleaseCount();
             iteration++;
             System.out.println("\n[SCHEDULER] Iteration " + iteration + " - Checking for ready tasks...");
+            propagateFailures();
+
+            int launchable = Integer.MAX_VALUE;
+            if (fairShare != null) {
+                launchable = fairShare.grant(share, countTasks(TaskStatus.IN_PROGRESS),
+                                             (int) dependencyGraph.keySet().stream().filter(this::canBeExecuted).count());
+            }
 
             for (Map.Entry<Task, List<Task>> entry : dependencyGraph.entrySet()) {
                 Task task = entry.getKey();
 
-                if (canBeExecuted(task)) {
+                if (launchable > 0 && canBeExecuted(task)) {
+                    launchable--;
                     task.setStatus(TaskStatus.IN_PROGRESS);
-                    System.out.println("[SCHEDULER] Launching task: " + task.getTaskName());
-                    executor.submit(task::execute);
+                    List<Task> producers = streamingInputs.get(task);
+                    if (producers == null && task.canRunOnShard()) {
+                        if (!shardingChecked) {
+                            shardingChecked = true;
+                            if (ShardedDispatcher.isEnabled(task.getClusterManager())) {
+                                shards = new ShardedDispatcher(task.getClusterManager());
+                            }
+                        }
+                        if (shards != null && shards.submit(task)) {
+                            continue;
+                        }
+                    }
+                    boolean queued = Configuration.WORK_STEALING && (producers != null || task.needsWorker());
+                    if (queued && workQueues == null) {
+                        workQueues = new WorkQueues(task.getClusterManager());
+                    }
+                    if (producers != null) {
+                        producers.forEach(producer -> producer.setStatus(TaskStatus.IN_PROGRESS));
+                        System.out.println("[SCHEDULER] Launching streaming pipeline: " + task.getTaskName());
+                        if (queued) {
+                            if (!workQueues.submit(task, task.getPipelineResources(producers),
+                                                   worker -> task.executePipeline(producers))) {
+                                producers.forEach(producer -> producer.setStatus(TaskStatus.FAILED));
+                            }
+                        } else {
+                            executor.submit(() -> task.executePipeline(producers));
+                        }
+                    } else {
+                        System.out.println("[SCHEDULER] Launching task: " + task.getTaskName());
+                        if (queued) {
+                            workQueues.submit(task, task.getResources(), worker -> task.execute());
+                        } else {
+                            executor.submit(task::execute);
+                        }
+                    }
                 }
             }
 
-            Thread.sleep(Configuration.SCHEDULER_POLL_INTERVAL_MS);
+            if (fairShare != null) {
+                // Launch again as soon as a slot is freed, by this job or another
+                fairShare.awaitRelease(releases, Configuration.SCHEDULER_POLL_INTERVAL_MS);
+            } else {
+                Thread.sleep(Configuration.SCHEDULER_POLL_INTERVAL_MS);
+            }
         }
 
         System.out.println("\n[SCHEDULER] All tasks submitted, waiting for completion...");
         executor.shutdown();
-        if (!executor.awaitTermination(Configuration.SCHEDULER_TIMEOUT_HOURS, TimeUnit.HOURS)) {
+        if (workQueues != null) {
+            workQueues.shutdown();
+        }
+        if (shards != null) {
+            shards.shutdown();
+        }
+        boolean done = executor.awaitTermination(Configuration.SCHEDULER_TIMEOUT_HOURS, TimeUnit.HOURS) &&
+                       (workQueues == null || workQueues.getExecutor().awaitTermination(
+                           Configuration.SCHEDULER_TIMEOUT_HOURS, TimeUnit.HOURS));
+        if (!done) {
             System.err.println("[SCHEDULER] ⚠️  Timeout waiting for tasks to complete");
             executor.shutdownNow();
         }
@@ -98,6 +175,80 @@ public class TaskScheduler {
         printFinalStatus();
     }
 
+    /**
+     * Tells every task where its inputs come from and whether its output is needed on the master.
+     * Outputs only consumed by other worker tasks stay on the producing worker and are
+     * forwarded directly to the consumer's node when it is dispatched.
+     */
+    private void planDataFlow() {
+        Map<Task, List<Task>> dependents = new HashMap<>();
+        for (Map.Entry<Task, List<Task>> entry : dependencyGraph.entrySet()) {
+            for (Task dep : entry.getValue()) {
+                dependents.computeIfAbsent(dep, k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+
+        int kept = 0;
+        for (Map.Entry<Task, List<Task>> entry : dependencyGraph.entrySet()) {
+            Task task = entry.getKey();
+            task.setInputs(entry.getValue());
+
+            List<Task> consumers = dependents.getOrDefault(task, Collections.emptyList());
+            boolean neededOnMaster = consumers.isEmpty() ||
+                                     consumers.stream().anyMatch(c -> c.isAggregationTask() && !c.isNativeReduce());
+            task.setRetrieveToMaster(neededOnMaster);
+            if (!neededOnMaster) {
+                kept++;
+            }
+        }
+        System.out.println("[SCHEDULER] Data flow planned: " + kept + " intermediate output(s) stay on workers");
+
+        planStreaming(dependents);
+    }
+
+    /**
+     * Turns the incoming edges of "@stream" targets into streaming edges.
+     * An edge can only stream when its producer is a command task whose output has
+     * no other consumer, since a named pipe can be read only once; other edges stay barriers.
+     * @param dependents Map from each task to the tasks consuming its output
+     */
+    private void planStreaming(Map<Task, List<Task>> dependents) {
+        streamingInputs.clear();
+        streamingProducers.clear();
+
+        for (Map.Entry<Task, List<Task>> entry : dependencyGraph.entrySet()) {
+            Task consumer = entry.getKey();
+            if (!consumer.isStreamingConsumer()) {
+                continue;
+            }
+            if (consumer.isAggregationTask()) {
+                System.err.println("[SCHEDULER] ⚠️  " + consumer.getTaskName() + " runs on the master, @stream ignored");
+                continue;
+            }
+
+            List<Task> producers = new ArrayList<>();
+            for (Task dep : entry.getValue()) {
+                boolean streamable = dependencyGraph.containsKey(dep) &&
+                                     !dep.getCommands().isEmpty() &&
+                                     !dep.isStreamingConsumer() &&
+                                     dependents.getOrDefault(dep, Collections.emptyList()).size() == 1;
+                if (streamable) {
+                    producers.add(dep);
+                } else {
+                    System.out.println("[SCHEDULER] Edge " + dep.getTaskName() + " → " + consumer.getTaskName() +
+                                       " kept as a barrier (not streamable)");
+                }
+            }
+
+            if (!producers.isEmpty()) {
+                streamingInputs.put(consumer, producers);
+                streamingProducers.addAll(producers);
+                System.out.println("[SCHEDULER] Streaming edges into " + consumer.getTaskName() + ": " +
+                                   producers.stream().map(Task::getTaskName).reduce((a, b) -> a + ", " + b).orElse(""));
+            }
+        }
+    }
+
     /**
      * Executes tasks in NFS mode.
      */
@@ -109,6 +260,7 @@ public class TaskScheduler {
         while (!allTasksCompletedNFS()) {
             iteration++;
             System.out.println("\n[SCHEDULER-NFS] Iteration " + iteration + " - Checking for ready tasks...");
+            propagateFailuresNFS();
 
             for (Map.Entry<TaskNFS, List<TaskNFS>> entry : dependencyGraphNFS.entrySet()) {
                 TaskNFS task = entry.getKey();
@@ -144,15 +296,54 @@ public class TaskScheduler {
             return false;
         }
 
+        // Streaming producers are launched together with their consumer
+        if (streamingProducers.contains(task)) {
+            return false;
+        }
+
         List<Task> dependencies = dependencyGraph.get(task);
         if (dependencies == null || dependencies.isEmpty()) {
             return true;
         }
 
+        List<Task> producers = streamingInputs.getOrDefault(task, Collections.emptyList());
         return dependencies.stream()
+                .allMatch(dep -> producers.contains(dep)
+                        ? isReadyProducer(dep)
+                        : dep.getStatus() == TaskStatus.FINISHED);
+    }
+
+    /**
+     * Checks if a streaming producer could start now, i.e. its own inputs are complete.
+     */
+    private boolean isReadyProducer(Task producer) {
+        if (producer.getStatus() != TaskStatus.NOT_STARTED) {
+            return false;
+        }
+        return dependencyGraph.getOrDefault(producer, Collections.emptyList()).stream()
                 .allMatch(dep -> dep.getStatus() == TaskStatus.FINISHED);
     }
 
+    /**
+     * Marks tasks that can never run because an input failed as FAILED,
+     * so the scheduling loop terminates instead of waiting forever.
+     */
+    private void propagateFailures() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<Task, List<Task>> entry : dependencyGraph.entrySet()) {
+                Task task = entry.getKey();
+                if (task.getStatus() == TaskStatus.NOT_STARTED &&
+                    entry.getValue().stream().anyMatch(dep -> dep.getStatus() == TaskStatus.FAILED)) {
+                    System.err.println("[SCHEDULER] ❌ " + task.getTaskName() + " cancelled: an input failed");
+                    task.setStatus(TaskStatus.FAILED);
+                    changed = true;
+                }
+            }
+        }
+    }
+
     /**
      * Checks if all tasks have completed (either finished or failed).
      * @return true if all tasks are done
@@ -163,6 +354,15 @@ public class TaskScheduler {
                                   task.getStatus() == TaskStatus.FAILED);
     }
 
+    /**
+     * Counts the tasks in a given state (SCP mode).
+     * @param status The state
+     * @return The number of tasks in it
+     */
+    public int countTasks(TaskStatus status) {
+        return (int) dependencyGraph.keySet().stream().filter(task -> task.getStatus() == status).count();
+    }
+
     /**
      * Prints the final status of all tasks.
      */
@@ -219,6 +419,25 @@ public class TaskScheduler {
                 .allMatch(dep -> dep.getStatus() == TaskStatus.FINISHED);
     }
 
+    /**
+     * Marks NFS tasks whose inputs failed as FAILED.
+     */
+    private void propagateFailuresNFS() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<TaskNFS, List<TaskNFS>> entry : dependencyGraphNFS.entrySet()) {
+                TaskNFS task = entry.getKey();
+                if (task.getStatus() == TaskStatus.NOT_STARTED &&
+                    entry.getValue().stream().anyMatch(dep -> dep.getStatus() == TaskStatus.FAILED)) {
+                    System.err.println("[SCHEDULER-NFS] ❌ " + task.getTaskName() + " cancelled: an input failed");
+                    task.setStatus(TaskStatus.FAILED);
+                    changed = true;
+                }
+            }
+        }
+    }
+
     /**
      * Checks if all NFS tasks have completed.
      */
@@ -0,0 +1,428 @@
+package scheduler;
+
+import cluster.ClusterManager;
+import cluster.ComputeNode;
+import cluster.MembershipListener;
+import cluster.ResourceRequest;
+import config.Configuration;
+import parser.Task;
+import parser.TaskStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Per-worker work queues with work stealing.
+ * A ready task is queued on the worker holding its inputs, or on a lightly loaded
+ * worker of the right site (best of two random picks), within a bounded capacity per
+ * slot; tasks that fit nowhere wait in a shared overflow queue. Every worker has one
+ * runner thread that takes tasks from the head of its own queue whenever it has a
+ * free slot. An idle runner steals from the tail of the longest queue, on its own
+ * site first; it only steals across sites once the task has waited LOCALITY_WAIT_MS,
+ * and never breaks a task's "@site" constraint. A worker that refused work takes
+ * nothing until its retry delay is over, so its queue is drained by thieves.
+ * A task with "@cores"/"@mem" is only queued on, and stolen by, workers large enough
+ * to hold it; a worker whose head task does not fit yet drains until it does.
+ *
+ * The queues follow the cluster membership: a worker joining during the run gets a
+ * queue and a runner, which starts by stealing queued work; the queue of a leaving
+ * worker is emptied and its tasks placed again on the remaining workers.
+ */
+public class WorkQueues {
+
+    /**
+     * A queued task and how to run it on the worker that picks it up.
+     */
+    private static final class WorkItem {
+        final Task task;
+        final ResourceRequest resources;
+        final Consumer<ComputeNode> work;
+        final String site;
+        final String homeSite;
+        final long enqueuedAt;
+        boolean wholeOnly;
+
+        WorkItem(Task task, ResourceRequest resources, Consumer<ComputeNode> work, ComputeNode home) {
+            this.task = task;
+            this.resources = resources;
+            this.work = work;
+            this.site = task.getAnnotation("site");
+            this.homeSite = home == null ? null : home.site;
+            this.enqueuedAt = System.currentTimeMillis();
+        }
+    }
+
+    private final ClusterManager clusterManager;
+    private final List<ComputeNode> nodes = new CopyOnWriteArrayList<>();
+    private final Map<String, List<ComputeNode>> sites = new ConcurrentHashMap<>();
+    private final Map<ComputeNode, ConcurrentLinkedDeque<WorkItem>> queues = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<WorkItem> overflow = new ConcurrentLinkedDeque<>();
+    private final ExecutorService executor;
+    private final Map<ComputeNode, Thread> runners = new ConcurrentHashMap<>();
+    private final MembershipListener membership = new MembershipListener() {
+        @Override
+        public void nodeJoined(ComputeNode node) {
+            addWorker(node);
+        }
+
+        @Override
+        public void nodeLeaving(ComputeNode node) {
+            removeWorker(node);
+        }
+    };
+    private final AtomicLong submissions = new AtomicLong();
+    private final AtomicLong steals = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Creates the queues and starts one runner per worker.
+     * @param clusterManager The cluster
+     * @param executor Executor running the dispatched tasks
+     */
+    public WorkQueues(ClusterManager clusterManager, ExecutorService executor) {
+        this.clusterManager = clusterManager;
+        this.executor = executor;
+        // Listen first, so a node joining meanwhile is not missed (adding is idempotent)
+        clusterManager.addMembershipListener(membership);
+        List<ComputeNode> members;
+        synchronized (clusterManager.getNodes()) {
+            members = new ArrayList<>(clusterManager.getNodes());
+        }
+        for (ComputeNode node : members) {
+            if (!node.isDraining()) {
+                addWorker(node);
+            }
+        }
+    }
+
+    /**
+     * Creates work queues running tasks on a cached thread pool.
+     * @param clusterManager The cluster
+     */
+    public WorkQueues(ClusterManager clusterManager) {
+        this(clusterManager, Executors.newCachedThreadPool());
+    }
+
+    /**
+     * Queues a ready task near its inputs.
+     * @param task The task (used for placement)
+     * @param resources The cores and memory the task takes on its worker
+     * @param work Runs the task on the worker that picks it up
+     * @return false if the task was failed instead, its "@site" having no worker
+     */
+    public boolean submit(Task task, ResourceRequest resources, Consumer<ComputeNode> work) {
+        String site = task.getAnnotation("site");
+        if (site != null && !clusterManager.hasSite(site)) {
+            // No runner could ever take it: fail now, as a task acquiring a worker itself would
+            System.err.println("[TASK " + task.getTaskName() + "] ❌ No worker on site " + site);
+            task.setStatus(TaskStatus.FAILED);
+            return false;
+        }
+        ComputeNode home = task.preferredWorker();
+        submissions.incrementAndGet();
+        place(new WorkItem(task, resources, work, home), home);
+        return true;
+    }
+
+    /**
+     * Queues a task on its home worker if it has room, else on a lightly loaded
+     * worker of the right site, else in the overflow queue.
+     */
+    private void place(WorkItem item, ComputeNode home) {
+        // A multi-core task only goes to nodes large enough for it, unless there are none
+        item.wholeOnly = false;
+        for (ComputeNode node : nodes) {
+            if (!item.resources.isDefault() && node.canHold(item.resources) &&
+                (item.site == null || item.site.equals(node.site))) {
+                item.wholeOnly = true;
+                break;
+            }
+        }
+
+        ComputeNode target = null;
+        if (home != null && hasRoom(home) && canHold(item, home)) {
+            target = home;
+        } else {
+            String site = item.site != null ? item.site : item.homeSite;
+            List<ComputeNode> candidates = site == null ? nodes : sites.getOrDefault(site, Collections.emptyList());
+            if (item.wholeOnly) {
+                List<ComputeNode> large = new ArrayList<>();
+                for (ComputeNode candidate : candidates) {
+                    if (canHold(item, candidate)) {
+                        large.add(candidate);
+                    }
+                }
+                candidates = large;
+            }
+            target = lessLoadedOfTwo(candidates);
+        }
+
+        ConcurrentLinkedDeque<WorkItem> queue = target == null ? null : queues.get(target);
+        if (queue != null) {
+            // Only the owner is woken; idle workers find the task when they next look for work
+            queue.offerLast(item);
+            if (queues.get(target) != queue) {
+                // The worker left meanwhile, after its queue was emptied
+                requeueAll(queue);
+                return;
+            }
+            LockSupport.unpark(runners.get(target));
+        } else {
+            overflow.offerLast(item);
+            for (Map.Entry<ComputeNode, Thread> runner : runners.entrySet()) {
+                if (canRunOn(item, runner.getKey())) {
+                    LockSupport.unpark(runner.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the runners. Tasks already dispatched keep running on the executor.
+     */
+    public void shutdown() {
+        running = false;
+        clusterManager.removeMembershipListener(membership);
+        for (Thread runner : runners.values()) {
+            runner.interrupt();
+        }
+        executor.shutdown();
+        System.out.println("[QUEUES] " + submissions.get() + " task(s) dispatched, " + steals.get() + " stolen");
+    }
+
+    /**
+     * Gets the executor the tasks run on.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Gives a worker a queue and starts its runner.
+     */
+    private void addWorker(ComputeNode node) {
+        if (!running || queues.putIfAbsent(node, new ConcurrentLinkedDeque<>()) != null) {
+            return;
+        }
+        nodes.add(node);
+        sites.computeIfAbsent(node.site, k -> new CopyOnWriteArrayList<>()).add(node);
+        Thread runner = new Thread(() -> runLoop(node), "runner-" + node.hostname + ":" + node.port);
+        runner.setDaemon(true);
+        runners.put(node, runner);
+        runner.start();
+    }
+
+    /**
+     * Stops the runner of a leaving worker and places its queued tasks again.
+     */
+    private void removeWorker(ComputeNode node) {
+        ConcurrentLinkedDeque<WorkItem> queue = queues.remove(node);
+        if (queue == null) {
+            return;
+        }
+        nodes.remove(node);
+        List<ComputeNode> siteNodes = sites.get(node.site);
+        if (siteNodes != null) {
+            siteNodes.remove(node);
+        }
+        Thread runner = runners.remove(node);
+        if (runner != null) {
+            runner.interrupt();
+        }
+        int moved = requeueAll(queue);
+        System.out.println("[QUEUES] " + node.hostname + ":" + node.port + " is leaving, " + moved +
+                           " queued task(s) moved to other workers");
+    }
+
+    /**
+     * Empties the queue of a worker that left and places its tasks again.
+     * @return The number of tasks moved
+     */
+    private int requeueAll(ConcurrentLinkedDeque<WorkItem> queue) {
+        int moved = 0;
+        WorkItem item;
+        while ((item = queue.pollFirst()) != null) {
+            place(item, null);
+            moved++;
+        }
+        return moved;
+    }
+
+    private void runLoop(ComputeNode node) {
+        ConcurrentLinkedDeque<WorkItem> own = queues.get(node);
+        if (own == null) {
+            return;
+        }
+        try {
+            while (running && queues.get(node) == own) {
+                long seenRelease = clusterManager.getReleaseCount();
+                if (node.isSaturated()) {
+                    // The worker refused work: leave its queue to the thieves until it recovers
+                    long wait = Math.min(node.getSaturatedUntil() - System.currentTimeMillis(),
+                                         Configuration.WORK_QUEUE_IDLE_WAIT_MS);
+                    LockSupport.parkNanos(this, Math.max(1, wait) * 1_000_000L);
+                    if (Thread.interrupted()) {
+                        return;
+                    }
+                    continue;
+                }
+                if (node.getFreeSlots() == 0) {
+                    clusterManager.awaitRelease(seenRelease, Configuration.WORK_QUEUE_IDLE_WAIT_MS);
+                    continue;
+                }
+
+                WorkItem item = next(node, own);
+                if (item == null) {
+                    // Woken early by a submission to this worker's queue
+                    LockSupport.parkNanos(this, Configuration.WORK_QUEUE_IDLE_WAIT_MS * 1_000_000L);
+                    if (Thread.interrupted()) {
+                        return;
+                    }
+                    continue;
+                }
+
+                // Reserve the resources before handing the task over, so it starts right away.
+                // A task that does not fit yet stays at the head: the worker drains until it does.
+                if (clusterManager.tryAcquireNode(Collections.singletonList(node), null, false,
+                                                  item.resources, item.task) == null) {
+                    if (node.isDraining()) {
+                        place(item, null);
+                        continue;
+                    }
+                    own.offerFirst(item);
+                    clusterManager.awaitRelease(seenRelease, Configuration.WORK_QUEUE_IDLE_WAIT_MS);
+                    continue;
+                }
+                item.task.assignWorker(node, item.resources);
+                executor.submit(() -> {
+                    try {
+                        item.work.accept(node);
+                    } finally {
+                        item.task.releaseReservedWorker();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (running && queues.get(node) != own) {
+                // The worker left: tasks put back after its queue was emptied go elsewhere
+                requeueAll(own);
+            }
+        }
+    }
+
+    /**
+     * Takes the next task for a worker: its own queue, then a steal on the same
+     * site, then the overflow queue, then a steal from another site.
+     */
+    private WorkItem next(ComputeNode node, ConcurrentLinkedDeque<WorkItem> own) {
+        WorkItem item = own.pollFirst();
+        if (item != null) {
+            return item;
+        }
+        item = steal(node, sites.getOrDefault(node.site, Collections.emptyList()));
+        if (item != null) {
+            return item;
+        }
+        for (Iterator<WorkItem> it = overflow.iterator(); it.hasNext(); ) {
+            WorkItem candidate = it.next();
+            if (canRunOn(candidate, node) && overflow.removeFirstOccurrence(candidate)) {
+                return candidate;
+            }
+        }
+        return sites.size() > 1 ? steal(node, nodes) : null;
+    }
+
+    /**
+     * Steals from the tail of the longest queue among the victims.
+     */
+    private WorkItem steal(ComputeNode thief, List<ComputeNode> victims) {
+        ConcurrentLinkedDeque<WorkItem> longest = null;
+        int longestSize = 0;
+        for (ComputeNode victim : victims) {
+            if (victim == thief) {
+                continue;
+            }
+            ConcurrentLinkedDeque<WorkItem> queue = queues.get(victim);
+            int size = queue == null ? 0 : queue.size();
+            if (size > longestSize) {
+                longest = queue;
+                longestSize = size;
+            }
+        }
+        if (longest == null) {
+            return null;
+        }
+        WorkItem item = longest.pollLast();
+        if (item == null) {
+            return null;
+        }
+        if (!canRunOn(item, thief)) {
+            longest.offerLast(item);
+            return null;
+        }
+        steals.incrementAndGet();
+        System.out.println("[QUEUES] " + thief.hostname + ":" + thief.port + " stole " + item.task.getTaskName());
+        return item;
+    }
+
+    private boolean canRunOn(WorkItem item, ComputeNode node) {
+        if (node.isDraining() || !canHold(item, node)) {
+            return false;
+        }
+        if (item.site != null) {
+            return item.site.equals(node.site);
+        }
+        return item.homeSite == null || item.homeSite.equals(node.site) ||
+               System.currentTimeMillis() - item.enqueuedAt >= Configuration.LOCALITY_WAIT_MS;
+    }
+
+    private static boolean canHold(WorkItem item, ComputeNode node) {
+        return !item.wholeOnly || node.canHold(item.resources);
+    }
+
+    private boolean hasRoom(ComputeNode node) {
+        ConcurrentLinkedDeque<WorkItem> queue = queues.get(node);
+        return queue != null && !node.isDraining() && !node.isSaturated() &&
+               queue.size() < node.getSlots() * Configuration.WORK_QUEUE_CAPACITY_PER_SLOT;
+    }
+
+    /**
+     * Picks two random candidates and keeps the one with the shorter queue per slot.
+     * @return A node with room in its queue, or null
+     */
+    private ComputeNode lessLoadedOfTwo(List<ComputeNode> candidates) {
+        // Snapshot: workers may join or leave meanwhile
+        candidates = new ArrayList<>(candidates);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ComputeNode first = candidates.get(random.nextInt(candidates.size()));
+        ComputeNode second = candidates.get(random.nextInt(candidates.size()));
+        ComputeNode best = load(first) <= load(second) ? first : second;
+        if (hasRoom(best)) {
+            return best;
+        }
+        ComputeNode other = best == first ? second : first;
+        return hasRoom(other) ? other : null;
+    }
+
+    private double load(ComputeNode node) {
+        ConcurrentLinkedDeque<WorkItem> queue = queues.get(node);
+        return queue == null ? Double.MAX_VALUE : (double) queue.size() / node.getSlots();
+    }
+}
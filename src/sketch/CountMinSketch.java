@@ -0,0 +1,130 @@
+package sketch;
+
+import utils.ByteHash;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Count-Min sketch (Cormode and Muthukrishnan) over byte-slice keys.
+ * <p>
+ * depth rows of width counters; a key adds to one counter per row and its estimate
+ * is the smallest of them. Estimates never under-count and, with probability
+ * 1 - e^-depth, over-count by at most e * total / width. Sketches with the same
+ * dimensions merge by adding counters.
+ */
+public class CountMinSketch {
+    private static final int MAGIC = 0x434d5331; // "CMS1"
+
+    private final int width;
+    private final int depth;
+    private final long[] table;
+    private long total;
+
+    /**
+     * Creates an empty sketch.
+     * @param width Counters per row (a power of two)
+     * @param depth Number of rows
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Width must be a power of two");
+        }
+        if (depth < 1 || depth > 16) {
+            throw new IllegalArgumentException("Depth must be between 1 and 16");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.table = new long[width * depth];
+    }
+
+    /**
+     * Adds occurrences of a key.
+     */
+    public void add(byte[] key, int offset, int length, long weight) {
+        long h = ByteHash.hash64(key, offset, length);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            table[row * width + ((h1 + row * h2) & (width - 1))] += weight;
+        }
+        total += weight;
+    }
+
+    /**
+     * Estimates the count of a key (never below the true count).
+     */
+    public long estimate(byte[] key, int offset, int length) {
+        long h = ByteHash.hash64(key, offset, length);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, table[row * width + ((h1 + row * h2) & (width - 1))]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Adds another sketch's counters to this one.
+     * @throws IllegalArgumentException if the dimensions differ
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge Count-Min sketches of different dimensions");
+        }
+        for (int i = 0; i < table.length; i++) {
+            table[i] += other.table[i];
+        }
+        total += other.total;
+    }
+
+    /**
+     * Gets the over-estimation bound e * total / width.
+     */
+    public long errorBound() {
+        return (long) Math.ceil(Math.E * total / width);
+    }
+
+    /**
+     * Gets the probability that an estimate is within errorBound().
+     */
+    public double confidence() {
+        return 1 - Math.exp(-depth);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(width);
+        out.writeInt(depth);
+        out.writeLong(total);
+        for (long counter : table) {
+            out.writeLong(counter);
+        }
+    }
+
+    public static CountMinSketch read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a Count-Min sketch");
+        }
+        CountMinSketch sketch = new CountMinSketch(in.readInt(), in.readInt());
+        sketch.total = in.readLong();
+        for (int i = 0; i < sketch.table.length; i++) {
+            sketch.table[i] = in.readLong();
+        }
+        return sketch;
+    }
+}
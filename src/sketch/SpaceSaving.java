@@ -0,0 +1,368 @@
+package sketch;
+
+import utils.ByteHash;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Space-Saving heavy-hitter summary (Metwally et al.) over byte-slice keys.
+ * <p>
+ * Monitors at most capacity keys. A new key replaces the key with the smallest
+ * counter and inherits its count as error, so every counter over-estimates its key
+ * by at most its error, and the error is at most total / capacity. Any key whose
+ * true count exceeds total / capacity is guaranteed to be monitored.
+ * <p>
+ * Memory depends on the capacity only. Summaries of different splits merge into a
+ * summary with the same guarantees (Agarwal et al., "Mergeable Summaries").
+ */
+public class SpaceSaving {
+    private static final int MAGIC = 0x53535331; // "SSS1"
+
+    private final int capacity;
+    private final byte[][] keys;
+    private final int[] lengths;
+    private final int[] hashes;
+    private final long[] counts;
+    private final long[] errors;
+    private int size;
+    private long total;
+
+    // Min-heap of counter ids by count
+    private final int[] heap;
+    private final int[] heapPosition;
+
+    // Open-addressing index: key -> counter id + 1 (0 = empty)
+    private final int[] index;
+    private final int indexMask;
+
+    /**
+     * One monitored key.
+     */
+    public static class Entry {
+        private final byte[] key;
+        private final long count;
+        private final long error;
+
+        Entry(byte[] key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public byte[] getKey() {
+            return key;
+        }
+
+        /** Gets the key as text (bytes mapped one-to-one to chars). */
+        public String getWord() {
+            return new String(key, StandardCharsets.ISO_8859_1);
+        }
+
+        /** Upper bound of the true count. */
+        public long getCount() {
+            return count;
+        }
+
+        /** Maximum over-estimation of getCount(). */
+        public long getError() {
+            return error;
+        }
+
+        /** Lower bound of the true count. */
+        public long getGuaranteedCount() {
+            return count - error;
+        }
+    }
+
+    /**
+     * Creates an empty summary.
+     * @param capacity Number of counters (the error is at most total / capacity)
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.keys = new byte[capacity][];
+        this.lengths = new int[capacity];
+        this.hashes = new int[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.heap = new int[capacity];
+        this.heapPosition = new int[capacity];
+
+        int indexSize = Integer.highestOneBit(capacity) << 2;
+        this.index = new int[indexSize];
+        this.indexMask = indexSize - 1;
+    }
+
+    /**
+     * Counts an occurrence of a key.
+     * @param key Buffer holding the key
+     * @param offset Start of the key
+     * @param length Length of the key
+     * @param weight Number of occurrences
+     */
+    public void offer(byte[] key, int offset, int length, long weight) {
+        total += weight;
+        int hash = hashOf(key, offset, length);
+        int id = find(hash, key, offset, length);
+
+        if (id >= 0) {
+            counts[id] += weight;
+            siftDown(heapPosition[id]);
+            return;
+        }
+        if (size < capacity) {
+            put(key, offset, length, hash, weight, 0);
+            return;
+        }
+
+        // Replace the smallest counter: the new key inherits its count as error
+        id = heap[0];
+        removeFromIndex(id);
+        setKey(id, key, offset, length, hash);
+        errors[id] = counts[id];
+        counts[id] += weight;
+        insertIntoIndex(id);
+        siftDown(0);
+    }
+
+    /**
+     * Gets the upper bound of a key's count (the smallest counter if not monitored).
+     */
+    public long estimate(byte[] key, int offset, int length) {
+        int id = find(hashOf(key, offset, length), key, offset, length);
+        return id >= 0 ? counts[id] : minCount();
+    }
+
+    /**
+     * Gets the smallest counter, 0 while the summary is not full.
+     * Bounds both the count of any unmonitored key and every counter's error.
+     */
+    public long minCount() {
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the k monitored keys with the largest counts, largest first.
+     */
+    public List<Entry> top(int k) {
+        List<Entry> entries = entries();
+        entries.sort(BY_COUNT);
+        return entries.subList(0, Math.min(k, entries.size()));
+    }
+
+    /**
+     * Merges two summaries into a new one with this summary's capacity.
+     * A key missing from a full summary is charged that summary's smallest counter,
+     * both as count and as error, so all bounds still hold.
+     * @param other The summary to merge with
+     * @return The merged summary
+     */
+    public SpaceSaving merge(SpaceSaving other) {
+        long thisMin = minCount();
+        long otherMin = other.minCount();
+        List<Entry> candidates = new ArrayList<>();
+
+        for (int id = 0; id < size; id++) {
+            int otherId = other.find(hashes[id], keys[id], 0, lengths[id]);
+            long count = counts[id] + (otherId >= 0 ? other.counts[otherId] : otherMin);
+            long error = errors[id] + (otherId >= 0 ? other.errors[otherId] : otherMin);
+            candidates.add(new Entry(Arrays.copyOf(keys[id], lengths[id]), count, error));
+        }
+        for (int id = 0; id < other.size; id++) {
+            if (find(other.hashes[id], other.keys[id], 0, other.lengths[id]) < 0) {
+                candidates.add(new Entry(Arrays.copyOf(other.keys[id], other.lengths[id]),
+                                         other.counts[id] + thisMin, other.errors[id] + thisMin));
+            }
+        }
+
+        candidates.sort(BY_COUNT);
+        SpaceSaving merged = new SpaceSaving(capacity);
+        for (int i = 0; i < Math.min(capacity, candidates.size()); i++) {
+            Entry entry = candidates.get(i);
+            merged.put(entry.key, 0, entry.key.length, hashOf(entry.key, 0, entry.key.length),
+                       entry.count, entry.error);
+        }
+        merged.total = total + other.total;
+        return merged;
+    }
+
+    /**
+     * Serializes the summary.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(capacity);
+        out.writeLong(total);
+        out.writeInt(size);
+        for (int id = 0; id < size; id++) {
+            out.writeShort(lengths[id]);
+            out.write(keys[id], 0, lengths[id]);
+            out.writeLong(counts[id]);
+            out.writeLong(errors[id]);
+        }
+    }
+
+    /**
+     * Reads a summary written by write().
+     */
+    public static SpaceSaving read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a Space-Saving summary");
+        }
+        SpaceSaving summary = new SpaceSaving(in.readInt());
+        summary.total = in.readLong();
+        int entries = in.readInt();
+        if (entries > summary.capacity) {
+            throw new IOException("Corrupt Space-Saving summary");
+        }
+        for (int i = 0; i < entries; i++) {
+            byte[] key = new byte[in.readUnsignedShort()];
+            in.readFully(key);
+            long count = in.readLong();
+            long error = in.readLong();
+            summary.put(key, 0, key.length, hashOf(key, 0, key.length), count, error);
+        }
+        return summary;
+    }
+
+    private static final Comparator<Entry> BY_COUNT = (a, b) -> {
+        int byCount = Long.compare(b.count, a.count);
+        return byCount != 0 ? byCount : ByteHash.compare(a.key, 0, a.key.length, b.key, 0, b.key.length);
+    };
+
+    private List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>(size);
+        for (int id = 0; id < size; id++) {
+            entries.add(new Entry(Arrays.copyOf(keys[id], lengths[id]), counts[id], errors[id]));
+        }
+        return entries;
+    }
+
+    private void put(byte[] key, int offset, int length, int hash, long count, long error) {
+        int id = size++;
+        setKey(id, key, offset, length, hash);
+        counts[id] = count;
+        errors[id] = error;
+        insertIntoIndex(id);
+        heap[id] = id;
+        heapPosition[id] = id;
+        siftUp(id);
+    }
+
+    private void setKey(int id, byte[] key, int offset, int length, int hash) {
+        if (keys[id] == null || keys[id].length < length) {
+            keys[id] = new byte[Math.max(length, 16)];
+        }
+        System.arraycopy(key, offset, keys[id], 0, length);
+        lengths[id] = length;
+        hashes[id] = hash;
+    }
+
+    private static int hashOf(byte[] key, int offset, int length) {
+        long h = ByteHash.hash64(key, offset, length);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int find(int hash, byte[] key, int offset, int length) {
+        for (int slot = hash & indexMask; index[slot] != 0; slot = (slot + 1) & indexMask) {
+            int id = index[slot] - 1;
+            if (hashes[id] == hash && lengths[id] == length &&
+                ByteHash.compare(keys[id], 0, length, key, offset, length) == 0) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private void insertIntoIndex(int id) {
+        int slot = hashes[id] & indexMask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & indexMask;
+        }
+        index[slot] = id + 1;
+    }
+
+    /**
+     * Removes a counter from the index with backward-shift deletion (no tombstones).
+     */
+    private void removeFromIndex(int id) {
+        int slot = hashes[id] & indexMask;
+        while (index[slot] != id + 1) {
+            slot = (slot + 1) & indexMask;
+        }
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & indexMask;
+            if (index[next] == 0) {
+                break;
+            }
+            int home = hashes[index[next] - 1] & indexMask;
+            // Move the entry back if its home slot is not in (hole, next]
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                index[hole] = index[next];
+                hole = next;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    private void siftUp(int position) {
+        int id = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[id]) {
+                break;
+            }
+            heap[position] = heap[parent];
+            heapPosition[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = id;
+        heapPosition[id] = position;
+    }
+
+    private void siftDown(int position) {
+        int id = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[child]] >= counts[id]) {
+                break;
+            }
+            heap[position] = heap[child];
+            heapPosition[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = id;
+        heapPosition[id] = position;
+    }
+}
@@ -0,0 +1,64 @@
+package utils;
+
+/**
+ * 64-bit hashing of byte slices.
+ * Used for partitioning words between reducers and for sketches, so every
+ * component agrees on the hash of a given word.
+ */
+public class ByteHash {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ByteHash() {
+        throw new UnsupportedOperationException("ByteHash is a utility class");
+    }
+
+    /**
+     * Hashes a byte slice (FNV-1a followed by a 64-bit avalanche mix).
+     * @param data The bytes
+     * @param offset Start of the slice
+     * @param length Length of the slice
+     * @return A well-mixed 64-bit hash
+     */
+    public static long hash64(byte[] data, int offset, int length) {
+        long h = FNV_OFFSET;
+        for (int i = offset; i < offset + length; i++) {
+            h ^= data[i] & 0xff;
+            h *= FNV_PRIME;
+        }
+        return mix(h);
+    }
+
+    /**
+     * MurmurHash3 finalizer: spreads every input bit over the whole word.
+     */
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Maps a hash to a partition in [0, partitions).
+     */
+    public static int partition(long hash, int partitions) {
+        return (int) ((hash >>> 1) % partitions);
+    }
+
+    /**
+     * Compares two byte slices as unsigned bytes (the order used for sorted outputs).
+     */
+    public static int compare(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+        int n = Math.min(aLength, bLength);
+        for (int i = 0; i < n; i++) {
+            int diff = (a[aOffset + i] & 0xff) - (b[bOffset + i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return aLength - bLength;
+    }
+}
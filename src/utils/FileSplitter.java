@@ -12,6 +12,18 @@ import java.util.List;
  */
 public class FileSplitter {
 
+    /**
+     * Callback notified each time a part has been fully written.
+     */
+    public interface PartListener {
+        /**
+         * @param index Zero-based index of the part
+         * @param path Path of the part file
+         * @param bytes Size of the part in bytes
+         */
+        void onPartReady(int index, String path, long bytes);
+    }
+
     /**
      * Splits a file into N parts with equitable line distribution.
      * @param inputFile Path to the input file
@@ -121,6 +133,88 @@ public class FileSplitter {
         return outputFiles;
     }
 
+    /**
+     * Splits a file into N parts of roughly equal size in a single pass, notifying the
+     * listener as soon as each part is complete so it can be shipped and processed
+     * while the following parts are still being cut. Parts always end on a line boundary.
+     * @param inputFile Path to the input file
+     * @param numParts Number of parts to create
+     * @param outputPrefix Prefix for output files (e.g., "part")
+     * @param listener Notified after each part is closed (may be null)
+     * @return List of generated file paths
+     * @throws IOException if file operations fail
+     */
+    public static List<String> splitFileStreaming(String inputFile, int numParts, String outputPrefix,
+                                                  PartListener listener) throws IOException {
+
+        if (inputFile == null || inputFile.trim().isEmpty()) {
+            throw new IllegalArgumentException("Input file cannot be null or empty");
+        }
+
+        if (numParts < 1) {
+            throw new IllegalArgumentException("Number of parts must be at least 1");
+        }
+
+        long fileSize = new File(inputFile).length();
+        System.out.println("[SPLITTER] Streaming split of " + fileSize + " bytes into " + numParts + " parts");
+
+        List<String> outputFiles = new ArrayList<>();
+        byte[] buffer = new byte[64 * 1024];
+        int pos = 0;
+        int limit = 0;
+        long consumed = 0;
+
+        try (InputStream in = new FileInputStream(inputFile)) {
+            for (int part = 0; part < numParts; part++) {
+                // Cumulative boundary; the last part takes everything left
+                long target = part == numParts - 1 ? Long.MAX_VALUE : fileSize * (part + 1) / numParts;
+                String outputFile = outputPrefix + (part + 1) + ".txt";
+                outputFiles.add(outputFile);
+
+                long written = 0;
+                byte last = '\n';
+
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile), buffer.length)) {
+                    while (consumed < target || last != '\n') {
+                        if (pos == limit) {
+                            limit = in.read(buffer);
+                            pos = 0;
+                            if (limit <= 0) {
+                                limit = 0;
+                                break;
+                            }
+                        }
+
+                        int end;
+                        if (consumed < target) {
+                            end = pos + (int) Math.min(limit - pos, target - consumed);
+                        } else {
+                            // Boundary reached mid-line: finish the current line
+                            end = pos;
+                            while (end < limit && buffer[end] != '\n') {
+                                end++;
+                            }
+                            end = end < limit ? end + 1 : limit;
+                        }
+
+                        out.write(buffer, pos, end - pos);
+                        last = buffer[end - 1];
+                        written += end - pos;
+                        consumed += end - pos;
+                        pos = end;
+                    }
+                }
+
+                System.out.println("[SPLITTER] Created " + outputFile + " with " + written + " bytes");
+                if (listener != null) {
+                    listener.onPartReady(part, outputFile, written);
+                }
+            }
+        }
+
+        return outputFiles;
+    }
+
     /**
      * Cleans up generated split files.
      * @param files List of file paths to delete
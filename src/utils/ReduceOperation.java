@@ -0,0 +1,138 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Associative operations for native reductions ("# @reduce=sum").
+ * Each input line contributes its first field, read as an integer exactly like
+ * awk's $1 (leading blanks skipped, non-numeric text counts as 0), so a native
+ * reduction gives the same result as "cat files | awk '{sum += $1} END {print sum}'"
+ * without forking a shell.
+ */
+public enum ReduceOperation {
+    SUM(0L, "{sum += $1} END {print sum}") {
+        @Override
+        public long combine(long a, long b) {
+            return a + b;
+        }
+    },
+    MIN(Long.MAX_VALUE, "NR == 1 || $1 + 0 < m {m = $1 + 0} END {print m}") {
+        @Override
+        public long combine(long a, long b) {
+            return Math.min(a, b);
+        }
+    },
+    MAX(Long.MIN_VALUE, "NR == 1 || $1 + 0 > m {m = $1 + 0} END {print m}") {
+        @Override
+        public long combine(long a, long b) {
+            return Math.max(a, b);
+        }
+    };
+
+    private final long identity;
+    private final String awkProgram;
+
+    ReduceOperation(long identity, String awkProgram) {
+        this.identity = identity;
+        this.awkProgram = awkProgram;
+    }
+
+    /**
+     * Combines two partial results.
+     */
+    public abstract long combine(long a, long b);
+
+    /**
+     * Gets the result of reducing nothing.
+     */
+    public long identity() {
+        return identity;
+    }
+
+    /**
+     * Reduces the first field of every line of the given files.
+     * @param fileNames Files to read
+     * @return The partial result
+     * @throws IOException if a file cannot be read
+     */
+    public long reduceFiles(List<String> fileNames) throws IOException {
+        long result = identity;
+        for (String fileName : fileNames) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(fileName), 64 * 1024)) {
+                result = reduceStream(in, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the make recipe equivalent to this reduction.
+     * @param fileNames Input files
+     * @param output Output file
+     * @return A shell command such as "cat a b | awk '{sum += $1} END {print sum}' &gt; out"
+     */
+    public String shellCommand(List<String> fileNames, String output) {
+        return "cat " + String.join(" ", fileNames) + " | awk '" + awkProgram + "' > " + output;
+    }
+
+    private long reduceStream(InputStream in, long result) throws IOException {
+        boolean lineStart = true;
+        boolean inField = false;
+        boolean negative = false;
+        long value = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                if (!lineStart) {
+                    result = combine(result, negative ? -value : value);
+                }
+                lineStart = true;
+                inField = false;
+                negative = false;
+                value = 0;
+                continue;
+            }
+            if (lineStart) {
+                if (b == ' ' || b == '\t' || b == '\r') {
+                    continue;
+                }
+                lineStart = false;
+                inField = true;
+                if (b == '-' || b == '+') {
+                    negative = b == '-';
+                    continue;
+                }
+            }
+            if (inField) {
+                if (b >= '0' && b <= '9') {
+                    value = value * 10 + (b - '0');
+                } else {
+                    inField = false;
+                }
+            }
+        }
+        if (!lineStart) {
+            result = combine(result, negative ? -value : value);
+        }
+        return result;
+    }
+
+    /**
+     * Parses an operation name ("sum", "min" or "max").
+     * @throws IllegalArgumentException for unknown names
+     */
+    public static ReduceOperation fromName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return SUM;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown reduce operation: " + name);
+        }
+    }
+}
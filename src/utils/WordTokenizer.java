@@ -0,0 +1,84 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits a byte stream into words, using the same rule as test/wordcount.c:
+ * a word is a maximal run of bytes that are not C whitespace.
+ * Words are handed out as slices of an internal buffer, so tokenizing does not allocate.
+ */
+public class WordTokenizer {
+    public static final int MAX_WORD_BYTES = 65535;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Receives each word as a byte slice.
+     * The slice is only valid during the call.
+     */
+    public interface WordSink {
+        void word(byte[] buffer, int offset, int length);
+    }
+
+    /**
+     * Tokenizes a whole stream.
+     * Words longer than MAX_WORD_BYTES are truncated (they still count as one word).
+     * @param in The input stream (not closed)
+     * @param sink Receives every word
+     * @return Number of words
+     * @throws IOException if reading fails
+     */
+    public static long tokenize(InputStream in, WordSink sink) throws IOException {
+        byte[] buffer = new byte[BUFFER_BYTES];
+        byte[] carry = new byte[MAX_WORD_BYTES];
+        int carryLength = 0;
+        boolean inWord = false;
+        long words = 0;
+        int read;
+
+        while ((read = in.read(buffer)) > 0) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (isSpace(buffer[i])) {
+                    if (inWord) {
+                        if (carryLength > 0) {
+                            carryLength = append(carry, carryLength, buffer, start, i - start);
+                            sink.word(carry, 0, carryLength);
+                            carryLength = 0;
+                        } else {
+                            sink.word(buffer, start, Math.min(i - start, MAX_WORD_BYTES));
+                        }
+                        inWord = false;
+                        words++;
+                    }
+                } else if (!inWord) {
+                    inWord = true;
+                    start = i;
+                }
+            }
+            // Word continues in the next buffer
+            if (inWord) {
+                carryLength = append(carry, carryLength, buffer, start, read - start);
+            }
+        }
+
+        if (inWord) {
+            sink.word(carry, 0, carryLength);
+            words++;
+        }
+        return words;
+    }
+
+    private static int append(byte[] carry, int carryLength, byte[] source, int offset, int length) {
+        int copied = Math.min(length, carry.length - carryLength);
+        System.arraycopy(source, offset, carry, carryLength, copied);
+        return carryLength + copied;
+    }
+
+    /**
+     * Same set as C isspace() in the "C" locale.
+     */
+    public static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == 0x0B || b == 0x0C;
+    }
+}